@@ -12,6 +12,7 @@ import com.yahoo.vespa.model.container.search.searchchain.HttpProvider;
 import com.yahoo.vespa.model.container.search.searchchain.LocalProvider;
 import com.yahoo.vespa.model.container.search.searchchain.SearchChains;
 import com.yahoo.search.config.IndexInfoConfig;
+import com.yahoo.search.statistics.SearcherProfiler;
 import com.yahoo.vespa.configdefinition.IlscriptsConfig;
 import com.yahoo.container.QrSearchersConfig;
 import com.yahoo.search.query.profile.config.QueryProfilesConfig;
@@ -50,7 +51,7 @@ public class ContainerSearch extends ContainerSubsystem<SearchChains>
         super(chains);
         this.options = options;
         cluster.addComponent(getFS4ResourcePool());
-
+        cluster.addComponent(getSearcherProfiler());
     }
 
     private Component<?, ComponentModel> getFS4ResourcePool() {
@@ -59,6 +60,12 @@ public class ContainerSearch extends ContainerSubsystem<SearchChains>
         return new Component<>(new ComponentModel(spec));
     }
 
+    private Component<?, ComponentModel> getSearcherProfiler() {
+        BundleInstantiationSpecification spec = BundleInstantiationSpecification.
+                getInternalSearcherSpecificationFromStrings(SearcherProfiler.class.getName(), null);
+        return new Component<>(new ComponentModel(spec));
+    }
+
     public void connectSearchClusters(Map<String, AbstractSearchCluster> searchClusters) {
         systems.addAll(searchClusters.values());
         initializeSearchChains(searchClusters);
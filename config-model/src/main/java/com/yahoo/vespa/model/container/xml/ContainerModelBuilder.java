@@ -729,6 +729,10 @@ public class ContainerModelBuilder extends ConfigModelBuilder<ContainerModel> {
         }
 
         cluster.addComponent(searchHandler);
+
+        Handler<?> profileHandler = Handler.getVespaHandlerFromClassName("com.yahoo.search.handler.SearcherProfileHandler");
+        profileHandler.addServerBindings("http://*/search-profile/*", "https://*/search-profile/*");
+        cluster.addComponent(profileHandler);
     }
 
     private void addGUIHandler(ContainerCluster cluster) {
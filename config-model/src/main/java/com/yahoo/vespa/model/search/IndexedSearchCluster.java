@@ -416,6 +416,9 @@ public class IndexedSearchCluster extends SearchCluster
                     case ROUNDROBIN:
                         builder.distributionPolicy(DistributionPolicy.ROUNDROBIN);
                         break;
+                    case ADAPTIVE:
+                        builder.distributionPolicy(DistributionPolicy.ADAPTIVE);
+                        break;
                 }
             }
             builder.maxNodesDownPerGroup(rootDispatch.getMaxNodesDownPerFixedRow());
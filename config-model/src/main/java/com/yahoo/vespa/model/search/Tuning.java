@@ -47,6 +47,7 @@ public class Tuning extends AbstractConfigProducer implements PartitionsConfig.P
                         dataset.useroundrobinforfixedrow(false);
                         break;
                     case ROUNDROBIN:
+                    case ADAPTIVE: // Only supported by the java dispatcher
                     default:
                         dataset.useroundrobinforfixedrow(true);
                         break;
@@ -35,6 +35,14 @@ public class TuningDispatchTest {
         assertNull(dispatch.getMinActiveDocsCoverage());
     }
 
+    @Test
+    public void requireThatAdaptiveDispatchWork() {
+        TuningDispatch dispatch = new TuningDispatch.Builder()
+                .setDispatchPolicy("adaptive")
+                .build();
+        assertTrue(TuningDispatch.DispatchPolicy.ADAPTIVE == dispatch.getDispatchPolicy());
+    }
+
     @Test
     public void requireThatDefaultsAreNull() {
         TuningDispatch dispatch = new TuningDispatch.Builder().build();
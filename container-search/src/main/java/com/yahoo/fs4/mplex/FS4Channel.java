@@ -34,6 +34,7 @@ public class FS4Channel {
     volatile private BlockingQueue<BasicPacket> responseQueue;
     private Query query;
     private boolean isPingChannel = false;
+    volatile private Runnable packetListener = null;
 
     /** for unit testing.  do not use */
     protected FS4Channel () {
@@ -61,6 +62,14 @@ public class FS4Channel {
         return query;
     }
 
+    /**
+     * Sets a listener which is run by the thread receiving packets each time a packet is added to this channel.
+     * The listener must return quickly, and must not receive packets itself.
+     */
+    public void setPacketListener(Runnable listener) {
+        this.packetListener = listener;
+    }
+
     /** Returns the (fs4) channel id */
     public Integer getChannelId () {
         return channelId;
@@ -197,6 +206,10 @@ public class FS4Channel {
         throws InterruptedException, InvalidChannelException
     {
         ensureValidQ().put(packet);
+        Runnable listener = packetListener;
+        if (listener != null) {
+            listener.run();
+        }
     }
 
     /**
@@ -15,6 +15,7 @@ import com.yahoo.container.search.LegacyEmulationConfig;
 import com.yahoo.net.HostName;
 import com.yahoo.prelude.fastsearch.DocsumDefinitionSet;
 import com.yahoo.search.dispatch.Dispatcher;
+import com.yahoo.search.dispatch.HedgingPolicy;
 import com.yahoo.prelude.fastsearch.FS4ResourcePool;
 import com.yahoo.prelude.IndexFacts;
 import com.yahoo.prelude.Ping;
@@ -33,6 +34,8 @@ import com.yahoo.search.config.ClusterConfig;
 import com.yahoo.search.query.ParameterParser;
 import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.search.searchchain.Execution;
+import com.yahoo.statistics.Callback;
+import com.yahoo.statistics.Handle;
 import com.yahoo.statistics.Statistics;
 import com.yahoo.statistics.Value;
 import com.yahoo.vespa.config.search.DispatchConfig;
@@ -52,6 +55,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.LongSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -130,7 +134,10 @@ public class ClusterSearcher extends Searcher {
         maxQueryCacheTimeout = ParameterParser.asMilliSeconds(clusterConfig.maxQueryCacheTimeout(),
                                                               DEFAULT_MAX_QUERY_CACHE_TIMEOUT);
 
-        CacheParams cacheParams = new CacheParams(createCache(clusterConfig, clusterModelName));
+        CacheControl cacheControl = createCache(clusterConfig, clusterModelName);
+        registerCacheStatistics(cacheControl, clusterModelName, manager);
+        registerHedgingStatistics(dispatcher.hedgingPolicy(), clusterModelName, manager);
+        CacheParams cacheParams = new CacheParams(cacheControl);
         SummaryParameters docSumParams = new SummaryParameters(qrsConfig
                 .com().yahoo().prelude().fastsearch().FastSearcher().docsum()
                 .defaultclass());
@@ -255,6 +262,50 @@ public class ClusterSearcher extends Searcher {
         return new CacheControl(config.cacheSize(), config.cacheTimeout());
     }
 
+    private static void registerCacheStatistics(CacheControl cacheControl, String clusterModelName, Statistics manager) {
+        new Value(clusterModelName + ".packet_cache_hits", manager,
+                  new Value.Parameters().setNameExtension(false).setLogRaw(true)
+                                        .setCallback(new DeltaSampler(cacheControl::hitCount)));
+        new Value(clusterModelName + ".packet_cache_misses", manager,
+                  new Value.Parameters().setNameExtension(false).setLogRaw(true)
+                                        .setCallback(new DeltaSampler(cacheControl::missCount)));
+        new Value(clusterModelName + ".packet_cache_evictions", manager,
+                  new Value.Parameters().setNameExtension(false).setLogRaw(true)
+                                        .setCallback(new DeltaSampler(cacheControl::evictionCount)));
+        new Value(clusterModelName + ".packet_cache_size", manager,
+                  new Value.Parameters().setNameExtension(false).setLogRaw(true)
+                                        .setCallback((handle, firstTime) -> ((Value) handle).put(cacheControl.totalPacketSize())));
+    }
+
+    private static void registerHedgingStatistics(HedgingPolicy hedgingPolicy, String clusterModelName, Statistics manager) {
+        if ( ! hedgingPolicy.isEnabled()) return;
+        new Value(clusterModelName + ".hedged_queries", manager,
+                  new Value.Parameters().setNameExtension(false).setLogRaw(true)
+                                        .setCallback(new DeltaSampler(hedgingPolicy::hedgedCount)));
+        new Value(clusterModelName + ".hedged_queries_won", manager,
+                  new Value.Parameters().setNameExtension(false).setLogRaw(true)
+                                        .setCallback(new DeltaSampler(hedgingPolicy::wonCount)));
+    }
+
+    /** Puts the increase of a monotonically increasing count since the previous logging cycle */
+    private static class DeltaSampler implements Callback {
+
+        private final LongSupplier count;
+        private long previous = 0;
+
+        DeltaSampler(LongSupplier count) {
+            this.count = count;
+        }
+
+        @Override
+        public void run(Handle handle, boolean firstTime) {
+            long current = count.getAsLong();
+            ((Value) handle).put(current - previous);
+            previous = current;
+        }
+
+    }
+
     ClusterMonitor getMonitor() {
         return monitor;
     }
@@ -23,13 +23,13 @@ public class CacheControl {
     /** Whether this CacheControl actually should cache hits at all. */
     private final boolean activeCache;
 
-    /** Direct unsychronized cache access */
-    private final PacketCache packetCache;
+    /** Thread safe cache access */
+    private final ShardedPacketCache packetCache;
 
     public CacheControl(int sizeMegaBytes, double cacheTimeOutSeconds) {
         activeCache = sizeMegaBytes > 0 && cacheTimeOutSeconds > 0.0d;
         if (activeCache) {
-            packetCache = new PacketCache(sizeMegaBytes, 0, cacheTimeOutSeconds);
+            packetCache = new ShardedPacketCache(sizeMegaBytes, 0, cacheTimeOutSeconds);
         } else {
             packetCache = null;
         }
@@ -46,10 +46,15 @@ public class CacheControl {
 
     public final PacketWrapper lookup(CacheKey key, Query query) {
         if ((key != null) && useCache(query)) {
-            long now = System.currentTimeMillis();
-            synchronized (packetCache) {
-                return packetCache.get(key, now);
-            }
+            return packetCache.get(key, System.currentTimeMillis());
+        }
+        return null;
+    }
+
+    /** Returns the cached entry to update, without counting it as a lookup */
+    private PacketWrapper entryToUpdate(CacheKey key, Query query) {
+        if ((key != null) && useCache(query)) {
+            return packetCache.peek(key, System.currentTimeMillis());
         }
         return null;
     }
@@ -59,7 +64,7 @@ public class CacheControl {
         long oldTimestamp;
         if (!activeCache) return;
 
-        PacketWrapper wrapper = lookup(key, query);
+        PacketWrapper wrapper = entryToUpdate(key, query);
         if (wrapper == null) return;
 
         // The timestamp is owned by the QueryResultPacket, this is why this
@@ -67,23 +72,19 @@ public class CacheControl {
         oldTimestamp = wrapper.getTimestamp();
         wrapper = (PacketWrapper) wrapper.clone();
         wrapper.addResultPacket(resultPacket);
-        synchronized (packetCache) {
-            packetCache.put(key, wrapper, oldTimestamp);
-        }
+        packetCache.put(key, wrapper, oldTimestamp);
     }
 
     // updates phases after first phase phase in multi phase search
     void updateCacheEntry(CacheKey key, Query query, DocsumPacketKey[] packetKeys, Packet[] packets) {
         if (!activeCache) return;
 
-        PacketWrapper wrapper = lookup(key, query);
+        PacketWrapper wrapper = entryToUpdate(key, query);
         if (wrapper== null) return;
 
         wrapper = (PacketWrapper) wrapper.clone();
         wrapper.addDocsums(packetKeys, packets);
-        synchronized (packetCache) {
-            packetCache.put(key, wrapper, wrapper.getTimestamp());
-        }
+        packetCache.put(key, wrapper, wrapper.getTimestamp());
     }
 
     void cache(CacheKey key, Query query, DocsumPacketKey[] packetKeys, Packet[] packets, Optional<Integer> distributionKey) {
@@ -92,23 +93,38 @@ public class CacheControl {
         if (query.getNoCache()) return;
         if (query.properties().getBoolean(nocachewrite)) return;
 
-        PacketWrapper wrapper = lookup(key, query);
+        PacketWrapper wrapper = entryToUpdate(key, query);
         if (wrapper == null) {
             wrapper = new PacketWrapper(key, packetKeys, packets, distributionKey);
-            long now = System.currentTimeMillis();
-            synchronized (packetCache) {
-                packetCache.put(key, wrapper, now);
-            }
+            packetCache.put(key, wrapper, System.currentTimeMillis());
         } else {
             wrapper = (PacketWrapper) wrapper.clone();
             wrapper.addResultPacket((QueryResultPacket) packets[0]);
             wrapper.addDocsums(packetKeys, packets, 1);
-            synchronized (packetCache) {
-                packetCache.put(key, wrapper, wrapper.getTimestamp());
-            }
+            packetCache.put(key, wrapper, wrapper.getTimestamp());
         }
     }
 
+    /** Returns the number of cache lookups which returned an entry */
+    public long hitCount() {
+        return activeCache ? packetCache.hitCount() : 0;
+    }
+
+    /** Returns the number of cache lookups which did not return an entry */
+    public long missCount() {
+        return activeCache ? packetCache.missCount() : 0;
+    }
+
+    /** Returns the number of entries evicted from the cache to make room for others */
+    public long evictionCount() {
+        return activeCache ? packetCache.evictionCount() : 0;
+    }
+
+    /** Returns the number of bytes of packets currently in the cache */
+    public int totalPacketSize() {
+        return activeCache ? packetCache.totalPacketSize() : 0;
+    }
+
     /** Test method. */
     public void clear() {
         if (packetCache != null) {
@@ -38,6 +38,7 @@ public class FS4SearchInvoker extends SearchInvoker {
     private ErrorMessage pendingSearchError = null;
     private Query query = null;
     private QueryPacket queryPacket = null;
+    private BasicPacket[] receivedPackets = null;
 
     public FS4SearchInvoker(VespaBackEndSearcher searcher, Query query, FS4Channel channel, Node node) {
         this.searcher = searcher;
@@ -85,14 +86,16 @@ public class FS4SearchInvoker extends SearchInvoker {
         if(pendingSearchError != null) {
             return errorResult(pendingSearchError);
         }
-        BasicPacket[] basicPackets;
-
-        try {
-            basicPackets = channel.receivePackets(query.getTimeLeft(), 1);
-        } catch (ChannelTimeoutException e) {
-            return errorResult(ErrorMessage.createTimeout("Timeout while waiting for " + getName()));
-        } catch (InvalidChannelException e) {
-            return errorResult(ErrorMessage.createBackendCommunicationError("Invalid channel for " + getName()));
+        BasicPacket[] basicPackets = receivedPackets;
+
+        if (basicPackets == null) {
+            try {
+                basicPackets = channel.receivePackets(query.getTimeLeft(), 1);
+            } catch (ChannelTimeoutException e) {
+                return errorResult(ErrorMessage.createTimeout("Timeout while waiting for " + getName()));
+            } catch (InvalidChannelException e) {
+                return errorResult(ErrorMessage.createBackendCommunicationError("Invalid channel for " + getName()));
+            }
         }
 
         if (basicPackets.length == 0) {
@@ -136,6 +139,32 @@ public class FS4SearchInvoker extends SearchInvoker {
         return asList(result);
     }
 
+    @Override
+    protected boolean canWaitForResults() {
+        return true;
+    }
+
+    @Override
+    protected boolean waitForResults(long timeout) {
+        if (pendingSearchError != null || receivedPackets != null) {
+            return true;
+        }
+        try {
+            receivedPackets = channel.receivePackets(timeout, 1);
+            return true;
+        } catch (ChannelTimeoutException e) {
+            return false;
+        } catch (InvalidChannelException e) {
+            pendingSearchError = ErrorMessage.createBackendCommunicationError("Invalid channel for " + getName());
+            return true;
+        }
+    }
+
+    @Override
+    protected void setResultListener(Runnable listener) {
+        channel.setPacketListener(listener);
+    }
+
     private List<Result> errorResult(ErrorMessage errorMessage) {
         Result error = new Result(query, errorMessage);
         node.ifPresent(n -> {
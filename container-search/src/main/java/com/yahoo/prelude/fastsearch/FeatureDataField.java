@@ -44,4 +44,6 @@ public class FeatureDataField extends LongstringField {
         }
     }
 
+    boolean isString() { return false; }
+
 }
@@ -25,4 +25,6 @@ public class LongstringField extends DocsumField {
         return value.asString("");
     }
 
+    boolean isString() { return true; }
+
 }
@@ -0,0 +1,255 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.prelude.fastsearch;
+
+import com.yahoo.log.LogLevel;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * A packet cache which may be accessed concurrently from many threads without external synchronization.
+ * The cache is split into a number of segments, each an LRU map with its own lock and an equal share of
+ * the total byte capacity, so eviction is approximately LRU over the whole cache.
+ * Size accounting, item size limits and entry expiry are the same as for {@link PacketCache}.
+ */
+public class ShardedPacketCache {
+
+    private static final Logger log = Logger.getLogger(ShardedPacketCache.class.getName());
+
+    /** The default number of segments, which should be a power of two */
+    public static final int DEFAULT_SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final int mask;
+
+    /** The maximum number of bytes of packets in this cache */
+    private final int capacity;
+
+    /** The max size of a cached item compared to the total size */
+    private volatile int maxCacheItemPercentage = 1;
+
+    /** The max age for a valid cache entry in milliseconds */
+    private final long maxAge;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache with a size given by cachesizemegabytes*2^20+cachesizebytes
+     * using the default number of segments.
+     *
+     * @param capacityMegaBytes the cache size, measured in megabytes
+     * @param capacityBytes additional number of bytes to add to the cache size
+     * @param maxAge seconds a cache entry is valid, 0 or less are illegal arguments
+     */
+    public ShardedPacketCache(int capacityMegaBytes, int capacityBytes, double maxAge) {
+        this(capacityMegaBytes, capacityBytes, maxAge, DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * Creates a cache with a size given by cachesizemegabytes*2^20+cachesizebytes
+     *
+     * @param capacityMegaBytes the cache size, measured in megabytes
+     * @param capacityBytes additional number of bytes to add to the cache size
+     * @param maxAge seconds a cache entry is valid, 0 or less are illegal arguments
+     * @param segmentCount the number of independently locked segments, rounded up to a power of two
+     */
+    public ShardedPacketCache(int capacityMegaBytes, int capacityBytes, double maxAge, int segmentCount) {
+        if (maxAge <= 0.0d)
+            throw new IllegalArgumentException("maxAge <= 0 not legal on 5.1, use some very large number for no timeout.");
+        if (segmentCount < 1)
+            throw new IllegalArgumentException("Segment count must be positive, got " + segmentCount);
+
+        if (capacityMegaBytes > (Integer.MAX_VALUE >> 20)) {
+            log.log(LogLevel.INFO, "Packet cache of more than 2 GB requested. Reverting to 2 GB packet cache.");
+            this.capacity = Integer.MAX_VALUE;
+        } else {
+            this.capacity = (capacityMegaBytes << 20) + capacityBytes;
+        }
+        if (this.capacity <= 0)
+            throw new IllegalArgumentException("Total cache size set to 0 or less bytes. If no caching is desired, avoid creating this object instead.");
+        this.maxAge = (long) (maxAge * 1000.0d);
+
+        int count = Integer.highestOneBit(segmentCount);
+        if (count < segmentCount) count <<= 1;
+        while (count > 1 && capacity / count <= 0)
+            count >>= 1;
+        this.segments = new Segment[count];
+        this.mask = count - 1;
+        for (int i = 0; i < count; i++)
+            segments[i] = new Segment(capacity / count);
+    }
+
+    /**
+     * Sets the max size of a cached item compared to the total size.
+     * Cache requests for larger objects, or objects larger than a single segment, will be ignored.
+     */
+    public void setMaxCacheItemPercentage(int maxCapacityPercentage) {
+        maxCacheItemPercentage = maxCapacityPercentage;
+    }
+
+    /** Returns the capacity of this in megabytes */
+    public int getCapacity() { return capacity >> 20; }
+
+    /** Returns the capacity of this in bytes */
+    public int getByteCapacity() { return capacity; }
+
+    /** Returns the number of segments of this */
+    public int getSegmentCount() { return segments.length; }
+
+    /**
+     * Adds a PacketWrapper object to this cache,
+     * unless the size is more than maxCacheItemPercentage of the total size
+     */
+    public PacketWrapper put(CacheKey key, PacketWrapper value) {
+        return put(key, value, System.currentTimeMillis());
+    }
+
+    /**
+     * Adds a PacketWrapper object to this cache,
+     * unless the size is more than maxCacheItemPercentage of the total size
+     *
+     * @param timestamp the timestamp for the first packet in the array, unit milliseconds
+     */
+    public PacketWrapper put(CacheKey key, PacketWrapper result, long timestamp) {
+        int size = result.getPacketsSize();
+        if (size > 0)
+            result.setTimestamp(timestamp);
+
+        Segment segment = segmentFor(key);
+        // don't insert if it is too big
+        if ((long)size * 100 > (long)capacity * maxCacheItemPercentage || size > segment.capacity) {
+            // remove the old one since that is now stale
+            return segment.remove(key);
+        }
+        return segment.put(key, result, size);
+    }
+
+    public PacketWrapper get(CacheKey key) {
+        return get(key, System.currentTimeMillis());
+    }
+
+    public PacketWrapper get(CacheKey key, long now) {
+        PacketWrapper result = segmentFor(key).get(key, now, maxAge);
+        if (result == null)
+            misses.increment();
+        else
+            hits.increment();
+        return result;
+    }
+
+    /** Returns the entry of the given key without counting a hit or miss, for reading an entry to update it */
+    PacketWrapper peek(CacheKey key, long now) {
+        return segmentFor(key).get(key, now, maxAge);
+    }
+
+    public PacketWrapper remove(CacheKey key) {
+        return segmentFor(key).remove(key);
+    }
+
+    public void clear() {
+        for (Segment segment : segments)
+            segment.clear();
+    }
+
+    /** Returns the current number of bytes of packets in this cache */
+    public int totalPacketSize() {
+        long total = 0;
+        for (Segment segment : segments)
+            total += segment.totalSize();
+        return (int)Math.min(total, Integer.MAX_VALUE);
+    }
+
+    /** Returns the current number of entries in this cache */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments)
+            size += segment.size();
+        return size;
+    }
+
+    /** Returns the number of lookups which returned an entry since this was created */
+    public long hitCount() { return hits.sum(); }
+
+    /** Returns the number of lookups which did not return an entry since this was created */
+    public long missCount() { return misses.sum(); }
+
+    /** Returns the number of entries evicted to make room for others since this was created */
+    public long evictionCount() { return evictions.sum(); }
+
+    private Segment segmentFor(CacheKey key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[hash & mask];
+    }
+
+    /** An LRU map holding a share of the cache entries, guarded by its own monitor */
+    private final class Segment {
+
+        private final LinkedHashMap<CacheKey, PacketWrapper> entries = new LinkedHashMap<>(1024, 0.75f, true);
+
+        /** The maximum number of bytes of packets in this segment */
+        private final int capacity;
+
+        /** The <i>current</i> number of bytes of packets in this segment */
+        private int totalSize = 0;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized PacketWrapper get(CacheKey key, long now, long maxAge) {
+            PacketWrapper result = entries.get(key);
+            if (result == null) return null;
+
+            if ((now - result.getTimestamp()) > maxAge) {
+                removeEntry(key);
+                return null;
+            }
+            return result;
+        }
+
+        synchronized PacketWrapper put(CacheKey key, PacketWrapper value, int size) {
+            totalSize += size;
+            PacketWrapper previous = entries.put(key, value);
+            if (previous != null)
+                totalSize -= previous.getPacketsSize();
+            if (totalSize > capacity)
+                removeOverflow();
+            return previous;
+        }
+
+        synchronized PacketWrapper remove(CacheKey key) {
+            return removeEntry(key);
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            totalSize = 0;
+        }
+
+        synchronized int totalSize() { return totalSize; }
+
+        synchronized int size() { return entries.size(); }
+
+        private PacketWrapper removeEntry(CacheKey key) {
+            PacketWrapper removed = entries.remove(key);
+            if (removed != null)
+                totalSize -= removed.getPacketsSize();
+            return removed;
+        }
+
+        private void removeOverflow() {
+            for (Iterator<PacketWrapper> i = entries.values().iterator(); i.hasNext() && totalSize > capacity; ) {
+                totalSize -= i.next().getPacketsSize();
+                i.remove();
+                evictions.increment();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,120 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.yahoo.search.Result;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An LRU cache of results using the number of hits in the results as size limiting factor,
+ * where each result is valid for a limited time. Modelled after the PacketCache of FastSearcher.
+ *
+ * This class is multithread safe.
+ */
+final class ResultCache {
+
+    /** The cached results in access order */
+    private final Map<String, Entry> entries = new LinkedHashMap<>(1000, 0.75f, true);
+
+    /** The max total size of the cached results */
+    private final int capacity;
+
+    /** The max size of a single result */
+    private final int maxResultSize;
+
+    /** The max age in milliseconds of a result which is returned from this */
+    private final long maxAge;
+
+    /** The current total size of the cached results */
+    private int totalSize = 0;
+
+    /**
+     * Creates a result cache
+     *
+     * @param capacity the max total number of hits in cached results
+     * @param maxResultPercentage the max percentage of the capacity a single result can use
+     * @param maxAge the number of milliseconds a result is returned from this after it is added
+     */
+    ResultCache(int capacity, int maxResultPercentage, long maxAge) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("The capacity of a result cache must be positive, not " + capacity);
+        if (maxAge <= 0)
+            throw new IllegalArgumentException("The max age of a result cache must be positive, not " + maxAge);
+        this.capacity = capacity;
+        this.maxResultSize = (int)Math.min(capacity, (long)capacity * maxResultPercentage / 100);
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Returns the result cached for the given key, or null if none or if it is older than the max age.
+     * The returned result must not be modified.
+     *
+     * @param key the cache key
+     * @param now the current time in milliseconds
+     */
+    synchronized Result get(String key, long now) {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        if (now - entry.timestamp > maxAge) {
+            remove(key);
+            return null;
+        }
+        return entry.result;
+    }
+
+    /**
+     * Adds a result to this, unless its size is larger than the max size of a single result.
+     * The result must not be modified after it is added.
+     *
+     * @param key the cache key
+     * @param result the result to cache
+     * @param now the time in milliseconds at which the result was produced
+     * @return whether the result was added
+     */
+    synchronized boolean put(String key, Result result, long now) {
+        remove(key); // stale if we are adding a new result for this key
+        int size = sizeOf(result);
+        if (size > maxResultSize) return false;
+
+        entries.put(key, new Entry(result, now, size));
+        totalSize += size;
+        for (Iterator<Entry> i = entries.values().iterator(); totalSize > capacity && i.hasNext(); ) {
+            totalSize -= i.next().size;
+            i.remove();
+        }
+        return true;
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null)
+            totalSize -= removed.size;
+    }
+
+    /** Returns the number of results in this */
+    synchronized int size() { return entries.size(); }
+
+    /** Returns the total size of the results in this */
+    synchronized int totalSize() { return totalSize; }
+
+    private static int sizeOf(Result result) {
+        return result.getConcreteHitCount() + 1;
+    }
+
+    private static final class Entry {
+
+        final Result result;
+        final long timestamp;
+        final int size;
+
+        Entry(Result result, long timestamp, int size) {
+            this.result = result;
+            this.timestamp = timestamp;
+            this.size = size;
+        }
+
+    }
+
+}
@@ -0,0 +1,192 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Inject;
+import com.yahoo.metrics.simple.Counter;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.grouping.GroupingRequest;
+import com.yahoo.search.query.Model;
+import com.yahoo.search.query.Presentation;
+import com.yahoo.search.query.Ranking;
+import com.yahoo.search.query.Sorting;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.result.HitGroup;
+import com.yahoo.search.searchchain.Execution;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Caches filled results and returns them for equal queries as long as they are younger than a max age.
+ * <p>
+ * Queries are equal if they have the same offset and hits, the same query tree, sources, restrict, search path
+ * and language, the same rank profile, sorting, rank features and rank properties, the same summary class and
+ * summary fields, the same grouping requests, the same request parameters, and the same query profile values
+ * as resolved with the dimension values of the request. Changes to other parts of the query by searchers
+ * before this are not taken into account, so this should be placed before any such searcher.
+ * <p>
+ * Results are cached when they are filled with the summary class of the query, such that they are returned filled
+ * from the cache, or when they are returned if they have no hits which need filling, as with grouping.
+ * Results with errors or without full coverage are not cached. Queries with noCache set bypass the cache.
+ * This caches the results of any searchers after it, so it can be placed before federation,
+ * in the chain of a federated source, or before a cluster searcher.
+ * <p>
+ * Metrics: This emits the count metrics result_cache_hits and result_cache_misses.
+ * The hit ratio of the cache is hits / (hits + misses).
+ */
+public class ResultCacheSearcher extends Searcher {
+
+    private static final String hitsMetricName = "result_cache_hits";
+    private static final String missesMetricName = "result_cache_misses";
+
+    /** The lowercased names of properties which do not change the result of a query */
+    private static final Set<String> ignoredProperties =
+            ImmutableSet.of(Query.TIMEOUT.toString().toLowerCase(),
+                            Query.TRACE_LEVEL.toString().toLowerCase(),
+                            Query.NO_CACHE.toString().toLowerCase());
+
+    private final ResultCache cache;
+    private final Clock clock;
+    private final Counter hitsCounter;
+    private final Counter missesCounter;
+
+    @Inject
+    public ResultCacheSearcher(ResultCacheConfig config, MetricReceiver metrics) {
+        this(config, metrics, Clock.systemUTC());
+    }
+
+    /** For testing - allows injection of a timer to avoid depending on the system clock */
+    public ResultCacheSearcher(ResultCacheConfig config, MetricReceiver metrics, Clock clock) {
+        this.cache = new ResultCache(config.maxHits(), config.maxResultPercentage(), (long)(config.maxAge() * 1000));
+        this.clock = clock;
+        this.hitsCounter = metrics.declareCounter(hitsMetricName);
+        this.missesCounter = metrics.declareCounter(missesMetricName);
+    }
+
+    @Override
+    public Result search(Query query, Execution execution) {
+        if (query.getNoCache()) return execution.search(query);
+
+        String key = cacheKey(query);
+        Result cached = cache.get(key, clock.millis());
+        if (cached != null) {
+            hitsCounter.add();
+            query.trace("Returning cached result", false, 3);
+            return copy(cached, query);
+        }
+
+        missesCounter.add();
+        Result result = execution.search(query);
+        if ( ! isCacheable(result)) return result;
+
+        if (result.isFilled(query.getPresentation().getSummary()))
+            cache.put(key, copyToCache(result), clock.millis());
+        else // cache when filled
+            result.hits().setSearcherSpecificMetaData(this, key);
+        return result;
+    }
+
+    @Override
+    public void fill(Result result, String summaryClass, Execution execution) {
+        execution.fill(result, summaryClass);
+
+        String key = (String)result.hits().getSearcherSpecificMetaData(this);
+        if (key == null) return;
+        if ( ! result.isFilled(result.getQuery().getPresentation().getSummary())) return; // cache when filled for rendering
+        result.hits().setSearcherSpecificMetaData(this, null);
+        if (isCacheable(result))
+            cache.put(key, copyToCache(result), clock.millis());
+    }
+
+    private static boolean isCacheable(Result result) {
+        if (result.hits().getError() != null) return false;
+        Coverage coverage = result.getCoverage(false);
+        return coverage == null || coverage.getFull();
+    }
+
+    /** Returns a deep copy of the given result where the hits are detached from the query, to be stored in the cache */
+    private static Result copyToCache(Result result) {
+        Result copy = copy(result, result.getQuery());
+        setQuery(copy.hits(), null);
+        return copy;
+    }
+
+    /** Sets the given query, or no query if null, as the query of the given hits and all hits they contain */
+    private static void setQuery(HitGroup hits, Query query) {
+        hits.setQuery(query);
+        for (Hit hit : hits.asUnorderedHits()) {
+            if (hit instanceof HitGroup) {
+                setQuery((HitGroup)hit, query);
+            }
+            else {
+                hit.detachQuery();
+                hit.setQuery(query);
+            }
+        }
+    }
+
+    /** Returns a deep copy of the given result, where the result and all its hits belong to the given query */
+    private static Result copy(Result result, Query query) {
+        Result copy = new Result(query, result.hits().clone());
+        setQuery(copy.hits(), query);
+        copy.setTotalHitCount(result.getTotalHitCount());
+        copy.setDeepHitCount(result.getDeepHitCount());
+        if (result.getCoverage(false) != null) {
+            Coverage coverage = new Coverage(0L, 0L, 0, 0);
+            coverage.merge(result.getCoverage(false));
+            copy.setCoverage(coverage);
+        }
+        return copy;
+    }
+
+    /** Returns the canonical form of the given query which is used as its key in the cache */
+    static String cacheKey(Query query) {
+        StringBuilder key = new StringBuilder();
+        key.append("offset=").append(query.getOffset());
+        key.append("&hits=").append(query.getHits());
+
+        Model model = query.getModel();
+        key.append("&model.queryTree=").append(model.getQueryTree());
+        key.append("&model.sources=").append(model.getSources());
+        key.append("&model.restrict=").append(model.getRestrict());
+        key.append("&model.searchPath=").append(model.getSearchPath());
+        key.append("&model.language=").append(model.getLanguage());
+
+        Ranking ranking = query.getRanking();
+        key.append("&ranking.profile=").append(ranking.getProfile());
+        key.append("&ranking.sorting=");
+        if (ranking.getSorting() != null) {
+            for (Sorting.FieldOrder fieldOrder : ranking.getSorting().fieldOrders())
+                key.append(fieldOrder).append(' '); // includes the sorter function, such as the locale and strength of uca
+        }
+        key.append("&ranking.features=").append(ranking.getFeatures());
+        key.append("&ranking.properties=").append(ranking.getProperties());
+
+        Presentation presentation = query.getPresentation();
+        key.append("&presentation.summary=").append(presentation.getSummary());
+        key.append("&presentation.summaryFields=").append(presentation.getSummaryFields());
+
+        for (GroupingRequest request : query.getSelect().getGrouping())
+            key.append("&grouping=").append(request);
+
+        if (query.getHttpRequest() != null)
+            appendProperties(new TreeMap<>(query.getHttpRequest().propertyMap()), key);
+        appendProperties(new TreeMap<>(query.properties().listProperties()), key);
+        return key.toString();
+    }
+
+    private static void appendProperties(Map<String, ?> properties, StringBuilder key) {
+        for (Map.Entry<String, ?> property : properties.entrySet()) {
+            if (ignoredProperties.contains(property.getKey().toLowerCase())) continue;
+            key.append('&').append(property.getKey()).append('=').append(property.getValue());
+        }
+    }
+
+}
@@ -2,27 +2,37 @@
 package com.yahoo.search.dispatch;
 
 import java.io.Closeable;
+import java.util.function.BiConsumer;
 
 /**
  * CloseableInvoker is an abstract implementation of {@link Closeable} with an additional hook for
  * executing code at closing. Classes that extend CloseableInvoker need to override {@link #release()}
  * instead of {@link #close()} which is final to avoid accidental overriding.
+ * The teardown hook is given whether the invocation succeeded and how long it took in seconds,
+ * as set by {@link #setFinalStatus}, or a negative time if the invocation was not timed.
  *
  * @author ollivir
  */
 public abstract class CloseableInvoker implements Closeable {
     protected abstract void release();
 
-    private Runnable teardown = null;
+    private BiConsumer<Boolean, Double> teardown = null;
+    private boolean success = false;
+    private double duration = -1;
 
-    public void teardown(Runnable teardown) {
+    public void teardown(BiConsumer<Boolean, Double> teardown) {
         this.teardown = teardown;
     }
 
+    protected void setFinalStatus(boolean success, double duration) {
+        this.success = success;
+        this.duration = duration;
+    }
+
     @Override
     public final void close() {
         if (teardown != null) {
-            teardown.run();
+            teardown.accept(success, duration);
             teardown = null;
         }
         release();
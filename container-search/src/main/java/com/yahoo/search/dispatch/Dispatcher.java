@@ -17,6 +17,7 @@ import com.yahoo.search.dispatch.searchcluster.SearchCluster;
 import com.yahoo.vespa.config.search.DispatchConfig;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -45,12 +46,13 @@ public class Dispatcher extends AbstractComponent {
     private final SearchCluster searchCluster;
 
     private final LoadBalancer loadBalancer;
+    private final HedgingPolicy hedgingPolicy;
     private final RpcResourcePool rpcResourcePool;
 
     public Dispatcher(DispatchConfig dispatchConfig, FS4ResourcePool fs4ResourcePool, int containerClusterSize, VipStatus vipStatus) {
         this.searchCluster = new SearchCluster(dispatchConfig, fs4ResourcePool, containerClusterSize, vipStatus);
-        this.loadBalancer = new LoadBalancer(searchCluster,
-                dispatchConfig.distributionPolicy() == DispatchConfig.DistributionPolicy.ROUNDROBIN);
+        this.loadBalancer = new LoadBalancer(searchCluster, toLoadBalancerPolicy(dispatchConfig.distributionPolicy()));
+        this.hedgingPolicy = new HedgingPolicy(dispatchConfig.hedgingPercentile(), dispatchConfig.hedgingMinDelay());
         this.rpcResourcePool = new RpcResourcePool(dispatchConfig);
     }
 
@@ -58,14 +60,29 @@ public class Dispatcher extends AbstractComponent {
     public Dispatcher(Map<Integer, Client.NodeConnection> nodeConnections, Client client) {
         this.searchCluster = null;
         this.loadBalancer = new LoadBalancer(searchCluster, true);
+        this.hedgingPolicy = HedgingPolicy.disabled();
         this.rpcResourcePool = new RpcResourcePool(client, nodeConnections);
     }
 
+    private static LoadBalancer.Policy toLoadBalancerPolicy(DispatchConfig.DistributionPolicy.Enum policy) {
+        if (policy == DispatchConfig.DistributionPolicy.RANDOM) {
+            return LoadBalancer.Policy.RANDOM;
+        } else if (policy == DispatchConfig.DistributionPolicy.ADAPTIVE) {
+            return LoadBalancer.Policy.ADAPTIVE;
+        }
+        return LoadBalancer.Policy.ROUNDROBIN;
+    }
+
     /** Returns the search cluster this dispatches to */
     public SearchCluster searchCluster() {
         return searchCluster;
     }
 
+    /** Returns the policy deciding when queries are also sent to a second group, which also counts such queries */
+    public HedgingPolicy hedgingPolicy() {
+        return hedgingPolicy;
+    }
+
     @Override
     public void deconstruct() {
         rpcResourcePool.release();
@@ -146,7 +163,12 @@ public class Dispatcher extends AbstractComponent {
             Optional<SearchInvoker> invoker = invokerFactory.supply(query, group.id(), group.nodes(), acceptIncompleteCoverage);
             if (invoker.isPresent()) {
                 query.trace(false, 2, "Dispatching internally to ", group);
-                invoker.get().teardown(() -> loadBalancer.releaseGroup(group));
+                invoker.get().teardown((success, searchTime) -> releaseGroup(group, success, searchTime));
+                if (hedgingPolicy.isEnabled() && searchCluster.orderedGroups().size() > 1 && invoker.get().canWaitForResults()) {
+                    return Optional.of(new HedgedSearchInvoker(invoker.get(),
+                                                               () -> getHedgeInvoker(query, group, invokerFactory),
+                                                               hedgingPolicy));
+                }
                 return invoker;
             } else {
                 loadBalancer.releaseGroup(group);
@@ -159,4 +181,28 @@ public class Dispatcher extends AbstractComponent {
 
         return Optional.empty();
     }
+
+    /** Returns an invoker for a group other than the given one, accepting only complete coverage */
+    private Optional<SearchInvoker> getHedgeInvoker(Query query, Group rejectedGroup, SearchInvokerSupplier invokerFactory) {
+        Optional<Group> groupInCluster = loadBalancer.takeGroupForQuery(query, Collections.singleton(rejectedGroup.id()));
+        if ( ! groupInCluster.isPresent()) {
+            return Optional.empty();
+        }
+        Group group = groupInCluster.get();
+        Optional<SearchInvoker> invoker = invokerFactory.supply(query, group.id(), group.nodes(), false);
+        if (invoker.isPresent()) {
+            query.trace(false, 2, "Hedging query to ", group);
+            invoker.get().teardown((success, searchTime) -> releaseGroup(group, success, searchTime));
+        } else {
+            loadBalancer.releaseGroup(group);
+        }
+        return invoker;
+    }
+
+    private void releaseGroup(Group group, boolean success, double searchTime) {
+        loadBalancer.releaseGroup(group, success, searchTime);
+        if (success) {
+            hedgingPolicy.recordSearchTime(searchTime);
+        }
+    }
 }
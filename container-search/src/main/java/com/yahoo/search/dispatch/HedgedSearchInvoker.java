@@ -0,0 +1,125 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.fs4.QueryPacket;
+import com.yahoo.prelude.fastsearch.CacheKey;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * HedgedSearchInvoker sends a query to a primary {@link SearchInvoker}, and if that has not produced
+ * results within the delay given by a {@link HedgingPolicy}, sends the query to a second invoker
+ * for another group as well. The results of whichever invoker completes first are returned.
+ *
+ * While both are outstanding, this sleeps until either invoker signals that results may have arrived.
+ * Only invokers which can wait for results without consuming them, and signal their arrival, can be hedged
+ * (see {@link SearchInvoker#canWaitForResults}). This holds for FS4 invokers and interleaved invokers of those.
+ * Other invokers, such as those dispatching over RPC, are refused as primaries, and are not used as hedges.
+ *
+ * The invokers are closed when this is closed. Each will then report its own status to its teardown hook:
+ * The invoker which completed first reports its search time, a primary invoker which lost to the hedge
+ * reports a failure, and a hedge which lost to the primary, or could not be used, reports nothing.
+ */
+public class HedgedSearchInvoker extends SearchInvoker {
+
+    private final SearchInvoker primary;
+    private final Supplier<Optional<SearchInvoker>> hedgeSupplier;
+    private final HedgingPolicy policy;
+
+    /** Released each time either invoker signals that results may have arrived */
+    private final Semaphore resultsSignalled = new Semaphore(0);
+
+    private SearchInvoker hedge = null;
+    private Query query = null;
+    private long primaryStartTime;
+    private long hedgeStartTime;
+
+    /**
+     * Creates a hedged search invoker.
+     *
+     * @param primary the invoker which is always used
+     * @param hedgeSupplier supplies the invoker to hedge with when the primary is late,
+     *                      or empty if no other group is available
+     * @param policy the policy deciding when to hedge, which is also notified of hedges
+     * @throws IllegalArgumentException if the primary invoker cannot wait for results
+     */
+    public HedgedSearchInvoker(SearchInvoker primary, Supplier<Optional<SearchInvoker>> hedgeSupplier, HedgingPolicy policy) {
+        if ( ! primary.canWaitForResults())
+            throw new IllegalArgumentException("Cannot hedge " + primary + ", as it cannot wait for results");
+        this.primary = primary;
+        this.hedgeSupplier = hedgeSupplier;
+        this.policy = policy;
+    }
+
+    @Override
+    protected void sendSearchRequest(Query query, QueryPacket queryPacket) throws IOException {
+        this.query = query;
+        primaryStartTime = System.nanoTime();
+        primary.sendSearchRequest(query, queryPacket);
+    }
+
+    @Override
+    protected List<Result> getSearchResults(CacheKey cacheKey) throws IOException {
+        double delay = policy.delay();
+        if (delay < 0 || query.getTimeLeft() <= 0 ||
+            primary.waitForResults(Math.min((long)(delay * 1000), query.getTimeLeft())))
+            return complete(primary, primaryStartTime, cacheKey);
+
+        Optional<SearchInvoker> hedgeInvoker = hedgeSupplier.get();
+        if ( ! hedgeInvoker.isPresent())
+            return complete(primary, primaryStartTime, cacheKey);
+
+        hedge = hedgeInvoker.get();
+        if ( ! hedge.canWaitForResults())
+            return complete(primary, primaryStartTime, cacheKey); // the hedge is closed unused on release
+
+        primary.setResultListener(resultsSignalled::release);
+        hedge.setResultListener(resultsSignalled::release);
+        hedgeStartTime = System.nanoTime();
+        hedge.sendSearchRequest(query, null);
+        policy.hedged();
+
+        try {
+            while (true) {
+                if (primary.waitForResults(0))
+                    return complete(primary, primaryStartTime, cacheKey);
+                if (hedge.waitForResults(0)) {
+                    policy.won();
+                    primary.setFinalStatus(false, (System.nanoTime() - primaryStartTime) / 1.0e9);
+                    return complete(hedge, hedgeStartTime, cacheKey);
+                }
+                long timeLeft = query.getTimeLeft();
+                if (timeLeft <= 0) break;
+                resultsSignalled.tryAcquire(timeLeft, TimeUnit.MILLISECONDS);
+                resultsSignalled.drainPermits(); // both are checked again anyway
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return complete(primary, primaryStartTime, cacheKey); // produces the timeout result
+    }
+
+    private List<Result> complete(SearchInvoker invoker, long startTime, CacheKey cacheKey) throws IOException {
+        List<Result> results = invoker.getSearchResults(cacheKey);
+        boolean success = results.stream().allMatch(result -> result.hits().getError() == null);
+        invoker.setFinalStatus(success, (System.nanoTime() - startTime) / 1.0e9);
+        return results;
+    }
+
+    @Override
+    protected void release() {
+        primary.close();
+        if (hedge != null) {
+            hedge.close();
+            hedge = null;
+        }
+    }
+
+}
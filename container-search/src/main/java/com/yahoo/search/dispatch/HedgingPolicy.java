@@ -0,0 +1,95 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HedgingPolicy decides how long a query may wait for the group it was sent to before it is also
+ * sent to another group, and keeps count of how often that happens.
+ *
+ * The delay is the configured percentile of the most recent successful search times,
+ * but never less than the configured minimum delay. No queries are hedged until enough
+ * search times have been recorded to estimate the percentile.
+ *
+ * This class is multithread safe.
+ */
+public class HedgingPolicy {
+
+    /** The number of most recent search times the delay is computed from */
+    private static final int WINDOW_SIZE = 1024;
+
+    /** The number of new search times recorded between each recomputation of the delay */
+    private static final int RECOMPUTE_INTERVAL = 64;
+
+    private final double percentile;
+    private final double minDelay;
+
+    private final double[] searchTimes = new double[WINDOW_SIZE];
+    private int next = 0;
+    private int count = 0;
+    private int sinceRecompute = 0;
+    private volatile double delay = -1;
+
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder won = new LongAdder();
+
+    /**
+     * Creates a hedging policy.
+     *
+     * @param percentile the percentile, in (0, 100), of recent search times to wait before hedging,
+     *                   or 0 to never hedge
+     * @param minDelay the minimum time in seconds to wait before hedging
+     */
+    public HedgingPolicy(double percentile, double minDelay) {
+        if (percentile < 0 || percentile >= 100)
+            throw new IllegalArgumentException("Hedging percentile must be in [0, 100), got " + percentile);
+        this.percentile = percentile;
+        this.minDelay = Math.max(0, minDelay);
+    }
+
+    /** Returns a policy which never hedges */
+    public static HedgingPolicy disabled() {
+        return new HedgingPolicy(0, 0);
+    }
+
+    /** Returns whether this may hedge queries */
+    public boolean isEnabled() { return percentile > 0; }
+
+    /** Returns the time in seconds to wait before hedging a query, or a negative value if it should not be hedged */
+    public double delay() { return delay; }
+
+    /** Records the time in seconds spent on a successful search in a group */
+    public void recordSearchTime(double searchTime) {
+        if ( ! isEnabled() || searchTime < 0) return;
+
+        double[] window = null;
+        synchronized (this) {
+            searchTimes[next] = searchTime;
+            next = (next + 1) % WINDOW_SIZE;
+            count = Math.min(count + 1, WINDOW_SIZE);
+            if (++sinceRecompute == RECOMPUTE_INTERVAL) {
+                sinceRecompute = 0;
+                window = Arrays.copyOf(searchTimes, count);
+            }
+        }
+        if (window != null) {
+            Arrays.sort(window);
+            int index = (int)Math.ceil(percentile / 100 * window.length) - 1;
+            delay = Math.max(minDelay, window[Math.max(0, index)]);
+        }
+    }
+
+    /** Called when a query is sent to another group */
+    public void hedged() { hedged.increment(); }
+
+    /** Called when another group answered a hedged query before the group it was first sent to */
+    public void won() { won.increment(); }
+
+    /** Returns the number of queries which have been sent to another group since this was created */
+    public long hedgedCount() { return hedged.sum(); }
+
+    /** Returns the number of hedged queries which were answered first by the other group since this was created */
+    public long wonCount() { return won.sum(); }
+
+}
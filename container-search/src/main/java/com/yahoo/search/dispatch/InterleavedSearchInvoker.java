@@ -52,6 +52,26 @@ public class InterleavedSearchInvoker extends SearchInvoker {
         return results;
     }
 
+    @Override
+    protected boolean canWaitForResults() {
+        return invokers.stream().allMatch(SearchInvoker::canWaitForResults);
+    }
+
+    @Override
+    protected boolean waitForResults(long timeout) throws IOException {
+        long deadline = System.currentTimeMillis() + timeout;
+        for (SearchInvoker invoker : invokers) {
+            if ( ! invoker.waitForResults(Math.max(0, deadline - System.currentTimeMillis())))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    protected void setResultListener(Runnable listener) {
+        invokers.forEach(invoker -> invoker.setResultListener(listener));
+    }
+
     @Override
     protected void release() {
         if (!invokers.isEmpty()) {
@@ -20,14 +20,37 @@ import java.util.logging.Logger;
  * @author ollivir
  */
 public class LoadBalancer {
-    // The implementation here is a simplistic least queries in flight + round-robin load balancer
+    // The implementation here is a simplistic least queries in flight + round-robin load balancer,
+    // which with the ADAPTIVE policy weights the queries in flight by the recent search time of each group
 
     private static final Logger log = Logger.getLogger(LoadBalancer.class.getName());
 
+    /** The weight of a new search time sample in the decaying average search time of a group */
+    private static final double SEARCH_TIME_SAMPLE_WEIGHT = 0.1;
+
+    /** How much the average search time of a group which is not selected approaches that of the selected group */
+    private static final double SEARCH_TIME_CONVERGENCE = 0.005;
+
+    /** How a group is selected for a query */
+    public enum Policy {
+        /** Least queries in flight, ties resolved in round-robin order */
+        ROUNDROBIN,
+        /** Least queries in flight, ties resolved in an order which is random per load balancer */
+        RANDOM,
+        /** Least expected latency, given by the average search time and the queries in flight of each group */
+        ADAPTIVE
+    }
+
     private final List<GroupSchedule> scoreboard;
+    private final Policy policy;
     private int needle = 0;
 
     public LoadBalancer(SearchCluster searchCluster, boolean roundRobin) {
+        this(searchCluster, roundRobin ? Policy.ROUNDROBIN : Policy.RANDOM);
+    }
+
+    public LoadBalancer(SearchCluster searchCluster, Policy policy) {
+        this.policy = policy;
         if (searchCluster == null) {
             this.scoreboard = null;
             return;
@@ -38,7 +61,7 @@ public class LoadBalancer {
             scoreboard.add(new GroupSchedule(group));
         }
 
-        if(! roundRobin) {
+        if (policy != Policy.ROUNDROBIN) {
             // TODO - More randomness could be desirable
             Collections.shuffle(scoreboard);
         }
@@ -61,32 +84,61 @@ public class LoadBalancer {
     }
 
     /**
-     * Release an allocation given by {@link #takeGroupForQuery}. The release must be done exactly once for each allocation.
+     * Release an allocation given by {@link #takeGroupForQuery} without recording any search time.
+     * The release must be done exactly once for each allocation.
      *
      * @param group
      *            previously allocated group
      */
     public void releaseGroup(Group group) {
+        releaseGroup(group, true, -1);
+    }
+
+    /**
+     * Release an allocation given by {@link #takeGroupForQuery}. The release must be done exactly once for each allocation.
+     *
+     * @param group
+     *            previously allocated group
+     * @param success
+     *            whether the query completed without errors
+     * @param searchTime
+     *            the time in seconds the group spent on the query, or a negative value if it is not known
+     */
+    public void releaseGroup(Group group, boolean success, double searchTime) {
         synchronized (this) {
             for (GroupSchedule sched : scoreboard) {
                 if (sched.group.id() == group.id()) {
                     sched.adjustScore(-1);
+                    if (searchTime >= 0) {
+                        sched.addSearchTime(success, searchTime);
+                    }
                     break;
                 }
             }
         }
     }
 
+    /** Returns the decaying average search time in seconds of the given group, or 0 if not known. For testing */
+    synchronized double averageSearchTime(Group group) {
+        for (GroupSchedule sched : scoreboard) {
+            if (sched.group.id() == group.id()) {
+                return sched.averageSearchTime;
+            }
+        }
+        return 0;
+    }
+
     private Optional<Group> allocateNextGroup(Set<Integer> rejectedGroups) {
         synchronized (this) {
             GroupSchedule bestSchedule = null;
             int bestIndex = needle;
+            double defaultSearchTime = policy == Policy.ADAPTIVE ? averageSearchTime() : 0;
 
             int index = needle;
             for (int i = 0; i < scoreboard.size(); i++) {
                 GroupSchedule sched = scoreboard.get(index);
                 if (rejectedGroups == null || !rejectedGroups.contains(sched.group.id())) {
-                    if (sched.isPreferredOver(bestSchedule)) {
+                    if (sched.isPreferredOver(bestSchedule, policy, defaultSearchTime)) {
                         bestSchedule = sched;
                         bestIndex = index;
                     }
@@ -99,6 +151,9 @@ public class LoadBalancer {
             if (bestSchedule != null) {
                 bestSchedule.adjustScore(1);
                 ret = bestSchedule.group;
+                if (policy == Policy.ADAPTIVE) {
+                    convergeTowards(bestSchedule);
+                }
             }
             if (log.isLoggable(Level.FINE)) {
                 log.fine("Offering <" + ret + "> for query connection");
@@ -107,6 +162,37 @@ public class LoadBalancer {
         }
     }
 
+    /**
+     * Returns the mean of the average search times of the groups which have samples, or 1 if no group has any.
+     * This is the search time expected from groups without samples, such that they are neither preferred over
+     * nor avoided in favour of groups with known search times, and are ranked by queries in flight when no group
+     * has samples.
+     */
+    private double averageSearchTime() {
+        double sum = 0;
+        int count = 0;
+        for (GroupSchedule sched : scoreboard) {
+            if (sched.averageSearchTime > 0) {
+                sum += sched.averageSearchTime;
+                count++;
+            }
+        }
+        return count == 0 ? 1 : sum / count;
+    }
+
+    /**
+     * Lets the average search time of the groups not selected approach that of the selected group,
+     * such that groups which have been slow are eventually retried and can get their statistics updated.
+     */
+    private void convergeTowards(GroupSchedule selected) {
+        if (selected.averageSearchTime <= 0) return;
+        for (GroupSchedule sched : scoreboard) {
+            if (sched != selected && sched.averageSearchTime > 0) {
+                sched.averageSearchTime -= SEARCH_TIME_CONVERGENCE * (sched.averageSearchTime - selected.averageSearchTime);
+            }
+        }
+    }
+
     private int nextScoreboardIndex(int current) {
         int next = current + 1;
         if (next >= scoreboard.size()) {
@@ -118,13 +204,14 @@ public class LoadBalancer {
     private static class GroupSchedule {
         private final Group group;
         private int score;
+        private double averageSearchTime = 0; // 0 means no samples yet
 
         public GroupSchedule(Group group) {
             this.group = group;
             this.score = 0;
         }
 
-        public boolean isPreferredOver(GroupSchedule other) {
+        public boolean isPreferredOver(GroupSchedule other, Policy policy, double defaultSearchTime) {
             if (other == null) {
                 return true;
             }
@@ -140,9 +227,32 @@ public class LoadBalancer {
                 }
             }
 
+            if (policy == Policy.ADAPTIVE) {
+                return this.expectedLatency(defaultSearchTime) < other.expectedLatency(defaultSearchTime);
+            }
             return this.score < other.score;
         }
 
+        /**
+         * Returns the expected latency of a new query to this group: The average search time times the number of
+         * queries which will be in flight. Groups without samples are expected to have the given default search time.
+         */
+        private double expectedLatency(double defaultSearchTime) {
+            return (averageSearchTime > 0 ? averageSearchTime : defaultSearchTime) * (score + 1);
+        }
+
+        /** Adds a search time sample. Failures are counted as taking at least twice the average search time */
+        public void addSearchTime(boolean success, double searchTime) {
+            if ( ! success) {
+                searchTime = Math.max(searchTime, 2 * averageSearchTime);
+            }
+            if (averageSearchTime <= 0) {
+                averageSearchTime = searchTime;
+            } else {
+                averageSearchTime += SEARCH_TIME_SAMPLE_WEIGHT * (searchTime - averageSearchTime);
+            }
+        }
+
         public void adjustScore(int amount) {
             this.score += amount;
             if (score < 0) {
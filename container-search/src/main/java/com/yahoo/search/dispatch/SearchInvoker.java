@@ -11,7 +11,8 @@ import java.util.List;
 
 /**
  * SearchInvoker encapsulates an allocated connection for running a single search query.
- * The invocation object can be stateful and should not be reused.
+ * The invocation object can be stateful and should not be reused. The time spent searching
+ * and whether it succeeded is passed to the teardown hook when the invoker is closed.
  *
  * @author ollivir
  */
@@ -22,11 +23,47 @@ public abstract class SearchInvoker extends CloseableInvoker {
      * set to zero and the number of requested hits is adjusted accordingly.
      */
     public List<Result> search(Query query, QueryPacket queryPacket, CacheKey cacheKey) throws IOException {
-        sendSearchRequest(query, queryPacket);
-        return getSearchResults(cacheKey);
+        long startTime = System.nanoTime();
+        boolean success = false;
+        try {
+            sendSearchRequest(query, queryPacket);
+            List<Result> results = getSearchResults(cacheKey);
+            success = results.stream().allMatch(result -> result.hits().getError() == null);
+            return results;
+        } finally {
+            setFinalStatus(success, (System.nanoTime() - startTime) / 1.0e9);
+        }
     }
 
     protected abstract void sendSearchRequest(Query query, QueryPacket queryPacket) throws IOException;
 
     protected abstract List<Result> getSearchResults(CacheKey cacheKey) throws IOException;
+
+    /**
+     * Returns whether this can wait for results without consuming them, and signal a result listener
+     * when they may have arrived. Only invokers which can are hedged, see {@link HedgedSearchInvoker}.
+     * This returns false unless overridden.
+     */
+    protected boolean canWaitForResults() {
+        return false;
+    }
+
+    /**
+     * Waits at most the given time for the results of a sent request to become available, without consuming them.
+     * Invokers which cannot wait for results without consuming them always return true.
+     *
+     * @param timeout the max time to wait in milliseconds
+     * @return true if {@link #getSearchResults} will return without further waiting, false if the timeout expired
+     */
+    protected boolean waitForResults(long timeout) throws IOException {
+        return true;
+    }
+
+    /**
+     * Sets a listener which is run, possibly in another thread, each time more results of the sent request
+     * may have become available, such that a following {@link #waitForResults} may return true without waiting.
+     * Invokers which cannot wait for results never run the listener.
+     */
+    protected void setResultListener(Runnable listener) {
+    }
 }
@@ -45,14 +45,26 @@ class FederationResult {
      * drive the timeout above their own timeout value.
      * When this completes, results can be accessed from the TargetResults with no blocking
      * (i.e getOrTimeout) without breaking any contract.
+     * The latency of each target which completed while waiting is recorded in its TargetResult.
      */
     public void waitForAll(int queryTimeout, Clock clock) {
         long startTime = clock.millis();
         while ( ! targetsToWaitFor.isEmpty()) {
             TargetResult nextToWaitFor = targetWithSmallestTimeout(targetsToWaitFor, queryTimeout);
             long timeLeftOfNextTimeout = nextToWaitFor.timeout(queryTimeout) - ( clock.millis() - startTime );
-            nextToWaitFor.getIfAvailable(timeLeftOfNextTimeout);
+            if (nextToWaitFor.getIfAvailable(timeLeftOfNextTimeout).isPresent())
+                nextToWaitFor.setLatency(clock.millis() - startTime);
             targetsToWaitFor.remove(nextToWaitFor);
+            recordCompleted(clock.millis() - startTime);
+        }
+        recordCompleted(clock.millis() - startTime);
+    }
+
+    /** Sets the latency of targets which have completed since last checked to the given elapsed time */
+    private void recordCompleted(long elapsedTime) {
+        for (TargetResult result : targetResults) {
+            if (result.getLatency() < 0 && result.successfullyCompleted())
+                result.setLatency(elapsedTime);
         }
     }
     
@@ -73,15 +85,22 @@ class FederationResult {
         final FederationSearcher.Target target;
         private final FutureResult futureResult;
 
+        /** The time in milliseconds to wait for this target, or -1 to use the timeout of the target */
+        private final long budget;
+
+        /** The time in milliseconds from federation start until the result of this was available, or -1 if not */
+        private long latency = -1;
+
         /** 
          * Single threaded access to result already returned from futureResult, if any.
          * To avoid unnecessary synchronization with the producer thread.
          */
         private Optional<Result> availableResult = Optional.empty();
 
-        private TargetResult(FederationSearcher.Target target, FutureResult futureResult) {
+        private TargetResult(FederationSearcher.Target target, FutureResult futureResult, long budget) {
             this.target = target;
             this.futureResult = futureResult;
+            this.budget = budget;
         }
 
         private boolean isMandatory() { return ! target.federationOptions().getOptional(); }
@@ -93,22 +112,41 @@ class FederationResult {
          */
         public Optional<Result> getIfAvailable(long timeout) {
             if (availableResult.isPresent()) return availableResult;
+            if (futureResult.isCancelled()) return Optional.empty();
             availableResult = futureResult.getIfAvailable(timeout, TimeUnit.MILLISECONDS);
             return availableResult;
         }
         
         /** Returns a result without blocking; if the result is not available one with a timeout error is produced */
         public Result getOrTimeoutError() {
-            // The else part is to offload creation of the timeout error
-            return getIfAvailable(0).orElse(futureResult.get(0, TimeUnit.MILLISECONDS));
+            return getIfAvailable(0).orElseGet(() -> new Result(futureResult.getQuery(), futureResult.createTimeoutError()));
         }
         
         public boolean successfullyCompleted() {
             return futureResult.isDone() && ! futureResult.isCancelled();
         }
 
-        private int timeout(long queryTimeout) {
-            return (int)target.federationOptions().getSearchChainExecutionTimeoutInMilliseconds(queryTimeout);
+        /**
+         * Cancels this target if it has not completed, such that a late result is dropped rather than merged,
+         * and the thread producing it is interrupted.
+         */
+        public void cancel() {
+            if (availableResult.isPresent()) return;
+            futureResult.cancel(true);
+        }
+
+        /**
+         * Returns the time in milliseconds from the start of waiting for all targets until the result of this
+         * was available, or -1 if it was not available when waiting completed
+         */
+        public long getLatency() { return latency; }
+
+        private void setLatency(long latency) { this.latency = latency; }
+
+        /** Returns the time in milliseconds to wait for this target */
+        long timeout(long queryTimeout) {
+            if (budget >= 0) return budget;
+            return target.federationOptions().getSearchChainExecutionTimeoutInMilliseconds(queryTimeout);
         }
         
         @Override
@@ -122,8 +160,14 @@ class FederationResult {
         
         private final ImmutableList.Builder<TargetResult> results = new ImmutableList.Builder();
         
+        /** Adds a target which is waited for until the timeout in its federation options */
         public void add(FederationSearcher.Target target, FutureResult futureResult) {
-            results.add(new TargetResult(target, futureResult));
+            add(target, futureResult, -1);
+        }
+
+        /** Adds a target which is waited for until the given number of milliseconds have passed */
+        public void add(FederationSearcher.Target target, FutureResult futureResult, long timeout) {
+            results.add(new TargetResult(target, futureResult, timeout));
         }
         
         public FederationResult build() {
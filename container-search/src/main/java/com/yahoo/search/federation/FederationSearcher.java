@@ -29,6 +29,7 @@ import com.yahoo.search.federation.sourceref.UnresolvedSearchChainException;
 import com.yahoo.search.query.Properties;
 import com.yahoo.search.query.properties.QueryProperties;
 import com.yahoo.search.query.properties.SubProperties;
+import com.yahoo.search.result.Coverage;
 import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.search.result.Hit;
 import com.yahoo.search.result.HitGroup;
@@ -220,8 +221,12 @@ public class FederationSearcher extends ForkingSearcher {
 
         HitOrderer s = null;
         for (FederationResult.TargetResult targetResult : results.all()) {
+            if ( ! shouldExecuteTargetLongerThanThread(query, targetResult.target))
+                targetResult.cancel(); // drop a late result rather than racing with its completion
+            traceTargetLatency(query, targetResult);
             if ( ! targetResult.successfullyCompleted()) {
                 addSearchChainTimedOutError(query, targetResult.target.getId());
+                addTimedOutCoverage(mergedResults);
             } else {
                 if (s == null) {
                     s = dirtyCopyIfModifiedOrderer(mergedResults.hits(), targetResult.getOrTimeoutError().hits().getOrderer());
@@ -248,16 +253,24 @@ public class FederationSearcher extends ForkingSearcher {
     private FederationResult search(Query query, Execution execution, Collection<Target> targets) {
         FederationResult.Builder result = new FederationResult.Builder();
         for (Target target : targets)
-            result.add(target, searchAsynchronously(query, execution, Window.from(targets, query), target));
+            searchAsynchronously(query, execution, Window.from(targets, query), target, result);
         return result.build();
     }
 
-    private FutureResult searchAsynchronously(Query query, Execution execution, Window window, Target target) {
+    /**
+     * Starts searching the given target and adds it to the given federation result.
+     * The target is waited for as long as the timeout of the query sent to it, which is the timeout in
+     * its federation options unless overridden for the source or provider in the query.
+     */
+    private void searchAsynchronously(Query query, Execution execution, Window window, Target target,
+                                      FederationResult.Builder result) {
         long timeout = target.federationOptions().getSearchChainExecutionTimeoutInMilliseconds(query.getTimeLeft());
-        if (timeout <= 0)
-            return new FutureResult(() -> new Result(query, ErrorMessage.createTimeout("Timed out before federation")), execution, query);
+        if (timeout <= 0) {
+            result.add(target, new FutureResult(() -> new Result(query, ErrorMessage.createTimeout("Timed out before federation")), execution, query), 0);
+            return;
+        }
         Query clonedQuery = cloneFederationQuery(query, window, timeout, target);
-        return new AsyncExecution(target.getChain(), execution).search(clonedQuery);
+        result.add(target, new AsyncExecution(target.getChain(), execution).search(clonedQuery), clonedQuery.getTimeout());
     }
 
     private Query cloneFederationQuery(Query query, Window window, long timeout, Target target) {
@@ -551,6 +564,19 @@ public class FederationSearcher extends ForkingSearcher {
         query.trace("Federating to " + targets, traceFederationLevel);
     }
 
+    private void traceTargetLatency(Query query, FederationResult.TargetResult targetResult) {
+        int traceFederationLevel = 2;
+        if ( ! query.isTraceable(traceFederationLevel)) return;
+        if ( ! targetResult.successfullyCompleted())
+            query.trace("No result from " + targetResult.target + " within " +
+                        targetResult.timeout(query.getTimeout()) + " ms", traceFederationLevel);
+        else if (targetResult.getLatency() >= 0)
+            query.trace("Got result from " + targetResult.target + " after " + targetResult.getLatency() + " ms",
+                        traceFederationLevel);
+        else // completed after we stopped waiting
+            query.trace("Got result from " + targetResult.target + " after waiting completed", traceFederationLevel);
+    }
+
     /**
      * Returns true if we are requested to keep executing a target longer than we're waiting for it.
      * This is useful to populate caches inside targets.
@@ -565,6 +591,15 @@ public class FederationSearcher extends ForkingSearcher {
         query.errors().add(timeoutMessage);
     }
 
+    /** Adds the coverage of a target which did not produce a result in time to the given result */
+    private static void addTimedOutCoverage(Result mergedResults) {
+        Coverage coverage = mergedResults.getCoverage(false);
+        if (coverage == null)
+            mergedResults.setCoverage(Coverage.emptyDegradedByTimeout());
+        else
+            coverage.merge(Coverage.emptyDegradedByTimeout());
+    }
+
     private void mergeResult(Query query, Target target, Result mergedResults, Result result) {
         target.modifyTargetResult(result);
         ComponentId searchChainId = target.getId();
@@ -0,0 +1,128 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.handler;
+
+import com.yahoo.log.LogLevel;
+import com.yahoo.processing.rendering.AsynchronousSectionedRenderer;
+import com.yahoo.processing.rendering.Renderer;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.result.DefaultErrorHit;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.result.HitGroup;
+import com.yahoo.search.searchchain.Execution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+/**
+ * Fills the hits of a result in the background, in batches of increasing size, and hands each batch to the
+ * result as soon as it is filled. This lets an asynchronous renderer write the first hits to the client
+ * while the following hits are still being filled, instead of waiting for all hits to be filled.
+ * <p>
+ * This is used when {@link com.yahoo.search.query.Presentation#getStreamed() presentation.streamed} is set.
+ * Errors occurring when filling the hits are logged, and added to the hits of the result following the hits
+ * of the batch which failed. Renderers must therefore render errors added to a hit group while it is being rendered,
+ * as the JSON renderer does by rendering the errors of such groups at their end.
+ */
+class IncrementalFill implements Runnable {
+
+    private static final Logger log = Logger.getLogger(IncrementalFill.class.getName());
+
+    private static final int firstBatchSize = 10;
+    private static final int maxBatchSize = 400;
+
+    private final Result result;
+    private final Query query;
+    private final Execution execution;
+    private final String summaryClass;
+
+    /** The hits to fill, in the order they are to be rendered */
+    private final List<Hit> hits = new ArrayList<>();
+
+    /** The group receiving the filled hits, replacing the hits of the result */
+    private HitGroup streamed;
+
+    /** Creates an incremental fill of the hits of a result returned by a search in the execution of the given query */
+    IncrementalFill(Result result, Query query) {
+        this.result = result;
+        this.query = query;
+        this.execution = query.getModel().getExecution();
+        this.summaryClass = query.getPresentation().getSummary();
+    }
+
+    /**
+     * Returns whether the hits of the given query can be streamed to the client using the given renderer.
+     * This requires an asynchronous renderer, and no tracing or timing, as those would otherwise be modified
+     * by the fill while rendered.
+     */
+    static boolean isEnabled(Query query, Renderer<?> renderer) {
+        return query.getPresentation().getStreamed()
+               && renderer instanceof AsynchronousSectionedRenderer
+               && query.getTraceLevel() == 0
+               && ! query.getPresentation().getTiming();
+    }
+
+    /** Fills all the hits of the result in the calling thread */
+    void fillNow() {
+        if (execution == null) return;
+        execution.fill(result, summaryClass);
+    }
+
+    /**
+     * Replaces the hits of the result by an asynchronous group which is empty but for the meta hits,
+     * and starts filling the hits into it in the given executor. This does nothing if the query
+     * was never executed.
+     */
+    void start(Executor executor) {
+        if (execution == null) return;
+
+        SearchResponse.trimHits(result);
+        HitGroup original = result.hits();
+        streamed = HitGroup.createAsync(original.getId().stringValue());
+        streamed.setQuery(original.getQuery());
+        streamed.setRelevance(original.getRelevance());
+        streamed.setSource(original.getSource());
+        original.forEachField(streamed::setField);
+        streamed.setOrdered(true); // The hits are already in their final order
+        for (Hit hit : original.asList()) {
+            if (hit.isMeta())
+                streamed.add(hit);
+            else
+                hits.add(hit);
+        }
+        result.setHits(streamed);
+        executor.execute(this);
+    }
+
+    @Override
+    public void run() {
+        try {
+            int batchSize = firstBatchSize;
+            for (int start = 0; start < hits.size(); start += batchSize, batchSize = Math.min(maxBatchSize, batchSize * 2)) {
+                Result batch = new Result(query);
+                for (Hit hit : hits.subList(start, Math.min(hits.size(), start + batchSize)))
+                    batch.hits().add(hit);
+                execution.fill(batch, summaryClass);
+                SearchResponse.removeEmptySummaryFeatureFields(batch);
+                DefaultErrorHit errors = batch.hits().removeErrorHit();
+                streamed.incoming().add(batch.hits().asList());
+                if (errors != null) {
+                    log.log(LogLevel.WARNING, "Errors filling hits of " + query + ": " + errors.errors());
+                    streamed.incoming().add(errors);
+                }
+            }
+        }
+        catch (RuntimeException e) {
+            log.log(LogLevel.WARNING, "Failed filling hits of " + query, e);
+            streamed.incoming().add(new DefaultErrorHit(getClass().getSimpleName(),
+                                                        ErrorMessage.createUnspecifiedError("Failed filling hits", e)));
+        }
+        finally {
+            streamed.incoming().markComplete();
+        }
+    }
+
+}
@@ -40,6 +40,7 @@ import com.yahoo.yolean.Exceptions;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.Searcher;
+import com.yahoo.search.config.AsyncExecutionConfig;
 import com.yahoo.search.config.IndexInfoConfig;
 import com.yahoo.search.query.profile.QueryProfileRegistry;
 import com.yahoo.search.query.profile.compiled.CompiledQueryProfile;
@@ -49,9 +50,11 @@ import com.yahoo.search.query.profile.config.QueryProfilesConfig;
 import com.yahoo.search.query.properties.DefaultProperties;
 import com.yahoo.search.rendering.RendererRegistry;
 import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.searchchain.AsyncExecutor;
 import com.yahoo.search.searchchain.Execution;
 import com.yahoo.search.searchchain.SearchChainRegistry;
 import com.yahoo.search.statistics.ElapsedTime;
+import com.yahoo.search.statistics.SearcherProfiler;
 import com.yahoo.statistics.Callback;
 import com.yahoo.statistics.Handle;
 import com.yahoo.statistics.Statistics;
@@ -113,6 +116,12 @@ public class SearchHandler extends LoggingRequestHandler {
     
     private final String selfHostname = HostName.getLocalhost();
 
+    /** The executor of the asynchronous executions started by searches handled by this */
+    private final AsyncExecutor asyncExecutor;
+
+    /** The profiler of the search chains executed by this, or null to not profile them */
+    private final SearcherProfiler profiler;
+
     private final class MeanConnections implements Callback {
 
         @Override
@@ -139,7 +148,9 @@ public class SearchHandler extends LoggingRequestHandler {
                          AccessLog accessLog,
                          QueryProfilesConfig queryProfileConfig,
                          ComponentRegistry<Searcher> searchers,
-                         ContainerHttpConfig containerHttpConfig) {
+                         ContainerHttpConfig containerHttpConfig,
+                         AsyncExecutionConfig asyncExecutionConfig,
+                         SearcherProfiler profiler) {
         super(executor, accessLog, metric, true);
         log.log(LogLevel.DEBUG, "SearchHandler.init " + System.identityHashCode(this));
         searchChainRegistry = new SearchChainRegistry(searchers);
@@ -162,6 +173,29 @@ public class SearchHandler extends LoggingRequestHandler {
         
         this.hostResponseHeaderKey = containerHttpConfig.hostResponseHeaderKey().equals("") ?
                                      Optional.empty() : Optional.of( containerHttpConfig.hostResponseHeaderKey());
+        this.asyncExecutor = new AsyncExecutor(asyncExecutionConfig, metric);
+        this.profiler = profiler;
+    }
+
+    /** @deprecated use the constructor with AsyncExecutionConfig and SearcherProfiler */
+    // TODO: Remove on Vespa 7
+    @Deprecated // OK
+    public SearchHandler(ChainsConfig chainsConfig,
+                         IndexInfoConfig indexInfo,
+                         QrSearchersConfig clusters,
+                         SpecialtokensConfig specialtokens,
+                         Statistics statistics,
+                         Linguistics linguistics,
+                         Metric metric,
+                         ComponentRegistry<Renderer> renderers,
+                         Executor executor,
+                         AccessLog accessLog,
+                         QueryProfilesConfig queryProfileConfig,
+                         ComponentRegistry<Searcher> searchers,
+                         ContainerHttpConfig containerHttpConfig) {
+        this(chainsConfig, indexInfo, clusters, specialtokens, statistics, linguistics, metric, renderers, executor,
+             accessLog, queryProfileConfig, searchers, containerHttpConfig,
+             new AsyncExecutionConfig(new AsyncExecutionConfig.Builder()), null);
     }
 
     /** @deprecated use the constructor with ContainerHttpConfig */
@@ -210,6 +244,7 @@ public class SearchHandler extends LoggingRequestHandler {
     protected void destroy() {
         super.destroy();
         rendererRegistry.deconstruct();
+        asyncExecutor.close();
     }
 
     private void setupSearchChainRegistry(ComponentRegistry<Searcher> searchers, ChainsConfig chainsConfig) {
@@ -306,6 +341,7 @@ public class SearchHandler extends LoggingRequestHandler {
 
         // Create the result
         Result result;
+        boolean streamed = false;
         if (invalidReason != null) {
             result = new Result(query, ErrorMessage.createIllegalQuery(invalidReason));
         } else if (queryProfile == null && queryProfileName != null) {
@@ -318,7 +354,8 @@ public class SearchHandler extends LoggingRequestHandler {
                     ErrorMessage.createInvalidQueryParameter("No search chain named '" + searchChainName + "' was found"));
         } else {
             String pathAndQuery = UriTools.rawRequest(request.getUri());
-            result = search(pathAndQuery, query, searchChain, searchChainRegistry);
+            streamed = IncrementalFill.isEnabled(query, rendererRegistry.getRenderer(query.getPresentation().getRenderer()));
+            result = search(pathAndQuery, query, searchChain, searchChainRegistry, ! streamed);
         }
 
         Renderer renderer;
@@ -330,6 +367,15 @@ public class SearchHandler extends LoggingRequestHandler {
             renderer = perRenderingCopy(result.getTemplating().getRenderer());
         }
 
+        IncrementalFill incrementalFill = null;
+        if (streamed) {
+            incrementalFill = new IncrementalFill(result, query);
+            if ( ! IncrementalFill.isEnabled(query, renderer)) { // changed by the search chain
+                incrementalFill.fillNow();
+                incrementalFill = null;
+            }
+        }
+
         // Transform result to response
         HttpSearchResponse response = new HttpSearchResponse(getHttpResponseStatus(request, result), 
                                                              result, query, renderer);
@@ -340,6 +386,8 @@ public class SearchHandler extends LoggingRequestHandler {
             VespaHeaders.benchmarkOutput(response.headers(), benchmarkCoverage, response.getTiming(),
                                          response.getHitCounts(), getErrors(result), response.getCoverage());
 
+        if (incrementalFill != null) // after creating the response, which counts the hits of the result
+            incrementalFill.start(asyncExecutor);
         return response;
     }
 
@@ -370,6 +418,15 @@ public class SearchHandler extends LoggingRequestHandler {
 
     /** Used from container SDK, for internal use only */
     public Result searchAndFill(Query query, Chain<? extends Searcher> searchChain, SearchChainRegistry registry) {
+        return searchAndFill(query, searchChain, registry, true);
+    }
+
+    /**
+     * Searches, and fills the result if fill is true. Otherwise the hits are left to be filled
+     * incrementally while rendered, see {@link IncrementalFill}.
+     */
+    private Result searchAndFill(Query query, Chain<? extends Searcher> searchChain, SearchChainRegistry registry,
+                                 boolean fill) {
         Result errorResult = validateQuery(query);
         if (errorResult != null) return errorResult;
 
@@ -380,8 +437,10 @@ public class SearchHandler extends LoggingRequestHandler {
         if (query.getPresentation().getSummary() == null && renderer instanceof com.yahoo.search.rendering.Renderer)
             query.getPresentation().setSummary(((com.yahoo.search.rendering.Renderer) renderer).getDefaultSummaryClass());
 
-        Execution execution = new Execution(searchChain,
-                                            new Execution.Context(registry, indexFacts, specialTokens, rendererRegistry, linguistics));
+        Execution.Context context = new Execution.Context(registry, indexFacts, specialTokens, rendererRegistry, linguistics);
+        context.setExecutor(asyncExecutor);
+        context.setProfiler(profiler);
+        Execution execution = new Execution(searchChain, context);
         query.getModel().setExecution(execution);
         execution.trace().setForceTimestamps(query.properties().getBoolean(FORCE_TIMESTAMPS, false));
         if (query.properties().getBoolean(DETAILED_TIMING_LOGGING, false)) {
@@ -394,7 +453,8 @@ public class SearchHandler extends LoggingRequestHandler {
             result.getTemplating().setRenderer(renderer);
 
         ensureQuerySet(result, query);
-        execution.fill(result, result.getQuery().getPresentation().getSummary());
+        if (fill)
+            execution.fill(result, result.getQuery().getPresentation().getSummary());
 
         traceExecutionTimes(query, result);
         traceVespaVersion(query);
@@ -431,7 +491,8 @@ public class SearchHandler extends LoggingRequestHandler {
         }
     }
 
-    private Result search(String request, Query query, Chain<Searcher> searchChain, SearchChainRegistry registry) {
+    private Result search(String request, Query query, Chain<Searcher> searchChain, SearchChainRegistry registry,
+                          boolean fill) {
         if (query.getTraceLevel() >= 2) {
             query.trace("Invoking " + searchChain, false, 2);
         }
@@ -444,7 +505,7 @@ public class SearchHandler extends LoggingRequestHandler {
                     new IllegalStateException("searchConnections reference is null."));
         }
         try {
-            return searchAndFill(query, searchChain, registry);
+            return searchAndFill(query, searchChain, registry, fill);
         } catch (ParseException e) {
             ErrorMessage error = ErrorMessage.createIllegalQuery("Could not parse query [" + request + "]: "
                                                                  + Exceptions.toMessageString(e));
@@ -0,0 +1,117 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.handler;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.inject.Inject;
+import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.container.jdisc.HttpResponse;
+import com.yahoo.container.jdisc.ThreadedHttpRequestHandler;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.search.statistics.SearcherProfiler;
+import com.yahoo.text.Utf8;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Shows the searchers with the highest total self time, as recorded by the {@link SearcherProfiler}
+ * of this container, as JSON. The number of searchers to show is given by the request parameter "hits",
+ * default 20.
+ */
+public class SearcherProfileHandler extends ThreadedHttpRequestHandler {
+
+    private static final int defaultHits = 20;
+
+    private final SearcherProfiler profiler;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Inject
+    public SearcherProfileHandler(Executor executor, Metric metric, SearcherProfiler profiler) {
+        super(executor, metric);
+        this.profiler = profiler;
+    }
+
+    @Override
+    public HttpResponse handle(HttpRequest request) {
+        int hits = defaultHits;
+        String hitsParameter = request.getProperty("hits");
+        if (hitsParameter != null) {
+            try {
+                hits = Integer.parseInt(hitsParameter);
+            }
+            catch (NumberFormatException e) {
+                return new ErrorResponse("'hits' must be an integer, but was '" + hitsParameter + "'");
+            }
+        }
+        List<SearcherProfiler.ComponentProfile> hottest = profiler.hottest();
+        return new ProfileResponse(hottest.subList(0, Math.max(0, Math.min(hits, hottest.size()))));
+    }
+
+    private class ProfileResponse extends HttpResponse {
+
+        private final List<SearcherProfiler.ComponentProfile> profiles;
+
+        ProfileResponse(List<SearcherProfiler.ComponentProfile> profiles) {
+            super(com.yahoo.jdisc.http.HttpResponse.Status.OK);
+            this.profiles = profiles;
+        }
+
+        @Override
+        public String getContentType() { return "application/json"; }
+
+        @Override
+        public void render(OutputStream outputStream) throws IOException {
+            JsonGenerator generator = jsonFactory.createGenerator(outputStream);
+            generator.writeStartObject();
+            generator.writeNumberField("sampleInterval", profiler.getSampleInterval());
+            generator.writeArrayFieldStart("components");
+            for (SearcherProfiler.ComponentProfile profile : profiles) {
+                generator.writeStartObject();
+                generator.writeStringField("chain", profile.chain());
+                generator.writeStringField("component", profile.component());
+                generator.writeStringField("activity", profile.activity().name().toLowerCase());
+                generator.writeNumberField("count", profile.selfTime().count());
+                writeHistogram("selfTime", profile.selfTime(), generator);
+                writeHistogram("totalTime", profile.totalTime(), generator);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.close();
+        }
+
+        private void writeHistogram(String name, SearcherProfiler.Histogram histogram, JsonGenerator generator) throws IOException {
+            generator.writeObjectFieldStart(name);
+            generator.writeNumberField("sum", histogram.sum() / 1_000_000.0);
+            generator.writeNumberField("mean", histogram.mean());
+            generator.writeNumberField("p50", histogram.percentile(50));
+            generator.writeNumberField("p90", histogram.percentile(90));
+            generator.writeNumberField("p99", histogram.percentile(99));
+            generator.writeEndObject();
+        }
+
+    }
+
+    private static class ErrorResponse extends HttpResponse {
+
+        private final String message;
+
+        ErrorResponse(String message) {
+            super(com.yahoo.jdisc.http.HttpResponse.Status.BAD_REQUEST);
+            this.message = message;
+        }
+
+        @Override
+        public String getContentType() { return "text/plain"; }
+
+        @Override
+        public void render(OutputStream outputStream) throws IOException {
+            outputStream.write(Utf8.toBytes(message));
+        }
+
+    }
+
+}
@@ -34,6 +34,7 @@ public class Presentation implements Cloneable {
     public static final String SUMMARY = "summary";
     public static final String REPORT_COVERAGE = "reportCoverage";
     public static final String SUMMARY_FIELDS = "summaryFields";
+    public static final String STREAMED = "streamed";
 
     /** The (short) name of the parameter holding the name of the return format to use */
     public static final String FORMAT = "format";
@@ -48,6 +49,7 @@ public class Presentation implements Cloneable {
         argumentType.addField(new FieldDescription(REPORT_COVERAGE, "string", "reportcoverage"));
         argumentType.addField(new FieldDescription(FORMAT, "string", "format template"));
         argumentType.addField(new FieldDescription(SUMMARY_FIELDS, "string", "summaryFields"));
+        argumentType.addField(new FieldDescription(STREAMED, "boolean", "streamed"));
         argumentType.freeze();
     }
     public static QueryProfileType getArgumentType() { return argumentType; }
@@ -70,6 +72,9 @@ public class Presentation implements Cloneable {
     /** Whether optional timing data should be rendered */
     private boolean timing = false;
 
+    /** Whether hits should be rendered as they are filled rather than after all are filled */
+    private boolean streamed = false;
+
     /** Set of explicitly requested summary fields, instead of summary classes */
     @NonNull
     private Set<String> summaryFields = LazySet.newHashSet();
@@ -173,6 +178,19 @@ public class Presentation implements Cloneable {
         this.timing = timing;
     }
 
+    /**
+     * Returns whether hits should be written to the client as soon as they are filled, rather than when
+     * all of them are filled. This is only done when the renderer is asynchronous, and tracing and timing is off.
+     * Default is false.
+     */
+    public boolean getStreamed() {
+        return streamed;
+    }
+
+    public void setStreamed(boolean streamed) {
+        this.streamed = streamed;
+    }
+
     /**
      * Return the set of explicitly requested fields. Returns an empty set if no
      * fields are specified outside of summary classes. The returned set is
@@ -31,6 +31,10 @@ public class QueryProfileProperties extends Properties {
 
     /** Values which has been overridden at runtime, or null if none */
     private Map<CompoundName, Object> values = null;
+    /** Whether the values map is shared with a clone and must be copied before it is modified */
+    private boolean valuesShared = false;
+    /** Whether the values map may contain values which must be cloned when this is cloned */
+    private boolean valuesHasClonables = false;
     /** Query profile references which has been overridden at runtime, or null if none. Earlier values has precedence */
     private List<Pair<CompoundName, CompiledQueryProfile>> references = null;
 
@@ -124,7 +128,12 @@ public class QueryProfileProperties extends Properties {
             else {
                 if (values == null)
                     values = new HashMap<>();
+                else if (valuesShared)
+                    values = new HashMap<>(values);
+                valuesShared = false;
                 values.put(name, value);
+                if (value instanceof Cloneable)
+                    valuesHasClonables = true;
             }
         }
         catch (IllegalArgumentException e) {
@@ -250,8 +259,16 @@ public class QueryProfileProperties extends Properties {
     @Override
     public QueryProfileProperties clone() {
         QueryProfileProperties clone = (QueryProfileProperties)super.clone();
-        if (this.values != null)
+        if (this.values == null) return clone;
+
+        if (valuesHasClonables) {
             clone.values = PropertyMap.cloneMap(this.values);
+            clone.valuesShared = false;
+        }
+        else { // immutable values only: share the map until one of us changes it
+            this.valuesShared = true;
+            clone.valuesShared = true;
+        }
         return clone;
     }
 
@@ -6,6 +6,7 @@ import com.yahoo.search.query.profile.DimensionBinding;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -75,6 +76,9 @@ public class Binding implements Comparable<Binding> {
         this.hashCode = bindingHash;
     }
 
+    /** Returns the dimensions which have values in this */
+    public List<String> dimensions() { return Collections.unmodifiableList(Arrays.asList(dimensions)); }
+
     /** Returns true only if this binding is null (contains no values for its dimensions (if any) */
     public boolean isNull() { return dimensions.length == 0; }
 
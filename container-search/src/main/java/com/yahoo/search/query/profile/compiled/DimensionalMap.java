@@ -4,33 +4,90 @@ package com.yahoo.search.query.profile.compiled;
 import com.google.common.collect.ImmutableMap;
 import com.yahoo.search.query.profile.DimensionBinding;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A map which may return different values depending on the values given in a context
  * supplied with the key on all operations.
  * <p>
  * Dimensional maps are immutable and created through a DimensionalMap.Builder
+ * <p>
+ * Values which have several variants are memoized per context, keyed by the values the context
+ * has for the dimensions used in this map, such that repeated lookups in the same context resolve
+ * each such value only once. The number of contexts memoized is bounded by maxCachedContexts.
  *
  * @author bratseth
  */
 public class DimensionalMap<KEY, VALUE> {
 
+    /** The max number of distinct contexts to memoize resolved values for, before the memoized values are dropped */
+    static final int maxCachedContexts = 1000;
+
+    /** Marks memoized null values, as a ConcurrentHashMap cannot contain null */
+    private static final Object nullValue = new Object();
+
     private final Map<KEY, DimensionalValue<VALUE>> values;
 
+    /** The dimensions used in any binding in this, in a fixed order */
+    private final String[] dimensions;
+
+    /** Values resolved in each context, keyed by the values of the dimensions of this in that context */
+    private final Map<List<String>, Map<KEY, Object>> resolved = new ConcurrentHashMap<>();
+
     private DimensionalMap(Map<KEY, DimensionalValue<VALUE>> values) {
         this.values = ImmutableMap.copyOf(values);
+        Set<String> dimensions = new TreeSet<>();
+        for (DimensionalValue<VALUE> value : this.values.values())
+            dimensions.addAll(value.dimensions());
+        this.dimensions = dimensions.toArray(new String[dimensions.size()]);
     }
 
     /** Returns the value for this key matching a context, or null if none */
+    @SuppressWarnings("unchecked")
     public VALUE get(KEY key, Map<String, String> context) {
         DimensionalValue<VALUE> variants = values.get(key);
         if (variants == null) return null;
-        return variants.get(context);
+        if ( ! variants.hasVariants()) return variants.get(context);
+
+        Map<KEY, Object> resolvedValues = resolvedValuesIn(context);
+        Object value = resolvedValues.get(key);
+        if (value == null) {
+            value = variants.get(context);
+            resolvedValues.put(key, value == null ? nullValue : value);
+        }
+        return value == nullValue ? null : (VALUE)value;
     }
 
+    /** Returns the (possibly empty) map of values resolved so far in the given context */
+    private Map<KEY, Object> resolvedValuesIn(Map<String, String> context) {
+        List<String> contextKey = contextKey(context);
+        Map<KEY, Object> resolvedValues = resolved.get(contextKey);
+        if (resolvedValues != null) return resolvedValues;
+
+        if (resolved.size() >= maxCachedContexts)
+            resolved.clear();
+        return resolved.computeIfAbsent(contextKey, k -> new ConcurrentHashMap<>());
+    }
+
+    /** Returns the values of the dimensions of this in the given context, which determines the value of every key */
+    private List<String> contextKey(Map<String, String> context) {
+        if (context == null || context.isEmpty()) return Collections.emptyList();
+        String[] dimensionValues = new String[dimensions.length];
+        for (int i = 0; i < dimensions.length; i++)
+            dimensionValues[i] = context.get(dimensions[i]);
+        return Arrays.asList(dimensionValues);
+    }
+
+    /** Returns the number of contexts which currently have memoized values in this. For testing. */
+    int cachedContextCount() { return resolved.size(); }
+
     /** Returns the set of dimensional entries across all contexts. */
     public Set<Map.Entry<KEY, DimensionalValue<VALUE>>> entrySet() {
         return values.entrySet();
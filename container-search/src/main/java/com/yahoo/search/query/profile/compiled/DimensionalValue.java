@@ -48,6 +48,17 @@ public class DimensionalValue<VALUE> {
 
     public boolean isEmpty() { return values.isEmpty(); }
 
+    /** Returns whether this has more than one variant, such that resolving it requires matching several bindings */
+    public boolean hasVariants() { return values.size() > 1; }
+
+    /** Returns the dimensions which have values in any of the bindings of this */
+    public Set<String> dimensions() {
+        Set<String> dimensions = new HashSet<>();
+        for (Value<VALUE> value : values)
+            dimensions.addAll(value.binding().dimensions());
+        return dimensions;
+    }
+
     @Override
     public String toString() {
         return values.toString();
@@ -10,7 +10,8 @@ import java.util.HashMap;
  * A Map backing of Properties.
  * <p>
  * When this is cloned it will deep copy not only the model object map, but also each
- * clonable member inside the map.
+ * clonable member inside the map. If the map contains no clonable members it is instead shared
+ * between this and the clone until one of them is modified.
  * <p>
  * Subclassing is supported, a hook can be implemented to provide conditional inclusion in the map.
  * By default - all properties are accepted, so set is never propagated.
@@ -26,9 +27,18 @@ public class PropertyMap extends Properties {
     /** The properties of this */
     private Map<CompoundName, Object> properties = new LinkedHashMap<>();
 
+    /** Whether the properties map is shared with a clone and must be copied before it is modified */
+    private boolean shared = false;
+
+    /** Whether the properties map may contain values which must be cloned when this is cloned */
+    private boolean hasClonableValues = false;
+
     public void set(CompoundName name, Object value, Map<String,String> context) {
-        if (shouldSet(name, value))
-            properties.put(name, value);
+        if (shouldSet(name, value)) {
+            modifiableProperties().put(name, value);
+            if (value instanceof Cloneable)
+                hasClonableValues = true;
+        }
         else
             super.set(name, value, context);
     }
@@ -50,12 +60,20 @@ public class PropertyMap extends Properties {
      * Returns a direct reference to the map containing the properties set in this instance.
      */
     public Map<CompoundName, Object> propertyMap() {
-        return properties;
+        hasClonableValues = true; // we can no longer tell what the map contains
+        return modifiableProperties();
     }
 
     @Override
     public PropertyMap clone() {
         PropertyMap clone = (PropertyMap)super.clone();
+        if ( ! hasClonableValues) { // immutable values only: share the map until one of us changes it
+            this.shared = true;
+            clone.shared = true;
+            return clone;
+        }
+
+        clone.shared = false;
         clone.properties = new HashMap<>();
         for (Map.Entry<CompoundName, Object> entry : this.properties.entrySet()) {
             Object cloneValue = cloneHelper.clone(entry.getValue());
@@ -66,6 +84,14 @@ public class PropertyMap extends Properties {
         return clone;
     }
 
+    private Map<CompoundName, Object> modifiableProperties() {
+        if (shared) {
+            properties = new LinkedHashMap<>(properties);
+            shared = false;
+        }
+        return properties;
+    }
+
     @Override
     public Map<String, Object> listProperties(CompoundName path, Map<String, String> context, com.yahoo.processing.request.Properties substitution) {
         Map<String, Object> map = super.listProperties(path, context, substitution);
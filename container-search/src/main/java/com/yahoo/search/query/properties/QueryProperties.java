@@ -123,6 +123,7 @@ public class QueryProperties extends Properties {
             if (key.last().equals(Presentation.FORMAT)) return query.getPresentation().getFormat();
             if (key.last().equals(Presentation.TIMING)) return query.getPresentation().getTiming();
             if (key.last().equals(Presentation.SUMMARY_FIELDS)) return query.getPresentation().getSummaryFields();
+            if (key.last().equals(Presentation.STREAMED)) return query.getPresentation().getStreamed();
         }
         else if (key.first().equals("rankfeature") || key.first().equals("featureoverride")) { // featureoverride is deprecated
             return query.getRanking().getFeatures().getObject(key.rest().toString());
@@ -249,6 +250,8 @@ public class QueryProperties extends Properties {
                     query.getPresentation().setTiming(asBoolean(value, true));
                 else if (key.last().equals(Presentation.SUMMARY_FIELDS))
                     query.getPresentation().setSummaryFields(asString(value,""));
+                else if (key.last().equals(Presentation.STREAMED))
+                    query.getPresentation().setStreamed(asBoolean(value, false));
                 else if ( ! key.last().equals(Presentation.REPORT_COVERAGE)) // TODO: Change this line to "else" on Vespa 7
                     throwIllegalParameter(key.last(), Presentation.PRESENTATION);
             }
@@ -10,9 +10,8 @@ import com.google.common.base.Preconditions;
 import com.yahoo.data.JsonProducer;
 import com.yahoo.data.access.Inspectable;
 import com.yahoo.data.access.Inspector;
+import com.yahoo.data.access.ObjectTraverser;
 import com.yahoo.data.access.Type;
-import com.yahoo.data.access.simple.JsonRender;
-import com.yahoo.data.access.simple.Value;
 import com.yahoo.document.datatypes.FieldValue;
 import com.yahoo.document.datatypes.StringFieldValue;
 import com.yahoo.document.datatypes.TensorFieldValue;
@@ -127,6 +126,8 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
     private JsonGenerator generator;
     private FieldConsumer fieldConsumer;
     private Deque<Integer> renderedChildren;
+    /** Whether the errors of each hit group being rendered, innermost first, are to be rendered at its end */
+    private Deque<Boolean> errorsAtEnd;
     private boolean debugRendering;
     private LongSupplier timeSource;
     private OutputStream stream;
@@ -300,6 +301,7 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
         debugRendering = false;
         setGenerator(null, debugRendering);
         renderedChildren = null;
+        errorsAtEnd = null;
         timeSource = System::currentTimeMillis;
         stream = null;
     }
@@ -310,6 +312,7 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
         debugRendering = getDebugRendering(getResult().getQuery());
         setGenerator(generatorFactory.createGenerator(stream, JsonEncoding.UTF8), debugRendering);
         renderedChildren = new ArrayDeque<>();
+        errorsAtEnd = new ArrayDeque<>();
         generator.writeStartObject();
         renderTrace(getExecution().trace());
         renderTiming();
@@ -392,11 +395,23 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
         if (getRecursionLevel() == 1)
             renderCoverage();
 
+        // Errors may still be added to a group which is receiving hits, such as when hits are filled incrementally,
+        // so the errors of such groups are rendered at their end
+        boolean renderErrorsAtEnd = ! hitGroup.incoming().isComplete();
+        errorsAtEnd.push(renderErrorsAtEnd);
+        if ( ! renderErrorsAtEnd) {
+            for (Hit hit : hitGroup.incoming().drain()) // add any hits which have arrived, as they may contain errors
+                hitGroup.add(hit);
+            renderErrors(hitGroup);
+        }
+
+        // the framework will invoke begin methods as needed from here
+    }
+
+    private void renderErrors(HitGroup hitGroup) throws IOException {
         ErrorHit errorHit = hitGroup.getErrorHit();
         if (errorHit != null)
             renderErrors(errorHit.errors());
-
-        // the framework will invoke begin methods as needed from here
     }
 
     private void renderErrors(Set<ErrorMessage> errors) throws IOException {
@@ -583,6 +598,8 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
     @Override
     public void endList(DataList<?> list) throws IOException {
         lessChildren();
+        if (errorsAtEnd.pop())
+            renderErrors((HitGroup) list);
         generator.writeEndObject();
     }
 
@@ -667,6 +684,8 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
      */
     private static class FieldConsumer implements Hit.RawUtf8Consumer {
 
+        private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
         private final JsonGenerator generator;
         private final boolean debugRendering;
 
@@ -744,32 +763,98 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
             return true;
         }
 
-        private static Inspector wrapAsMap(Inspector data) {
-            if (data.type() != Type.ARRAY) return null;
-            if (data.entryCount() == 0) return null;
-            Value.ObjectValue map = new Value.ObjectValue();
+        /**
+         * Renders the given data directly to the generator.
+         * Arrays of key-value objects with string keys are rendered as JSON objects.
+         */
+        private void renderInspector(Inspector data) throws IOException {
+            if (isMap(data))
+                renderMap(data);
+            else
+                renderInspectorDirect(data);
+        }
+
+        private static boolean isMap(Inspector data) {
+            if (data.type() != Type.ARRAY) return false;
+            if (data.entryCount() == 0) return false;
             for (int i = 0; i < data.entryCount(); i++) {
                 Inspector obj = data.entry(i);
-                if (obj.type() != Type.OBJECT) return null;
-                if (obj.fieldCount() != 2) return null;
-                Inspector key = obj.field("key");
-                Inspector value = obj.field("value");
-                if (key.type() != Type.STRING) return null;
-                if (! value.valid()) return null;
-                map.put(key.asString(), value);
+                if (obj.type() != Type.OBJECT) return false;
+                if (obj.fieldCount() != 2) return false;
+                if (obj.field("key").type() != Type.STRING) return false;
+                if (! obj.field("value").valid()) return false;
             }
-            return map;
+            return true;
         }
 
-        private void renderInspector(Inspector data) throws IOException {
-            StringBuilder intermediate = new StringBuilder();
-            Inspector asMap = wrapAsMap(data);
-            if (asMap != null) {
-                JsonRender.render(asMap, intermediate, true);
-            } else {
-                JsonRender.render(data, intermediate, true);
+        private void renderMap(Inspector data) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < data.entryCount(); i++) {
+                Inspector obj = data.entry(i);
+                generator.writeFieldName(obj.field("key").asString());
+                renderInspectorDirect(obj.field("value"));
+            }
+            generator.writeEndObject();
+        }
+
+        private void renderInspectorDirect(Inspector data) throws IOException {
+            switch (data.type()) {
+                case EMPTY:
+                    generator.writeNull();
+                    return;
+                case BOOL:
+                    generator.writeBoolean(data.asBool());
+                    return;
+                case LONG:
+                    generator.writeNumber(data.asLong());
+                    return;
+                case DOUBLE:
+                    double value = data.asDouble();
+                    if (Double.isFinite(value))
+                        generator.writeNumber(value);
+                    else
+                        generator.writeNull();
+                    return;
+                case STRING:
+                    byte[] utf8 = data.asUtf8();
+                    generator.writeUTF8String(utf8, 0, utf8.length);
+                    return;
+                case DATA:
+                    generator.writeString(asHexString(data.asData()));
+                    return;
+                case ARRAY:
+                    generator.writeStartArray();
+                    for (int i = 0; i < data.entryCount(); i++)
+                        renderInspectorDirect(data.entry(i));
+                    generator.writeEndArray();
+                    return;
+                case OBJECT:
+                    generator.writeStartObject();
+                    data.traverse((ObjectTraverser) this::renderInspectorField);
+                    generator.writeEndObject();
+                    return;
+            }
+        }
+
+        private void renderInspectorField(String name, Inspector value) {
+            try {
+                generator.writeFieldName(name);
+                renderInspectorDirect(value);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /** Returns data as a hex string in the same format as the simple JSON rendering of data values */
+        private static String asHexString(byte[] data) {
+            StringBuilder b = new StringBuilder(2 + data.length * 2);
+            b.append("0x");
+            for (byte value : data) {
+                b.append(HEX_DIGITS[(value >> 4) & 0xf]);
+                b.append(HEX_DIGITS[value & 0xf]);
             }
-            generator.writeRawValue(intermediate.toString());
+            return b.toString();
         }
 
         private void renderFieldContents(Object field) throws IOException {
@@ -56,6 +56,17 @@ public class Coverage extends com.yahoo.container.handler.Coverage {
 
     public Coverage setNodesTried(int nodesTried) { super.setNodesTried(nodesTried); return this; }
 
+    /**
+     * Returns the coverage of a result set which is missing because its source did not produce it in time:
+     * One result set which is not full, degraded by timeout.
+     */
+    public static Coverage emptyDegradedByTimeout() {
+        Coverage coverage = new Coverage(0L, 0L, 0, 1);
+        coverage.fullReason = FullCoverageDefinition.EXPLICITLY_INCOMPLETE;
+        coverage.fullResultSets = 0;
+        return coverage.setDegradedReason(DEGRADED_BY_TIMEOUT);
+    }
+
     public void mergeWithPartition(Coverage other) {
         if (other == null) {
             return;
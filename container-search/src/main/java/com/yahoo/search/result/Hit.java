@@ -633,6 +633,11 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
         }
     }
 
+    /** Removes the query which produced this, such that another query can be set. Use this to move a hit to another query */
+    public final void detachQuery() {
+        this.query = null;
+    }
+
     /**
      * Returns a field of this hit XML escaped and without token
      * delimiters.
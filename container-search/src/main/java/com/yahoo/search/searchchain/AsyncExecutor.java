@@ -0,0 +1,158 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.searchchain;
+
+import com.yahoo.concurrent.ThreadFactoryFactory;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.search.config.AsyncExecutionConfig;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The executor running the tasks of {@link AsyncExecution}s. An instance of this is owned by each search handler
+ * and made available to executions through {@link Execution.Context#getExecutor()}.
+ * <p>
+ * In UNBOUNDED mode this runs tasks in a thread pool shared by the entire JVM, which creates a new thread for
+ * each task which cannot be handed to an idle thread. In BOUNDED mode the number of threads and waiting tasks
+ * are limited, and tasks submitted while both are exhausted are run in the submitting thread. This slows down
+ * the producers of new tasks instead of creating more threads when the container is overloaded.
+ * <p>
+ * The sizes of the thread pool and its queue are reported as metrics every second until this is closed,
+ * by a single thread shared by all executors.
+ *
+ * @see AsyncExecutionConfig
+ */
+public class AsyncExecutor implements Executor, AutoCloseable {
+
+    private final ThreadPoolExecutor pool;
+
+    /** Whether the pool is owned by this and should be shut down when this is closed */
+    private final boolean ownsPool;
+
+    private final AtomicLong callerRuns = new AtomicLong(0);
+
+    private final Metric metric;
+    private final ScheduledFuture<?> metricReporting;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    public AsyncExecutor(AsyncExecutionConfig config, Metric metric) {
+        if (config.mode() == AsyncExecutionConfig.Mode.BOUNDED) {
+            if (config.maxThreads() < 1)
+                throw new IllegalArgumentException("maxThreads must be positive, but was " + config.maxThreads());
+            if (config.queueSize() < 1)
+                throw new IllegalArgumentException("queueSize must be positive, but was " + config.queueSize());
+            pool = new ThreadPoolExecutor(config.maxThreads(), config.maxThreads(), 1L, TimeUnit.SECONDS,
+                                          new ArrayBlockingQueue<>(config.queueSize()),
+                                          ThreadFactoryFactory.getThreadFactory("search-bounded"),
+                                          new RunInCallerPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            ownsPool = true;
+        }
+        else {
+            pool = SharedPool.instance;
+            ownsPool = false;
+        }
+
+        this.metric = metric;
+        reportMetrics();
+        metricReporting = MetricReporter.instance.scheduleAtFixedRate(this::reportMetrics, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /** Returns the thread pool shared by all unbounded executors, used by executions which have no executor set */
+    static Executor shared() { return SharedPool.instance; }
+
+    @Override
+    public void execute(Runnable task) {
+        pool.execute(task);
+    }
+
+    /** Returns the number of tasks waiting for a thread */
+    public int getQueueSize() { return pool.getQueue().size(); }
+
+    /** Returns the current number of threads in the pool */
+    public int getPoolSize() { return pool.getPoolSize(); }
+
+    /** Returns the approximate number of threads currently running tasks */
+    public int getActiveCount() { return pool.getActiveCount(); }
+
+    /** Returns the number of tasks which have been run in the submitting thread because the pool was exhausted */
+    public long getCallerRuns() { return callerRuns.get(); }
+
+    private void reportMetrics() {
+        metric.set(MetricNames.QUEUE_SIZE, getQueueSize(), null);
+        metric.set(MetricNames.POOL_SIZE, getPoolSize(), null);
+        metric.set(MetricNames.ACTIVE_THREADS, getActiveCount(), null);
+        metric.set(MetricNames.CALLER_RUNS, getCallerRuns(), null);
+    }
+
+    /**
+     * Stops reporting metrics, and shuts down the thread pool if it is owned by this.
+     * Tasks which are already submitted are still run, while tasks submitted after this are run
+     * in the submitting thread.
+     */
+    @Override
+    public void close() {
+        if ( ! closed.compareAndSet(false, true)) return;
+        metricReporting.cancel(false);
+        if (ownsPool)
+            pool.shutdown();
+        reportMetrics();
+    }
+
+    /**
+     * Runs rejected tasks in the submitting thread. Unlike ThreadPoolExecutor.CallerRunsPolicy this also runs
+     * tasks submitted after shutdown, as the executions submitting them expect them to complete.
+     */
+    private class RunInCallerPolicy implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            callerRuns.incrementAndGet();
+            task.run();
+        }
+
+    }
+
+    /** Holds the shared thread pool, such that it is only created if it is used */
+    private static final class SharedPool {
+
+        private static final ThreadPoolExecutor instance = create();
+
+        private static ThreadPoolExecutor create() {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(100, Integer.MAX_VALUE, 1L, TimeUnit.SECONDS,
+                                                                 new SynchronousQueue<>(false),
+                                                                 ThreadFactoryFactory.getThreadFactory("search"));
+            // Prestart needed, if not all threads will be created by the fist N tasks and hence they might also
+            // get the dreaded thread locals initialized even if they will never run.
+            // That counters what we we want to achieve with the Q that will prefer thread locality.
+            executor.prestartAllCoreThreads();
+            return executor;
+        }
+
+    }
+
+    /** Holds the thread reporting the metrics of all executors, such that it is only created if it is used */
+    private static final class MetricReporter {
+
+        private static final ScheduledExecutorService instance =
+                Executors.newSingleThreadScheduledExecutor(ThreadFactoryFactory.getDaemonThreadFactory("async-execution-metrics"));
+
+    }
+
+    private static final class MetricNames {
+        private static final String QUEUE_SIZE = "search_async_queue_size";
+        private static final String POOL_SIZE = "search_async_pool_size";
+        private static final String ACTIVE_THREADS = "search_async_active_threads";
+        private static final String CALLER_RUNS = "search_async_caller_runs";
+    }
+
+}
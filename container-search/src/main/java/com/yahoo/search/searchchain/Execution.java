@@ -17,8 +17,10 @@ import com.yahoo.search.Result;
 import com.yahoo.search.Searcher;
 import com.yahoo.search.cluster.PingableSearcher;
 import com.yahoo.search.rendering.RendererRegistry;
+import com.yahoo.search.statistics.SearcherProfiler;
 import com.yahoo.search.statistics.TimeTracker;
 
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 
 /**
@@ -94,6 +96,16 @@ public class Execution extends com.yahoo.processing.execution.Execution {
          */
         private Linguistics linguistics = null;
 
+        /**
+         * The executor running asynchronous executions, or null to use the executor shared by the JVM.
+         */
+        private Executor executor = null;
+
+        /**
+         * The profiler recording the latency of the searchers in executions, or null to not profile.
+         */
+        private SearcherProfiler profiler = null;
+
         /** Always set if this context belongs to an execution, never set if it does not. */
         private final Execution owner;
 
@@ -191,6 +203,12 @@ public class Execution extends com.yahoo.processing.execution.Execution {
             if (linguistics == null) {
                 linguistics = sourceContext.linguistics;
             }
+            if (executor == null) {
+                executor = sourceContext.executor;
+            }
+            if (profiler == null) {
+                profiler = sourceContext.profiler;
+            }
         }
 
         /**
@@ -206,6 +224,8 @@ public class Execution extends com.yahoo.processing.execution.Execution {
             detailedDiagnostics = other.detailedDiagnostics;
             breakdown = other.breakdown;
             linguistics = other.linguistics;
+            executor = other.executor;
+            profiler = other.profiler;
         }
 
         public boolean equals(Context other) {
@@ -217,7 +237,9 @@ public class Execution extends com.yahoo.processing.execution.Execution {
                     && other.searchChainRegistry == searchChainRegistry
                     && other.detailedDiagnostics == detailedDiagnostics
                     && other.breakdown == breakdown
-                    && other.linguistics == linguistics;
+                    && other.linguistics == linguistics
+                    && other.executor == executor
+                    && other.profiler == profiler;
         }
 
         @Override
@@ -225,7 +247,7 @@ public class Execution extends com.yahoo.processing.execution.Execution {
             return java.util.Objects.hash(indexFacts,
                                           rendererRegistry, tokenRegistry, searchChainRegistry,
                                           detailedDiagnostics, breakdown,
-                                          linguistics);
+                                          linguistics, executor, profiler);
         }
 
         @Override
@@ -374,6 +396,30 @@ public class Execution extends com.yahoo.processing.execution.Execution {
             this.linguistics = linguistics;
         }
 
+        /**
+         * Returns the executor which runs the {@link AsyncExecution}s created from this context,
+         * or null if they should use the executor shared by all containers in this JVM.
+         */
+        public Executor getExecutor() {
+            return executor;
+        }
+
+        public void setExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+        /**
+         * Returns the profiler which records the latency of the searchers in a sample of the executions
+         * created from this context, or null if they should not be profiled.
+         */
+        public SearcherProfiler getProfiler() {
+            return profiler;
+        }
+
+        public void setProfiler(SearcherProfiler profiler) {
+            this.profiler = profiler;
+        }
+
         /** Creates a child trace if this has an owner, or a root trace otherwise */
         private Trace createChildTrace() {
             return owner!=null ? owner.trace().createChild() : Trace.createRoot(0);
@@ -395,6 +441,9 @@ public class Execution extends com.yahoo.processing.execution.Execution {
     /** Time spent in each state of filling, searching or pinging. */
     private final TimeTracker timer;
 
+    /** The latency of each searcher invoked by this, or null if this execution is not profiled */
+    private final SearcherProfiler.ExecutionProfile profile;
+
     /** A searcher's view of state external to the search chain. */
     // Note that the context plays the same role as the Environment of the super.Execution
     // (although complicated by the need for stack-like behavior on changes).
@@ -491,6 +540,7 @@ public class Execution extends com.yahoo.processing.execution.Execution {
         contextCache = new Context[searchChain.components().size()];
         entryIndex=searcherIndex;
         timer = new TimeTracker(searchChain, searcherIndex);
+        profile = this.context.getProfiler() != null ? this.context.getProfiler().profile(searchChain, searcherIndex) : null;
     }
 
     /** Does return search(((Query)request) */
@@ -513,6 +563,8 @@ public class Execution extends com.yahoo.processing.execution.Execution {
     @Override
     protected void onInvoking(Request request, Processor processor) {
         super.onInvoking(request,processor);
+        if (profile != null)
+            profile.invoking(nextIndex() - 1);
         final int traceDependencies = 6;
         Query query = (Query) request;
         if (query.getTraceLevel() >= traceDependencies) {
@@ -580,12 +632,16 @@ public class Execution extends com.yahoo.processing.execution.Execution {
     }
 
     private void onInvokingFill(Searcher searcher, Result result, String summaryClass) {
+        if (profile != null)
+            profile.invoking(nextIndex() - 1);
         int traceFillAt = 5;
         if (trace().getTraceLevel() < traceFillAt) return;
         trace().trace("Invoke fill(" + summaryClass + ") on " + searcher, traceFillAt);
     }
 
     private void onReturningFill(Searcher searcher, Result result, String summaryClass) {
+        if (profile != null)
+            profile.returning(nextIndex(), TimeTracker.Activity.FILL);
         int traceFillAt = 5;
         if (trace().getTraceLevel() < traceFillAt) return;
         trace().trace("Return fill(" + summaryClass + ") on " + searcher, traceFillAt);
@@ -617,6 +673,8 @@ public class Execution extends com.yahoo.processing.execution.Execution {
     @Override
     protected void onReturning(Request request, Processor processor,Response response) {
         super.onReturning(request, processor, response);
+        if (profile != null)
+            profile.returning(nextIndex(), TimeTracker.Activity.SEARCH);
         timer.sampleSearchReturn(nextIndex(), context.getDetailedDiagnostics(), (Result)response);
     }
 
@@ -0,0 +1,292 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.statistics;
+
+import com.google.inject.Inject;
+import com.yahoo.component.chain.Chain;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.processing.Processor;
+import com.yahoo.search.statistics.TimeTracker.Activity;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the latency of each searcher in the search chains executed in this container.
+ * A sample of the executions are profiled, and for each searcher invocation in a profiled execution
+ * this records
+ * <ul>
+ *     <li>the total time, from the searcher is invoked until it returns, and
+ *     <li>the self time, which is the total time minus the time spent in the searchers following it in the chain.
+ * </ul>
+ * These are kept in a histogram per chain, searcher and activity (search or fill), and also reported as the metrics
+ * <code>search_component_self_time</code> and <code>search_component_total_time</code>, in milliseconds.
+ * <p>
+ * This is thread safe.
+ *
+ * @see com.yahoo.search.searchchain.Execution.Context#getProfiler()
+ */
+public class SearcherProfiler {
+
+    /** The default number of executions per profiled execution */
+    public static final int defaultSampleInterval = 100;
+
+    private final Metric metric;
+    private final int sampleInterval;
+    private final Map<Key, ComponentProfile> profiles = new ConcurrentHashMap<>();
+
+    @Inject
+    public SearcherProfiler(Metric metric) {
+        this(metric, defaultSampleInterval);
+    }
+
+    /**
+     * Creates a profiler
+     *
+     * @param metric the metric receiving the latencies of profiled searchers
+     * @param sampleInterval profile one in this many executions. 1 profiles all, and 0 none
+     */
+    public SearcherProfiler(Metric metric, int sampleInterval) {
+        if (sampleInterval < 0)
+            throw new IllegalArgumentException("sampleInterval cannot be negative, but was " + sampleInterval);
+        this.metric = metric;
+        this.sampleInterval = sampleInterval;
+    }
+
+    /** Returns the number of executions per profiled execution, or 0 if no executions are profiled */
+    public int getSampleInterval() { return sampleInterval; }
+
+    /**
+     * Returns a profile to record the searchers of an execution of the given chain in, or null if this
+     * execution is not sampled.
+     *
+     * @param chain the chain of the execution
+     * @param entryIndex the index of the first searcher invoked by the execution
+     */
+    public ExecutionProfile profile(Chain<? extends Processor> chain, int entryIndex) {
+        if (sampleInterval == 0) return null;
+        if (sampleInterval > 1 && ThreadLocalRandom.current().nextInt(sampleInterval) != 0) return null;
+        return new ExecutionProfile(chain, entryIndex);
+    }
+
+    /** Returns the profiles recorded so far of all searchers, ordered by decreasing total self time */
+    public List<ComponentProfile> hottest() {
+        return profiles.values().stream()
+                       .sorted(Comparator.comparingLong((ComponentProfile profile) -> profile.selfTime().sum()).reversed())
+                       .collect(Collectors.toList());
+    }
+
+    /** Returns the profile recorded so far for the given chain, searcher and activity, or null if none */
+    public ComponentProfile get(String chain, String component, Activity activity) {
+        return profiles.get(new Key(chain, component, activity));
+    }
+
+    private void record(Key key, long selfNanos, long totalNanos) {
+        ComponentProfile profile = profiles.get(key);
+        if (profile == null)
+            profile = profiles.computeIfAbsent(key, ComponentProfile::new);
+        profile.selfTime.add(selfNanos);
+        profile.totalTime.add(totalNanos);
+        metric.set(MetricNames.SELF_TIME, selfNanos / 1_000_000.0, profile.metricContext);
+        metric.set(MetricNames.TOTAL_TIME, totalNanos / 1_000_000.0, profile.metricContext);
+    }
+
+    /**
+     * The state of profiling a single execution. This is not thread safe, which is fine as an execution
+     * is only used by one thread at the time.
+     */
+    public final class ExecutionProfile {
+
+        private final Chain<? extends Processor> chain;
+        private final int entryIndex;
+
+        /** The start time of the current invocation of each searcher in the chain */
+        private final long[] startTimes;
+
+        /** The time spent in the following searchers during the current invocation of each searcher */
+        private final long[] childTimes;
+
+        private ExecutionProfile(Chain<? extends Processor> chain, int entryIndex) {
+            this.chain = chain;
+            this.entryIndex = entryIndex;
+            this.startTimes = new long[chain.components().size()];
+            this.childTimes = new long[chain.components().size()];
+        }
+
+        /** Call this when the searcher at the given index in the chain is invoked */
+        public void invoking(int index) {
+            childTimes[index] = 0;
+            startTimes[index] = System.nanoTime();
+        }
+
+        /** Call this when the searcher at the given index in the chain returns, normally or by throwing */
+        public void returning(int index, Activity activity) {
+            long totalTime = System.nanoTime() - startTimes[index];
+            if (index > entryIndex)
+                childTimes[index - 1] += totalTime;
+            Key key = new Key(chain.getId().stringValue(), chain.components().get(index).getId().stringValue(), activity);
+            record(key, totalTime - childTimes[index], totalTime);
+        }
+
+    }
+
+    /** The latencies recorded for a searcher in a chain, for one activity */
+    public final class ComponentProfile {
+
+        private final Key key;
+        private final Histogram selfTime = new Histogram();
+        private final Histogram totalTime = new Histogram();
+        private final Metric.Context metricContext;
+
+        private ComponentProfile(Key key) {
+            this.key = key;
+            Map<String, String> dimensions = new HashMap<>();
+            dimensions.put("chain", key.chain);
+            dimensions.put("component", key.component);
+            dimensions.put("activity", key.activity.name().toLowerCase());
+            this.metricContext = metric.createContext(dimensions);
+        }
+
+        /** Returns the id of the chain the searcher was invoked in */
+        public String chain() { return key.chain; }
+
+        /** Returns the id of the searcher */
+        public String component() { return key.component; }
+
+        public Activity activity() { return key.activity; }
+
+        /** Returns the self time of each invocation */
+        public Histogram selfTime() { return selfTime; }
+
+        /** Returns the total time of each invocation */
+        public Histogram totalTime() { return totalTime; }
+
+        @Override
+        public String toString() {
+            return key + ": " + selfTime.count() + " invocations, self time " + selfTime + ", total time " + totalTime;
+        }
+
+    }
+
+    /**
+     * A thread safe histogram of durations. The durations are counted in buckets which each span a quarter
+     * of the power of two of microseconds below it, such that percentiles are accurate within 25%.
+     */
+    public static final class Histogram {
+
+        private static final int subBuckets = 4;
+        private static final int buckets = subBuckets * 40;
+
+        private final AtomicLongArray counts = new AtomicLongArray(buckets);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+
+        void add(long nanos) {
+            if (nanos < 0) nanos = 0;
+            counts.incrementAndGet(bucketOf(nanos / 1000));
+            count.increment();
+            sum.add(nanos);
+        }
+
+        /** Returns the number of durations added to this */
+        public long count() { return count.sum(); }
+
+        /** Returns the sum of the durations added to this, in nanoseconds */
+        public long sum() { return sum.sum(); }
+
+        /** Returns the mean duration added to this in milliseconds, or 0 if none are added */
+        public double mean() {
+            long count = count();
+            return count == 0 ? 0 : sum() / 1_000_000.0 / count;
+        }
+
+        /**
+         * Returns an upper bound on the given percentile of the durations added to this in milliseconds,
+         * or 0 if none are added.
+         *
+         * @param percentile the percentile, in the range [0, 100]
+         */
+        public double percentile(double percentile) {
+            if (percentile < 0 || percentile > 100)
+                throw new IllegalArgumentException("percentile must be in [0, 100], but was " + percentile);
+            long[] snapshot = new long[buckets];
+            long total = 0;
+            for (int i = 0; i < buckets; i++)
+                total += snapshot[i] = counts.get(i);
+            if (total == 0) return 0;
+
+            long rank = Math.max(1, (long)Math.ceil(total * percentile / 100));
+            long seen = 0;
+            int bucket = 0;
+            for (; bucket < buckets - 1; bucket++) {
+                seen += snapshot[bucket];
+                if (seen >= rank) break;
+            }
+            return upperBoundOf(bucket) / 1000.0;
+        }
+
+        /** Returns the bucket of the given number of microseconds */
+        private static int bucketOf(long micros) {
+            if (micros < subBuckets) return (int)micros;
+            int exponent = 63 - Long.numberOfLeadingZeros(micros); // >= 2
+            int subBucket = (int)(micros >> (exponent - 2)) & (subBuckets - 1);
+            return Math.min(buckets - 1, subBuckets + (exponent - 2) * subBuckets + subBucket);
+        }
+
+        /** Returns the largest number of microseconds which is counted in the given bucket */
+        private static long upperBoundOf(int bucket) {
+            if (bucket < subBuckets) return bucket;
+            int exponent = (bucket - subBuckets) / subBuckets + 2;
+            int subBucket = (bucket - subBuckets) % subBuckets;
+            return ((long)(subBuckets + subBucket + 1) << (exponent - 2)) - 1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("mean %.3f ms, 99 percentile %.3f ms", mean(), percentile(99));
+        }
+
+    }
+
+    private static final class Key {
+
+        private final String chain;
+        private final String component;
+        private final Activity activity;
+
+        Key(String chain, String component, Activity activity) {
+            this.chain = chain;
+            this.component = component;
+            this.activity = activity;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof Key)) return false;
+            Key other = (Key)o;
+            return chain.equals(other.chain) && component.equals(other.component) && activity == other.activity;
+        }
+
+        @Override
+        public int hashCode() { return Objects.hash(chain, component, activity); }
+
+        @Override
+        public String toString() { return component + " in " + chain + " (" + activity.name().toLowerCase() + ")"; }
+
+    }
+
+    private static final class MetricNames {
+        private static final String SELF_TIME = "search_component_self_time";
+        private static final String TOTAL_TIME = "search_component_total_time";
+    }
+
+}
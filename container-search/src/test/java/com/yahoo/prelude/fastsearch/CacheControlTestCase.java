@@ -0,0 +1,38 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.prelude.fastsearch;
+
+import com.yahoo.fs4.Packet;
+import com.yahoo.fs4.QueryPacket;
+import com.yahoo.fs4.QueryResultPacket;
+import com.yahoo.search.Query;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class CacheControlTestCase {
+
+    @Test
+    public void requireThatOnlyLookupsAreCountedAsHitsAndMisses() {
+        CacheControl cacheControl = new CacheControl(1, 1e64);
+        Query query = new Query("?query=foo");
+        CacheKey key = new CacheKey(QueryPacket.create(query));
+
+        cacheControl.cache(key, query, new DocsumPacketKey[0], new Packet[] { QueryResultPacket.create() }, Optional.empty());
+        cacheControl.updateCacheEntry(key, query, QueryResultPacket.create());
+        cacheControl.updateCacheEntry(key, query, new DocsumPacketKey[0], new Packet[0]);
+        cacheControl.cache(key, query, new DocsumPacketKey[0], new Packet[] { QueryResultPacket.create() }, Optional.empty());
+        assertEquals(0, cacheControl.hitCount());
+        assertEquals(0, cacheControl.missCount());
+
+        assertNotNull(cacheControl.lookup(key, query));
+        Query otherQuery = new Query("?query=bar");
+        assertNull(cacheControl.lookup(new CacheKey(QueryPacket.create(otherQuery)), otherQuery));
+        assertEquals(1, cacheControl.hitCount());
+        assertEquals(1, cacheControl.missCount());
+    }
+
+}
@@ -0,0 +1,107 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.prelude.fastsearch.test;
+
+import com.yahoo.fs4.BasicPacket;
+import com.yahoo.fs4.PacketDecoder;
+import com.yahoo.fs4.QueryPacket;
+import com.yahoo.prelude.fastsearch.CacheKey;
+import com.yahoo.prelude.fastsearch.PacketCache;
+import com.yahoo.prelude.fastsearch.PacketWrapper;
+import com.yahoo.prelude.fastsearch.ShardedPacketCache;
+import com.yahoo.search.Query;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares the throughput of the synchronized {@link PacketCache} with {@link ShardedPacketCache}
+ * for 1 to 64 threads doing a mix of lookups and inserts. Run the main method.
+ */
+public class PacketCacheMicroBenchmark {
+
+    private static final int keyCount = 10000;
+    private static final int operationsPerThread = 200000;
+
+    private interface Cache {
+        PacketWrapper get(CacheKey key);
+        void put(CacheKey key, PacketWrapper value);
+    }
+
+    private static class SynchronizedCache implements Cache {
+        private final PacketCache cache = new PacketCache(1, 0, 1e64);
+        public PacketWrapper get(CacheKey key) { synchronized (cache) { return cache.get(key); } }
+        public void put(CacheKey key, PacketWrapper value) { synchronized (cache) { cache.put(key, value); } }
+    }
+
+    private static class ShardedCache implements Cache {
+        private final ShardedPacketCache cache = new ShardedPacketCache(1, 0, 1e64);
+        public PacketWrapper get(CacheKey key) { return cache.get(key); }
+        public void put(CacheKey key, PacketWrapper value) { cache.put(key, value); }
+    }
+
+    private final List<CacheKey> keys = new ArrayList<>();
+
+    private PacketCacheMicroBenchmark() {
+        for (int i = 0; i < keyCount; i++)
+            keys.add(new CacheKey(QueryPacket.create(new Query("/?query=key" + i))));
+    }
+
+    private double run(Cache cache, int threads) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        LongAdder hits = new LongAdder();
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < operationsPerThread; i++) {
+                        // Skewed key distribution to get a realistic hit ratio
+                        int index = (int)(keyCount * Math.pow(random.nextDouble(), 3));
+                        CacheKey key = keys.get(index);
+                        if (cache.get(key) != null)
+                            hits.increment();
+                        else
+                            cache.put(key, createCacheEntry());
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - startTime;
+        return (double)threads * operationsPerThread * 1.0e9 / elapsed;
+    }
+
+    public void benchmark() throws InterruptedException {
+        for (int threads : new int[] { 1, 2, 4, 8, 16, 32, 64 }) {
+            run(new SynchronizedCache(), threads); // warmup
+            double synchronizedOps = run(new SynchronizedCache(), threads);
+            run(new ShardedCache(), threads); // warmup
+            double shardedOps = run(new ShardedCache(), threads);
+            System.out.printf("%2d threads: synchronized %,12.0f ops/s, sharded %,12.0f ops/s%n",
+                              threads, synchronizedOps, shardedOps);
+        }
+    }
+
+    private static PacketWrapper createCacheEntry() throws Exception {
+        ByteBuffer data = ByteBuffer.allocate(PacketCacheTestCase.length);
+        data.put(PacketCacheTestCase.queryResultPacketData);
+        data.flip();
+        return new PacketWrapper(null, new BasicPacket[] { PacketDecoder.extractPacket(data).packet });
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        new PacketCacheMicroBenchmark().benchmark();
+    }
+
+}
@@ -0,0 +1,168 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.prelude.fastsearch.test;
+
+import com.yahoo.fs4.BasicPacket;
+import com.yahoo.fs4.BufferTooSmallException;
+import com.yahoo.fs4.PacketDecoder;
+import com.yahoo.fs4.QueryPacket;
+import com.yahoo.prelude.fastsearch.CacheKey;
+import com.yahoo.prelude.fastsearch.PacketWrapper;
+import com.yahoo.prelude.fastsearch.ShardedPacketCache;
+import com.yahoo.search.Query;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the sharded packet cache.
+ */
+public class ShardedPacketCacheTestCase {
+
+    private static final int length = PacketCacheTestCase.length;
+
+    private static final CacheKey key1 = new CacheKey(QueryPacket.create(new Query("/?query=key1")));
+    private static final CacheKey key2 = new CacheKey(QueryPacket.create(new Query("/?query=key2")));
+    private static final CacheKey key3 = new CacheKey(QueryPacket.create(new Query("/?query=key3")));
+    private static final CacheKey key4 = new CacheKey(QueryPacket.create(new Query("/?query=key4")));
+
+    @Test
+    public void testLruEvictionInSingleSegment() throws BufferTooSmallException {
+        // room for three entries
+        ShardedPacketCache cache = new ShardedPacketCache(0, length * 4 - 1, 1e64, 1);
+        cache.setMaxCacheItemPercentage(50);
+
+        cache.put(key1, createCacheEntry());
+        cache.put(key2, createCacheEntry());
+        cache.put(key3, createCacheEntry());
+        cache.put(key4, createCacheEntry());
+
+        assertNull(cache.get(key1));
+        assertEquals(3, cache.size());
+        assertEquals(length * 3, cache.totalPacketSize());
+        assertEquals(1, cache.evictionCount());
+
+        cache.get(key2);
+        cache.put(key1, createCacheEntry());
+        assertNull(cache.get(key3));
+        assertNotNull(cache.get(key1));
+        assertNotNull(cache.get(key2));
+        assertNotNull(cache.get(key4));
+        assertEquals(2, cache.evictionCount());
+    }
+
+    @Test
+    public void testStatistics() throws BufferTooSmallException {
+        ShardedPacketCache cache = new ShardedPacketCache(1, 0, 1e64);
+        cache.put(key1, createCacheEntry());
+        assertNotNull(cache.get(key1));
+        assertNotNull(cache.get(key1));
+        assertNull(cache.get(key2));
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(0, cache.evictionCount());
+    }
+
+    @Test
+    public void testSegmentCountIsPowerOfTwo() {
+        assertEquals(16, new ShardedPacketCache(1, 0, 1e64).getSegmentCount());
+        assertEquals(8, new ShardedPacketCache(1, 0, 1e64, 5).getSegmentCount());
+        assertEquals(1, new ShardedPacketCache(0, 1, 1e64, 16).getSegmentCount());
+    }
+
+    @Test
+    public void testTooLargeItem() throws BufferTooSmallException {
+        ShardedPacketCache cache = new ShardedPacketCache(0, 100, 1e64, 1); // 100 bytes cache
+        cache.setMaxCacheItemPercentage(50);
+
+        cache.put(key1, createCacheEntry());
+        assertNull(cache.get(key1)); // 68 is more than 50% of the size
+        assertEquals(0, cache.totalPacketSize());
+    }
+
+    @Test
+    public void testClearingAndRemoving() throws BufferTooSmallException {
+        ShardedPacketCache cache = new ShardedPacketCache(1, 0, 1e64);
+
+        cache.put(key1, createCacheEntry());
+        cache.put(key2, createCacheEntry());
+        cache.put(key3, createCacheEntry());
+        assertEquals(length * 3, cache.totalPacketSize());
+
+        cache.remove(key1);
+        assertNull(cache.get(key1));
+        assertNotNull(cache.get(key2));
+        assertEquals(length * 2, cache.totalPacketSize());
+
+        cache.clear();
+        assertNull(cache.get(key2));
+        assertNull(cache.get(key3));
+        assertEquals(0, cache.totalPacketSize());
+    }
+
+    @Test
+    public void testEntryAging() throws BufferTooSmallException {
+        ShardedPacketCache cache = new ShardedPacketCache(0, 1024, 5 * 3600);
+        cache.setMaxCacheItemPercentage(50);
+        cache.put(key1, createCacheEntry(), System.currentTimeMillis() - 10 * 3600 * 1000);
+        cache.put(key2, createCacheEntry(), System.currentTimeMillis());
+        assertNull(cache.get(key1));
+        assertNotNull(cache.get(key2));
+    }
+
+    @Test
+    public void testTooBigCapacity() {
+        ShardedPacketCache cache = new ShardedPacketCache(2048, 0, 5 * 3600);
+        assertEquals(Integer.MAX_VALUE, cache.getByteCapacity());
+    }
+
+    @Test
+    public void testConcurrentAccessKeepsSizeAccounting() throws Exception {
+        ShardedPacketCache cache = new ShardedPacketCache(0, length * 64, 1e64, 4);
+        cache.setMaxCacheItemPercentage(25);
+        List<CacheKey> keys = new ArrayList<>();
+        for (int i = 0; i < 256; i++)
+            keys.add(new CacheKey(QueryPacket.create(new Query("/?query=key" + i))));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    CacheKey key = keys.get((i * 7 + offset) % keys.size());
+                    if (cache.get(key) == null)
+                        cache.put(key, createCacheEntry());
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures)
+            future.get();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(cache.totalPacketSize() <= cache.getByteCapacity());
+        assertEquals(cache.size() * length, cache.totalPacketSize());
+        assertEquals(8 * 2000, cache.hitCount() + cache.missCount());
+    }
+
+    private static PacketWrapper createCacheEntry() throws BufferTooSmallException {
+        ByteBuffer data = ByteBuffer.allocate(length);
+        data.put(PacketCacheTestCase.queryResultPacketData);
+        data.flip();
+        BasicPacket[] content = new BasicPacket[] { PacketDecoder.extractPacket(data).packet };
+        return new PacketWrapper(null, content);
+    }
+
+}
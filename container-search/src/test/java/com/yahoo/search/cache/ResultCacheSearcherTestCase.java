@@ -0,0 +1,229 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.yahoo.component.chain.Chain;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.metrics.simple.Point;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.query.Sorting;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.test.ManualClock;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the result cache searcher
+ */
+public class ResultCacheSearcherTestCase {
+
+    private final ManualClock clock = new ManualClock();
+    private final MetricReceiver.MockReceiver metric = new MetricReceiver.MockReceiver();
+    private final MockBackend backend = new MockBackend();
+    private final Chain<Searcher> chain = new Chain<>(new ResultCacheSearcher(config(60.0), metric, clock), backend);
+
+    @Test
+    public void testCachedResultsAreReturnedFilled() {
+        Result first = searchAndFill("?query=foo");
+        Result second = searchAndFill("?query=foo");
+        assertEquals(1, backend.searches);
+        assertEquals(1, backend.fills);
+        assertEquals(3, second.getConcreteHitCount());
+        assertEquals(3, second.getTotalHitCount());
+        assertTrue(second.isFilled("default"));
+        assertEquals("foo", second.hits().get(0).getField("filled"));
+        assertEquals(first.hits().get(0).getId(), second.hits().get(0).getId());
+
+        assertEquals(1, count("result_cache_hits"));
+        assertEquals(1, count("result_cache_misses"));
+    }
+
+    @Test
+    public void testCachedResultsAreNotModifiedThroughReturnedResults() {
+        searchAndFill("?query=foo").hits().remove(0);
+        Result result = searchAndFill("?query=foo");
+        result.hits().remove(0);
+        assertEquals(3, searchAndFill("?query=foo").getConcreteHitCount());
+        assertEquals(1, backend.searches);
+    }
+
+    @Test
+    public void testCachedHitsBelongToTheQueryReturningThem() {
+        Result first = searchAndFill("?query=foo");
+        Result second = searchAndFill("?query=foo");
+        assertEquals(1, backend.searches);
+        assertSame(second.getQuery(), second.hits().getQuery());
+        for (Hit hit : second.hits())
+            assertSame(second.getQuery(), hit.getQuery());
+        for (Hit hit : first.hits())
+            assertSame(first.getQuery(), hit.getQuery());
+    }
+
+    @Test
+    public void testDifferentQueriesAreCachedSeparately() {
+        searchAndFill("?query=foo");
+        searchAndFill("?query=bar");
+        searchAndFill("?query=foo&hits=2");
+        searchAndFill("?query=foo&ranking=other");
+        searchAndFill("?query=foo&myParameter=1");
+        assertEquals(5, backend.searches);
+
+        searchAndFill("?query=foo&timeout=200&tracelevel=1");
+        assertEquals("Timeout and tracing does not change the result", 5, backend.searches);
+    }
+
+    @Test
+    public void testCacheKeyIncludesTheSorter() {
+        assertNotEquals(cacheKey("+title"), cacheKey("+lowercase(title)"));
+        assertNotEquals(cacheKey("+uca(title,en_US)"), cacheKey("+uca(title,sv_SE)"));
+        assertNotEquals(cacheKey("+uca(title,en_US,PRIMARY)"), cacheKey("+uca(title,en_US,TERTIARY)"));
+        assertEquals(cacheKey("+uca(title,en_US)"), cacheKey("+uca(title,en_US)"));
+    }
+
+    @Test
+    public void testCachedResultsExpire() {
+        searchAndFill("?query=foo");
+        clock.advance(Duration.ofSeconds(59));
+        searchAndFill("?query=foo");
+        assertEquals(1, backend.searches);
+
+        clock.advance(Duration.ofSeconds(2));
+        searchAndFill("?query=foo");
+        assertEquals(2, backend.searches);
+    }
+
+    @Test
+    public void testResultsAreNotCachedOrReturnedFromCacheWhenNotAppropriate() {
+        searchAndFill("?query=foo&nocache=true");
+        searchAndFill("?query=foo&nocache=true");
+        assertEquals(2, backend.searches);
+
+        searchAndFill("?query=error");
+        searchAndFill("?query=error");
+        assertEquals(4, backend.searches);
+
+        search("?query=unfilled");
+        search("?query=unfilled");
+        assertEquals("Results are cached when filled", 6, backend.searches);
+    }
+
+    @Test
+    public void testResultsAreCachedWhenFilledWithTheSummaryClassOfTheQuery() {
+        Execution execution = new Execution(chain, Execution.Context.createContextStub());
+        Result result = execution.search(new Query("?query=foo&summary=mysummary"));
+        execution.fill(result, "attributeprefetch");
+        search("?query=foo&summary=mysummary");
+        assertEquals("Results are not cached when filled with another summary class", 2, backend.searches);
+
+        execution.fill(result, "mysummary");
+        Result cached = search("?query=foo&summary=mysummary");
+        assertEquals(2, backend.searches);
+        assertTrue(cached.isFilled("mysummary"));
+    }
+
+    @Test
+    public void testResultsWithoutHitsToFillAreCachedWhenReturned() {
+        search("?query=foo&hits=0");
+        search("?query=foo&hits=0");
+        assertEquals(1, backend.searches);
+    }
+
+    @Test
+    public void testResultCacheEvictsLeastRecentlyUsedResults() {
+        ResultCache cache = new ResultCache(10, 50, 1000);
+        cache.put("a", resultWithHits(3), 0);
+        cache.put("b", resultWithHits(3), 0);
+        assertEquals(8, cache.totalSize());
+        cache.get("a", 0);
+        cache.put("c", resultWithHits(3), 0);
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b", 0));
+        assertEquals(3, cache.get("a", 0).getConcreteHitCount());
+        assertEquals(3, cache.get("c", 0).getConcreteHitCount());
+
+        assertFalse("Results larger than the max result size are not cached", cache.put("d", resultWithHits(5), 0));
+        assertEquals(2, cache.size());
+
+        assertNull(cache.get("a", 1001));
+        assertEquals(1, cache.size());
+        assertEquals(4, cache.totalSize());
+    }
+
+    private Result search(String request) {
+        return new Execution(chain, Execution.Context.createContextStub()).search(new Query(request));
+    }
+
+    private Result searchAndFill(String request) {
+        Execution execution = new Execution(chain, Execution.Context.createContextStub());
+        Result result = execution.search(new Query(request));
+        execution.fill(result, result.getQuery().getPresentation().getSummary());
+        return result;
+    }
+
+    /** Returns the cache key of a query where the given sorting is set, not through a request property */
+    private static String cacheKey(String sorting) {
+        Query query = new Query("?query=foo");
+        query.getRanking().setSorting(new Sorting(sorting));
+        return ResultCacheSearcher.cacheKey(query);
+    }
+
+    private long count(String metricName) {
+        return metric.getSnapshot().getMapForMetric(metricName).get(Point.emptyPoint()).getCount();
+    }
+
+    private static Result resultWithHits(int hitCount) {
+        Result result = new Result(new Query());
+        for (int i = 0; i < hitCount; i++)
+            result.hits().add(new Hit("hit" + i));
+        return result;
+    }
+
+    private static ResultCacheConfig config(double maxAge) {
+        return new ResultCacheConfig(new ResultCacheConfig.Builder().maxAge(maxAge));
+    }
+
+    private static class MockBackend extends Searcher {
+
+        int searches = 0;
+        int fills = 0;
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            searches++;
+            Result result = new Result(query);
+            if (query.getModel().getQueryString().equals("error")) {
+                result.hits().addError(ErrorMessage.createBackendCommunicationError("Failed"));
+                return result;
+            }
+            for (int i = 0; i < Math.min(3, query.getHits()); i++) {
+                Hit hit = new Hit("hit" + i, 1.0 - i / 10.0, query);
+                hit.setFillable();
+                result.hits().add(hit);
+            }
+            result.setTotalHitCount(3);
+            return result;
+        }
+
+        @Override
+        public void fill(Result result, String summaryClass, Execution execution) {
+            fills++;
+            for (Hit hit : result.hits()) {
+                hit.setField("filled", result.getQuery().getModel().getQueryString());
+                hit.setFilled(summaryClass);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,261 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.fs4.QueryPacket;
+import com.yahoo.prelude.fastsearch.CacheKey;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.result.Hit;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests hedging of queries to a second group
+ */
+public class HedgedSearchInvokerTest {
+
+    @Test
+    public void requireThatNoQueryIsHedgedBeforeSearchTimesAreKnown() {
+        HedgingPolicy policy = new HedgingPolicy(90, 0.001);
+        assertTrue(policy.isEnabled());
+        assertTrue(policy.delay() < 0);
+        for (int i = 0; i < 63; i++)
+            policy.recordSearchTime(0.010);
+        assertTrue(policy.delay() < 0);
+        policy.recordSearchTime(0.010);
+        assertEquals(0.010, policy.delay(), 1e-9);
+    }
+
+    @Test
+    public void requireThatDelayIsThePercentileOfRecentSearchTimes() {
+        HedgingPolicy policy = new HedgingPolicy(90, 0.001);
+        for (int i = 1; i <= 128; i++)
+            policy.recordSearchTime(i / 1000.0);
+        assertEquals(0.116, policy.delay(), 1e-9);
+
+        HedgingPolicy minDelayPolicy = new HedgingPolicy(50, 0.100);
+        for (int i = 1; i <= 64; i++)
+            minDelayPolicy.recordSearchTime(i / 1000.0);
+        assertEquals(0.100, minDelayPolicy.delay(), 1e-9);
+
+        assertFalse(HedgingPolicy.disabled().isEnabled());
+    }
+
+    @Test
+    public void requireThatQueryIsNotHedgedWhenPrimaryAnswersInTime() throws IOException {
+        HedgingPolicy policy = policyWithDelay(0.5);
+        MockInvoker primary = new MockInvoker("primary", true);
+        AtomicInteger hedgesRequested = new AtomicInteger(0);
+        HedgedSearchInvoker invoker = new HedgedSearchInvoker(primary, () -> {
+            hedgesRequested.incrementAndGet();
+            return Optional.of(new MockInvoker("hedge", true));
+        }, policy);
+
+        List<Result> results = invoker.search(new Query(), null, null);
+        invoker.close();
+        assertEquals("primary", answeredBy(results));
+        assertEquals(0, hedgesRequested.get());
+        assertEquals(0, policy.hedgedCount());
+        assertTrue(primary.closed);
+        assertTrue(primary.finalSuccess);
+    }
+
+    @Test
+    public void requireThatHedgeIsUsedWhenPrimaryStalls() throws IOException {
+        HedgingPolicy policy = policyWithDelay(0.010);
+        MockInvoker primary = new MockInvoker("primary", false);
+        MockInvoker hedge = new MockInvoker("hedge", true);
+        HedgedSearchInvoker invoker = new HedgedSearchInvoker(primary, () -> Optional.of(hedge), policy);
+
+        List<Result> results = invoker.search(new Query(), null, null);
+        invoker.close();
+        assertEquals("hedge", answeredBy(results));
+        assertEquals(1, policy.hedgedCount());
+        assertEquals(1, policy.wonCount());
+        assertTrue(primary.closed);
+        assertFalse(primary.finalSuccess);
+        assertTrue(primary.finalDuration >= 0.010);
+        assertTrue(hedge.closed);
+        assertTrue(hedge.finalSuccess);
+    }
+
+    @Test
+    public void requireThatPrimaryIsUsedWhenItAnswersBeforeTheHedge() throws IOException {
+        HedgingPolicy policy = policyWithDelay(0.010);
+        MockInvoker primary = new MockInvoker("primary", false);
+        MockInvoker hedge = new MockInvoker("hedge", false) {
+            @Override
+            protected void sendSearchRequest(Query query, QueryPacket queryPacket) {
+                super.sendSearchRequest(query, queryPacket);
+                primary.answer();
+            }
+        };
+        HedgedSearchInvoker invoker = new HedgedSearchInvoker(primary, () -> Optional.of(hedge), policy);
+
+        List<Result> results = invoker.search(new Query(), null, null);
+        invoker.close();
+        assertEquals("primary", answeredBy(results));
+        assertEquals(1, policy.hedgedCount());
+        assertEquals(0, policy.wonCount());
+        assertTrue(primary.finalSuccess);
+        assertTrue(hedge.closed);
+        assertTrue(hedge.finalDuration < 0);
+    }
+
+    @Test
+    public void requireThatPrimaryIsUsedWhenNoOtherGroupIsAvailable() throws IOException {
+        HedgingPolicy policy = policyWithDelay(0.010);
+        MockInvoker primary = new MockInvoker("primary", false);
+        HedgedSearchInvoker invoker = new HedgedSearchInvoker(primary, Optional::empty, policy);
+
+        new Thread(() -> {
+            try { Thread.sleep(50); } catch (InterruptedException e) { }
+            primary.answer();
+        }).start();
+        List<Result> results = invoker.search(new Query(), null, null);
+        invoker.close();
+        assertEquals("primary", answeredBy(results));
+        assertEquals(0, policy.hedgedCount());
+    }
+
+    @Test
+    public void requireThatHedgeIsUsedWhenItAnswersWhileBothAreOutstanding() throws IOException {
+        HedgingPolicy policy = policyWithDelay(0.010);
+        MockInvoker primary = new MockInvoker("primary", false);
+        MockInvoker hedge = new MockInvoker("hedge", false);
+        HedgedSearchInvoker invoker = new HedgedSearchInvoker(primary, () -> Optional.of(hedge), policy);
+
+        new Thread(() -> {
+            try { Thread.sleep(50); } catch (InterruptedException e) { }
+            hedge.answer();
+        }).start();
+        List<Result> results = invoker.search(new Query(), null, null);
+        invoker.close();
+        assertEquals("hedge", answeredBy(results));
+        assertEquals(1, policy.wonCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void requireThatInvokersWhichCannotWaitForResultsAreNotHedged() {
+        new HedgedSearchInvoker(new MockInvoker("primary", true, false), Optional::empty, policyWithDelay(0.010));
+    }
+
+    @Test
+    public void requireThatHedgesWhichCannotWaitForResultsAreNotUsed() throws IOException {
+        HedgingPolicy policy = policyWithDelay(0.010);
+        MockInvoker primary = new MockInvoker("primary", false);
+        MockInvoker hedge = new MockInvoker("hedge", true, false);
+        HedgedSearchInvoker invoker = new HedgedSearchInvoker(primary, () -> Optional.of(hedge), policy);
+
+        new Thread(() -> {
+            try { Thread.sleep(50); } catch (InterruptedException e) { }
+            primary.answer();
+        }).start();
+        List<Result> results = invoker.search(new Query(), null, null);
+        invoker.close();
+        assertEquals("primary", answeredBy(results));
+        assertEquals(0, policy.hedgedCount());
+        assertNull(hedge.query);
+        assertTrue(hedge.closed);
+        assertTrue(hedge.finalDuration < 0);
+    }
+
+    private static HedgingPolicy policyWithDelay(double delay) {
+        HedgingPolicy policy = new HedgingPolicy(50, delay);
+        for (int i = 0; i < 64; i++)
+            policy.recordSearchTime(0);
+        assertEquals(delay, policy.delay(), 1e-9);
+        return policy;
+    }
+
+    private static String answeredBy(List<Result> results) {
+        assertEquals(1, results.size());
+        return results.get(0).hits().get(0).getId().toString();
+    }
+
+    private static class MockInvoker extends SearchInvoker {
+
+        private final String name;
+        private final boolean canWaitForResults;
+        private final CountDownLatch answered = new CountDownLatch(1);
+        private volatile Runnable resultListener = null;
+        Query query;
+
+        boolean closed = false;
+        boolean finalSuccess = false;
+        double finalDuration = -1;
+
+        MockInvoker(String name, boolean answered) {
+            this(name, answered, true);
+        }
+
+        MockInvoker(String name, boolean answered, boolean canWaitForResults) {
+            this.name = name;
+            this.canWaitForResults = canWaitForResults;
+            if (answered)
+                answer();
+            teardown((success, duration) -> {
+                finalSuccess = success;
+                finalDuration = duration;
+            });
+        }
+
+        void answer() {
+            answered.countDown();
+            Runnable listener = resultListener;
+            if (listener != null)
+                listener.run();
+        }
+
+        @Override
+        protected void sendSearchRequest(Query query, QueryPacket queryPacket) {
+            this.query = query;
+        }
+
+        @Override
+        protected boolean canWaitForResults() {
+            return canWaitForResults;
+        }
+
+        @Override
+        protected void setResultListener(Runnable listener) {
+            resultListener = listener;
+        }
+
+        @Override
+        protected boolean waitForResults(long timeout) {
+            try {
+                return answered.await(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+
+        @Override
+        protected List<Result> getSearchResults(CacheKey cacheKey) {
+            waitForResults(query.getTimeLeft());
+            Result result = new Result(query);
+            result.hits().add(new Hit(name));
+            return Collections.singletonList(result);
+        }
+
+        @Override
+        protected void release() {
+            closed = true;
+        }
+
+    }
+
+}
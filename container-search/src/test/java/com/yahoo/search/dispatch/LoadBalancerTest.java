@@ -14,7 +14,9 @@ import java.util.Optional;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author ollivir
@@ -105,4 +107,70 @@ public class LoadBalancerTest {
         group = grp.get();
         assertThat(group.id(), equalTo(id2));
     }
+
+    @Test
+    public void requireThatAdaptivePolicyPrefersFasterGroup() {
+        Node n1 = new Node(0, "test-node1", 0, 0);
+        Node n2 = new Node(1, "test-node2", 1, 1);
+        SearchCluster cluster = new SearchCluster(88.0, 99.0, 0, Arrays.asList(n1, n2), null, 1, null);
+        LoadBalancer lb = new LoadBalancer(cluster, LoadBalancer.Policy.ADAPTIVE);
+
+        // Both groups are tried before statistics are available
+        Group first = lb.takeGroupForQuery(new Query(), null).get();
+        Group second = lb.takeGroupForQuery(new Query(), null).get();
+        assertThat(second.id(), not(equalTo(first.id())));
+        lb.releaseGroup(first, true, 0.100);
+        lb.releaseGroup(second, true, 0.010);
+
+        // The fast group is preferred even with a few queries in flight
+        for (int i = 0; i < 5; i++) {
+            Group group = lb.takeGroupForQuery(new Query(), null).get();
+            assertThat(group.id(), equalTo(second.id()));
+        }
+        // ... but not when its expected latency becomes higher than that of the slow group
+        int slowGroupSelections = 0;
+        for (int i = 0; i < 100; i++) {
+            if (lb.takeGroupForQuery(new Query(), null).get().id() == first.id())
+                slowGroupSelections++;
+        }
+        assertTrue("The slow group gets some queries", slowGroupSelections > 0);
+        assertTrue("The fast group gets most queries", 100 - slowGroupSelections > 2 * slowGroupSelections);
+    }
+
+    @Test
+    public void requireThatAdaptivePolicyExpectsGroupsWithoutSamplesToHaveAverageSearchTime() {
+        Node n1 = new Node(0, "test-node1", 0, 0);
+        Node n2 = new Node(1, "test-node2", 1, 1);
+        SearchCluster cluster = new SearchCluster(88.0, 99.0, 0, Arrays.asList(n1, n2), null, 1, null);
+        LoadBalancer lb = new LoadBalancer(cluster, LoadBalancer.Policy.ADAPTIVE);
+
+        Group sampled = lb.takeGroupForQuery(new Query(), null).get();
+        Group unsampled = lb.takeGroupForQuery(new Query(), null).get();
+        lb.releaseGroup(sampled, true, 0.100);
+
+        // The group without samples has a query in flight, so the group with samples is expected to be faster
+        assertEquals(sampled.id(), lb.takeGroupForQuery(new Query(), null).get().id());
+        // ... until both have a query in flight, when they are expected to be equally fast and taken in turn
+        assertEquals(unsampled.id(), lb.takeGroupForQuery(new Query(), null).get().id());
+    }
+
+    @Test
+    public void requireThatAdaptivePolicyPenalizesFailures() {
+        Node n1 = new Node(0, "test-node1", 0, 0);
+        SearchCluster cluster = new SearchCluster(88.0, 99.0, 0, Arrays.asList(n1), null, 1, null);
+        LoadBalancer lb = new LoadBalancer(cluster, LoadBalancer.Policy.ADAPTIVE);
+
+        Group group = lb.takeGroupForQuery(new Query(), null).get();
+        lb.releaseGroup(group, true, 0.1);
+        assertEquals(0.1, lb.averageSearchTime(group), 1e-9);
+
+        group = lb.takeGroupForQuery(new Query(), null).get();
+        lb.releaseGroup(group, false, 0.05);
+        assertEquals(0.1 + 0.1 * (0.2 - 0.1), lb.averageSearchTime(group), 1e-9);
+
+        group = lb.takeGroupForQuery(new Query(), null).get();
+        lb.releaseGroup(group); // not timed
+        assertEquals(0.11, lb.averageSearchTime(group), 1e-9);
+    }
+
 }
@@ -44,6 +44,45 @@ public class FederationResultTest {
         assertTimeout(ImmutableSet.of("organic"),      520, 260, 260);
     }
 
+    @Test
+    public void testTimeoutGivenWhenAddingOverridesTargetTimeout() {
+        FederationResult.Builder builder = new FederationResult.Builder();
+        builder.add(organic, resultAfter(300), 200);
+        builder.add(dsp1,    resultAfter(100), 400);
+        FederationResult federationResult = builder.build();
+        federationResult.waitForAll(50, clock);
+        assertTrue(timedOut(federationResult.all().get(0).getOrTimeoutError()));
+        assertTrue( ! timedOut(federationResult.all().get(1).getOrTimeoutError()));
+    }
+
+    @Test
+    public void testLatencyIsRecordedForTargetsCompletingInTime() {
+        FederationResult.Builder builder = new FederationResult.Builder();
+        builder.add(organic, resultAfter(400));
+        builder.add(dsp1,    resultAfter(300));
+        builder.add(dsp2,    resultAfter(100));
+        FederationResult federationResult = builder.build();
+        federationResult.waitForAll(50, clock);
+        assertEquals(400, federationResult.all().get(0).getLatency());
+        assertEquals(-1, federationResult.all().get(1).getLatency());
+        assertEquals(100, federationResult.all().get(2).getLatency());
+    }
+
+    @Test
+    public void testCancellingDropsOnlyLateResults() {
+        FederationResult.Builder builder = new FederationResult.Builder();
+        builder.add(organic, resultAfter(100));
+        builder.add(dsp1,    resultAfter(300));
+        FederationResult federationResult = builder.build();
+        federationResult.waitForAll(50, clock);
+        for (FederationResult.TargetResult targetResult : federationResult.all())
+            targetResult.cancel();
+
+        assertTrue( ! timedOut(federationResult.all().get(0).getOrTimeoutError()));
+        assertTrue( ! federationResult.all().get(1).successfullyCompleted());
+        assertTrue(timedOut(federationResult.all().get(1).getOrTimeoutError()));
+    }
+
     private void assertTimeout(Set<String> expectedTimeoutNames, int ... responseTimes) {
         FederationResult.Builder builder = new FederationResult.Builder();
         builder.add(organic, resultAfter(responseTimes[0]));
@@ -0,0 +1,99 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.federation.test;
+
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Microbenchmark of the time and memory used to federate a query with a number of request parameters
+ * to 10 sources, which each clone the query once.
+ */
+public class FederationSearcherBenchmark {
+
+    private static final int sourceCount = 10;
+
+    private final FederationTester tester = new FederationTester();
+
+    private FederationSearcherBenchmark() {
+        for (int i = 0; i < sourceCount; i++)
+            tester.addSearchChain("source" + i, new CloningSearcher(), new HitSearcher("source" + i));
+    }
+
+    private static Query createQuery() {
+        StringBuilder request = new StringBuilder("?query=foo+bar&hits=20&ranking=benchmark");
+        for (int i = 0; i < 20; i++)
+            request.append("&param").append(i).append("=value").append(i);
+        return new Query(request.toString());
+    }
+
+    private long search(int iterations) {
+        long hits = 0;
+        for (int i = 0; i < iterations; i++)
+            hits += tester.search(createQuery()).getHitCount();
+        return hits;
+    }
+
+    private void benchmark(int iterations) {
+        search(iterations); // warmup
+        System.gc();
+        long allocatedBefore = allocatedBytes();
+        long startTime = System.nanoTime();
+        long hits = search(iterations);
+        long totalTime = System.nanoTime() - startTime;
+        long allocated = allocatedBytes() - allocatedBefore;
+        System.out.printf("Federating to %d sources: %9.3f us and %9d bytes allocated per query (%d hits)\n",
+                          sourceCount, totalTime / 1000.0 / iterations, allocated / iterations, hits);
+    }
+
+    /**
+     * Returns the bytes allocated so far by all live threads, as the sources are searched in other threads,
+     * or 0 if this is not supported by the JVM
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if ( ! (bean instanceof com.sun.management.ThreadMXBean)) return 0;
+        long total = 0;
+        for (long allocated : ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(bean.getAllThreadIds()))
+            total += Math.max(0, allocated);
+        return total;
+    }
+
+    public static void main(String[] args) {
+        FederationSearcherBenchmark benchmark = new FederationSearcherBenchmark();
+        for (int round = 0; round < 3; round++)
+            benchmark.benchmark(20000);
+    }
+
+    /** Forks the query the way searchers which modify it for their source do */
+    private static class CloningSearcher extends Searcher {
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            return execution.search(query.clone());
+        }
+
+    }
+
+    private static class HitSearcher extends Searcher {
+
+        private final String source;
+
+        HitSearcher(String source) {
+            this.source = source;
+        }
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            Result result = new Result(query);
+            result.hits().add(new Hit(source + ":1", 1.0));
+            return result;
+        }
+
+    }
+
+}
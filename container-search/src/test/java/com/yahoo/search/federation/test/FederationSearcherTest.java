@@ -32,6 +32,8 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.*;
@@ -209,6 +211,30 @@ public class FederationSearcherTest {
         assertNotNull(result.hits().getError());
     }
 
+    @Test
+    public void require_that_sources_are_waited_for_only_until_their_timeout_in_the_query() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        FederationTester tester = new FederationTester();
+        tester.addSearchChain("chain1", new AddHitSearcher());
+        tester.addSearchChain("chain2", new BlockingSearcher() {
+            @Override
+            public Result search(Query query, Execution execution) {
+                Result result = super.search(query, execution);
+                interrupted.countDown();
+                return result;
+            }
+        });
+
+        Query query = new Query("?source.chain2.timeout=50ms");
+        query.setTimeout(24 * 60 * 60 * 1000);
+        Result result = tester.search(query);
+        assertThat(getNonErrorHits(result).size(), is(1));
+        assertNotNull(result.hits().getError());
+        assertFalse(result.getCoverage(false).getFull());
+        assertTrue(result.getCoverage(false).isDegradedByTimeout());
+        assertTrue("The late source is cancelled", interrupted.await(60, TimeUnit.SECONDS));
+    }
+
     private Hit getFirstHit(Hit hitGroup) {
         if (hitGroup instanceof HitGroup)
             return ((HitGroup) hitGroup).get(0);
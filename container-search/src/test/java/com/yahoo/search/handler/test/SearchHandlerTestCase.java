@@ -30,7 +30,12 @@ import org.junit.rules.TemporaryFolder;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
@@ -242,6 +247,48 @@ public class SearchHandlerTestCase {
         assertJsonResult("http://localhost?query=abc&format=JsonRenderer", driver);
     }
 
+    @Test
+    public void testStreamedRendering() throws Exception {
+        assertJsonResult("http://localhost?query=abc&presentation.streamed=true", driver);
+        assertXmlResult("http://localhost?query=abc&format=xml&presentation.streamed=true", driver);
+        assertTiledResult("http://localhost?query=abc&format=tiled&presentation.streamed=true", driver);
+    }
+
+    @Test
+    public void testStreamedFillInBatches() throws Exception {
+        List<LogRecord> logged = new CopyOnWriteArrayList<>();
+        java.util.logging.Handler logHandler = new java.util.logging.Handler() {
+            @Override public void publish(LogRecord record) { logged.add(record); }
+            @Override public void flush() { }
+            @Override public void close() { }
+        };
+        Logger fillLog = Logger.getLogger("com.yahoo.search.handler.IncrementalFill");
+        fillLog.addHandler(logHandler);
+        try {
+            FillCountingSearcher.fillCount.set(0);
+            RequestHandlerTestDriver.MockResponseHandler response =
+                    driver.sendRequest("http://localhost?query=abc&searchChain=streamedFill&hits=35&presentation.streamed=true");
+            String rendered = response.readAll();
+            assertEquals(200, response.getStatus());
+
+            assertEquals("Hits are filled in batches of 10, 20 and 5", 3, FillCountingSearcher.fillCount.get());
+            for (int i = 0; i < 35; i++)
+                assertTrue("Hit " + i + " is rendered filled", rendered.contains("\"summary\":\"Summary of hit" + i + "\""));
+            assertTrue("The result is complete", rendered.endsWith("]}}"));
+            assertTrue("The fill error is rendered after the hits",
+                       rendered.indexOf("Could not fill hit12") > rendered.lastIndexOf("Summary of hit"));
+            assertTrue("The fill error is logged",
+                       logged.stream().anyMatch(record -> record.getMessage().contains("Could not fill hit12")));
+
+            String renderedXml = driver.sendRequest("http://localhost?query=abc&searchChain=streamedFill&hits=35&format=xml&presentation.streamed=true").readAll();
+            assertTrue("The fill error is rendered among the hits", renderedXml.contains("Could not fill hit12"));
+            assertTrue("The result is complete", renderedXml.endsWith("</result>\n"));
+        }
+        finally {
+            fillLog.removeHandler(logHandler);
+        }
+    }
+
     @Test
     public void testResultLegacyTiledFormat() throws Exception {
         assertTiledResult("http://localhost?query=abc&format=tiled", driver);
@@ -370,6 +417,35 @@ public class SearchHandlerTestCase {
         }
     }
 
+    /** Referenced from config */
+    public static class FillCountingSearcher extends Searcher {
+
+        static final AtomicInteger fillCount = new AtomicInteger();
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            Result result = new Result(query);
+            for (int i = 0; i < 35; i++) {
+                Hit hit = new Hit("hit" + i, 1.0 - i / 100.0);
+                hit.setFillable();
+                result.hits().add(hit);
+            }
+            result.setTotalHitCount(35);
+            return result;
+        }
+
+        @Override
+        public void fill(Result result, String summaryClass, Execution execution) {
+            fillCount.incrementAndGet();
+            for (Hit hit : result.hits()) {
+                hit.setField("summary", "Summary of " + hit.getId());
+                hit.setFilled(summaryClass);
+            }
+            if (result.hits().get("hit12") != null)
+                result.hits().addError(ErrorMessage.createBackendCommunicationError("Could not fill hit12"));
+        }
+    }
+
     /** Referenced from config */
     public static class ClassLoadingErrorSearcher extends Searcher {
 
@@ -0,0 +1,78 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.query.profile.compiled;
+
+import com.google.common.collect.ImmutableMap;
+import com.yahoo.search.query.profile.DimensionBinding;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests resolving values in dimensional maps, with memoization of the resolved values per context
+ */
+public class DimensionalMapTestCase {
+
+    private static final List<String> dimensions = Arrays.asList("x", "y");
+
+    @Test
+    public void testValuesAreResolvedCorrectlyInAlternatingContexts() {
+        DimensionalMap.Builder<String, String> builder = new DimensionalMap.Builder<>();
+        builder.put("a", binding(null, null), "a-default");
+        builder.put("a", binding("x1", null), "a-x1");
+        builder.put("a", binding("x1", "y1"), "a-x1-y1");
+        builder.put("b", binding("x2", null), "b-x2");
+        builder.put("c", binding(null, null), "c-default");
+        DimensionalMap<String, String> map = builder.build();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("a-default", map.get("a", Collections.emptyMap()));
+            assertEquals("a-default", map.get("a", null));
+            assertEquals("a-x1", map.get("a", context("x1", null)));
+            assertEquals("a-x1", map.get("a", context("x1", "y2")));
+            assertEquals("a-x1-y1", map.get("a", context("x1", "y1")));
+            assertEquals("a-default", map.get("a", ImmutableMap.of("y", "y1")));
+            assertNull(map.get("b", context("x1", "y1")));
+            assertEquals("b-x2", map.get("b", context("x2", "y1")));
+            assertEquals("c-default", map.get("c", context("x2", "y1")));
+            assertNull(map.get("d", context("x2", "y1")));
+        }
+
+        Map<String, String> contextWithOtherValues = ImmutableMap.of("x", "x1", "y", "y1", "z", "z1");
+        assertEquals("Values of dimensions not in the map do not matter",
+                     "a-x1-y1", map.get("a", contextWithOtherValues));
+    }
+
+    @Test
+    public void testTheNumberOfMemoizedContextsIsBounded() {
+        DimensionalMap.Builder<String, String> builder = new DimensionalMap.Builder<>();
+        builder.put("a", binding(null, null), "a-default");
+        builder.put("a", binding("x1", null), "a-x1");
+        DimensionalMap<String, String> map = builder.build();
+
+        for (int i = 0; i < DimensionalMap.maxCachedContexts * 3; i++) {
+            assertEquals("a-default", map.get("a", context("x" + (i + 2), null)));
+            assertEquals("a-x1", map.get("a", context("x1", "y" + i)));
+            assertTrue(map.cachedContextCount() <= DimensionalMap.maxCachedContexts);
+        }
+    }
+
+    private static DimensionBinding binding(String x, String y) {
+        return DimensionBinding.createFrom(dimensions, context(x, y));
+    }
+
+    private static Map<String, String> context(String x, String y) {
+        Map<String, String> context = new HashMap<>();
+        if (x != null) context.put("x", x);
+        if (y != null) context.put("y", y);
+        return context;
+    }
+
+}
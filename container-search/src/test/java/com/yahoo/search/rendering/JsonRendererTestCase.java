@@ -31,6 +31,7 @@ import com.yahoo.search.grouping.result.GroupList;
 import com.yahoo.search.grouping.result.RootGroup;
 import com.yahoo.search.grouping.result.StringId;
 import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.DefaultErrorHit;
 import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.search.result.Hit;
 import com.yahoo.search.result.HitGroup;
@@ -739,6 +740,45 @@ public class JsonRendererTestCase {
         assertEqualJson(expected, summary);
     }
 
+    @Test
+    public void testErrorsAddedWhileRendering() throws InterruptedException, ExecutionException, IOException {
+        String expected = "{\n"
+                + "    \"root\": {\n"
+                + "        \"children\": [\n"
+                + "            {\n"
+                + "                \"id\": \"hit1\",\n"
+                + "                \"relevance\": 1.0\n"
+                + "            }\n"
+                + "        ],\n"
+                + "        \"errors\": [\n"
+                + "            {\n"
+                + "                \"code\": 1234,\n"
+                + "                \"message\": \"fill failed\",\n"
+                + "                \"source\": \"fill\",\n"
+                + "                \"summary\": \"hello\"\n"
+                + "            }\n"
+                + "        ],\n"
+                + "        \"fields\": {\n"
+                + "            \"totalCount\": 0\n"
+                + "        },\n"
+                + "        \"id\": \"toplevel\",\n"
+                + "        \"relevance\": 1.0\n"
+                + "    }\n"
+                + "}\n";
+        Result r = newEmptyResult();
+        HitGroup hits = HitGroup.createAsync("toplevel");
+        r.setHits(hits);
+        ByteArrayOutputStream bs = new ByteArrayOutputStream();
+        ListenableFuture<Boolean> f = renderer.render(bs, r, new Execution(Execution.Context.createContextStub()), null);
+        hits.incoming().add(new Hit("hit1"));
+        hits.incoming().add(new DefaultErrorHit("fill", new ErrorMessage(1234, "hello", "fill failed")));
+        hits.incoming().markComplete();
+        assertTrue(f.get());
+        String summary = Utf8.toString(bs.toByteArray());
+        assertEqualJson(expected, summary);
+        assertTrue("Errors are rendered after the hits", summary.indexOf("\"errors\"") > summary.indexOf("\"hit1\""));
+    }
+
     @Test
     public void testContentHeader() {
         assertEquals("utf-8", renderer.getEncoding());
@@ -957,6 +997,70 @@ public class JsonRendererTestCase {
         assertEqualJson(expected, summary);
     }
 
+    @Test
+    public void testStructuredData() throws InterruptedException, ExecutionException, IOException, JSONException {
+        String expected = "{\n"
+                + "    \"root\": {\n"
+                + "        \"children\": [\n"
+                + "            {\n"
+                + "                \"fields\": {\n"
+                + "                    \"map\": {\n"
+                + "                        \"k1\": \"v1\",\n"
+                + "                        \"k2\": { \"nested\": [1, 2.5] }\n"
+                + "                    },\n"
+                + "                    \"struct\": {\n"
+                + "                        \"bool\": true,\n"
+                + "                        \"data\": \"0x00FF7F\",\n"
+                + "                        \"empty\": null,\n"
+                + "                        \"nan\": null,\n"
+                + "                        \"strings\": [\"bl\u00e5b\u00e6r\", \"\\\"quoted\\\"\"],\n"
+                + "                        \"pairs\": [{ \"key\": \"k\", \"value\": 3 }]\n"
+                + "                    }\n"
+                + "                },\n"
+                + "                \"id\": \"structured data\",\n"
+                + "                \"relevance\": 1.0\n"
+                + "            }\n"
+                + "        ],\n"
+                + "        \"fields\": {\n"
+                + "            \"totalCount\": 0\n"
+                + "        },\n"
+                + "        \"id\": \"toplevel\",\n"
+                + "        \"relevance\": 1.0\n"
+                + "    }\n"
+                + "}\n";
+        Slime mapSlime = new Slime();
+        Cursor map = mapSlime.setArray();
+        Cursor entry = map.addObject();
+        entry.setString("key", "k1");
+        entry.setString("value", "v1");
+        entry = map.addObject();
+        entry.setString("key", "k2");
+        Cursor nested = entry.setObject("value").setArray("nested");
+        nested.addLong(1);
+        nested.addDouble(2.5);
+
+        Slime structSlime = new Slime();
+        Cursor struct = structSlime.setObject();
+        struct.setBool("bool", true);
+        struct.setData("data", new byte[] { 0, (byte)0xff, 0x7f });
+        struct.setNix("empty");
+        struct.setDouble("nan", Double.NaN);
+        Cursor strings = struct.setArray("strings");
+        strings.addString("bl\u00e5b\u00e6r");
+        strings.addString("\"quoted\"");
+        Cursor pair = struct.setArray("pairs").addObject(); // only arrays at the top level are rendered as maps
+        pair.setString("key", "k");
+        pair.setLong("value", 3);
+
+        Result r = newEmptyResult();
+        Hit h = new Hit("structured data");
+        h.setField("map", new StructuredData(new SlimeAdapter(mapSlime.get())));
+        h.setField("struct", new StructuredData(new SlimeAdapter(structSlime.get())));
+        r.hits().add(h);
+        String summary = render(r);
+        assertEqualJson(expected, summary);
+    }
+
     @Test
     public final void testFieldValueInHit() throws IOException, InterruptedException, ExecutionException, JSONException {
         String expected = "{\n"
@@ -0,0 +1,121 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.searchchain.test;
+
+import com.yahoo.component.ComponentId;
+import com.yahoo.component.chain.Chain;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.config.AsyncExecutionConfig;
+import com.yahoo.search.searchchain.AsyncExecution;
+import com.yahoo.search.searchchain.AsyncExecutor;
+import com.yahoo.search.searchchain.Execution;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the executor running asynchronous executions
+ */
+public class AsyncExecutorTestCase {
+
+    @Test
+    public void testTasksAreRunInCallerWhenBoundedExecutorIsExhausted() throws InterruptedException {
+        MapMetric metric = new MapMetric();
+        AsyncExecutor executor = new AsyncExecutor(boundedConfig(1, 1), metric);
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch started = new CountDownLatch(1);
+            executor.execute(() -> { started.countDown(); await(release); });
+            assertTrue(started.await(60, TimeUnit.SECONDS));
+            executor.execute(() -> {}); // queued
+
+            AtomicReference<Thread> runner = new AtomicReference<>();
+            executor.execute(() -> runner.set(Thread.currentThread()));
+            assertSame(Thread.currentThread(), runner.get());
+            assertEquals(1, executor.getCallerRuns());
+            assertEquals(1, executor.getQueueSize());
+            assertEquals(1, executor.getPoolSize());
+
+            release.countDown();
+        }
+        finally {
+            executor.close();
+        }
+        assertEquals(1L, metric.values.get("search_async_caller_runs").longValue());
+    }
+
+    @Test
+    public void testTasksAreRunInCallerAfterClose() {
+        AsyncExecutor executor = new AsyncExecutor(boundedConfig(1, 1), new MapMetric());
+        executor.close();
+        AtomicReference<Thread> runner = new AtomicReference<>();
+        executor.execute(() -> runner.set(Thread.currentThread()));
+        assertSame(Thread.currentThread(), runner.get());
+    }
+
+    @Test
+    public void testAsyncExecutionUsesTheExecutorOfTheContext() {
+        AsyncExecutor executor = new AsyncExecutor(boundedConfig(2, 10), new MapMetric());
+        try {
+            AtomicReference<String> searchThread = new AtomicReference<>();
+            Chain<Searcher> chain = new Chain<>(new ComponentId("chain"), new Searcher() {
+                @Override
+                public Result search(Query query, Execution execution) {
+                    searchThread.set(Thread.currentThread().getName());
+                    return execution.search(query);
+                }
+            });
+            Execution.Context context = Execution.Context.createContextStub();
+            context.setExecutor(executor);
+
+            Result result = new AsyncExecution(chain, context).search(new Query()).get(60, TimeUnit.SECONDS);
+            assertEquals(null, result.hits().getError());
+            assertTrue(searchThread.get().startsWith("search-bounded"));
+        }
+        finally {
+            executor.close();
+        }
+    }
+
+    private static AsyncExecutionConfig boundedConfig(int maxThreads, int queueSize) {
+        return new AsyncExecutionConfig(new AsyncExecutionConfig.Builder().mode(AsyncExecutionConfig.Mode.BOUNDED)
+                                                                          .maxThreads(maxThreads)
+                                                                          .queueSize(queueSize));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(60, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class MapMetric implements Metric {
+
+        final Map<String, Number> values = new ConcurrentHashMap<>();
+
+        @Override
+        public void set(String key, Number value, Context context) { values.put(key, value); }
+
+        @Override
+        public void add(String key, Number value, Context context) {
+            values.merge(key, value, (a, b) -> a.doubleValue() + b.doubleValue());
+        }
+
+        @Override
+        public Context createContext(Map<String, ?> dimensions) { return null; }
+
+    }
+
+}
@@ -0,0 +1,143 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.statistics;
+
+import com.yahoo.component.ComponentId;
+import com.yahoo.component.chain.Chain;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.search.statistics.TimeTracker.Activity;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SearcherProfilerTestCase {
+
+    @Test
+    public void testSelfAndTotalTimeIsRecordedPerSearcher() {
+        CountingMetric metric = new CountingMetric();
+        SearcherProfiler profiler = new SearcherProfiler(metric, 1);
+        Chain<Searcher> chain = new Chain<>(new ComponentId("test"), new SleepingSearcher("outer", 20),
+                                                                       new SleepingSearcher("inner", 10));
+        Execution.Context context = Execution.Context.createContextStub();
+        context.setProfiler(profiler);
+
+        Execution execution = new Execution(chain, context);
+        Result result = execution.search(new Query());
+        execution.fill(result);
+
+        SearcherProfiler.ComponentProfile outer = profiler.get("test", "outer", Activity.SEARCH);
+        SearcherProfiler.ComponentProfile inner = profiler.get("test", "inner", Activity.SEARCH);
+        assertEquals(1, outer.selfTime().count());
+        assertEquals(1, inner.totalTime().count());
+        assertTrue(outer.selfTime().mean() >= 20);
+        assertTrue(inner.selfTime().mean() >= 10);
+        assertEquals(inner.totalTime().sum(), inner.selfTime().sum());
+        assertEquals(outer.totalTime().sum(), outer.selfTime().sum() + inner.totalTime().sum());
+
+        assertEquals(1, profiler.get("test", "outer", Activity.FILL).totalTime().count());
+        assertEquals(1, profiler.get("test", "inner", Activity.FILL).totalTime().count());
+
+        List<SearcherProfiler.ComponentProfile> hottest = profiler.hottest();
+        assertEquals(4, hottest.size());
+        assertEquals("outer", hottest.get(0).component());
+        assertEquals("inner", hottest.get(1).component());
+
+        assertEquals(8, metric.sets.get());
+    }
+
+    @Test
+    public void testExecutionsAreSampled() {
+        Chain<Searcher> chain = new Chain<>(new ComponentId("test"), new SleepingSearcher("searcher", 0));
+        assertNull(new SearcherProfiler(new CountingMetric(), 0).profile(chain, 0));
+
+        SearcherProfiler profiler = new SearcherProfiler(new CountingMetric(), 10);
+        Execution.Context context = Execution.Context.createContextStub();
+        context.setProfiler(profiler);
+        for (int i = 0; i < 10000; i++)
+            new Execution(chain, context).search(new Query());
+        long count = profiler.get("test", "searcher", Activity.SEARCH).selfTime().count();
+        assertTrue("About one in 10 executions are profiled: " + count, count > 500 && count < 1500);
+    }
+
+    @Test
+    public void testHistogram() {
+        SearcherProfiler.Histogram histogram = new SearcherProfiler.Histogram();
+        assertEquals(0, histogram.percentile(99), 0);
+        for (int i = 1; i <= 100; i++)
+            histogram.add(i * 1_000_000L);
+        assertEquals(100, histogram.count());
+        assertEquals(50.5, histogram.mean(), 1e-9);
+        assertWithin(50, histogram.percentile(50));
+        assertWithin(90, histogram.percentile(90));
+        assertWithin(99, histogram.percentile(99));
+        assertWithin(100, histogram.percentile(100));
+        assertWithin(1, histogram.percentile(0));
+    }
+
+    /** Asserts that the actual value is an upper bound within 25% of the expected value */
+    private static void assertWithin(double expected, double actual) {
+        assertTrue(expected + " <= " + actual, expected <= actual);
+        assertTrue(actual + " <= 1.25 * " + expected, actual <= 1.25 * expected);
+    }
+
+    private static class SleepingSearcher extends Searcher {
+
+        private final long sleepMillis;
+
+        SleepingSearcher(String id, long sleepMillis) {
+            super(new ComponentId(id));
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            sleep();
+            Result result = execution.search(query);
+            Hit hit = new Hit(getId().stringValue());
+            hit.setFillable();
+            result.hits().add(hit);
+            return result;
+        }
+
+        @Override
+        public void fill(Result result, String summaryClass, Execution execution) {
+            execution.fill(result, summaryClass);
+        }
+
+        private void sleep() {
+            if (sleepMillis == 0) return;
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+    }
+
+    private static class CountingMetric implements Metric {
+
+        final AtomicInteger sets = new AtomicInteger();
+
+        @Override
+        public void set(String key, Number val, Context ctx) { sets.incrementAndGet(); }
+
+        @Override
+        public void add(String key, Number val, Context ctx) { }
+
+        @Override
+        public Context createContext(Map<String, ?> properties) { return null; }
+
+    }
+
+}
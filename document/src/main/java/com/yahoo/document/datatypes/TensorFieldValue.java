@@ -67,11 +67,23 @@ public class TensorFieldValue extends FieldValue {
         }
     }
 
+    /**
+     * Assigns the given tensor to this. A tensor with a smaller cell value type than the type of this
+     * is converted to the value type of this, such that the value type of the tensor is always that of the field.
+     *
+     * @throws IllegalArgumentException if the tensor is not assignable to the type of this
+     */
     public void assignTensor(Optional<Tensor> tensor) {
         if (tensor.isPresent() && ! tensor.get().type().isAssignableTo(dataType.getTensorType()))
             throw new IllegalArgumentException("Type mismatch: Cannot assign tensor of type " + tensor.get().type() +
                                                " to field of type " + dataType.getTensorType());
-        this.tensor = tensor;
+        this.tensor = tensor.map(this::withValueTypeOfThis);
+    }
+
+    private Tensor withValueTypeOfThis(Tensor tensor) {
+        TensorType.Value valueType = dataType.getTensorType().valueType();
+        if (tensor.type().valueType() == valueType) return tensor;
+        return tensor.withType(new TensorType.Builder(valueType, tensor.type().dimensions()).build());
     }
 
     @Override
@@ -63,19 +63,15 @@ public class JsonReader {
     public DocumentOperation readSingleDocument(DocumentParser.SupportedOperation operationType, String docIdString) {
         DocumentId docId = new DocumentId(docIdString);
         final DocumentParseInfo documentParseInfo;
+        StreamingFieldsReader fieldsReader = new StreamingFieldsReader();
         try {
-            DocumentParser documentParser = new DocumentParser(parser);
-            documentParseInfo = documentParser.parse(Optional.of(docId)).get();
+            DocumentParser documentParser = new DocumentParser(parser, fieldsReader);
+            documentParseInfo = documentParser.parse(docId, operationType);
         } catch (IOException e) {
             state = END_OF_FEED;
             throw new RuntimeException(e);
         }
-        documentParseInfo.operationType = operationType;
-        VespaJsonDocumentReader vespaJsonDocumentReader = new VespaJsonDocumentReader();
-        DocumentOperation operation = vespaJsonDocumentReader.createDocumentOperation(
-                getDocumentTypeFromString(documentParseInfo.documentId.getDocType(), typeManager), documentParseInfo);
-        operation.setCondition(TestAndSetCondition.fromConditionString(documentParseInfo.condition));
-        return operation;
+        return createDocumentOperation(documentParseInfo, fieldsReader);
     }
 
     /** Returns the next document operation, or null if we have reached the end */
@@ -92,8 +88,10 @@ public class JsonReader {
                 break;
         }
         Optional<DocumentParseInfo> documentParseInfo;
+        StreamingFieldsReader fieldsReader = new StreamingFieldsReader();
         try {
-            documentParseInfo = parseDocument();
+            DocumentParser documentParser = new DocumentParser(parser, fieldsReader);
+            documentParseInfo = documentParser.parse(Optional.empty());
         } catch (IOException r) {
             // Jackson is not able to recover from structural parse errors
             state = END_OF_FEED;
@@ -103,14 +101,42 @@ public class JsonReader {
             state = END_OF_FEED;
             return null;
         }
-        VespaJsonDocumentReader vespaJsonDocumentReader = new VespaJsonDocumentReader();
-        DocumentOperation operation = vespaJsonDocumentReader.createDocumentOperation(
-                getDocumentTypeFromString(documentParseInfo.get().documentId.getDocType(), typeManager),
-                documentParseInfo.get());
-        operation.setCondition(TestAndSetCondition.fromConditionString(documentParseInfo.get().condition));
+        return createDocumentOperation(documentParseInfo.get(), fieldsReader);
+    }
+
+    /**
+     * Returns the operation read by the given fields reader if its fields were streamed,
+     * and reads it from the buffered fields of the given parse info otherwise.
+     */
+    private DocumentOperation createDocumentOperation(DocumentParseInfo documentParseInfo,
+                                                      StreamingFieldsReader fieldsReader) {
+        DocumentOperation operation = fieldsReader.operation;
+        if (operation == null)
+            operation = fieldsReader.documentReader.readDocumentOperation(
+                    getDocumentTypeFromString(documentParseInfo.documentId.getDocType(), typeManager),
+                    documentParseInfo);
+        fieldsReader.documentReader.setCreateIfNonExistent(operation, documentParseInfo);
+        operation.setCondition(TestAndSetCondition.fromConditionString(documentParseInfo.condition));
         return operation;
     }
 
+    /** Reads the fields of an operation while they are parsed, when the operation type and document id precede them */
+    private class StreamingFieldsReader implements DocumentParser.FieldsReader {
+
+        private final VespaJsonDocumentReader documentReader = new VespaJsonDocumentReader();
+        private DocumentOperation operation = null;
+
+        @Override
+        public void readFields(DocumentParseInfo documentParseInfo) {
+            if (operation != null)
+                throw new IllegalArgumentException("Operation on document " + documentParseInfo.documentId +
+                                                   " has more than one 'fields' map");
+            operation = documentReader.readDocumentOperation(
+                    getDocumentTypeFromString(documentParseInfo.documentId.getDocType(), typeManager),
+                    documentParseInfo);
+        }
+
+    }
 
     public DocumentType readDocumentType(DocumentId docId) {
         return getDocumentTypeFromString(docId.getDocType(), typeManager);
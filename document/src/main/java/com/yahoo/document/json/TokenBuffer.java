@@ -13,6 +13,9 @@ import com.google.common.base.Preconditions;
 /**
  * Helper class to enable lookahead in the token stream.
  *
+ * A token buffer either holds all the tokens of a JSON struct, or streams the tokens of the JSON struct
+ * a parser is positioned at, only buffering tokens when they are needed for lookahead.
+ *
  * @author Steinar Knutsen
  */
 public class TokenBuffer {
@@ -32,21 +35,46 @@ public class TokenBuffer {
     private Deque<Token> buffer;
     private int nesting = 0;
 
+    /**
+     * The parser tokens are streamed from, or null if all tokens are in the buffer.
+     * When streaming, the current token is the first buffered one if there are any, and the
+     * current token of the parser otherwise. The parser is always positioned at the last buffered token.
+     */
+    private final JsonParser source;
+
+    /** Whether all tokens of the struct have been streamed from the source */
+    private boolean sourceExhausted = false;
+
     public TokenBuffer() {
         this(new ArrayDeque<>());
     }
 
     private TokenBuffer(Deque<Token> buffer) {
         this.buffer = buffer;
+        this.source = null;
         if (buffer.size() > 0) {
             updateNesting(buffer.peekFirst().token);
         }
     }
 
+    /**
+     * Creates a token buffer which streams the JSON struct the given parser is positioned at.
+     * The parser is left positioned at the end of the struct when all its tokens have been consumed.
+     */
+    public TokenBuffer(JsonParser source) {
+        this.buffer = new ArrayDeque<>();
+        this.source = source;
+        Preconditions.checkArgument(source.currentToken() != null && source.currentToken().isStructStart(),
+                                    "Expected start of JSON struct, got %s.", source.currentToken());
+        updateNesting(source.currentToken());
+    }
+
     /** Returns whether any tokens are available in this */
     public boolean isEmpty() { return size() == 0; }
 
     public JsonToken next() {
+        if (source != null) return nextStreamed();
+
         buffer.removeFirst();
         Token t = buffer.peekFirst();
         if (t == null) {
@@ -56,8 +84,37 @@ public class TokenBuffer {
         return t.token;
     }
 
+    private JsonToken nextStreamed() {
+        if ( ! buffer.isEmpty()) {
+            buffer.removeFirst();
+            Token t = buffer.peekFirst();
+            if (t != null) {
+                updateNesting(t.token);
+                return t.token;
+            }
+        }
+        if (sourceExhausted || nesting == 0) {
+            sourceExhausted = true;
+            return null;
+        }
+        JsonToken t = nextValue(source);
+        updateNesting(t);
+        return t;
+    }
+
+    /** Consumes the remaining tokens of this */
+    public void skipToEnd() {
+        while ( ! isEmpty())
+            next();
+    }
+
+    private boolean streamsCurrent() {
+        return source != null && buffer.isEmpty() && ! sourceExhausted;
+    }
+
     /** Returns the current token without changing position, or null if none */
     public JsonToken currentToken() {
+        if (streamsCurrent()) return source.currentToken();
         Token token = buffer.peekFirst();
         if (token == null) return null;
         return token.token;
@@ -65,6 +122,7 @@ public class TokenBuffer {
 
     /** Returns the current token name without changing position, or null if none */
     public String currentName() {
+        if (streamsCurrent()) return currentName(source);
         Token token = buffer.peekFirst();
         if (token == null) return null;
         return token.name;
@@ -72,12 +130,15 @@ public class TokenBuffer {
 
     /** Returns the current token text without changing position, or null if none */
     public String currentText() {
+        if (streamsCurrent()) return currentText(source);
         Token token = buffer.peekFirst();
         if (token == null) return null;
         return token.text;
     }
 
+    /** Returns the number of tokens available in this without reading further from the source, if any */
     public int size() {
+        if (streamsCurrent()) return 1;
         return buffer.size();
     }
 
@@ -125,8 +186,34 @@ public class TokenBuffer {
     }
 
     private void addFromParser(JsonToken t, JsonParser tokens) {
+        add(t, currentName(tokens), currentText(tokens));
+    }
+
+    /** Moves the current token of the source into the buffer, such that lookahead can continue from it */
+    private void bufferCurrentFromSource() {
+        if (streamsCurrent())
+            addFromParser(source.currentToken(), source);
+    }
+
+    /** Reads the next token from the source into the buffer, or returns null if it is at the end of the struct */
+    private Token bufferNextFromSource(int localNesting) {
+        if (source == null || sourceExhausted || localNesting == 0) return null;
+        addFromParser(nextValue(source), source);
+        return buffer.peekLast();
+    }
+
+    private static String currentName(JsonParser tokens) {
+        try {
+            return tokens.getCurrentName();
+        } catch (IOException e) {
+            // TODO something sane
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String currentText(JsonParser tokens) {
         try {
-            add(t, tokens.getCurrentName(), tokens.getText());
+            return tokens.getText();
         } catch (IOException e) {
             // TODO something sane
             throw new RuntimeException(e);
@@ -170,6 +257,7 @@ public class TokenBuffer {
     public TokenBuffer prefetchCurrentElement() {
         Deque<Token> copy = new ArrayDeque<>();
 
+        bufferCurrentElementFromSource();
         if (currentToken().isScalarValue()) {
             copy.add(buffer.peekFirst());
         } else {
@@ -186,7 +274,25 @@ public class TokenBuffer {
         return new TokenBuffer(copy);
     }
 
+    private void bufferCurrentElementFromSource() {
+        if (source == null) return;
+        bufferCurrentFromSource();
+        if (buffer.isEmpty() || buffer.peekFirst().token.isScalarValue()) return;
+
+        int localNesting = nesting();
+        int nestingBarrier = localNesting;
+        for (Iterator<Token> i = skipFirst(buffer.iterator()); i.hasNext(); ) {
+            localNesting += nestingOffset(i.next().token);
+            if (localNesting < nestingBarrier) return;
+        }
+        for (Token t = bufferNextFromSource(localNesting); t != null; t = bufferNextFromSource(localNesting)) {
+            localNesting += nestingOffset(t.token);
+            if (localNesting < nestingBarrier) return;
+        }
+    }
+
     public Token prefetchScalar(String name) {
+        bufferCurrentFromSource();
         int localNesting = nesting();
         int nestingBarrier = localNesting;
         Token toReturn = null;
@@ -195,22 +301,35 @@ public class TokenBuffer {
         if (name.equals(currentName()) && currentToken().isScalarValue()) {
             toReturn = buffer.peekFirst();
         } else {
-            i = buffer.iterator();
-            i.next(); // just ignore the first value, as we know it's not what
-                      // we're looking for, and it's nesting effect is already
-                      // included
+            i = skipFirst(buffer.iterator());
             while (i.hasNext()) {
                 Token t = i.next();
                 if (localNesting == nestingBarrier && name.equals(t.name) && t.token.isScalarValue()) {
-                    toReturn = t;
-                    break;
+                    return t;
                 }
                 localNesting += nestingOffset(t.token);
                 if (localNesting < nestingBarrier) {
-                    break;
+                    return null;
+                }
+            }
+            // continue the lookahead in the source when streaming
+            for (Token t = bufferNextFromSource(localNesting); t != null; t = bufferNextFromSource(localNesting)) {
+                if (localNesting == nestingBarrier && name.equals(t.name) && t.token.isScalarValue()) {
+                    return t;
+                }
+                localNesting += nestingOffset(t.token);
+                if (localNesting < nestingBarrier) {
+                    return null;
                 }
             }
         }
         return toReturn;
     }
+
+    private static Iterator<Token> skipFirst(Iterator<Token> i) {
+        i.next(); // just ignore the first value, as we know it's not what
+                  // we're looking for, and it's nesting effect is already
+                  // included
+        return i;
+    }
 }
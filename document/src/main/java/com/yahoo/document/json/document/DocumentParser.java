@@ -4,6 +4,7 @@ package com.yahoo.document.json.document;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.yahoo.document.DocumentId;
+import com.yahoo.document.json.TokenBuffer;
 import com.yahoo.document.json.readers.DocumentParseInfo;
 
 import java.io.IOException;
@@ -19,6 +20,19 @@ public class DocumentParser {
     public enum SupportedOperation {
         PUT, UPDATE, REMOVE
     }
+
+    /** Reads the fields of a document operation directly from the parser */
+    public interface FieldsReader {
+
+        /**
+         * Reads the fields of the document operation given by the parse info from its fields buffer,
+         * which streams the "fields" object from the parser. Options following the fields are not yet
+         * set in the parse info when this is called.
+         */
+        void readFields(DocumentParseInfo documentParseInfo);
+
+    }
+
     private static final String UPDATE = "update";
     private static final String PUT = "put";
     private static final String ID = "id";
@@ -27,10 +41,22 @@ public class DocumentParser {
     public static final String FIELDS = "fields";
     public static final String REMOVE = "remove";
     private final JsonParser parser;
+    private final FieldsReader fieldsReader;
     private  long indentLevel;
+    private RuntimeException fieldsFailure;
 
+    /** Creates a parser which buffers the fields of the document operations it parses */
     public DocumentParser(JsonParser parser) {
+        this(parser, null);
+    }
+
+    /**
+     * Creates a parser which passes the fields of put and update operations to the given fields reader
+     * when the document id is known before the fields, and buffers the fields otherwise.
+     */
+    public DocumentParser(JsonParser parser, FieldsReader fieldsReader) {
         this.parser = parser;
+        this.fieldsReader = fieldsReader;
     }
 
     /**
@@ -38,14 +64,34 @@ public class DocumentParser {
      * Returns empty is we have reached the end of the stream.
      */
     public Optional<DocumentParseInfo> parse(Optional<DocumentId> documentIdArg) throws IOException {
-        indentLevel = 0;
         DocumentParseInfo documentParseInfo = new DocumentParseInfo();
         documentIdArg.ifPresent(documentId -> documentParseInfo.documentId = documentId);
+        return parse(documentParseInfo, documentIdArg.isPresent());
+    }
+
+    /**
+     * Parses a single document operation with an externally given document id and operation type, and returns it.
+     */
+    public DocumentParseInfo parse(DocumentId documentId, SupportedOperation operationType) throws IOException {
+        DocumentParseInfo documentParseInfo = new DocumentParseInfo();
+        documentParseInfo.documentId = documentId;
+        documentParseInfo.operationType = operationType;
+        return parse(documentParseInfo, true).get();
+    }
+
+    private Optional<DocumentParseInfo> parse(DocumentParseInfo documentParseInfo,
+                                              boolean docIdAndOperationIsSetExternally) throws IOException {
+        indentLevel = 0;
+        fieldsFailure = null;
         boolean foundItems = false;
         do {
-            foundItems |= parseOneItem(documentParseInfo, documentIdArg.isPresent() /* doc id set externally */);
+            foundItems |= parseOneItem(documentParseInfo, docIdAndOperationIsSetExternally);
         } while (indentLevel > 0L);
 
+        // the rest of the operation is consumed before failing, such that the next operation can be parsed
+        if (fieldsFailure != null)
+            throw fieldsFailure;
+
         if (documentParseInfo.documentId == null) {
             if (foundItems)
                 throw new IllegalArgumentException("Missing a document operation ('put', 'update' or 'remove')");
@@ -126,7 +172,10 @@ public class DocumentParser {
             JsonToken currentToken = parser.getCurrentToken();
             // "fields" opens a dictionary and is therefore on level two which might be surprising.
             if (currentToken == JsonToken.START_OBJECT && FIELDS.equals(parser.getCurrentName())) {
-                documentParseInfo.fieldsBuffer.bufferObject(currentToken, parser);
+                if (canStreamFields(documentParseInfo))
+                    streamFields(documentParseInfo);
+                else
+                    documentParseInfo.fieldsBuffer.bufferObject(currentToken, parser);
                 processIndent();
             }
         } catch (IOException e) {
@@ -134,6 +183,26 @@ public class DocumentParser {
         }
     }
 
+    private boolean canStreamFields(DocumentParseInfo documentParseInfo) {
+        return fieldsReader != null
+               && documentParseInfo.documentId != null
+               && (documentParseInfo.operationType == SupportedOperation.PUT ||
+                   documentParseInfo.operationType == SupportedOperation.UPDATE)
+               && documentParseInfo.fieldsBuffer.isEmpty();
+    }
+
+    private void streamFields(DocumentParseInfo documentParseInfo) {
+        TokenBuffer fieldsBuffer = new TokenBuffer(parser);
+        documentParseInfo.fieldsBuffer = fieldsBuffer;
+        try {
+            fieldsReader.readFields(documentParseInfo);
+        } catch (RuntimeException e) {
+            if (fieldsFailure == null)
+                fieldsFailure = e;
+        }
+        fieldsBuffer.skipToEnd(); // leaves the parser at the end of the fields object
+    }
+
     private static SupportedOperation operationNameToOperationType(String operationName) {
         switch (operationName) {
             case PUT:
@@ -39,6 +39,16 @@ public class VespaJsonDocumentReader {
     private static final String UPDATE_ADD = "add";
 
     public DocumentOperation createDocumentOperation(DocumentType documentType, DocumentParseInfo documentParseInfo) {
+        DocumentOperation documentOperation = readDocumentOperation(documentType, documentParseInfo);
+        setCreateIfNonExistent(documentOperation, documentParseInfo);
+        return documentOperation;
+    }
+
+    /**
+     * Creates a document operation and reads its fields from the fields buffer of the given parse info,
+     * without applying the options of the operation, which may not have been parsed yet if the fields are streamed.
+     */
+    public DocumentOperation readDocumentOperation(DocumentType documentType, DocumentParseInfo documentParseInfo) {
         final DocumentOperation documentOperation;
         try {
             switch (documentParseInfo.operationType) {
@@ -61,6 +71,11 @@ public class VespaJsonDocumentReader {
         } catch (JsonReaderException e) {
             throw JsonReaderException.addDocId(e, documentParseInfo.documentId);
         }
+        return documentOperation;
+    }
+
+    /** Sets the create-if-non-existent flag of the given operation if it is present in the given parse info */
+    public void setCreateIfNonExistent(DocumentOperation documentOperation, DocumentParseInfo documentParseInfo) {
         if (documentParseInfo.create.isPresent()) {
             if (!(documentOperation instanceof DocumentUpdate)) {
                 throw new RuntimeException("Could not set create flag on non update operation.");
@@ -68,7 +83,6 @@ public class VespaJsonDocumentReader {
             DocumentUpdate update = (DocumentUpdate) documentOperation;
             update.setCreateIfNonExistent(documentParseInfo.create.get());
         }
-        return documentOperation;
     }
 
     // Exposed for unit testing...
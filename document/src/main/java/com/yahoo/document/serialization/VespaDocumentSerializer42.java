@@ -45,6 +45,7 @@ import com.yahoo.document.update.FieldUpdate;
 import com.yahoo.document.update.MapValueUpdate;
 import com.yahoo.document.update.RemoveValueUpdate;
 import com.yahoo.document.update.ValueUpdate;
+import com.yahoo.io.BufferPool;
 import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.tensor.serialization.TypedBinaryFormat;
 import com.yahoo.vespa.objects.BufferSerializer;
@@ -71,6 +72,13 @@ import static com.yahoo.text.Utf8.calculateBytePositions;
 // When removing: Move content into VespaDocumentSerializerHead
 public class VespaDocumentSerializer42 extends BufferSerializer implements DocumentSerializer {
 
+    /**
+     * Buffers for serializing struct fields, reused to avoid allocating new buffers for each struct.
+     * Only buffers up to 64 kB are kept, 16 of each size, so this retains at most about 2 MB.
+     * Buffers for larger structs are allocated for each struct.
+     */
+    private static final BufferPool structBuffers = new BufferPool(false, 1 << 16, 16);
+
     private boolean headerOnly;
     private int spanNodeCounter = -1;
     private int[] bytePositions;
@@ -337,57 +345,61 @@ public class VespaDocumentSerializer42 extends BufferSerializer implements Docum
         GrowableByteBuffer bigBuffer = buf;
 
         //create a new buffer and serialize into that for a while:
-        GrowableByteBuffer buffer = new GrowableByteBuffer(4096, 2.0f);
+        GrowableByteBuffer buffer = new GrowableByteBuffer(structBuffers, 4096);
         buf = buffer;
+        try {
+            List<Integer> fieldIds = new LinkedList<>();
+            List<java.lang.Integer> fieldLengths = new LinkedList<>();
 
-        List<Integer> fieldIds = new LinkedList<>();
-        List<java.lang.Integer> fieldLengths = new LinkedList<>();
+            for (Map.Entry<Field, FieldValue> value : s.getFields()) {
 
-        for (Map.Entry<Field, FieldValue> value : s.getFields()) {
+                int startPos = buffer.position();
+                value.getValue().serialize(value.getKey(), this);
 
-            int startPos = buffer.position();
-            value.getValue().serialize(value.getKey(), this);
+                fieldLengths.add(buffer.position() - startPos);
+                fieldIds.add(value.getKey().getId(s.getVersion()));
+            }
 
-            fieldLengths.add(buffer.position() - startPos);
-            fieldIds.add(value.getKey().getId(s.getVersion()));
-        }
+            // Switch buffers again:
+            buffer.flip();
+            buf = bigBuffer;
 
-        // Switch buffers again:
-        buffer.flip();
-        buf = bigBuffer;
+            int uncompressedSize = buffer.remaining();
+            Compressor.Compression compression =
+                s.getDataType().getCompressor().compress(buffer.getByteBuffer().array(), buffer.remaining());
 
-        int uncompressedSize = buffer.remaining();
-        Compressor.Compression compression =
-            s.getDataType().getCompressor().compress(buffer.getByteBuffer().array(), buffer.remaining());
+            // Actual serialization starts here.
+            int lenPos = buf.position();
+            putInt(null, 0); // Move back to this after compression is done.
+            buf.put(compression.type().getCode());
 
-        // Actual serialization starts here.
-        int lenPos = buf.position();
-        putInt(null, 0); // Move back to this after compression is done.
-        buf.put(compression.type().getCode());
+            if (compression.data() != null && compression.type().isCompressed()) {
+                buf.putInt2_4_8Bytes(uncompressedSize);
+            }
 
-        if (compression.data() != null && compression.type().isCompressed()) {
-            buf.putInt2_4_8Bytes(uncompressedSize);
-        }
+            buf.putInt1_4Bytes(s.getFieldCount());
 
-        buf.putInt1_4Bytes(s.getFieldCount());
+            for (int i = 0; i < s.getFieldCount(); ++i) {
+                putInt1_4Bytes(null, fieldIds.get(i));
+                putInt2_4_8Bytes(null, fieldLengths.get(i));
+            }
 
-        for (int i = 0; i < s.getFieldCount(); ++i) {
-            putInt1_4Bytes(null, fieldIds.get(i));
-            putInt2_4_8Bytes(null, fieldLengths.get(i));
-        }
+            int pos = buf.position();
+            if (compression.data() != null && compression.type().isCompressed()) {
+                put(null, compression.data());
+            } else {
+                put(null, buffer.getByteBuffer());
+            }
+            int dataLength = buf.position() - pos;
 
-        int pos = buf.position();
-        if (compression.data() != null && compression.type().isCompressed()) {
-            put(null, compression.data());
-        } else {
-            put(null, buffer.getByteBuffer());
+            int posNow = buf.position();
+            buf.position(lenPos);
+            putInt(null, dataLength);
+            buf.position(posNow);
+        } finally {
+            buf = bigBuffer;
+            buffer.release();
         }
-        int dataLength = buf.position() - pos;
-
-        int posNow = buf.position();
-        buf.position(lenPos);
-        putInt(null, dataLength);
-        buf.position(posNow);
     }
 
     /**
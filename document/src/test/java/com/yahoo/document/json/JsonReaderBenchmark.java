@@ -0,0 +1,118 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.TensorDataType;
+import com.yahoo.document.json.document.DocumentParser;
+import com.yahoo.document.json.readers.DocumentParseInfo;
+import com.yahoo.document.json.readers.VespaJsonDocumentReader;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.text.Utf8;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Microbenchmark of reading document puts with a large string field and a large tensor field from JSON,
+ * comparing reading the fields while they are parsed with buffering all their tokens first.
+ */
+public class JsonReaderBenchmark {
+
+    private static final String DOCUMENT_ID = "id:unittest:benchmark::0";
+
+    private final JsonFactory parserFactory = new JsonFactory();
+    private final DocumentTypeManager types = new DocumentTypeManager();
+
+    private JsonReaderBenchmark() {
+        DocumentType type = new DocumentType("benchmark");
+        type.addField(new Field("title", DataType.STRING));
+        type.addField(new Field("body", DataType.STRING));
+        type.addField(new Field("embedding", new TensorDataType(TensorType.fromSpec("tensor(x[512])"))));
+        types.registerDocumentType(type);
+    }
+
+    private static byte[] createPut(int bodyLength, int tensorSize) {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder();
+        json.append("{\"put\": \"").append(DOCUMENT_ID).append("\", \"fields\": {");
+        json.append("\"title\": \"A document with large fields\", ");
+        json.append("\"body\": \"");
+        for (int i = 0; i < bodyLength; i++)
+            json.append(i % 7 == 6 ? ' ' : (char)('a' + random.nextInt(26)));
+        json.append("\", ");
+        json.append("\"embedding\": { \"cells\": [");
+        for (int i = 0; i < tensorSize; i++) {
+            if (i > 0) json.append(", ");
+            json.append("{ \"address\": { \"x\": \"").append(i).append("\" }, \"value\": ")
+                .append(random.nextDouble()).append(" }");
+        }
+        json.append("]}}}");
+        return Utf8.toBytes(json.toString());
+    }
+
+    private DocumentOperation readStreamed(byte[] json) {
+        JsonReader reader = new JsonReader(types, new ByteArrayInputStream(json), parserFactory);
+        return reader.readSingleDocument(DocumentParser.SupportedOperation.PUT, DOCUMENT_ID);
+    }
+
+    private DocumentOperation readBuffered(byte[] json) {
+        try {
+            JsonReader reader = new JsonReader(types, new ByteArrayInputStream(json), parserFactory);
+            DocumentParseInfo parseInfo = reader.parseDocument().get();
+            return new VespaJsonDocumentReader().createDocumentOperation(reader.readDocumentType(parseInfo.documentId),
+                                                                         parseInfo);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private long read(byte[] json, boolean streamed, int iterations) {
+        long fields = 0;
+        for (int i = 0; i < iterations; i++) {
+            DocumentOperation operation = streamed ? readStreamed(json) : readBuffered(json);
+            fields += ((DocumentPut)operation).getDocument().getFieldCount();
+        }
+        return fields;
+    }
+
+    private void benchmark(String name, byte[] json, boolean streamed, int iterations) {
+        read(json, streamed, iterations); // warmup
+        System.gc();
+        long allocatedBefore = allocatedBytes();
+        long startTime = System.nanoTime();
+        long fields = read(json, streamed, iterations);
+        long totalTime = System.nanoTime() - startTime;
+        long allocated = allocatedBytes() - allocatedBefore;
+        System.out.printf("%-9s %7d bytes of JSON: %9.3f us and %9d bytes allocated per document (%d fields)\n",
+                          name, json.length, totalTime / 1000.0 / iterations, allocated / iterations, fields);
+    }
+
+    /** Returns the bytes allocated by this thread so far, or 0 if this is not supported by the JVM */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if ( ! (bean instanceof com.sun.management.ThreadMXBean)) return 0;
+        return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static void main(String[] args) {
+        JsonReaderBenchmark benchmark = new JsonReaderBenchmark();
+        byte[] small = createPut(1000, 16);
+        byte[] large = createPut(100000, 512);
+        for (int round = 0; round < 2; round++) {
+            benchmark.benchmark("Buffered", small, false, 20000);
+            benchmark.benchmark("Streamed", small, true, 20000);
+            benchmark.benchmark("Buffered", large, false, 1000);
+            benchmark.benchmark("Streamed", large, true, 1000);
+        }
+    }
+
+}
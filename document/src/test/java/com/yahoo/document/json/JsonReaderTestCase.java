@@ -1155,6 +1155,109 @@ public class JsonReaderTestCase {
         }
     }
 
+    @Test
+    public void testUpdateMatchInFeed() {
+        String jsonData = inputJson(
+                "[",
+                "      {",
+                "          'update': 'id:unittest:testset::whee',",
+                "          'fields': {",
+                "              'actualset': {",
+                "                  'match': {",
+                "                      'increment': 13,",
+                "                      'element': 'person'",
+                "                  }",
+                "              }",
+                "          }",
+                "      }",
+                "]");
+
+        DocumentUpdate update = (DocumentUpdate) new JsonReader(types, jsonToInputStream(jsonData), parserFactory).next();
+        MapValueUpdate matchUpdate = (MapValueUpdate) update.getFieldUpdate("actualset").getValueUpdate(0);
+        assertEquals("person", ((StringFieldValue) matchUpdate.getValue()).getString());
+        assertEquals(13.0, ((ArithmeticValueUpdate) matchUpdate.getUpdate()).getOperand().doubleValue(), 0.0);
+    }
+
+    @Test
+    public void testFieldsBeforeIdInFeed() {
+        String jsonData = inputJson(
+                "[",
+                "      {",
+                "          'fields': {",
+                "              'something': 'smoketest',",
+                "              'nalle': 'bamse'",
+                "          },",
+                "          'put': 'id:unittest:smoke::whee'",
+                "      },",
+                "      {",
+                "          'put': 'id:unittest:smoke::whee',",
+                "          'fields': {",
+                "              'something': 'smoketest',",
+                "              'nalle': 'bamse'",
+                "          }",
+                "      }",
+                "]");
+
+        JsonReader r = new JsonReader(types, jsonToInputStream(jsonData), parserFactory);
+        smokeTestDoc(((DocumentPut) r.next()).getDocument());
+        smokeTestDoc(((DocumentPut) r.next()).getDocument());
+        assertNull(r.next());
+    }
+
+    @Test
+    public void testFailedOperationInFeedDoesNotPreventReadingTheNextOperation() {
+        String jsonData = inputJson(
+                "[",
+                "      {",
+                "          'put': 'id:unittest:testint::0',",
+                "          'fields': {",
+                "              'integerfield': 'not a number',",
+                "              'ignored': { 'struct': [ 1, 2, 3 ] }",
+                "          },",
+                "          'condition': 'testint.integerfield == 0'",
+                "      },",
+                "      {",
+                "          'put': 'id:unittest:testint::1',",
+                "          'fields': {",
+                "              'integerfield': 1",
+                "          }",
+                "      }",
+                "]");
+
+        JsonReader r = new JsonReader(types, jsonToInputStream(jsonData), parserFactory);
+        try {
+            r.next();
+            fail("Expected exception");
+        }
+        catch (JsonReaderException e) {
+            assertTrue(e.getMessage().contains("Error in document 'id:unittest:testint::0'"));
+        }
+        DocumentPut put = (DocumentPut) r.next();
+        assertEquals("id:unittest:testint::1", put.getId().toString());
+        assertEquals(new IntegerFieldValue(1), put.getDocument().getFieldValue("integerfield"));
+        assertNull(r.next());
+    }
+
+    @Test
+    public void testMoreThanOneFieldsMap() {
+        try {
+            String jsonData = inputJson(
+                    "[",
+                    "      {",
+                    "          'put': 'id:unittest:smoke::whee',",
+                    "          'fields': { 'something': 'smoketest' },",
+                    "          'fields': { 'nalle': 'bamse' }",
+                    "      }",
+                    "]");
+
+            new JsonReader(types, jsonToInputStream(jsonData), parserFactory).next();
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("Operation on document id:unittest:smoke::whee has more than one 'fields' map", e.getMessage());
+        }
+    }
+
     static ByteArrayInputStream jsonToInputStream(String json) {
         return new ByteArrayInputStream(Utf8.toBytes(json));
     }
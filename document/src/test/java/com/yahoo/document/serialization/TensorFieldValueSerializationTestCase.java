@@ -14,6 +14,7 @@ import java.io.IOException;
 
 import static com.yahoo.document.serialization.SerializationTestUtils.deserializeDocument;
 import static com.yahoo.document.serialization.SerializationTestUtils.serializeDocument;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -48,6 +49,22 @@ public class TensorFieldValueSerializationTestCase {
                 createTensor(tensorType, "{{dimX:a,dimY:bb}:2.0,{dimX:ccc,dimY:dddd}:3.0,{dimX:e,dimY:ff}:5.0}"));
     }
 
+    @Test
+    public void requireThatTensorsWithSmallerValueTypesAreSerializedWithTheValueTypeOfTheField() {
+        String tensorCells = "{{dimX:a,dimY:bb}:2.0,{dimX:ccc,dimY:dddd}:3.5}";
+        TensorFieldValue assigned = new TensorFieldValue(tensorType);
+        assigned.assign(Tensor.from(new TensorType.Builder(TensorType.Value.FLOAT, tensorType.dimensions()).build(),
+                                    tensorCells));
+        Document document = docFactory.createDocument();
+        document.setFieldValue(TENSOR_FIELD, assigned);
+
+        byte[] buf = serializeDocument(document);
+        Document expected = docFactory.createDocument();
+        expected.setFieldValue(TENSOR_FIELD, createTensor(tensorType, tensorCells));
+        assertArrayEquals(serializeDocument(expected), buf);
+        assertEquals(createTensor(tensorType, tensorCells), deserializeDocument(buf, docFactory).getFieldValue(TENSOR_FIELD));
+    }
+
     private static void assertSerialization(TensorFieldValue tensor) {
         SerializationTestUtils.assertFieldInDocumentSerialization(docFactory, TENSOR_FIELD, tensor);
     }
@@ -7,6 +7,7 @@ import com.yahoo.concurrent.CopyOnWriteHashMap;
 import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.document.serialization.*;
 import com.yahoo.documentapi.messagebus.loadtypes.LoadTypeSet;
+import com.yahoo.io.BufferPool;
 import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.log.LogLevel;
 import com.yahoo.messagebus.Routable;
@@ -26,6 +27,8 @@ import java.util.stream.Stream;
 final class RoutableRepository {
 
     private static final Logger log = Logger.getLogger(RoutableRepository.class.getName());
+    /** Serialization buffers, reused between encodings to avoid allocating a new buffer per routable */
+    private static final BufferPool bufferPool = new BufferPool(false, 1 << 20, 16);
     private final CopyOnWriteHashMap<Integer, VersionMap> factoryTypes = new CopyOnWriteHashMap<>();
     private final CopyOnWriteHashMap<CacheKey, RoutableFactory> cache = new CopyOnWriteHashMap<>();
     private LoadTypeSet loadTypes;
@@ -95,21 +98,25 @@ final class RoutableRepository {
         DocumentSerializer out;
 
         if (version.getMajor() >= 5) {
-            out = DocumentSerializerFactory.createHead(new GrowableByteBuffer(8192));
+            out = DocumentSerializerFactory.createHead(new GrowableByteBuffer(bufferPool, 8192));
         } else {
-            out = DocumentSerializerFactory.create42(new GrowableByteBuffer(8192));
+            out = DocumentSerializerFactory.create42(new GrowableByteBuffer(bufferPool, 8192));
         }
 
-        out.putInt(null, type);
-        if (!factory.encode(obj, out)) {
-            log.log(LogLevel.ERROR, "Routable factory " + factory.getClass().getName() + " failed to serialize " +
-                                    "routable of type " + type + " (version " + version + ").");
-            return new byte[0];
+        try {
+            out.putInt(null, type);
+            if (!factory.encode(obj, out)) {
+                log.log(LogLevel.ERROR, "Routable factory " + factory.getClass().getName() + " failed to serialize " +
+                                        "routable of type " + type + " (version " + version + ").");
+                return new byte[0];
+            }
+            byte[] ret = new byte[out.getBuf().position()];
+            out.getBuf().rewind();
+            out.getBuf().get(ret);
+            return ret;
+        } finally {
+            out.getBuf().release();
         }
-        byte[] ret = new byte[out.getBuf().position()];
-        out.getBuf().rewind();
-        out.getBuf().get(ret);
-        return ret;
     }
 
     /**
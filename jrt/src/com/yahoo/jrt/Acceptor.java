@@ -100,8 +100,9 @@ public class Acceptor {
     private void run() {
         while (serverChannel.isOpen()) {
             try {
-                parent.addConnection(new Connection(parent, owner, serverChannel.accept()));
-                parent.sync();
+                Connection conn = new Connection(parent.selectThread(), owner, serverChannel.accept());
+                parent.addConnection(conn);
+                conn.transportThread().sync();
             } catch (ClosedChannelException ignore) {
             } catch (Exception e) {
                 log.log(Level.WARNING, "Error accepting connection", e);
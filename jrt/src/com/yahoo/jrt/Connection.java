@@ -39,7 +39,7 @@ class Connection extends Target {
     private Map<TargetWatcher, TargetWatcher> watchers = new IdentityHashMap<>();
     private int           activeReqs = 0;
     private int           writeWork  = 0;
-    private Transport     parent;
+    private TransportThread parent;
     private Supervisor    owner;
     private Spec          spec;
     private CryptoSocket  socket;
@@ -86,17 +86,17 @@ class Connection extends Target {
         }
     }
 
-    public Connection(Transport parent, Supervisor owner,
+    public Connection(TransportThread parent, Supervisor owner,
                       SocketChannel channel) {
 
         this.parent = parent;
         this.owner = owner;
-        this.socket = parent.createCryptoSocket(channel, true);
+        this.socket = parent.transport().createCryptoSocket(channel, true);
         server = true;
         owner.sessionInit(this);
     }
 
-    public Connection(Transport parent, Supervisor owner, Spec spec, Object context) {
+    public Connection(TransportThread parent, Supervisor owner, Spec spec, Object context) {
         super(context);
         this.parent = parent;
         this.owner = owner;
@@ -113,10 +113,14 @@ class Connection extends Target {
         maxOutputSize = bytes;
     }
 
-    public Transport transport() {
+    public TransportThread transportThread() {
         return parent;
     }
 
+    public Transport transport() {
+        return parent.transport();
+    }
+
     public int allocateKey() {
         long v = requestId.getAndIncrement();
         v = v*2 + (server ? 1 : 0);
@@ -168,7 +172,7 @@ class Connection extends Target {
             return this;
         }
         try {
-            socket = parent.createCryptoSocket(SocketChannel.open(spec.address()), false);
+            socket = parent.transport().createCryptoSocket(SocketChannel.open(spec.address()), false);
         } catch (Exception e) {
             setLostReason(e);
         }
@@ -2,11 +2,10 @@
 package com.yahoo.jrt;
 
 
-import java.io.IOException;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -17,176 +16,82 @@ import java.util.logging.Logger;
  * multiplexed network IO, handles scheduled tasks and keeps track of
  * some additional helper threads. A single Transport object can back
  * multiple {@link Supervisor} objects.
+ *
+ * <p>A Transport may be created with more than one reactor thread,
+ * in which case connections are spread round-robin over the
+ * threads. Each connection is handled by a single thread for its
+ * entire lifetime. Tasks created with {@link #createTask createTask}
+ * and commands run with {@link #perform perform} are always handled
+ * by the first thread, while RPC methods may be invoked in any of
+ * the threads.
  **/
 public class Transport {
 
-    private static final int OPEN    = 1;
-    private static final int CLOSING = 2;
-    private static final int CLOSED  = 3;
-
-    private class Run implements Runnable {
-        public void run() {
-            try {
-                Transport.this.run();
-            } catch (Throwable problem) {
-                handleFailure(problem, Transport.this);
-            }
-        }
-    }
-
-    private class AddConnectionCmd implements Runnable {
-        private Connection conn;
-        AddConnectionCmd(Connection conn) { this.conn = conn; }
-        public void run() { handleAddConnection(conn); }
-    }
-
-    private class CloseConnectionCmd implements Runnable {
-        private Connection conn;
-        CloseConnectionCmd(Connection conn) { this.conn = conn; }
-        public void run() { handleCloseConnection(conn); }
-    }
-
-    private class EnableWriteCmd implements Runnable {
-        private Connection conn;
-        EnableWriteCmd(Connection conn) { this.conn = conn; }
-        public void run() { handleEnableWrite(conn); }
-    }
-
-    private class SyncCmd implements Runnable {
-        boolean done = false;
-        public synchronized void waitDone() {
-            while (!done) {
-                try { wait(); } catch (InterruptedException e) {}
-            }
-        }
-        public synchronized void run() {
-            done = true;
-            notify();
-        }
-    }
-
     private static Logger log = Logger.getLogger(Transport.class.getName());
 
-    private FatalErrorHandler fatalHandler; // NB: this must be set first
-    private CryptoEngine      cryptoEngine;
-    private Thread            thread;
-    private Queue             queue;
-    private Queue             myQueue;
-    private Connector         connector;
-    private Closer            closer;
-    private Scheduler         scheduler;
-    private int               state;
-    private Selector          selector;
-
-    private void handleAddConnection(Connection conn) {
-        if (conn.isClosed()) {
-            if (conn.hasSocket()) {
-                closer.closeLater(conn);
-            }
-            return;
-        }
-        if (!conn.init(selector)) {
-            handleCloseConnection(conn);
-        }
-    }
-
-    private void handleCloseConnection(Connection conn) {
-        if (conn.isClosed()) {
-            return;
-        }
-        conn.fini();
-        if (conn.hasSocket()) {
-            closer.closeLater(conn);
-        }
-    }
-
-    private void handleEnableWrite(Connection conn) {
-        if (conn.isClosed()) {
-            return;
-        }
-        conn.enableWrite();
-    }
-
-    private boolean postCommand(Runnable cmd) {
-        boolean wakeup;
-        synchronized (this) {
-            if (state == CLOSED) {
-                return false;
-            }
-            wakeup = queue.isEmpty();
-            queue.enqueue(cmd);
-        }
-        if (wakeup) {
-            selector.wakeup();
-        }
-        return true;
-    }
-
-    private void handleEvents() {
-        synchronized (this) {
-            queue.flush(myQueue);
-        }
-        while (!myQueue.isEmpty()) {
-            ((Runnable)myQueue.dequeue()).run();
-        }
-    }
-
-    private boolean handleIOEvents(Connection conn,
-                                   SelectionKey key) {
-        if (conn.isClosed()) {
-            return true;
-        }
-        if (key.isReadable()) {
-            try {
-                conn.handleReadEvent();
-            } catch (IOException e) {
-                conn.setLostReason(e);
-                return false;
-            }
-        }
-        if (key.isWritable()) {
-            try {
-                conn.handleWriteEvent();
-            } catch (IOException e) {
-                conn.setLostReason(e);
-                return false;
-            }
-        }
-        return true;
-    }
+    private FatalErrorHandler     fatalHandler; // NB: this must be set first
+    private CryptoEngine          cryptoEngine;
+    private Connector             connector;
+    private Closer                closer;
+    private List<TransportThread> threads;
+    private AtomicInteger         runCnt;
+    private AtomicInteger         nextThread = new AtomicInteger(0);
 
     /**
      * Create a new Transport object with the given fatal error
-     * handler and CryptoEngine. If a fatal error occurs when no fatal
-     * error handler is registered, the default action is to log the
-     * error and exit with exit code 1.
+     * handler, CryptoEngine and number of reactor threads. If a fatal
+     * error occurs when no fatal error handler is registered, the
+     * default action is to log the error and exit with exit code 1.
      *
      * @param fatalHandler fatal error handler
      * @param cryptoEngine crypto engine to use
+     * @param numThreads number of reactor threads
      **/
-    public Transport(FatalErrorHandler fatalHandler, CryptoEngine cryptoEngine) {
+    public Transport(FatalErrorHandler fatalHandler, CryptoEngine cryptoEngine, int numThreads) {
         synchronized (this) {
             this.fatalHandler = fatalHandler; // NB: this must be set first
         }
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("A transport needs at least one thread, got " + numThreads);
+        }
         this.cryptoEngine = cryptoEngine;
-        thread    = new Thread(new Run(), "<transport>");
-        queue     = new Queue();
-        myQueue   = new Queue();
         connector = new Connector(this);
         closer    = new Closer(this);
-        scheduler = new Scheduler(System.currentTimeMillis());
-        state     = OPEN;
-        try {
-            selector = Selector.open();
-        } catch (Exception e) {
-            throw new Error("Could not open transport selector", e);
+        runCnt    = new AtomicInteger(numThreads);
+        threads   = new ArrayList<>(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            String name = (numThreads == 1) ? "<transport>" : "<transport-" + i + ">";
+            threads.add(new TransportThread(this, name));
+        }
+    }
+    public Transport(FatalErrorHandler fatalHandler, CryptoEngine cryptoEngine) { this(fatalHandler, cryptoEngine, 1); }
+    public Transport(CryptoEngine cryptoEngine, int numThreads) { this(null, cryptoEngine, numThreads); }
+    public Transport(CryptoEngine cryptoEngine) { this(null, cryptoEngine, 1); }
+    public Transport(FatalErrorHandler fatalHandler) { this(fatalHandler, CryptoEngine.createDefault(), 1); }
+    public Transport(int numThreads) { this(null, CryptoEngine.createDefault(), numThreads); }
+    public Transport() { this(null, CryptoEngine.createDefault(), 1); }
+
+    /**
+     * Obtain the number of reactor threads used by this Transport.
+     *
+     * @return number of reactor threads
+     **/
+    public int getNumThreads() {
+        return threads.size();
+    }
+
+    /**
+     * Select the reactor thread that will handle the next
+     * connection. Threads are selected in a round-robin fashion.
+     *
+     * @return the selected reactor thread
+     **/
+    TransportThread selectThread() {
+        if (threads.size() == 1) {
+            return threads.get(0);
         }
-        thread.setDaemon(true);
-        thread.start();
+        return threads.get(Math.floorMod(nextThread.getAndIncrement(), threads.size()));
     }
-    public Transport(CryptoEngine cryptoEngine) { this(null, cryptoEngine); }
-    public Transport(FatalErrorHandler fatalHandler) { this(fatalHandler, CryptoEngine.createDefault()); }
-    public Transport() { this(null, CryptoEngine.createDefault()); }
 
     /**
      * Use the underlying CryptoEngine to create a CryptoSocket.
@@ -242,7 +147,7 @@ public class Transport {
      *             if this flag is set
      */
     Connection connect(Supervisor owner, Spec spec, Object context, boolean sync) {
-        Connection conn = new Connection(this, owner, spec, context);
+        Connection conn = new Connection(selectThread(), owner, spec, context);
         if (sync) {
             addConnection(conn.connect());
         } else {
@@ -253,36 +158,45 @@ public class Transport {
 
     /**
      * Add a connection to the set of connections handled by this
-     * Transport. Invoked by the {@link Connector} class.
+     * Transport. The connection is handed over to the reactor thread
+     * it was assigned to when it was created. Invoked by the {@link
+     * Connector} and {@link Acceptor} classes.
      *
      * @param conn the connection to add
      **/
     void addConnection(Connection conn) {
-        if (!postCommand(new AddConnectionCmd(conn))) {
-            perform(new CloseConnectionCmd(conn));
-        }
+        conn.transportThread().addConnection(conn);
     }
 
     /**
-     * Request an asynchronous close of a connection.
+     * Close a connection socket in the background. Invoked by the
+     * reactor threads.
      *
      * @param conn the connection to close
      **/
-    void closeConnection(Connection conn) {
-        postCommand(new CloseConnectionCmd(conn));
+    void closeLater(Connection conn) {
+        closer.closeLater(conn);
     }
 
     /**
-     * Request an asynchronous enabling of write events for a
-     * connection.
+     * Invoked by each reactor thread when it starts shutting
+     * down. Returns when no more connections will be added by the
+     * connector.
+     **/
+    void waitForConnectorDone() {
+        connector.shutdown().waitDone();
+    }
+
+    /**
+     * Invoked by each reactor thread when it is done. The last thread
+     * to complete will also shut down the helper threads.
      *
-     * @param conn the connection to enable write events for
+     * @param thread the reactor thread that is done
      **/
-    void enableWrite(Connection conn) {
-        if (Thread.currentThread() == thread) {
-            handleEnableWrite(conn);
-        } else {
-            postCommand(new EnableWriteCmd(conn));
+    void notifyDone(TransportThread thread) {
+        if (runCnt.decrementAndGet() == 0) {
+            closer.shutdown().join();
+            connector.exit().join();
         }
     }
 
@@ -294,118 +208,59 @@ public class Transport {
      * @param cmd what to run when the task is executed
      **/
     public Task createTask(Runnable cmd) {
-        return new Task(scheduler, cmd);
+        return threads.get(0).createTask(cmd);
     }
 
     /**
      * Perform the given command in such a way that it does not run
      * concurrently with the transport thread or other commands
      * performed by invoking this method. This method will continue to
-     * work even after the transport thread has been shut down.
+     * work even after the transport thread has been shut down. When
+     * using multiple reactor threads, the command is serialized with
+     * the first thread only.
      *
      * @param cmd the command to perform
      **/
     public void perform(Runnable cmd) {
-        if (Thread.currentThread() == thread) {
-            cmd.run();
-            return;
-        }
-        if (!postCommand(cmd)) {
-            join();
-            synchronized (thread) {
-                cmd.run();
-            }
-        }
+        threads.get(0).perform(cmd);
     }
 
     /**
-     * Synchronize with the transport thread. This method will block
+     * Synchronize with the transport threads. This method will block
      * until all commands issued before this method was invoked has
-     * completed. If the transport thread has been shut down (or is in
+     * completed. If a transport thread has been shut down (or is in
      * the progress of being shut down) this method will instead wait
-     * for the transport thread to complete, since no more commands
-     * will be performed, and waiting would be forever. Invoking this
-     * method from the transport thread is not a good idea.
+     * for that thread to complete, since no more commands will be
+     * performed, and waiting would be forever. Invoking this method
+     * from a transport thread is not a good idea.
      *
      * @return this object, to enable chaining
      **/
     public Transport sync() {
-        SyncCmd cmd = new SyncCmd();
-        if (postCommand(cmd)) {
-            cmd.waitDone();
-        } else {
-            join();
+        for (TransportThread thread : threads) {
+            thread.sync();
         }
         return this;
     }
 
-    private void run() {
-        while (state == OPEN) {
-
-            // perform I/O selection
-            try {
-                selector.select(100);
-            } catch (IOException e) {
-                log.log(Level.WARNING, "error during select", e);
-            }
-
-            // handle internal events
-            handleEvents();
-
-            // handle I/O events
-            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
-            while (keys.hasNext()) {
-                SelectionKey key = keys.next();
-                Connection conn = (Connection) key.attachment();
-                keys.remove();
-                if (!handleIOEvents(conn, key)) {
-                    handleCloseConnection(conn);
-                }
-            }
-
-            // check scheduled tasks
-            scheduler.checkTasks(System.currentTimeMillis());
-        }
-        connector.shutdown().waitDone();
-        synchronized (this) {
-            state = CLOSED;
-        }
-        handleEvents();
-        Iterator<SelectionKey> keys = selector.keys().iterator();
-        while (keys.hasNext()) {
-            SelectionKey key = keys.next();
-            Connection conn = (Connection) key.attachment();
-            handleCloseConnection(conn);
-        }
-        try { selector.close(); } catch (Exception e) {}
-        closer.shutdown().join();
-        connector.exit().join();
-    }
-
     /**
-     * Initiate controlled shutdown of the transport thread.
+     * Initiate controlled shutdown of the transport threads.
      *
      * @return this object, to enable chaining with join
      **/
     public Transport shutdown() {
-        synchronized (this) {
-            if (state == OPEN) {
-                state = CLOSING;
-                selector.wakeup();
-            }
+        for (TransportThread thread : threads) {
+            thread.shutdown();
         }
         return this;
     }
 
     /**
-     * Wait for the transport thread to finish.
+     * Wait for the transport threads to finish.
      **/
     public void join() {
-        while (true) {
-            try {
-                thread.join();
-                return;
-            } catch (InterruptedException e) {}
+        for (TransportThread thread : threads) {
+            thread.join();
         }
     }
 }
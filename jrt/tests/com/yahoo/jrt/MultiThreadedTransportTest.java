@@ -0,0 +1,92 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import org.junit.After;
+import org.junit.Before;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MultiThreadedTransportTest {
+
+    Supervisor server;
+    Acceptor   acceptor;
+    Supervisor client;
+
+    @Before
+    public void setUp() throws ListenFailedException {
+        server   = new Supervisor(new Transport(4));
+        client   = new Supervisor(new Transport(3));
+        acceptor = server.listen(new Spec(0));
+        server.addMethod(new Method("inc", "i", "i", this, "rpc_inc"));
+    }
+
+    @After
+    public void tearDown() {
+        acceptor.shutdown().join();
+        client.transport().shutdown().join();
+        server.transport().shutdown().join();
+    }
+
+    public void rpc_inc(Request req) {
+        req.returnValues().add(new Int32Value(req.parameters().get(0).asInt32() + 1));
+    }
+
+    @org.junit.Test
+    public void testThreadCount() {
+        assertEquals(4, server.transport().getNumThreads());
+        assertEquals(3, client.transport().getNumThreads());
+        assertEquals(1, new Transport().getNumThreads());
+    }
+
+    @org.junit.Test(expected = IllegalArgumentException.class)
+    public void testRequireAtLeastOneThread() {
+        new Transport(0);
+    }
+
+    @org.junit.Test
+    public void testConnectionsAreSpreadOverThreads() {
+        List<Target> targets = new ArrayList<>();
+        Set<TransportThread> threads = new HashSet<>();
+        for (int i = 0; i < 6; i++) {
+            Target target = client.connect(new Spec("localhost", acceptor.port()));
+            targets.add(target);
+            threads.add(((Connection) target).transportThread());
+        }
+        assertEquals(3, threads.size());
+        for (int i = 0; i < targets.size(); i++) {
+            Request req = new Request("inc");
+            req.parameters().add(new Int32Value(i));
+            targets.get(i).invokeSync(req, 5.0);
+            assertTrue(req.errorMessage(), !req.isError());
+            assertEquals(i + 1, req.returnValues().get(0).asInt32());
+        }
+        for (Target target : targets) {
+            target.close();
+        }
+        client.transport().sync();
+        for (Target target : targets) {
+            assertFalse(target.isValid());
+        }
+    }
+
+    @org.junit.Test
+    public void testTasksAndCommandsStillWork() {
+        Test.Barrier barrier = new Test.Barrier();
+        Task task = client.transport().createTask(barrier::breakIt);
+        task.scheduleNow();
+        barrier.waitFor();
+        boolean[] done = new boolean[1];
+        client.transport().perform(() -> done[0] = true);
+        client.transport().sync();
+        assertTrue(done[0]);
+    }
+
+}
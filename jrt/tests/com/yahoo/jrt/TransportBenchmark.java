@@ -0,0 +1,83 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures loopback RPC throughput for different numbers of transport threads.
+ * Run the main method; this is not run as part of the unit tests.
+ */
+public class TransportBenchmark {
+
+    private static final int connections = 16;
+    private static final int clientsPerConnection = 8;
+    private static final long warmupMillis = 2000;
+    private static final long runMillis = 5000;
+
+    public void rpc_echo(Request req) {
+        req.returnValues().add(req.parameters().get(0));
+    }
+
+    public double benchmark(int numThreads, CryptoEngine crypto) throws Exception {
+        Supervisor server = new Supervisor(new Transport(crypto, numThreads));
+        Supervisor client = new Supervisor(new Transport(crypto, numThreads));
+        server.addMethod(new Method("echo", "x", "x", this, "rpc_echo"));
+        Acceptor acceptor = server.listen(new Spec(0));
+
+        List<Target> targets = new ArrayList<>();
+        for (int i = 0; i < connections; i++)
+            targets.add(client.connectSync(new Spec("localhost", acceptor.port())));
+
+        AtomicBoolean stop = new AtomicBoolean(false);
+        AtomicLong count = new AtomicLong(0);
+        byte[] payload = new byte[256];
+        List<Thread> workers = new ArrayList<>();
+        for (Target target : targets) {
+            for (int i = 0; i < clientsPerConnection; i++) {
+                Thread worker = new Thread(() -> {
+                    while ( ! stop.get()) {
+                        Request req = new Request("echo");
+                        req.parameters().add(new DataValue(payload));
+                        target.invokeSync(req, 10.0);
+                        if ( ! req.isError())
+                            count.incrementAndGet();
+                    }
+                });
+                worker.setDaemon(true);
+                workers.add(worker);
+                worker.start();
+            }
+        }
+
+        Thread.sleep(warmupMillis);
+        long startCount = count.get();
+        long startTime = System.nanoTime();
+        Thread.sleep(runMillis);
+        long endCount = count.get();
+        long endTime = System.nanoTime();
+        stop.set(true);
+        for (Thread worker : workers)
+            worker.join();
+
+        for (Target target : targets)
+            target.close();
+        acceptor.shutdown().join();
+        client.transport().shutdown().join();
+        server.transport().shutdown().join();
+        return (endCount - startCount) * 1.0e9 / (endTime - startTime);
+    }
+
+    public static void main(String[] args) throws Exception {
+        TransportBenchmark benchmark = new TransportBenchmark();
+        CryptoEngine crypto = (args.length > 0 && args[0].equals("xor")) ? new XorCryptoEngine() : new NullCryptoEngine();
+        for (int numThreads : new int[] { 1, 2, 4, 8 }) {
+            double rps = benchmark.benchmark(numThreads, crypto);
+            System.out.printf("%d transport thread(s): %.0f requests/s%n", numThreads, rps);
+        }
+    }
+
+}
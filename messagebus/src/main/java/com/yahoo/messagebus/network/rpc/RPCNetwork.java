@@ -40,6 +40,9 @@ import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -71,6 +74,9 @@ public class RPCNetwork implements Network, MethodHandler {
                                    0L, TimeUnit.SECONDS,
                                    new SynchronousQueue<>(false),
                                    ThreadFactoryFactory.getDaemonThreadFactory("mbus.net"), new ThreadPoolExecutor.CallerRunsPolicy());
+    private final double sendBatchWindowSecs;
+    private final int sendBatchSize;
+    private final ScheduledExecutorService sendBatchTimer;
 
     /**
      * Create an RPCNetwork. The servicePrefix is combined with session names to create service names. If the service
@@ -88,6 +94,11 @@ public class RPCNetwork implements Network, MethodHandler {
         orb.setMaxOutputBufferSize(params.getMaxOutputBufferSize());
         targetPool = new RPCTargetPool(params.getConnectionExpireSecs());
         servicePool = new RPCServicePool(this, 4096);
+        sendBatchWindowSecs = params.getSendBatchWindowSecs();
+        sendBatchSize = params.getSendBatchSize();
+        sendBatchTimer = sendBatchWindowSecs > 0
+                         ? Executors.newSingleThreadScheduledExecutor(ThreadFactoryFactory.getDaemonThreadFactory("mbus.batch"))
+                         : null;
 
         Method method = new Method("mbus.getVersion", "", "s", this);
         method.methodDesc("Retrieves the message bus version.");
@@ -266,6 +277,9 @@ public class RPCNetwork implements Network, MethodHandler {
             orb.transport().shutdown().join();
             targetPool.flushTargets(true);
             executor.shutdown();
+            if (sendBatchTimer != null) {
+                sendBatchTimer.shutdown();
+            }
             return true;
         }
         return false;
@@ -389,6 +403,39 @@ public class RPCNetwork implements Network, MethodHandler {
         return executor;
     }
 
+    /**
+     * Returns the number of seconds messages to the same target may be held back to be sent in one request, or 0 if
+     * messages should not be batched.
+     *
+     * @return The number of seconds.
+     */
+    double getSendBatchWindowSecs() {
+        return sendBatchWindowSecs;
+    }
+
+    /**
+     * Returns the number of payload bytes after which a batch of messages should be sent without further delay.
+     *
+     * @return The number of bytes.
+     */
+    int getSendBatchSize() {
+        return sendBatchSize;
+    }
+
+    /**
+     * Runs the given task in the executor of this network once the send batch window has passed. If this network
+     * has been shut down, the task is run immediately by the calling thread instead.
+     *
+     * @param task The task to run.
+     */
+    void scheduleSendBatch(Runnable task) {
+        try {
+            sendBatchTimer.schedule(() -> executor.execute(task), (long)(sendBatchWindowSecs * 1.0e9), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
     private class SendTask implements Runnable {
 
         final Protocol protocol;
@@ -19,6 +19,8 @@ public class RPCNetworkParams {
     private int maxInputBufferSize = 256 * 1024;
     private int maxOutputBufferSize = 256 * 1024;
     private double connectionExpireSecs = 30;
+    private double sendBatchWindowSecs = 0;
+    private int sendBatchSize = 64 * 1024;
 
     /**
      * Constructs a new instance of this class with reasonable default values.
@@ -40,6 +42,8 @@ public class RPCNetworkParams {
         connectionExpireSecs = params.connectionExpireSecs;
         maxInputBufferSize = params.maxInputBufferSize;
         maxOutputBufferSize = params.maxOutputBufferSize;
+        sendBatchWindowSecs = params.sendBatchWindowSecs;
+        sendBatchSize = params.sendBatchSize;
     }
 
     /**
@@ -142,6 +146,51 @@ public class RPCNetworkParams {
         return this;
     }
 
+    /**
+     * Returns the number of seconds messages to the same target may be held back to be sent together in one request.
+     * This is 0 by default, which means that each message is sent in a request of its own.
+     *
+     * @return The number of seconds.
+     */
+    public double getSendBatchWindowSecs() {
+        return sendBatchWindowSecs;
+    }
+
+    /**
+     * Sets the number of seconds messages to the same target may be held back to be sent together in one request.
+     * Messages are only batched when the target supports it, and a batch is sent before the window has passed if its
+     * payload reaches the send batch size. Setting this to 0 turns batching off.
+     *
+     * @param secs The number of seconds.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setSendBatchWindowSecs(double secs) {
+        this.sendBatchWindowSecs = secs;
+        return this;
+    }
+
+    /**
+     * Returns the number of payload bytes after which a batch of messages is sent without waiting for the rest of the
+     * send batch window.
+     *
+     * @return The number of bytes.
+     */
+    public int getSendBatchSize() {
+        return sendBatchSize;
+    }
+
+    /**
+     * Sets the number of payload bytes after which a batch of messages is sent without waiting for the rest of the
+     * send batch window.
+     *
+     * @param bytes The number of bytes.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setSendBatchSize(int bytes) {
+        this.sendBatchSize = bytes;
+        return this;
+    }
+
     /**
      * Returns the maximum input buffer size allowed for the underlying FNET connection.
      *
@@ -23,6 +23,9 @@ import com.yahoo.messagebus.routing.Route;
 import com.yahoo.messagebus.routing.RoutingNode;
 import com.yahoo.text.Utf8Array;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Implements the request adapter for method "mbus.send1/mbus.slime".
  *
@@ -41,6 +44,23 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
     protected abstract Reply createReply(Values ret, String serviceName, Trace trace);
     protected abstract Params toParams(Values req);
     protected abstract void createResponse(Values ret, Reply reply, Version version, byte [] payload);
+
+    /** Returns the methods this adapter serves. By default this is the single method returned by {@link #buildMethod} */
+    protected List<Method> buildMethods() {
+        return Collections.singletonList(buildMethod());
+    }
+
+    /**
+     * Called for each message before it is sent in a request of its own, to give the adapter a chance to send it
+     * some other way. The default implementation returns false.
+     *
+     * @return true if the message was taken care of, such that no request should be sent for it
+     */
+    protected boolean sendBatched(SendContext ctx, Version version, Route route, RPCServiceAddress address,
+                                  Message msg, byte[] payload) {
+        return false;
+    }
+
     @Override
     public final void attach(RPCNetwork net) {
         this.net = net;
@@ -49,9 +69,12 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
             clientIdent = "'" + prefix + "'";
             serverIdent = clientIdent;
         }
-        net.getSupervisor().addMethod(buildMethod());
+        for (Method method : buildMethods())
+            net.getSupervisor().addMethod(method);
     }
 
+    protected final RPCNetwork getNetwork() { return net; }
+
     @Override
     public final void send(RoutingNode recipient, Version version, byte[] payload, long timeRemaining) {
         SendContext ctx = new SendContext(recipient, timeRemaining);
@@ -60,14 +83,16 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         Route route = new Route(recipient.getRoute());
         Hop hop = route.removeHop(0);
 
-        Request req = encodeRequest(version, route, address,msg, timeRemaining, payload, ctx.trace.getLevel());
-
         if (ctx.trace.shouldTrace(TraceLevel.SEND_RECEIVE)) {
             ctx.trace.trace(TraceLevel.SEND_RECEIVE,
                     "Sending message (version " + version + ") from " + clientIdent + " to '" +
                             address.getServiceName() + "' with " + ctx.timeout + " seconds timeout.");
         }
 
+        if ( ! hop.getIgnoreResult() && sendBatched(ctx, version, route, address, msg, payload)) return;
+
+        Request req = encodeRequest(version, route, address,msg, timeRemaining, payload, ctx.trace.getLevel());
+
         if (hop.getIgnoreResult()) {
             address.getTarget().getJRTTarget().invokeVoid(req);
             if (ctx.trace.shouldTrace(TraceLevel.SEND_RECEIVE)) {
@@ -84,6 +109,15 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         req.discardParameters(); // allow garbage collection of request parameters
     }
 
+    /** Sends a message which was passed to {@link #sendBatched} in a request of its own after all */
+    protected final void sendSingle(SendContext ctx, Version version, Route route, RPCServiceAddress address,
+                                    Message msg, byte[] payload) {
+        Request req = encodeRequest(version, route, address, msg, msg.getTimeRemainingNow(), payload, ctx.trace.getLevel());
+        req.setContext(ctx);
+        address.getTarget().getJRTTarget().invokeAsync(req, ctx.timeRemaining(), this);
+        req.discardParameters();
+    }
+
     protected final Object decode(Utf8Array protocolName, Version version, byte [] payload) {
         Protocol protocol = net.getOwner().getProtocol(protocolName);
         if (protocol != null) {
@@ -112,29 +146,37 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
 
     private void doRequestDone(Request req) {
         SendContext ctx = (SendContext)req.getContext();
-        String serviceName = ((RPCServiceAddress)ctx.recipient.getServiceAddress()).getServiceName();
-        Reply reply = null;
-        Error error = null;
         if (!req.checkReturnTypes(getReturnSpec())) {
-            // Map all known JRT errors to the appropriate message bus error.
-            reply = new EmptyReply();
-            switch (req.errorCode()) {
-                case com.yahoo.jrt.ErrorCode.TIMEOUT:
-                    error = new Error(ErrorCode.TIMEOUT,
-                            "A timeout occured while waiting for '" + serviceName + "' (" +
-                                    ctx.timeout + " seconds expired); " + req.errorMessage());
-                    break;
-                case com.yahoo.jrt.ErrorCode.CONNECTION:
-                    error = new Error(ErrorCode.CONNECTION_ERROR,
-                            "A connection error occured for '" + serviceName + "'; " + req.errorMessage());
-                    break;
-                default:
-                    error = new Error(ErrorCode.NETWORK_ERROR,
-                            "A network error occured for '" + serviceName + "'; " + req.errorMessage());
-            }
+            deliverError(ctx, req);
         } else {
-            reply = createReply(req.returnValues(), serviceName, ctx.trace);
+            deliverReply(ctx, createReply(req.returnValues(), ctx.serviceName(), ctx.trace), null);
+        }
+    }
+
+    /** Delivers an error reply for a message which was sent in the given failed request */
+    protected final void deliverError(SendContext ctx, Request req) {
+        // Map all known JRT errors to the appropriate message bus error.
+        String serviceName = ctx.serviceName();
+        Error error;
+        switch (req.errorCode()) {
+            case com.yahoo.jrt.ErrorCode.TIMEOUT:
+                error = new Error(ErrorCode.TIMEOUT,
+                        "A timeout occured while waiting for '" + serviceName + "' (" +
+                                ctx.timeout + " seconds expired); " + req.errorMessage());
+                break;
+            case com.yahoo.jrt.ErrorCode.CONNECTION:
+                error = new Error(ErrorCode.CONNECTION_ERROR,
+                        "A connection error occured for '" + serviceName + "'; " + req.errorMessage());
+                break;
+            default:
+                error = new Error(ErrorCode.NETWORK_ERROR,
+                        "A network error occured for '" + serviceName + "'; " + req.errorMessage());
         }
+        deliverReply(ctx, new EmptyReply(), error);
+    }
+
+    /** Delivers the reply to a sent message to the owner of the network */
+    protected final void deliverReply(SendContext ctx, Reply reply, Error error) {
         if (ctx.trace.shouldTrace(TraceLevel.SEND_RECEIVE)) {
             ctx.trace.trace(TraceLevel.SEND_RECEIVE,
                     "Reply (type " + reply.getType() + ") received at " + clientIdent + ".");
@@ -146,7 +188,7 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         net.getOwner().deliverReply(reply, ctx.recipient);
     }
 
-    protected final class Params {
+    protected static final class Params {
         Version version;
         String route;
         String session;
@@ -169,23 +211,28 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
 
         request.discardParameters(); // allow garbage collection of request parameters
 
+        deliverMessage(p, new ReplyContext(request, p.version));
+    }
+
+    /** Decodes a received message and delivers it to the owner of the network, or replies with an error */
+    protected final void deliverMessage(Params p, ReplyContext replyContext) {
         // Make sure that the owner understands the protocol.
         Protocol protocol = net.getOwner().getProtocol(p.protocolName);
         if (protocol == null) {
-            replyError(request, p.version, p.traceLevel,
+            replyError(replyContext, p.traceLevel,
                     new Error(ErrorCode.UNKNOWN_PROTOCOL,
                             "Protocol '" + p.protocolName + "' is not known by " + serverIdent + "."));
             return;
         }
         Routable routable = protocol.decode(p.version, p.payload);
         if (routable == null) {
-            replyError(request, p.version, p.traceLevel,
+            replyError(replyContext, p.traceLevel,
                     new Error(ErrorCode.DECODE_ERROR,
                             "Protocol '" + protocol.getName() + "' failed to decode routable."));
             return;
         }
         if (routable instanceof Reply) {
-            replyError(request, p.version, p.traceLevel,
+            replyError(replyContext, p.traceLevel,
                     new Error(ErrorCode.DECODE_ERROR,
                             "Payload decoded to a reply when expecting a message."));
             return;
@@ -194,7 +241,7 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         if (p.route != null && p.route.length() > 0) {
             msg.setRoute(net.getRoute(p.route));
         }
-        msg.setContext(new ReplyContext(request, p.version));
+        msg.setContext(replyContext);
         msg.pushHandler(this);
         msg.setRetryEnabled(p.retryEnabled);
         msg.setRetry(p.retry);
@@ -231,40 +278,48 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
                         "An error occured while encoding the reply."));
             }
         }
-        createResponse(ctx.request.returnValues(), reply, ctx.version, payload);
-        ctx.request.returnRequest();
+        ctx.returnReply(this, reply, payload);
     }
 
     /**
      * Send an error reply for a given request.
      *
-     * @param request    The JRT request to reply to.
-     * @param version    The version to serialize for.
+     * @param ctx        The context of the request to reply to.
      * @param traceLevel The trace level to set in the reply.
      * @param err        The error to reply with.
      */
-    private void replyError(Request request, Version version, int traceLevel, Error err) {
+    private void replyError(ReplyContext ctx, int traceLevel, Error err) {
         Reply reply = new EmptyReply();
-        reply.setContext(new ReplyContext(request, version));
+        reply.setContext(ctx);
         reply.getTrace().setLevel(traceLevel);
         reply.addError(err);
         handleReply(reply);
     }
 
-    private static class SendContext {
+    protected static final class SendContext {
 
         final RoutingNode recipient;
         final Trace trace;
         final double timeout;
+        private final long createdNanos = System.nanoTime();
 
         SendContext(RoutingNode recipient, long timeRemaining) {
             this.recipient = recipient;
             trace = new Trace(recipient.getTrace().getLevel());
             timeout = timeRemaining * 0.001;
         }
+
+        /** Returns the timeout in seconds less the time passed since this was created, such as while queued */
+        double timeRemaining() {
+            return timeout - (System.nanoTime() - createdNanos) * 1e-9;
+        }
+
+        String serviceName() {
+            return ((RPCServiceAddress)recipient.getServiceAddress()).getServiceName();
+        }
     }
 
-    private static class ReplyContext {
+    protected static class ReplyContext {
 
         final Request request;
         final Version version;
@@ -273,5 +328,11 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
             this.request = request;
             this.version = version;
         }
+
+        /** Returns the given encoded reply to the sender of the message this is the context of */
+        protected void returnReply(RPCSend adapter, Reply reply, byte[] payload) {
+            adapter.createResponse(request.returnValues(), reply, version, payload);
+            request.returnRequest();
+        }
     }
 }
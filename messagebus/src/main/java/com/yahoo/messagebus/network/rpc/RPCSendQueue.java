@@ -0,0 +1,90 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.component.Version;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.routing.Route;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The messages waiting to be sent together in one request to an {@link RPCTarget}. A batch is taken out of
+ * this either when the payload of its messages reaches the send batch size, or when the flush which is scheduled
+ * when the first message is added runs.
+ *
+ * This also remembers whether the target has rejected a batch request, in which case no more messages
+ * should be added.
+ *
+ * This class is multithread safe.
+ */
+final class RPCSendQueue {
+
+    private List<Entry> entries = new ArrayList<>();
+    private int bytes = 0;
+    private boolean flushScheduled = false;
+    private volatile boolean rejected = false;
+
+    /**
+     * Adds a message to this.
+     *
+     * @param entry the message to add
+     * @param maxBytes the payload size at which the batch should be sent without waiting for the scheduled flush
+     * @param scheduleFlush called with the lock of this held when a flush of this should be scheduled
+     * @return the batch to send now, which is empty unless this reached max bytes
+     */
+    synchronized List<Entry> add(Entry entry, int maxBytes, Runnable scheduleFlush) {
+        entries.add(entry);
+        bytes += entry.payload.length;
+        if (bytes >= maxBytes) return drain();
+
+        if ( ! flushScheduled) {
+            flushScheduled = true;
+            scheduleFlush.run();
+        }
+        return Collections.emptyList();
+    }
+
+    /** Returns and removes all the messages in this. This should be called by the scheduled flush. */
+    synchronized List<Entry> flush() {
+        flushScheduled = false;
+        return drain();
+    }
+
+    private List<Entry> drain() {
+        List<Entry> batch = entries;
+        entries = new ArrayList<>();
+        bytes = 0;
+        return batch;
+    }
+
+    /** Returns whether the target of this has rejected a batch request */
+    boolean isRejected() { return rejected; }
+
+    /** Marks the target of this as not accepting batch requests */
+    void reject() { rejected = true; }
+
+    /** A message waiting in a queue */
+    static final class Entry {
+
+        final RPCSend.SendContext ctx;
+        final Version version;
+        final Route route;
+        final RPCServiceAddress address;
+        final Message msg;
+        final byte[] payload;
+
+        Entry(RPCSend.SendContext ctx, Version version, Route route, RPCServiceAddress address,
+              Message msg, byte[] payload) {
+            this.ctx = ctx;
+            this.version = version;
+            this.route = route;
+            this.address = address;
+            this.msg = msg;
+            this.payload = payload;
+        }
+
+    }
+
+}
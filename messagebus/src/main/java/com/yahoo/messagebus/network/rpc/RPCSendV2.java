@@ -4,14 +4,17 @@ package com.yahoo.messagebus.network.rpc;
 import com.yahoo.component.Version;
 import com.yahoo.compress.CompressionType;
 import com.yahoo.compress.Compressor;
+import com.yahoo.io.BufferPool;
 import com.yahoo.jrt.DataValue;
 import com.yahoo.jrt.Int32Value;
 import com.yahoo.jrt.Int8Value;
 import com.yahoo.jrt.Method;
 import com.yahoo.jrt.Request;
+import com.yahoo.jrt.RequestWaiter;
 import com.yahoo.jrt.Values;
 import com.yahoo.messagebus.EmptyReply;
 import com.yahoo.messagebus.Error;
+import com.yahoo.messagebus.ErrorCode;
 import com.yahoo.messagebus.Message;
 import com.yahoo.messagebus.Reply;
 import com.yahoo.messagebus.Trace;
@@ -24,8 +27,19 @@ import com.yahoo.slime.Slime;
 import com.yahoo.text.Utf8;
 import com.yahoo.text.Utf8Array;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
- * Implements the request adapter for method "mbus.slime".
+ * Implements the request adapter for method "mbus.slime", and for method "mbus.slime.batch" which
+ * sends a batch of messages to the same target in one request and returns their replies in the same order.
+ *
+ * Messages are only batched when the network has a send batch window, and the target claims a version which
+ * may serve batch requests. A target which nevertheless does not know the batch method is remembered,
+ * and the messages to it are sent one per request instead.
+ *
+ * Batch requests are only served by this Java implementation, not by the C++ message bus, so they are only sent
+ * to targets claiming {@link #BATCH_VERSION}, which is a version no C++ peer claims yet.
  *
  * @author baldersheim
  */
@@ -34,7 +48,20 @@ public class RPCSendV2 extends RPCSend {
     private final static String METHOD_NAME = "mbus.slime";
     private final static String METHOD_PARAMS = "bixbix";
     private final static String METHOD_RETURN = "bixbix";
+    private final static String BATCH_METHOD_NAME = "mbus.slime.batch";
+    private final static String BATCH_METHOD_PARAMS = "bix";
+    private final static String BATCH_METHOD_RETURN = "bix";
+
+    /**
+     * The lowest target version which is sent batch requests. The C++ message bus does not serve batch requests,
+     * and claims the same versions as Java, so this must be higher than the current version until it does.
+     */
+    static final Version BATCH_VERSION = new Version(7);
+
     private final Compressor compressor = new Compressor(CompressionType.LZ4, 3, 0.90, 1024);
+    /** Buffers for encoding slime, reused between requests to avoid allocating new buffers for each */
+    private final BufferPool encodeBuffers = new BufferPool(false, 1 << 20, 16);
+    private final RequestWaiter batchWaiter = request -> getNetwork().getExecutor().execute(() -> doBatchDone(request));
 
     @Override
     protected String getReturnSpec() { return METHOD_RETURN; }
@@ -57,6 +84,24 @@ public class RPCSendV2 extends RPCSend {
                 .returnDesc(5, "body_payload", "Slime encoded body payload.");
         return method;
     }
+
+    private Method buildBatchMethod() {
+        Method method = new Method(BATCH_METHOD_NAME, BATCH_METHOD_PARAMS, BATCH_METHOD_RETURN, this::invokeBatch);
+        method.methodDesc("Send a batch of message bus requests and get the replies back.");
+        method.paramDesc(0, "encoding", "Encoding type of the payload.")
+                .paramDesc(1, "decoded_size", "Number of bytes after payload decoding.")
+                .paramDesc(2, "payload", "Slime encoded array of messages.");
+        method.returnDesc(0, "encoding", "Encoding type of the payload.")
+                .returnDesc(1, "decoded_size", "Number of bytes after payload decoding.")
+                .returnDesc(2, "payload", "Slime encoded array of replies, in the order of the messages.");
+        return method;
+    }
+
+    @Override
+    protected List<Method> buildMethods() {
+        return Arrays.asList(buildMethod(), buildBatchMethod());
+    }
+
     private static final String VERSION_F = new String("version");
     private static final String ROUTE_F = new String("route");
     private static final String SESSION_F = new String("session");
@@ -72,6 +117,8 @@ public class RPCSendV2 extends RPCSend {
     private static final String CODE_F = new String("code");
     private static final String BLOB_F = new String("msg");
     private static final String MSG_F = new String("msg");
+    private static final String MESSAGES_F = new String("messages");
+    private static final String REPLIES_F = new String("replies");
 
     @Override
     protected Request encodeRequest(Version version, Route route, RPCServiceAddress address, Message msg,
@@ -86,35 +133,47 @@ public class RPCSendV2 extends RPCSend {
         v.add(new DataValue(new byte[0]));
 
         Slime slime = new Slime();
-        Cursor root = slime.setObject();
+        encodeMessage(slime.setObject(), version, route, address, msg, msg.getTimeRemaining(), payload, traceLevel);
+        addCompressed(v, slime);
+        return req;
+    }
 
+    private void encodeMessage(Cursor root, Version version, Route route, RPCServiceAddress address, Message msg,
+                               long timeRemaining, byte[] payload, int traceLevel) {
         root.setString(VERSION_F, version.toString());
         root.setString(ROUTE_F, route.toString());
         root.setString(SESSION_F, address.getSessionName());
         root.setString(PROTOCOL_F, msg.getProtocol().toString());
         root.setBool(USERETRY_F, msg.getRetryEnabled());
         root.setLong(RETRY_F, msg.getRetry());
-        root.setLong(TIMEREMAINING_F, msg.getTimeRemaining());
+        root.setLong(TIMEREMAINING_F, timeRemaining);
         root.setLong(TRACELEVEL_F, traceLevel);
         root.setData(BLOB_F, payload);
+    }
 
-        byte[] serializedSlime = BinaryFormat.encode(slime);
+    /** Adds the encoding, decoded size and compressed payload of the given slime to the given values */
+    private void addCompressed(Values v, Slime slime) {
+        byte[] serializedSlime = BinaryFormat.encode(slime, encodeBuffers);
         Compressor.Compression compressionResult = compressor.compress(serializedSlime);
 
         v.add(new Int8Value(compressionResult.type().getCode()));
         v.add(new Int32Value(compressionResult.uncompressedSize()));
         v.add(new DataValue(compressionResult.data()));
+    }
 
-        return req;
+    /** Decodes the slime added to the given values by {@link #addCompressed} at the given index */
+    private Inspector decodeCompressed(Values v, int index) {
+        CompressionType compression = CompressionType.valueOf(v.get(index).asInt8());
+        byte[] slimeBytes = compressor.decompress(v.get(index + 2).asData(), compression, v.get(index + 1).asInt32());
+        return BinaryFormat.decode(slimeBytes).get();
     }
 
     @Override
     protected Reply createReply(Values ret, String serviceName, Trace trace) {
-        CompressionType compression = CompressionType.valueOf(ret.get(3).asInt8());
-        byte[] slimeBytes = compressor.decompress(ret.get(5).asData(), compression, ret.get(4).asInt32());
-        Slime slime = BinaryFormat.decode(slimeBytes);
-        Inspector root = slime.get();
+        return decodeReply(decodeCompressed(ret, 3), serviceName, trace);
+    }
 
+    private Reply decodeReply(Inspector root, String serviceName, Trace trace) {
         Version version = new Version(root.field(VERSION_F).asString());
         byte[] payload = root.field(BLOB_F).asData();
 
@@ -151,10 +210,10 @@ public class RPCSendV2 extends RPCSend {
     }
 
     protected Params toParams(Values args) {
-        CompressionType compression = CompressionType.valueOf(args.get(3).asInt8());
-        byte[] slimeBytes = compressor.decompress(args.get(5).asData(), compression, args.get(4).asInt32());
-        Slime slime = BinaryFormat.decode(slimeBytes);
-        Inspector root = slime.get();
+        return toParams(decodeCompressed(args, 3));
+    }
+
+    private Params toParams(Inspector root) {
         Params p = new Params();
         p.version = new Version(root.field(VERSION_F).asString());
         p.route = root.field(ROUTE_F).asString();
@@ -175,8 +234,11 @@ public class RPCSendV2 extends RPCSend {
         ret.add(new DataValue(new byte[0]));
 
         Slime slime = new Slime();
-        Cursor root = slime.setObject();
+        encodeReply(slime.setObject(), reply, version, payload);
+        addCompressed(ret, slime);
+    }
 
+    private void encodeReply(Cursor root, Reply reply, Version version, byte [] payload) {
         root.setString(VERSION_F, version.toString());
         root.setDouble(RETRYDELAY_F, reply.getRetryDelay());
         root.setString(PROTOCOL_F, reply.getProtocol().toString());
@@ -197,13 +259,151 @@ public class RPCSendV2 extends RPCSend {
                 }
             }
         }
+    }
 
-        byte[] serializedSlime = BinaryFormat.encode(slime);
-        Compressor.Compression compressionResult = compressor.compress(serializedSlime);
+    @Override
+    protected boolean sendBatched(SendContext ctx, Version version, Route route, RPCServiceAddress address,
+                                  Message msg, byte[] payload) {
+        RPCNetwork net = getNetwork();
+        if (net.getSendBatchWindowSecs() <= 0 || version.compareTo(BATCH_VERSION) < 0) return false;
+
+        RPCSendQueue queue = address.getTarget().getSendQueue();
+        if (queue.isRejected()) return false;
+
+        sendBatch(queue.add(new RPCSendQueue.Entry(ctx, version, route, address, msg, payload),
+                            net.getSendBatchSize(),
+                            () -> net.scheduleSendBatch(() -> sendBatch(queue.flush()))));
+        return true;
+    }
+
+    private void sendBatch(List<RPCSendQueue.Entry> batch) {
+        if (batch.isEmpty()) return;
+        if (batch.size() == 1) {
+            sendSingle(batch.get(0));
+            return;
+        }
+
+        Slime slime = new Slime();
+        Cursor messages = slime.setObject().setArray(MESSAGES_F);
+        double timeout = 0;
+        for (RPCSendQueue.Entry entry : batch) {
+            encodeMessage(messages.addObject(), entry.version, entry.route, entry.address, entry.msg,
+                          entry.msg.getTimeRemainingNow(), entry.payload, entry.ctx.trace.getLevel());
+            timeout = Math.max(timeout, entry.ctx.timeRemaining());
+        }
+        Request req = new Request(BATCH_METHOD_NAME);
+        addCompressed(req.parameters(), slime);
+        req.setContext(batch);
+        batch.get(0).address.getTarget().getJRTTarget().invokeAsync(req, timeout, batchWaiter);
+        req.discardParameters(); // allow garbage collection of request parameters
+    }
+
+    private void sendSingle(RPCSendQueue.Entry entry) {
+        sendSingle(entry.ctx, entry.version, entry.route, entry.address, entry.msg, entry.payload);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void doBatchDone(Request req) {
+        List<RPCSendQueue.Entry> batch = (List<RPCSendQueue.Entry>)req.getContext();
+        if ( ! req.checkReturnTypes(BATCH_METHOD_RETURN)) {
+            if (req.errorCode() == com.yahoo.jrt.ErrorCode.NO_SUCH_METHOD) {
+                // The target does not know batch requests after all: Send these and all later messages singly
+                batch.get(0).address.getTarget().getSendQueue().reject();
+                batch.forEach(this::sendSingle);
+            } else {
+                for (RPCSendQueue.Entry entry : batch)
+                    deliverError(entry.ctx, req);
+            }
+            return;
+        }
+
+        Inspector replies = decodeCompressed(req.returnValues(), 0).field(REPLIES_F);
+        for (int i = 0; i < batch.size(); i++) {
+            SendContext ctx = batch.get(i).ctx;
+            if (i < replies.entries()) {
+                deliverReply(ctx, decodeReply(replies.entry(i), ctx.serviceName(), ctx.trace), null);
+            } else {
+                deliverReply(ctx, new EmptyReply(),
+                             new Error(ErrorCode.DECODE_ERROR, "A batch reply from '" + ctx.serviceName() +
+                                                               "' is missing the reply to this message."));
+            }
+        }
+    }
+
+    private void invokeBatch(Request request) {
+        request.detach();
+        getNetwork().getExecutor().execute(() -> doInvokeBatch(request));
+    }
+
+    private void doInvokeBatch(Request request) {
+        Inspector messages = decodeCompressed(request.parameters(), 0).field(MESSAGES_F);
+        request.discardParameters(); // allow garbage collection of request parameters
+
+        BatchReply batchReply = new BatchReply(request, messages.entries());
+        if (messages.entries() == 0) {
+            batchReply.complete();
+            return;
+        }
+        for (int i = 0; i < messages.entries(); i++) {
+            Params p = toParams(messages.entry(i));
+            deliverMessage(p, new BatchedReplyContext(batchReply, i, p.version));
+        }
+    }
+
+    /** Collects the replies to a batch request, and returns the request once all have arrived */
+    private class BatchReply {
+
+        private final Request request;
+        private final Reply[] replies;
+        private final Version[] versions;
+        private final byte[][] payloads;
+        private int pending;
+
+        BatchReply(Request request, int size) {
+            this.request = request;
+            this.replies = new Reply[size];
+            this.versions = new Version[size];
+            this.payloads = new byte[size][];
+            this.pending = size;
+        }
+
+        void set(int index, Reply reply, Version version, byte[] payload) {
+            synchronized (this) {
+                replies[index] = reply;
+                versions[index] = version;
+                payloads[index] = payload;
+                if (--pending > 0) return;
+            }
+            complete();
+        }
+
+        void complete() {
+            Slime slime = new Slime();
+            Cursor array = slime.setObject().setArray(REPLIES_F);
+            for (int i = 0; i < replies.length; i++)
+                encodeReply(array.addObject(), replies[i], versions[i], payloads[i]);
+            addCompressed(request.returnValues(), slime);
+            request.returnRequest();
+        }
+
+    }
+
+    private static class BatchedReplyContext extends ReplyContext {
+
+        private final BatchReply batchReply;
+        private final int index;
+
+        BatchedReplyContext(BatchReply batchReply, int index, Version version) {
+            super(batchReply.request, version);
+            this.batchReply = batchReply;
+            this.index = index;
+        }
+
+        @Override
+        protected void returnReply(RPCSend adapter, Reply reply, byte[] payload) {
+            batchReply.set(index, reply, version, payload);
+        }
 
-        ret.add(new Int8Value(compressionResult.type().getCode()));
-        ret.add(new Int32Value(compressionResult.uncompressedSize()));
-        ret.add(new DataValue(compressionResult.data()));
     }
 
 }
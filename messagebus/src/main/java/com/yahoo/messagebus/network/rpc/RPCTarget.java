@@ -26,6 +26,7 @@ public class RPCTarget implements RequestWaiter {
     private boolean targetInvoked = false;
     private Version version = null;
     private List<VersionHandler> versionHandlers = new LinkedList<>();
+    private final RPCSendQueue sendQueue = new RPCSendQueue();
 
     /**
      * <p>Constructs a new instance of this class.</p>
@@ -47,6 +48,16 @@ public class RPCTarget implements RequestWaiter {
         return target;
     }
 
+    /**
+     * <p>Returns the queue of messages waiting to be sent to this target in
+     * a batch request.</p>
+     *
+     * @return The send queue.
+     */
+    RPCSendQueue getSendQueue() {
+        return sendQueue;
+    }
+
     /**
      * <p>This method is used for explicit reference counting targets to allow
      * reusing open connections. An instance of this class is constructed with a
@@ -0,0 +1,104 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.jrt.ListenFailedException;
+import com.yahoo.jrt.slobrok.server.Slobrok;
+import com.yahoo.messagebus.DestinationSession;
+import com.yahoo.messagebus.DestinationSessionParams;
+import com.yahoo.messagebus.MessageBusParams;
+import com.yahoo.messagebus.SourceSession;
+import com.yahoo.messagebus.SourceSessionParams;
+import com.yahoo.messagebus.network.Identity;
+import com.yahoo.messagebus.network.rpc.test.TestServer;
+import com.yahoo.messagebus.routing.Route;
+import com.yahoo.messagebus.test.SimpleMessage;
+import com.yahoo.messagebus.test.SimpleProtocol;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the number of messages per second a source can send to a destination over a loopback network
+ * and get replies to, with and without sending batches of messages in one request.
+ */
+public class SendBatchBenchmark {
+
+    private static final int MAX_PENDING = 1000;
+
+    private final Slobrok slobrok;
+
+    private SendBatchBenchmark() throws ListenFailedException {
+        slobrok = new Slobrok();
+    }
+
+    /** Returns the number of messages per second replied to when sending for the given number of seconds */
+    private double benchmark(double batchWindowSecs, int messageSize, double seconds) throws InterruptedException {
+        TestServer dstServer = new TestServer(
+                new MessageBusParams().addProtocol(new SimpleProtocol()),
+                new RPCNetworkParams().setIdentity(new Identity("dst")).setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok)));
+        DestinationSession[] dstSession = new DestinationSession[1];
+        dstSession[0] = dstServer.mb.createDestinationSession(
+                new DestinationSessionParams().setName("session").setMessageHandler(msg -> dstSession[0].acknowledge(msg)));
+
+        Semaphore pending = new Semaphore(MAX_PENDING);
+        AtomicLong replies = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        TestServer srcServer = new TestServer(
+                new MessageBusParams().addProtocol(new SimpleProtocol()),
+                new RPCNetworkParams().setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok))
+                                      .setSendBatchWindowSecs(batchWindowSecs));
+        // batch requests are only sent when both sides claim a version which serves them
+        dstServer.net.setVersion(RPCSendV2.BATCH_VERSION);
+        srcServer.net.setVersion(RPCSendV2.BATCH_VERSION);
+        SourceSession srcSession = srcServer.mb.createSourceSession(
+                new SourceSessionParams().setTimeout(60.0).setThrottlePolicy(null).setReplyHandler(reply -> {
+                    if (reply.hasErrors())
+                        errors.incrementAndGet();
+                    replies.incrementAndGet();
+                    pending.release();
+                }));
+        if ( ! srcServer.waitSlobrok("dst/session", 1))
+            throw new IllegalStateException("Destination session was not registered");
+
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < messageSize; i++)
+            value.append((char)('a' + i % 26));
+        Route route = Route.parse("dst/session");
+
+        long endTime = System.nanoTime() + (long)(seconds * 1.0e9);
+        long startReplies = -1;
+        long startTime = 0;
+        while (System.nanoTime() < endTime) {
+            if (startReplies < 0 && System.nanoTime() > endTime - (long)(seconds * 0.8e9)) { // after warmup
+                startReplies = replies.get();
+                startTime = System.nanoTime();
+            }
+            pending.acquire();
+            if ( ! srcSession.send(new SimpleMessage(value.toString()), route).isAccepted())
+                pending.release();
+        }
+        double messagesPerSecond = (replies.get() - startReplies) / ((System.nanoTime() - startTime) / 1.0e9);
+        pending.acquire(MAX_PENDING);
+        if (errors.get() > 0)
+            throw new IllegalStateException(errors.get() + " of " + replies.get() + " replies failed");
+
+        srcSession.destroy();
+        srcServer.destroy();
+        dstSession[0].destroy();
+        dstServer.destroy();
+        return messagesPerSecond;
+    }
+
+    public static void main(String[] args) throws Exception {
+        SendBatchBenchmark benchmark = new SendBatchBenchmark();
+        for (int messageSize : new int[] { 100, 1000 }) {
+            for (double window : new double[] { 0, 0.0001, 0.001 }) {
+                double messagesPerSecond = benchmark.benchmark(window, messageSize, 10);
+                System.out.printf("%5d byte messages, batch window %6.1f us: %9.0f messages/sec\n",
+                                  messageSize, window * 1.0e6, messagesPerSecond);
+            }
+        }
+        benchmark.slobrok.stop();
+    }
+
+}
@@ -0,0 +1,150 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.component.Version;
+import com.yahoo.jrt.ListenFailedException;
+import com.yahoo.jrt.Supervisor;
+import com.yahoo.jrt.slobrok.server.Slobrok;
+import com.yahoo.messagebus.DestinationSession;
+import com.yahoo.messagebus.DestinationSessionParams;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.MessageBusParams;
+import com.yahoo.messagebus.Reply;
+import com.yahoo.messagebus.SourceSession;
+import com.yahoo.messagebus.SourceSessionParams;
+import com.yahoo.messagebus.network.Identity;
+import com.yahoo.messagebus.network.rpc.test.TestServer;
+import com.yahoo.messagebus.routing.Route;
+import com.yahoo.messagebus.test.Receptor;
+import com.yahoo.messagebus.test.SimpleMessage;
+import com.yahoo.messagebus.test.SimpleProtocol;
+import com.yahoo.messagebus.test.SimpleReply;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests sending batches of messages in one request with method "mbus.slime.batch".
+ */
+public class SendBatchTestCase {
+
+    Slobrok slobrok;
+    TestServer srcServer, dstServer;
+    SourceSession srcSession;
+    DestinationSession dstSession;
+
+    @Before
+    public void setUp() throws ListenFailedException {
+        slobrok = new Slobrok();
+        dstServer = new TestServer(
+                new MessageBusParams().addProtocol(new SimpleProtocol()),
+                new RPCNetworkParams().setIdentity(new Identity("dst")).setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok)));
+        dstSession = dstServer.mb.createDestinationSession(
+                new DestinationSessionParams().setName("session").setMessageHandler(new Receptor()));
+        srcServer = new TestServer(
+                new MessageBusParams().addProtocol(new SimpleProtocol()),
+                new RPCNetworkParams().setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok))
+                                      .setSendBatchWindowSecs(0.5));
+        // batch requests are only sent when both sides claim a version which serves them
+        dstServer.net.setVersion(RPCSendV2.BATCH_VERSION);
+        srcServer.net.setVersion(RPCSendV2.BATCH_VERSION);
+        srcSession = srcServer.mb.createSourceSession(
+                new SourceSessionParams().setTimeout(600.0).setReplyHandler(new Receptor()));
+        assertTrue(srcServer.waitSlobrok("dst/session", 1));
+    }
+
+    @After
+    public void tearDown() {
+        slobrok.stop();
+        dstSession.destroy();
+        dstServer.destroy();
+        srcSession.destroy();
+        srcServer.destroy();
+    }
+
+    @Test
+    public void requireThatMessagesInTheSameWindowAreRepliedToTogether() {
+        send("a");
+        send("b");
+        Message a = receiveMessage();
+        Message b = receiveMessage();
+        assertEquals(setOf("a", "b"), setOf(value(a), value(b)));
+
+        reply(b, "reply to " + value(b));
+        assertNull("The reply to a batched message waits for the rest of the batch",
+                   ((Receptor)srcSession.getReplyHandler()).getReply(1));
+        reply(a, "reply to " + value(a));
+        assertEquals(setOf("reply to a", "reply to b"), setOf(receiveReplyValue(), receiveReplyValue()));
+    }
+
+    @Test
+    public void requireThatMessagesAreSentSinglyToTargetsWithoutTheBatchMethod() {
+        Supervisor supervisor = ((RPCNetwork)dstServer.net).getSupervisor();
+        supervisor.removeMethod("mbus.slime.batch");
+        supervisor.transport().sync();
+        assertMessagesCanBeSent();
+    }
+
+    @Test
+    public void requireThatMessagesAreSentSinglyToTargetsOfOlderVersions() {
+        dstServer.net.setVersion(new Version(6, 149));
+        assertMessagesCanBeSent();
+    }
+
+    private void assertMessagesCanBeSent() {
+        for (int round = 0; round < 2; round++) {
+            send("a");
+            send("b");
+            Message first = receiveMessage();
+            reply(first, "reply to " + value(first));
+            assertEquals("reply to " + value(first), receiveReplyValue());
+            Message second = receiveMessage();
+            reply(second, "reply to " + value(second));
+            assertEquals("reply to " + value(second), receiveReplyValue());
+        }
+    }
+
+    private void send(String value) {
+        assertTrue(srcSession.send(new SimpleMessage(value), Route.parse("dst/session")).isAccepted());
+    }
+
+    private Message receiveMessage() {
+        Message message = ((Receptor)dstSession.getMessageHandler()).getMessage(60);
+        assertNotNull(message);
+        return message;
+    }
+
+    private void reply(Message message, String value) {
+        Reply reply = new SimpleReply(value);
+        reply.swapState(message);
+        dstSession.reply(reply);
+    }
+
+    private String receiveReplyValue() {
+        Reply reply = ((Receptor)srcSession.getReplyHandler()).getReply(60);
+        assertNotNull(reply);
+        assertFalse(reply.hasErrors());
+        return ((SimpleReply)reply).getValue();
+    }
+
+    private static String value(Message message) {
+        return ((SimpleMessage)message).getValue();
+    }
+
+    private static Set<String> setOf(String ... values) {
+        Set<String> set = new HashSet<>();
+        for (String value : values)
+            set.add(value);
+        return set;
+    }
+
+}
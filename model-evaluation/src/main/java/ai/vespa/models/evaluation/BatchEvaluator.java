@@ -0,0 +1,314 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import com.google.common.annotations.Beta;
+import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorAddress;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.ParallelEvaluation;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * An evaluator which evaluates a function over a batch of rows of arguments, and returns the results of all the rows
+ * as one tensor. This amortizes the cost of setting up evaluation over all the rows of the batch: The same
+ * context is reused for all rows, and values computed by referenced functions which do not depend on the arguments
+ * are computed once per batch.
+ * <p>
+ * Arguments are bound column-wise: Either as a tensor containing the indexed dimension named <code>batch</code>
+ * in addition to the dimensions of the argument type, where each value of the batch dimension is one row,
+ * or, for scalar arguments, as an array containing the value of each row.
+ * Arguments bound to a value of the argument type have the same value in all rows.
+ * The result is a tensor of the return type of the function with the batch dimension added.
+ * <p>
+ * Usage:
+ * <code>Tensor result = model.batchEvaluatorOf("myFunction").bind("foo", fooValues).bind("bar", barValues).evaluate()</code>
+ * <p>
+ * An evaluator can be reused to evaluate multiple batches, but is not multithread safe.
+ */
+@Beta
+public class BatchEvaluator {
+
+    /** The name of the dimension holding the rows of batch arguments and results */
+    public static final String batchDimension = "batch";
+
+    private final ExpressionFunction function;
+    private final LazyArrayContext context;
+
+    /** The values of each row of the arguments bound to batches, indexed by argument name */
+    private final Map<String, Value[]> batchBindings = new LinkedHashMap<>();
+
+    /** The arguments bound to the same value in all rows */
+    private final Map<String, Value> bindings = new LinkedHashMap<>();
+
+    BatchEvaluator(ExpressionFunction function, LazyArrayContext context) {
+        this.function = function;
+        this.context = context;
+    }
+
+    /**
+     * Binds the given variable referred in this expression to the given value.
+     * If the value contains the batch dimension, each row of the batch is bound to the corresponding
+     * value of the batch dimension. Otherwise the variable is bound to the given value in all rows.
+     *
+     * @param name the variable to bind
+     * @param value the value this becomes bound to
+     * @return this for chaining
+     */
+    public BatchEvaluator bind(String name, Tensor value) {
+        TensorType requiredType = requireArgumentType(name);
+        if (value.type().dimension(batchDimension).isPresent()) {
+            batchBindings.put(name, rows(name, value, requiredType));
+            bindings.remove(name);
+        }
+        else {
+            if ( ! value.type().isAssignableTo(requiredType))
+                throw new IllegalArgumentException("'" + name + "' must be of type " + requiredType + ", not " + value.type());
+            bindings.put(name, new TensorValue(value));
+            batchBindings.remove(name);
+        }
+        return this;
+    }
+
+    /**
+     * Binds the given scalar variable referred in this expression to the given value in all rows.
+     *
+     * @param name the variable to bind
+     * @param value the value this becomes bound to
+     * @return this for chaining
+     */
+    public BatchEvaluator bind(String name, double value) {
+        return bind(name, Tensor.Builder.of(TensorType.empty).cell(value).build());
+    }
+
+    /**
+     * Binds the given scalar variable referred in this expression to the given value in each row.
+     *
+     * @param name the variable to bind
+     * @param values the value of each row of the batch. This array is not copied and must not be modified
+     *               until this is evaluated
+     * @return this for chaining
+     */
+    public BatchEvaluator bind(String name, double[] values) {
+        TensorType requiredType = requireArgumentType(name);
+        if (requiredType.rank() > 0)
+            throw new IllegalArgumentException("'" + name + "' must be of type " + requiredType + ", not a scalar");
+        Value[] rows = new Value[values.length];
+        for (int i = 0; i < values.length; i++)
+            rows[i] = new DoubleValue(values[i]);
+        batchBindings.put(name, rows);
+        bindings.remove(name);
+        return this;
+    }
+
+    /**
+     * Sets whether and how large dense tensor operations in the evaluation of each row are split over multiple threads.
+     * Rows are still evaluated one at a time. The default is to evaluate in the calling thread only.
+     *
+     * @return this for chaining
+     */
+    public BatchEvaluator setParallelEvaluation(ParallelEvaluation parallelEvaluation) {
+        context.setParallelEvaluation(parallelEvaluation);
+        return this;
+    }
+
+    /**
+     * Evaluates the function over all rows of the currently bound batch.
+     *
+     * @return the result of each row, in a tensor containing the batch dimension
+     * @throws IllegalStateException if an argument is missing, no batch is bound, or batches have different sizes
+     */
+    public Tensor evaluate() {
+        for (Map.Entry<String, TensorType> argument : function.argumentTypes().entrySet()) {
+            if (argument.getValue().rank() == 0) continue; // Scalar arguments can be skipped (defaults to 0)
+            if ( ! bindings.containsKey(argument.getKey()) && ! batchBindings.containsKey(argument.getKey()))
+                throw new IllegalStateException("Missing argument '" + argument.getKey() +
+                                                "': Must be bound to a value of type " + argument.getValue());
+        }
+        int size = batchSize();
+
+        for (Map.Entry<String, Value> binding : bindings.entrySet())
+            context.put(binding.getKey(), binding.getValue());
+
+        int[] batchIndexes = new int[batchBindings.size()];
+        Value[][] batchValues = new Value[batchBindings.size()][];
+        int i = 0;
+        for (Map.Entry<String, Value[]> binding : batchBindings.entrySet()) {
+            batchIndexes[i] = context.getIndex(binding.getKey());
+            batchValues[i] = binding.getValue();
+            i++;
+        }
+
+        ResultBuilder result = new ResultBuilder(size);
+        for (int row = 0; row < size; row++) {
+            context.clearArgumentDependentValues();
+            for (int argument = 0; argument < batchIndexes.length; argument++)
+                context.put(batchIndexes[argument], batchValues[argument][row]);
+            result.add(row, function.getBody().evaluate(context));
+        }
+        context.clearArgumentDependentValues();
+        return result.build();
+    }
+
+    /** Returns the function evaluated by this */
+    public ExpressionFunction function() { return function; }
+
+    private TensorType requireArgumentType(String name) {
+        TensorType requiredType = function.argumentTypes().get(name);
+        if (requiredType == null)
+            throw new IllegalArgumentException("'" + name + "' is not a valid argument in " + function +
+                                               ". Expected arguments: " + function.argumentTypes().entrySet().stream()
+                                                                                  .map(e -> e.getKey() + ": " + e.getValue())
+                                                                                  .collect(Collectors.joining(", ")));
+        return requiredType;
+    }
+
+    private int batchSize() {
+        if (batchBindings.isEmpty())
+            throw new IllegalStateException("No argument is bound to a batch in " + function);
+        int size = -1;
+        for (Map.Entry<String, Value[]> binding : batchBindings.entrySet()) {
+            if (size >= 0 && binding.getValue().length != size)
+                throw new IllegalStateException("Arguments must be bound to batches of the same size, but '" +
+                                                binding.getKey() + "' has " + binding.getValue().length +
+                                                " rows while previous arguments have " + size);
+            size = binding.getValue().length;
+        }
+        return size;
+    }
+
+    /** Splits a batch tensor into a value per row */
+    private Value[] rows(String name, Tensor batch, TensorType requiredType) {
+        TensorType.Dimension dimension = batch.type().dimension(batchDimension).get();
+        if ( ! dimension.isIndexed())
+            throw new IllegalArgumentException("The " + batchDimension + " dimension of '" + name + "' must be indexed, " +
+                                               "but has type " + batch.type());
+        int batchIndex = batch.type().indexOfDimension(batchDimension).get();
+        TensorType rowType = withoutBatchDimension(batch.type());
+        if ( ! rowType.isAssignableTo(requiredType))
+            throw new IllegalArgumentException("'" + name + "' must be of type " + requiredType +
+                                               " with a " + batchDimension + " dimension, not " + batch.type());
+
+        int size = dimension.size().isPresent() ? dimension.size().get().intValue() : batchSizeOf(batch, batchIndex);
+        Tensor.Builder[] rowBuilders = new Tensor.Builder[size];
+        for (int row = 0; row < size; row++)
+            rowBuilders[row] = Tensor.Builder.of(rowType);
+        for (Iterator<Tensor.Cell> i = batch.cellIterator(); i.hasNext(); ) {
+            Tensor.Cell cell = i.next();
+            TensorAddress address = cell.getKey();
+            String[] rowLabels = new String[address.size() - 1];
+            for (int d = 0, rowD = 0; d < address.size(); d++) {
+                if (d != batchIndex)
+                    rowLabels[rowD++] = address.label(d);
+            }
+            rowBuilders[(int)address.numericLabel(batchIndex)].cell(TensorAddress.of(rowLabels), cell.getValue());
+        }
+
+        Value[] rows = new Value[size];
+        for (int row = 0; row < size; row++)
+            rows[row] = new TensorValue(rowBuilders[row].build());
+        return rows;
+    }
+
+    private int batchSizeOf(Tensor batch, int batchIndex) {
+        long maxLabel = -1;
+        for (Iterator<Tensor.Cell> i = batch.cellIterator(); i.hasNext(); )
+            maxLabel = Math.max(maxLabel, i.next().getKey().numericLabel(batchIndex));
+        return (int)maxLabel + 1;
+    }
+
+    private static TensorType withoutBatchDimension(TensorType type) {
+        TensorType.Builder builder = new TensorType.Builder(type.valueType());
+        for (TensorType.Dimension dimension : type.dimensions()) {
+            if ( ! dimension.name().equals(batchDimension))
+                builder.dimension(dimension);
+        }
+        return builder.build();
+    }
+
+    /** Collects the results of each row into one tensor */
+    private static class ResultBuilder {
+
+        private final int size;
+
+        /** The type of the result of each row, or null if no result has been added */
+        private TensorType rowType = null;
+
+        /** The results of each row when they are scalars */
+        private double[] scalarResults;
+
+        /** The builder of the result when rows produce tensors */
+        private Tensor.Builder builder;
+
+        /** The index of each dimension of the result of a row in the result address, and of the batch dimension */
+        private int[] resultIndexes;
+        private int batchIndex;
+
+        ResultBuilder(int size) {
+            this.size = size;
+        }
+
+        void add(int row, Value value) {
+            Tensor result = value.asTensor();
+            if (rowType == null)
+                setRowType(result.type());
+            else if ( ! result.type().equals(rowType))
+                throw new IllegalArgumentException("Row " + row + " produced a result of type " + result.type() +
+                                                   " but previous rows produced " + rowType);
+
+            if (scalarResults != null) {
+                scalarResults[row] = result.asDouble();
+                return;
+            }
+
+            String[] labels = new String[resultIndexes.length + 1];
+            labels[batchIndex] = String.valueOf(row);
+            for (Iterator<Tensor.Cell> i = result.cellIterator(); i.hasNext(); ) {
+                Tensor.Cell cell = i.next();
+                for (int d = 0; d < resultIndexes.length; d++)
+                    labels[resultIndexes[d]] = cell.getKey().label(d);
+                builder.cell(TensorAddress.of(labels), cell.getValue());
+            }
+        }
+
+        private void setRowType(TensorType rowType) {
+            if (rowType.dimension(batchDimension).isPresent())
+                throw new IllegalArgumentException("Results containing a '" + batchDimension + "' dimension cannot be " +
+                                                   "evaluated in batches, but got " + rowType);
+            this.rowType = rowType;
+            TensorType resultType = new TensorType.Builder(rowType).indexed(batchDimension, size).build();
+            if (rowType.rank() == 0) {
+                scalarResults = new double[size];
+                return;
+            }
+            builder = Tensor.Builder.of(resultType);
+            resultIndexes = new int[rowType.rank()];
+            for (int d = 0; d < rowType.rank(); d++)
+                resultIndexes[d] = resultType.indexOfDimension(rowType.dimensions().get(d).name()).get();
+            batchIndex = resultType.indexOfDimension(batchDimension).get();
+        }
+
+        Tensor build() {
+            if (rowType == null) // No rows
+                return Tensor.Builder.of(new TensorType.Builder().indexed(batchDimension, 0).build()).build();
+            if (scalarResults != null) {
+                IndexedTensor.Builder scalarBuilder =
+                        IndexedTensor.Builder.of(new TensorType.Builder().indexed(batchDimension, size).build());
+                for (int row = 0; row < size; row++)
+                    scalarBuilder.cell(scalarResults[row], row);
+                return scalarBuilder.build();
+            }
+            return builder.build();
+        }
+
+    }
+
+}
@@ -7,6 +7,7 @@ import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
 import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.ParallelEvaluation;
 
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -63,6 +64,18 @@ public class FunctionEvaluator {
         return bind(name, Tensor.Builder.of(TensorType.empty).cell(value).build());
     }
 
+    /**
+     * Sets whether and how large dense tensor operations are split over multiple threads when this is evaluated.
+     * This does not change the result, but may reduce latency when evaluating large models at low concurrency.
+     * The default is to evaluate in the calling thread only.
+     *
+     * @return this for chaining
+     */
+    public FunctionEvaluator setParallelEvaluation(ParallelEvaluation parallelEvaluation) {
+        context.setParallelEvaluation(parallelEvaluation);
+        return this;
+    }
+
     public Tensor evaluate() {
         for (Map.Entry<String, TensorType> argument : function.argumentTypes().entrySet()) {
             if (argument.getValue().rank() == 0) continue; // Scalar argumentds can be skipped (defaults to 0)
@@ -114,6 +114,14 @@ public final class LazyArrayContext extends Context implements ContextIndex {
     /** Returns the (immutable) subset of names in this which must be bound when invoking */
     public Set<String> arguments() { return indexedBindings.arguments(); }
 
+    /**
+     * Forgets the values computed by the functions referenced from this which depends on the arguments,
+     * such that this can be reused to evaluate the function with new argument bindings.
+     */
+    void clearArgumentDependentValues() {
+        indexedBindings.clearArgumentDependentValues();
+    }
+
     private Integer requireIndexOf(String name) {
         Integer index = indexedBindings.indexOf(name);
         if (index == null)
@@ -137,15 +145,20 @@ public final class LazyArrayContext extends Context implements ContextIndex {
         /** The names which neeeds to be bound externally when envoking this (i.e not constant or invocation */
         private final ImmutableSet<String> arguments;
 
+        /** The indexes of the function values which depends on the arguments */
+        private final int[] argumentDependentFunctions;
+
         /** The current values set, pre-converted to doubles */
         private final Value[] values;
 
         private IndexedBindings(ImmutableMap<String, Integer> nameToIndex,
                                 Value[] values,
-                                ImmutableSet<String> arguments) {
+                                ImmutableSet<String> arguments,
+                                int[] argumentDependentFunctions) {
             this.nameToIndex = nameToIndex;
             this.values = values;
             this.arguments = arguments;
+            this.argumentDependentFunctions = argumentDependentFunctions;
         }
 
         /**
@@ -160,7 +173,9 @@ public final class LazyArrayContext extends Context implements ContextIndex {
             // 1. Determine and prepare bind targets
             Set<String> bindTargets = new LinkedHashSet<>();
             Set<String> arguments = new LinkedHashSet<>(); // Arguments: Bind targets which need to be bound before invocation
-            extractBindTargets(function.getBody().getRoot(), referencedFunctions, bindTargets, arguments);
+            Set<String> argumentDependentFunctions = new LinkedHashSet<>();
+            extractBindTargets(function.getBody().getRoot(), referencedFunctions, bindTargets, arguments,
+                               argumentDependentFunctions);
 
             this.arguments = ImmutableSet.copyOf(arguments);
             values = new Value[bindTargets.size()];
@@ -171,7 +186,7 @@ public final class LazyArrayContext extends Context implements ContextIndex {
             for (String variable : bindTargets)
                 nameToIndexBuilder.put(variable, i++);
             nameToIndex = nameToIndexBuilder.build();
-
+            this.argumentDependentFunctions = argumentDependentFunctions.stream().mapToInt(nameToIndex::get).toArray();
 
             // 2. Bind the bind targets
             for (Constant constant : constants) {
@@ -188,28 +203,40 @@ public final class LazyArrayContext extends Context implements ContextIndex {
             }
         }
 
-        private void extractBindTargets(ExpressionNode node,
-                                        Map<FunctionReference, ExpressionFunction> functions,
-                                        Set<String> bindTargets,
-                                        Set<String> arguments) {
+        /** Returns whether the given node depends on any argument */
+        private boolean extractBindTargets(ExpressionNode node,
+                                           Map<FunctionReference, ExpressionFunction> functions,
+                                           Set<String> bindTargets,
+                                           Set<String> arguments,
+                                           Set<String> argumentDependentFunctions) {
             if (isFunctionReference(node)) {
                 FunctionReference reference = FunctionReference.fromSerial(node.toString()).get();
                 bindTargets.add(reference.serialForm());
 
-                extractBindTargets(functions.get(reference).getBody().getRoot(), functions, bindTargets, arguments);
+                boolean dependsOnArguments = extractBindTargets(functions.get(reference).getBody().getRoot(), functions,
+                                                                bindTargets, arguments, argumentDependentFunctions);
+                if (dependsOnArguments)
+                    argumentDependentFunctions.add(reference.serialForm());
+                return dependsOnArguments;
             }
             else if (isConstant(node)) {
                 bindTargets.add(node.toString());
+                return false;
             }
             else if (node instanceof ReferenceNode) {
                 bindTargets.add(node.toString());
                 arguments.add(node.toString());
+                return true;
             }
             else if (node instanceof CompositeNode) {
+                boolean dependsOnArguments = false;
                 CompositeNode cNode = (CompositeNode)node;
                 for (ExpressionNode child : cNode.children())
-                    extractBindTargets(child, functions, bindTargets, arguments);
+                    dependsOnArguments |= extractBindTargets(child, functions, bindTargets, arguments,
+                                                             argumentDependentFunctions);
+                return dependsOnArguments;
             }
+            return false;
         }
 
         private boolean isFunctionReference(ExpressionNode node) {
@@ -232,11 +259,18 @@ public final class LazyArrayContext extends Context implements ContextIndex {
         Set<String> arguments() { return arguments; }
         Integer indexOf(String name) { return nameToIndex.get(name); }
 
+        void clearArgumentDependentValues() {
+            for (int index : argumentDependentFunctions) {
+                if (values[index] instanceof LazyValue)
+                    ((LazyValue)values[index]).clear();
+            }
+        }
+
         IndexedBindings copy(Context context) {
             Value[] valueCopy = new Value[values.length];
             for (int i = 0; i < values.length; i++)
                 valueCopy[i] = values[i] instanceof LazyValue ? ((LazyValue)values[i]).copyFor(context) : values[i];
-            return new IndexedBindings(nameToIndex, valueCopy, arguments);
+            return new IndexedBindings(nameToIndex, valueCopy, arguments, argumentDependentFunctions);
         }
 
     }
@@ -5,8 +5,10 @@ import com.google.common.annotations.Beta;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
 import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
 import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionOptimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.compilation.CompilationOptimizer;
 import com.yahoo.searchlib.rankingexpression.integration.ml.importer.operations.IntermediateOperation;
 import com.yahoo.tensor.TensorType;
 
@@ -83,12 +85,9 @@ public class Model {
             }
         }
         this.contextPrototypes = contextBuilder.build();
-        this.functions = ImmutableList.copyOf(functions.values());
-        this.publicFunctions = ImmutableList.copyOf(functions.values().stream()
-                                                                      .filter(f ->  ! f.getName().startsWith(IntermediateOperation.FUNCTION_PREFIX))
-                                                                      .collect(Collectors.toList()));
 
-        // Optimize functions
+        // Optimize referenced functions. These are evaluated in the context of each function referencing them,
+        // where variables have other indexes than in their own context prototype, so they are not compiled
         ImmutableMap.Builder<FunctionReference, ExpressionFunction> functionsBuilder = new ImmutableMap.Builder<>();
         for (Map.Entry<FunctionReference, ExpressionFunction> function : referencedFunctions.entrySet()) {
             ExpressionFunction optimizedFunction = optimize(function.getValue(),
@@ -96,6 +95,30 @@ public class Model {
             functionsBuilder.put(function.getKey(), optimizedFunction);
         }
         this.referencedFunctions = functionsBuilder.build();
+
+        // Optimize free functions, which are evaluated in (copies of) their own context prototype.
+        // Those taking scalar arguments only are also compiled, as they are then always evaluated with doubles.
+        // The body is copied as a free function may also be a referenced function
+        ImmutableList.Builder<ExpressionFunction> freeFunctionsBuilder = new ImmutableList.Builder<>();
+        for (ExpressionFunction function : functions.values()) {
+            ExpressionFunction copy = function.withBody(new RankingExpression(function.getBody().getName(),
+                                                                              function.getBody().getRoot()));
+            expressionOptimizer.getOptimizer(CompilationOptimizer.class).setEnabled(hasScalarArgumentsOnly(function));
+            freeFunctionsBuilder.add(optimize(copy, contextPrototypes.get(function.getName())));
+        }
+        this.functions = freeFunctionsBuilder.build();
+        this.publicFunctions = ImmutableList.copyOf(this.functions.stream()
+                                                                  .filter(f ->  ! f.getName().startsWith(IntermediateOperation.FUNCTION_PREFIX))
+                                                                  .collect(Collectors.toList()));
+    }
+
+    /** Returns whether all the arguments of the given function are declared to be scalars */
+    private boolean hasScalarArgumentsOnly(ExpressionFunction function) {
+        for (String argument : function.arguments()) {
+            TensorType type = function.argumentTypes().get(argument);
+            if (type == null || type.rank() > 0) return false;
+        }
+        return true;
     }
 
     /** Returns an optimized version of the given function */
@@ -169,22 +192,42 @@ public class Model {
      * @throws IllegalArgumentException if the function is not present, or not uniquely identified by the names given
      */
     public FunctionEvaluator evaluatorOf(String ... names) {  // TODO: Parameter overloading?
+        ExpressionFunction function = resolveFunction(names);
+        return new FunctionEvaluator(function, requireContextProprotype(function.getName()).copy());
+    }
+
+    /**
+     * Returns an evaluator which can be used to evaluate the given function over batches of arguments in a single thread.
+     *
+     * Usage:
+     * <code>Tensor result = model.batchEvaluatorOf("myFunction").bind("foo", values).bind("bar", values).evaluate()</code>
+     *
+     * @param names the names identifying the function, as in {@link #evaluatorOf}
+     * @throws IllegalArgumentException if the function is not present, or not uniquely identified by the names given
+     */
+    public BatchEvaluator batchEvaluatorOf(String ... names) {
+        ExpressionFunction function = resolveFunction(names);
+        return new BatchEvaluator(function, requireContextProprotype(function.getName()).copy());
+    }
+
+    /** Returns the function identified by the given names, or throws a IllegalArgumentException if it is not present */
+    private ExpressionFunction resolveFunction(String ... names) {
         if (names.length == 0) {
             if (functions.size() > 1)
                 throwUndeterminedFunction("More than one function is available in " + this + ", but no name is given");
-            return evaluatorOf(functions.get(0));
+            return functions.get(0);
         }
         else if (names.length == 1) {
             String name = names[0];
             ExpressionFunction function = function(name);
-            if (function != null) return evaluatorOf(function);
+            if (function != null) return function;
 
             List<ExpressionFunction> functionsStartingByName =
                     functions.stream().filter(f -> f.getName().startsWith(name + ".")).collect(Collectors.toList());
             if (functionsStartingByName.size() == 0)
                 throwUndeterminedFunction("No function '" + name + "' in " + this);
             else if (functionsStartingByName.size() == 1)
-                return evaluatorOf(functionsStartingByName.get(0));
+                return functionsStartingByName.get(0);
             else
                 throwUndeterminedFunction("Multiple functions start by '" + name + "' in " + this);
 
@@ -193,17 +236,12 @@ public class Model {
             String name = names[0] + "." + names[1];
             ExpressionFunction function = function(name);
             if (function == null) throwUndeterminedFunction("No function '" + name + "' in " + this);
-            return evaluatorOf(function);
+            return function;
         }
         throw new IllegalArgumentException("No more than 2 names can be given when choosing a function, got " +
                                            Arrays.toString(names));
     }
 
-    /** Returns a single-use evaluator of a function */
-    private FunctionEvaluator evaluatorOf(ExpressionFunction function) {
-        return new FunctionEvaluator(function, requireContextProprotype(function.getName()).copy());
-    }
-
     private void throwUndeterminedFunction(String message) {
         throw new IllegalArgumentException(message + ". Available functions: " +
                                            functions.stream().map(f -> f.getName()).collect(Collectors.joining(", ")));
@@ -7,6 +7,8 @@ import com.yahoo.filedistribution.fileacquirer.MockFileAcquirer;
 import com.yahoo.path.Path;
 import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
 import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.MapContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.compilation.CompiledNode;
 import com.yahoo.searchlib.rankingexpression.rule.ReferenceNode;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
@@ -19,6 +21,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author bratseth
@@ -98,6 +103,132 @@ public class ModelsEvaluatorTest {
 
     }
 
+    @Test
+    public void testCompiledEvaluation() {
+        String expression = "if (x < 2.5, x * 2 + pow(y, 2), y - x / 4) + (x + y) * 3";
+        List<ExpressionFunction> functions = new ArrayList<>();
+        functions.add(new ExpressionFunction("test", RankingExpression.from(expression))
+                              .withArgument("x", TensorType.empty)
+                              .withArgument("y", TensorType.empty));
+        Model model = new Model("test-model", functions);
+        assertTrue(model.functions().get(0).getBody().getRoot() instanceof CompiledNode);
+
+        RankingExpression interpreted = RankingExpression.from(expression);
+        for (double x = 0; x < 5; x += 0.5) {
+            for (double y = -2; y < 2; y += 0.75) {
+                MapContext context = new MapContext();
+                context.put("x", x);
+                context.put("y", y);
+                assertEquals(interpreted.evaluate(context).asDouble(),
+                             model.evaluatorOf("test").bind("x", x).bind("y", y).evaluate().asDouble(),
+                             delta);
+            }
+        }
+    }
+
+    @Test
+    public void testFunctionsWithTensorArgumentsAreNotCompiled() {
+        List<ExpressionFunction> functions = new ArrayList<>();
+        functions.add(new ExpressionFunction("test", RankingExpression.from("x * 2 + y"))
+                              .withArgument("x", TensorType.fromSpec("tensor(d0[2])"))
+                              .withArgument("y", TensorType.empty));
+        Model model = new Model("test-model", functions);
+        assertFalse(model.functions().get(0).getBody().getRoot() instanceof CompiledNode);
+        assertEquals(Tensor.from("tensor(d0[2]):{{d0:0}:3.0,{d0:1}:5.0}"),
+                     model.evaluatorOf("test")
+                          .bind("x", Tensor.from(TensorType.fromSpec("tensor(d0[2])"), "{{d0:0}:1.0,{d0:1}:2.0}"))
+                          .bind("y", 1)
+                          .evaluate());
+    }
+
+    @Test
+    public void testBatchEvaluation() {
+        ModelsEvaluator models = createModels("src/test/resources/config/rankexpression/");
+        BatchEvaluator function = models.batchEvaluatorOf("macros", "secondphase");
+        function.bind("match", new double[] { 3, 1, 0 });
+        function.bind("rankBoost", new double[] { 5, 2, 1 });
+        assertEquals(Tensor.from("tensor(batch[3]):{{batch:0}:32.0,{batch:1}:12.0,{batch:2}:4.0}"), function.evaluate());
+
+        function.bind("match", 1); // same in all rows
+        assertEquals(Tensor.from("tensor(batch[3]):{{batch:0}:24.0,{batch:1}:12.0,{batch:2}:8.0}"), function.evaluate());
+    }
+
+    @Test
+    public void testBatchEvaluationOfTensors() {
+        List<ExpressionFunction> functions = new ArrayList<>();
+        ExpressionFunction function = new ExpressionFunction("test", RankingExpression.from("arg1 * arg2"));
+        function = function.withArgument("arg1", TensorType.fromSpec("tensor(d0[2])"));
+        function = function.withArgument("arg2", TensorType.fromSpec("tensor(d0[2])"));
+        functions.add(function);
+        Model model = new Model("test-model", functions);
+
+        BatchEvaluator evaluator = model.batchEvaluatorOf("test");
+        evaluator.bind("arg1", Tensor.from("tensor(batch[3],d0[2]):{{batch:0,d0:0}:1.0,{batch:0,d0:1}:2.0," +
+                                                                     "{batch:1,d0:0}:3.0,{batch:1,d0:1}:4.0," +
+                                                                     "{batch:2,d0:0}:5.0,{batch:2,d0:1}:6.0}"));
+        evaluator.bind("arg2", Tensor.from("tensor(d0[2]):{{d0:0}:10.0,{d0:1}:100.0}"));
+        assertEquals(Tensor.from("tensor(batch[3],d0[2]):{{batch:0,d0:0}:10.0,{batch:0,d0:1}:200.0," +
+                                                         "{batch:1,d0:0}:30.0,{batch:1,d0:1}:400.0," +
+                                                         "{batch:2,d0:0}:50.0,{batch:2,d0:1}:600.0}"),
+                     evaluator.evaluate());
+    }
+
+    @Test
+    public void testBatchBindingValidation() {
+        List<ExpressionFunction> functions = new ArrayList<>();
+        ExpressionFunction function = new ExpressionFunction("test", RankingExpression.from("sum(arg1 * arg2) + arg3"));
+        function = function.withArgument("arg1", TensorType.fromSpec("tensor(d0[2])"));
+        function = function.withArgument("arg2", TensorType.fromSpec("tensor(d0[2])"));
+        function = function.withArgument("arg3", TensorType.empty);
+        functions.add(function);
+        Model model = new Model("test-model", functions);
+
+        try { // Wrong batch binding type
+            BatchEvaluator evaluator = model.batchEvaluatorOf("test");
+            evaluator.bind("arg1", Tensor.from("tensor(batch[1],d1[2]):{{batch:0,d1:0}:1.0,{batch:0,d1:1}:2.0}"));
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("'arg1' must be of type tensor(d0[2]) with a batch dimension, not tensor(batch[1],d1[2])",
+                         Exceptions.toMessageString(e));
+        }
+
+        try { // Binding an array to a tensor argument
+            BatchEvaluator evaluator = model.batchEvaluatorOf("test");
+            evaluator.bind("arg1", new double[] { 1, 2 });
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("'arg1' must be of type tensor(d0[2]), not a scalar",
+                         Exceptions.toMessageString(e));
+        }
+
+        try { // No batch
+            BatchEvaluator evaluator = model.batchEvaluatorOf("test");
+            evaluator.bind("arg1", Tensor.from("tensor(d0[2]):{{d0:0}:1.0,{d0:1}:2.0}"));
+            evaluator.bind("arg2", Tensor.from("tensor(d0[2]):{{d0:0}:1.0,{d0:1}:2.0}"));
+            evaluator.evaluate();
+            fail("Expected exception");
+        }
+        catch (IllegalStateException e) {
+            assertEquals("No argument is bound to a batch in function 'test'",
+                         Exceptions.toMessageString(e));
+        }
+
+        try { // Different batch sizes
+            BatchEvaluator evaluator = model.batchEvaluatorOf("test");
+            evaluator.bind("arg1", Tensor.from("tensor(batch[1],d0[2]):{{batch:0,d0:0}:1.0,{batch:0,d0:1}:2.0}"));
+            evaluator.bind("arg2", Tensor.from("tensor(d0[2]):{{d0:0}:1.0,{d0:1}:2.0}"));
+            evaluator.bind("arg3", new double[] { 1, 2 });
+            evaluator.evaluate();
+            fail("Expected exception");
+        }
+        catch (IllegalStateException e) {
+            assertEquals("Arguments must be bound to batches of the same size, but 'arg3' has 2 rows while previous arguments have 1",
+                         Exceptions.toMessageString(e));
+        }
+    }
+
     // TODO: Test argument-less function
     // TODO: Test with nested functions
 
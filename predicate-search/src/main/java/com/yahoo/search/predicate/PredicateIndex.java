@@ -6,11 +6,21 @@ import com.yahoo.document.predicate.Predicate;
 import com.yahoo.search.predicate.index.*;
 import com.yahoo.search.predicate.index.conjunction.ConjunctionHit;
 import com.yahoo.search.predicate.index.conjunction.ConjunctionIndex;
+import com.yahoo.search.predicate.serialization.MappableOutput;
+import com.yahoo.search.predicate.serialization.MappedInput;
 import com.yahoo.search.predicate.serialization.SerializationHelper;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
@@ -31,6 +41,10 @@ import java.util.stream.Stream;
  * </p><p>
  * Note that the {@link PredicateIndex} is thread-safe, but a {@link Searcher} is not.
  * Each thread <strong>must</strong> use its own searcher.
+ * </p><p>
+ * An index written by {@link #writeToMappableOutputStream} can be opened by {@link #fromMappedFile},
+ * which reads the posting lists and intervals in place from the memory mapped file instead of
+ * copying them to the heap.
  * </p>
  * @author Magnar Nedland
  * @author bjorncs
@@ -39,9 +53,10 @@ import java.util.stream.Stream;
 public class PredicateIndex {
 
     private static final int SERIALIZATION_FORMAT_VERSION = 3;
+    private static final int MAPPABLE_SERIALIZATION_FORMAT_VERSION = 4;
 
     private final PredicateRangeTermExpander expander;
-    private final int[] internalToExternalIdMapping;
+    private final IntBuffer internalToExternalIdMapping;
     private final byte[] minFeatureIndex;
     private final short[] intervalEnds;
     private final int highestIntervalEnd;
@@ -50,7 +65,7 @@ public class PredicateIndex {
     private final SimpleIndex conjunctionIntervalIndex;
     private final PredicateIntervalStore intervalStore;
     private final ConjunctionIndex conjunctionIndex;
-    private final int[] zeroConstraintDocuments;
+    private final IntBuffer zeroConstraintDocuments;
     private final Config config;
     private final AtomicReference<CachedPostingListCounter> postingListCounter;
 
@@ -60,7 +75,7 @@ public class PredicateIndex {
      */
     PredicateIndex(
             Config config,
-            int[] internalToExternalIdMapping,
+            IntBuffer internalToExternalIdMapping,
             byte[] minFeatureIndex,
             short[] intervalEnds,
             int highestIntervalEnd,
@@ -69,7 +84,7 @@ public class PredicateIndex {
             SimpleIndex conjunctionIntervalIndex,
             PredicateIntervalStore intervalStore,
             ConjunctionIndex conjunctionIndex,
-            int[] zeroConstraintDocuments) {
+            IntBuffer zeroConstraintDocuments) {
         this.internalToExternalIdMapping = internalToExternalIdMapping;
         this.minFeatureIndex = minFeatureIndex;
         this.intervalEnds = intervalEnds;
@@ -82,7 +97,7 @@ public class PredicateIndex {
         this.zeroConstraintDocuments = zeroConstraintDocuments;
         this.expander = new PredicateRangeTermExpander(config.arity, config.lowerBound, config.upperBound);
         this.config = config;
-        this.postingListCounter = new AtomicReference<>(new CachedPostingListCounter(internalToExternalIdMapping.length));
+        this.postingListCounter = new AtomicReference<>(new CachedPostingListCounter(internalToExternalIdMapping.limit()));
     }
 
     public void rebuildPostingListCache() {
@@ -118,11 +133,11 @@ public class PredicateIndex {
                     "Invalid serialization format version. Expected %d, was %d.", SERIALIZATION_FORMAT_VERSION, version));
         }
         Config config = Config.fromInputStream(in);
-        int[] internalToExternalIdMapping = SerializationHelper.readIntArray(in);
+        IntBuffer internalToExternalIdMapping = IntBuffer.wrap(SerializationHelper.readIntArray(in));
         byte[] minFeatureIndex = SerializationHelper.readByteArray(in);
         short[] intervalEnds = SerializationHelper.readShortArray(in);
         int highestIntervalEnd = in.readInt();
-        int[] zeroConstraintDocuments = SerializationHelper.readIntArray(in);
+        IntBuffer zeroConstraintDocuments = IntBuffer.wrap(SerializationHelper.readIntArray(in));
         SimpleIndex intervalIndex = SimpleIndex.fromInputStream(in);
         SimpleIndex boundsIndex = SimpleIndex.fromInputStream(in);
         SimpleIndex conjunctionIntervalIndex = SimpleIndex.fromInputStream(in);
@@ -143,13 +158,92 @@ public class PredicateIndex {
         );
     }
 
+    /**
+     * Writes this index in a format which can be opened by {@link #fromMappedFile}.
+     * The posting lists, intervals and document id mappings are read in place from the file,
+     * while the configuration, the conjunction index and the small per document values
+     * used when searching are loaded to the heap when the index is opened.
+     */
+    public void writeToMappableOutputStream(DataOutputStream out) throws IOException {
+        ByteArrayOutputStream heapData = new ByteArrayOutputStream();
+        DataOutputStream heapOut = new DataOutputStream(heapData);
+        config.writeToOutputStream(heapOut);
+        heapOut.writeInt(highestIntervalEnd);
+        conjunctionIndex.writeToOutputStream(heapOut);
+        heapOut.flush();
+
+        MappableOutput mappableOut = new MappableOutput(out);
+        mappableOut.writeInt(MAPPABLE_SERIALIZATION_FORMAT_VERSION);
+        mappableOut.writeByteArray(heapData.toByteArray());
+        mappableOut.writeIntArray(internalToExternalIdMapping);
+        mappableOut.writeByteArray(minFeatureIndex);
+        mappableOut.writeShortArray(intervalEnds);
+        mappableOut.writeIntArray(zeroConstraintDocuments);
+        intervalIndex.writeToMappableOutput(mappableOut);
+        boundsIndex.writeToMappableOutput(mappableOut);
+        conjunctionIntervalIndex.writeToMappableOutput(mappableOut);
+        intervalStore.writeToMappableOutput(mappableOut);
+        mappableOut.flush();
+    }
+
+    /**
+     * Opens an index written by {@link #writeToMappableOutputStream} by memory mapping the given file.
+     * The file must not be modified while the returned index is in use.
+     */
+    public static PredicateIndex fromMappedFile(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedInput in = new MappedInput(channel);
+            int version = in.readInt();
+            if (version != MAPPABLE_SERIALIZATION_FORMAT_VERSION) {
+                throw new IllegalArgumentException(String.format(
+                        "Invalid mappable serialization format version. Expected %d, was %d.",
+                        MAPPABLE_SERIALIZATION_FORMAT_VERSION, version));
+            }
+            DataInputStream heapIn = new DataInputStream(new ByteArrayInputStream(toByteArray(in.readByteArray())));
+            Config config = Config.fromInputStream(heapIn);
+            int highestIntervalEnd = heapIn.readInt();
+            ConjunctionIndex conjunctionIndex = ConjunctionIndex.fromInputStream(heapIn);
+
+            IntBuffer internalToExternalIdMapping = in.readIntArray();
+            // Read by the search for each candidate document, and only a few bytes per document, so kept on the heap
+            byte[] minFeatureIndex = toByteArray(in.readByteArray());
+            ShortBuffer mappedIntervalEnds = in.readShortArray();
+            short[] intervalEnds = new short[mappedIntervalEnds.limit()];
+            mappedIntervalEnds.get(intervalEnds);
+            IntBuffer zeroConstraintDocuments = in.readIntArray();
+            SimpleIndex intervalIndex = SimpleIndex.fromMappedInput(in);
+            SimpleIndex boundsIndex = SimpleIndex.fromMappedInput(in);
+            SimpleIndex conjunctionIntervalIndex = SimpleIndex.fromMappedInput(in);
+            PredicateIntervalStore intervalStore = PredicateIntervalStore.fromMappedInput(in);
+            return new PredicateIndex(
+                    config,
+                    internalToExternalIdMapping,
+                    minFeatureIndex,
+                    intervalEnds,
+                    highestIntervalEnd,
+                    intervalIndex,
+                    boundsIndex,
+                    conjunctionIntervalIndex,
+                    intervalStore,
+                    conjunctionIndex,
+                    zeroConstraintDocuments
+            );
+        }
+    }
+
+    private static byte[] toByteArray(ByteBuffer buffer) {
+        byte[] array = new byte[buffer.remaining()];
+        buffer.get(array);
+        return array;
+    }
+
     @Beta
     public class Searcher {
         private final byte[] nPostingListsForDocument;
         private final ConjunctionIndex.Searcher conjunctionIndexSearcher;
 
         private Searcher() {
-            this.nPostingListsForDocument = new byte[internalToExternalIdMapping.length];
+            this.nPostingListsForDocument = new byte[internalToExternalIdMapping.limit()];
             this.conjunctionIndexSearcher = conjunctionIndex.searcher();
         }
 
@@ -181,7 +275,7 @@ public class PredicateIndex {
             return new PredicateSearch(
                     postingLists, nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd).stream()
                     // Map to external id. Note that internal id for first document is 1.
-                    .map(hit -> new Hit(internalToExternalIdMapping[hit.getDocId()], hit.getSubquery()));
+                    .map(hit -> new Hit(internalToExternalIdMapping.get(hit.getDocId()), hit.getSubquery()));
         }
 
         private void addCompressedZStarPostingList(List<PostingList> postingLists) {
@@ -217,7 +311,7 @@ public class PredicateIndex {
         }
 
         private void addZeroConstraintPostingList(ArrayList<PostingList> postingLists) {
-            if (zeroConstraintDocuments.length > 0) {
+            if (zeroConstraintDocuments.limit() > 0) {
                 postingLists.add(new ZeroConstraintPostingList(zeroConstraintDocuments));
             }
         }
@@ -20,6 +20,7 @@ import com.yahoo.search.predicate.index.SimpleIndex;
 import com.yahoo.search.predicate.index.conjunction.ConjunctionIndexBuilder;
 import com.yahoo.search.predicate.index.conjunction.IndexableFeatureConjunction;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -195,7 +196,7 @@ public class PredicateIndexBuilder {
     public PredicateIndex build() {
         return new PredicateIndex(
                 config,
-                Ints.toArray(seenIds),
+                IntBuffer.wrap(Ints.toArray(seenIds)),
                 Bytes.toArray(minFeatureIndexBuilder),
                 Shorts.toArray(intervalEndsBuilder),
                 highestIntervalEnd,
@@ -204,7 +205,7 @@ public class PredicateIndexBuilder {
                 conjunctionIntervalIndexBuilder.build(),
                 intervalStoreBuilder.build(),
                 conjunctionIndexBuilder.build(),
-                Ints.toArray(zeroConstraintDocuments)
+                IntBuffer.wrap(Ints.toArray(zeroConstraintDocuments))
         );
     }
 
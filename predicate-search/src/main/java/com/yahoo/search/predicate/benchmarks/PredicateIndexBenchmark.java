@@ -22,6 +22,7 @@ import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.FileInputStream;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -67,9 +68,13 @@ public class PredicateIndexBenchmark {
                 .setUseConjunctionAlgorithm(args.algorithm == Algorithm.CONJUNCTION)
                 .build();
         PredicateIndex index = getIndex(args, config);
+        output.put("Heap used after loading index", heapUsed());
         if (args.indexOutputFile != null) {
             writeIndexToFile(index, args.indexOutputFile);
         }
+        if (args.mappedIndexOutputFile != null) {
+            writeMappableIndexToFile(index, args.mappedIndexOutputFile);
+        }
         if (args.queryFile != null) {
             runQueries(args, index);
         }
@@ -83,8 +88,8 @@ public class PredicateIndexBenchmark {
         if (args.helpOption.showHelpIfRequested()) {
             return Optional.empty();
         }
-        if (args.feedFile == null && args.indexFile == null) {
-            System.err.println("Provide either a feed file or index file.");
+        if (args.feedFile == null && args.indexFile == null && args.mappedIndexFile == null) {
+            System.err.println("Provide either a feed file, index file or mapped index file.");
             return Optional.empty();
         }
         return Optional.of(args);
@@ -105,6 +110,11 @@ public class PredicateIndexBenchmark {
             PredicateIndex index = builder.build();
             output.put("Time prepare index", System.currentTimeMillis() - start);
             return index;
+        } else if (args.mappedIndexFile != null) {
+            long start = System.currentTimeMillis();
+            PredicateIndex index = PredicateIndex.fromMappedFile(new File(args.mappedIndexFile));
+            output.put("Time map index", System.currentTimeMillis() - start);
+            return index;
         } else {
             try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(args.indexFile)))) {
                 long start = System.currentTimeMillis();
@@ -123,6 +133,20 @@ public class PredicateIndexBenchmark {
         }
     }
 
+    private static void writeMappableIndexToFile(PredicateIndex index, String indexOutputFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexOutputFile)))) {
+            long start = System.currentTimeMillis();
+            index.writeToMappableOutputStream(out);
+            output.put("Time write mappable index", System.currentTimeMillis() - start);
+        }
+    }
+
+    private static long heapUsed() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
     private static void putBenchmarkArgumentsToOutput(BenchmarkArguments args) {
         output.put("Arity", args.arity);
         output.put("Max documents", args.maxDocuments);
@@ -134,6 +158,8 @@ public class PredicateIndexBenchmark {
         output.put("Feed file", args.feedFile);
         output.put("Query file", args.queryFile);
         output.put("Index file", args.indexFile);
+        output.put("Mapped index file", args.mappedIndexFile);
+        output.put("Serialized mappable index output file", args.mappedIndexOutputFile);
         output.put("Query format", args.format);
         output.put("Warmup", args.warmup);
     }
@@ -288,6 +314,14 @@ public class PredicateIndexBenchmark {
         @Option(name = {"-wi", "--write-index"}, description = "Serialize index to the given file")
         public String indexOutputFile;
 
+        @Option(name = {"-mif", "--mapped-index-file"},
+                description = "File path to index file to memory map (Serialized with --write-mappable-index)")
+        public String mappedIndexFile;
+
+        @Option(name = {"-wmi", "--write-mappable-index"},
+                description = "Serialize index to the given file in a format which can be memory mapped")
+        public String mappedIndexOutputFile;
+
         @Option(name = {"-quf", "--query-file"}, description = "File path to a query file")
         public String queryFile;
 
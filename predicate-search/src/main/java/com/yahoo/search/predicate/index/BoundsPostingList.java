@@ -1,6 +1,8 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.predicate.index;
 
+import java.nio.IntBuffer;
+
 /**
  * Wraps a posting stream of IntervalWithBounds objects (for collapsed
  * fixed tree leaf nodes) into a PostingList.
@@ -17,7 +19,7 @@ public class BoundsPostingList extends MultiIntervalPostingList {
     /**
      * @param valueDiff Difference from the collapsed leaf node's actual value.
      */
-    public BoundsPostingList(PredicateIntervalStore store, int[] docIds, int[] dataRefs, long subquery, int valueDiff) {
+    public BoundsPostingList(PredicateIntervalStore store, IntBuffer docIds, IntBuffer dataRefs, long subquery, int valueDiff) {
         super(docIds, dataRefs, subquery);
         this.valueDiff = valueDiff;
         this.store = store;
@@ -25,7 +27,7 @@ public class BoundsPostingList extends MultiIntervalPostingList {
 
     @Override
     protected boolean prepareIntervals(int dataRef) {
-        intervalWithBounds.setIntervalArray(store.get(dataRef), 0);
+        intervalWithBounds.setIntervals(store.intervals(), store.begin(dataRef), store.end(dataRef));
         return nextInterval();
     }
 
@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.predicate.index;
 
+import java.nio.IntBuffer;
 import java.util.stream.Stream;
 
 /**
@@ -11,21 +12,24 @@ import java.util.stream.Stream;
  */
 public class IntervalWithBounds {
 
-    private int[] intervalBoundsArray;
+    private IntBuffer intervalBoundsArray;
     private int arrayIndex;
+    private int arrayEnd;
 
     public IntervalWithBounds() {
-        setIntervalArray(null, 0);
+        setIntervals(null, 0, 0);
     }
     public IntervalWithBounds(int interval, int bounds) {
-        setIntervalArray(new int[] {interval, bounds}, 0);
+        setIntervals(IntBuffer.wrap(new int[] {interval, bounds}), 0, 2);
     }
 
-    public void setIntervalArray(int[] intervalBoundsArray, int arrayIndex) {
+    /** Sets this to iterate over the interval and bounds pairs between the given indexes of the given buffer */
+    public void setIntervals(IntBuffer intervalBoundsArray, int arrayIndex, int arrayEnd) {
         this.intervalBoundsArray = intervalBoundsArray;
         this.arrayIndex = arrayIndex;
+        this.arrayEnd = arrayEnd;
     }
-    public boolean hasValue() { return arrayIndex < intervalBoundsArray.length - 1; }
+    public boolean hasValue() { return arrayIndex < arrayEnd - 1; }
     public void nextValue() { arrayIndex += 2; }
 
     public Stream<Integer> stream() { return Stream.of(getInterval(), getBounds()); }
@@ -33,7 +37,7 @@ public class IntervalWithBounds {
      * 16 MSB represents interval begin, 16 LSB represents interval end.
      */
     public int getInterval() {
-        return intervalBoundsArray[arrayIndex];
+        return intervalBoundsArray.get(arrayIndex);
     }
     /*
      * 2 MSB determines mode for remaining 30 bits.
@@ -42,7 +46,7 @@ public class IntervalWithBounds {
      *  00 => 16 LSB > X >= 16 MSB
      */
     public int getBounds() {
-        return intervalBoundsArray[arrayIndex + 1];
+        return intervalBoundsArray.get(arrayIndex + 1);
     }
 
     /**
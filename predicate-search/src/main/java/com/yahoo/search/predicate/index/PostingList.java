@@ -1,6 +1,8 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.predicate.index;
 
+import java.nio.IntBuffer;
+
 /**
  * Interface for posting lists to be used by the algorithm implemented in PredicateSearch.
  *
@@ -48,8 +50,9 @@ public interface PostingList {
     long getSubquery();
 
     /**
-     * @return The document ids
+     * @return The document ids, between index 0 and the limit of the buffer.
+     *         The same buffer instance must be returned by all posting lists for the same feature.
      */
-    int[] getDocIds();
+    IntBuffer getDocIds();
 
 }
@@ -2,11 +2,15 @@
 package com.yahoo.search.predicate.index;
 
 import com.google.common.primitives.Ints;
+import com.gs.collections.impl.list.mutable.primitive.IntArrayList;
+import com.yahoo.search.predicate.serialization.MappableOutput;
+import com.yahoo.search.predicate.serialization.MappedInput;
 import com.yahoo.search.predicate.serialization.SerializationHelper;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -14,35 +18,92 @@ import java.util.List;
 import java.util.Map;
 
 /**
+ * Stores the interval lists referenced from the posting lists of a predicate index.
+ * The intervals of all entries are stored back to back in a single buffer,
+ * which is either on the heap or memory mapped from a file.
+ *
  * @author bjorncs
  */
 public class PredicateIntervalStore {
 
-    private final int[][] intervalsList;
+    /** The position in intervals of the first interval of each entry, followed by the total number of intervals */
+    private final IntBuffer offsets;
+    private final IntBuffer intervals;
+
+    /**
+     * Creates an interval store from the intervals of all entries stored back to back, where entry i
+     * consists of the intervals from offsets[i] to offsets[i + 1]. The buffers are accessed by absolute index only.
+     */
+    public PredicateIntervalStore(IntBuffer offsets, IntBuffer intervals) {
+        this.offsets = offsets;
+        this.intervals = intervals;
+    }
+
+    /** Returns the intervals of all entries. Use {@link #begin} and {@link #end} to find those of a given entry. */
+    public IntBuffer intervals() {
+        return intervals;
+    }
 
-    public PredicateIntervalStore(int[][] intervalsList) {
-        this.intervalsList = intervalsList;
+    /** Returns the index in {@link #intervals()} of the first interval of the given entry */
+    public int begin(int intervalRef) {
+        assert intervalRef < offsets.limit() - 1;
+        return offsets.get(intervalRef);
     }
 
+    /** Returns the index in {@link #intervals()} after the last interval of the given entry */
+    public int end(int intervalRef) {
+        return offsets.get(intervalRef + 1);
+    }
+
+    /** Returns a copy of the intervals of the given entry */
     public int[] get(int intervalRef) {
-        assert intervalRef < intervalsList.length;
-        return intervalsList[intervalRef];
+        int begin = begin(intervalRef);
+        int[] result = new int[end(intervalRef) - begin];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = intervals.get(begin + i);
+        }
+        return result;
+    }
+
+    private int size() {
+        return offsets.limit() - 1;
     }
 
     public void writeToOutputStream(DataOutputStream out) throws IOException {
-        out.writeInt(intervalsList.length);
-        for (int[] intervals : intervalsList) {
-            SerializationHelper.writeIntArray(intervals, out);
+        int size = size();
+        out.writeInt(size);
+        for (int ref = 0; ref < size; ref++) {
+            int begin = begin(ref);
+            int end = end(ref);
+            out.writeInt(end - begin);
+            for (int i = begin; i < end; i++) {
+                out.writeInt(intervals.get(i));
+            }
         }
     }
 
     public static PredicateIntervalStore fromInputStream(DataInputStream in) throws IOException {
         int length = in.readInt();
-        int[][] intervalsList = new int[length][];
+        int[] offsets = new int[length + 1];
+        IntArrayList intervals = new IntArrayList();
         for (int i = 0; i < length; i++) {
-            intervalsList[i] = SerializationHelper.readIntArray(in);
+            offsets[i] = intervals.size();
+            intervals.addAll(SerializationHelper.readIntArray(in));
         }
-        return new PredicateIntervalStore(intervalsList);
+        offsets[length] = intervals.size();
+        return new PredicateIntervalStore(IntBuffer.wrap(offsets), IntBuffer.wrap(intervals.toArray()));
+    }
+
+    public void writeToMappableOutput(MappableOutput out) throws IOException {
+        out.writeIntArray(offsets);
+        out.writeIntArray(intervals);
+    }
+
+    /** Returns an interval store which reads its intervals in place from a mapped file */
+    public static PredicateIntervalStore fromMappedInput(MappedInput in) throws IOException {
+        IntBuffer offsets = in.readIntArray();
+        IntBuffer intervals = in.readIntArray();
+        return new PredicateIntervalStore(offsets, intervals);
     }
 
     public static class Builder {
@@ -73,12 +134,17 @@ public class PredicateIntervalStore {
         }
 
         public PredicateIntervalStore build() {
-            int nIntervals = intervalsListBuilder.size();
-            int[][] intervalsList = new int[nIntervals][];
-            for (int i = 0; i < nIntervals; i++) {
-                intervalsList[i] = intervalsListBuilder.get(i);
+            int nEntries = intervalsListBuilder.size();
+            int[] offsets = new int[nEntries + 1];
+            for (int i = 0; i < nEntries; i++) {
+                offsets[i + 1] = offsets[i] + intervalsListBuilder.get(i).length;
+            }
+            int[] intervals = new int[offsets[nEntries]];
+            for (int i = 0; i < nEntries; i++) {
+                int[] entry = intervalsListBuilder.get(i);
+                System.arraycopy(entry, 0, intervals, offsets[i], entry.length);
             }
-            return new PredicateIntervalStore(intervalsList);
+            return new PredicateIntervalStore(IntBuffer.wrap(offsets), IntBuffer.wrap(intervals));
         }
 
         public int getCacheHits() {
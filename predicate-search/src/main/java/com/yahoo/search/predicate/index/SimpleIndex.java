@@ -4,11 +4,15 @@ package com.yahoo.search.predicate.index;
 import com.gs.collections.api.map.primitive.LongObjectMap;
 import com.gs.collections.api.tuple.primitive.LongObjectPair;
 import com.gs.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import com.yahoo.search.predicate.serialization.MappableOutput;
+import com.yahoo.search.predicate.serialization.MappedInput;
 import com.yahoo.search.predicate.serialization.SerializationHelper;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -17,6 +21,7 @@ import java.util.Map;
 
 /**
  * An index mapping keys of type Long to lists of postings of generic data.
+ * The posting lists are either on the heap or read in place from a memory mapped file.
  *
  * @author Magnar Nedland
  * @author bjorncs
@@ -56,17 +61,82 @@ public class SimpleIndex {
             long key = in.readLong();
             int[] docIds = SerializationHelper.readIntArray(in);
             int[] dataRefs = SerializationHelper.readIntArray(in);
-            dictionary.put(key, new Entry(docIds, dataRefs));
+            dictionary.put(key, new Entry(IntBuffer.wrap(docIds), IntBuffer.wrap(dataRefs)));
         }
         dictionary.compact();
         return new SimpleIndex(dictionary);
     }
 
+    /**
+     * Writes this in a format which can be read in place by {@link #fromMappedInput}:
+     * The keys, the offset of each posting list followed by the total size of all posting lists,
+     * and the document ids and data references of all posting lists stored back to back.
+     */
+    public void writeToMappableOutput(MappableOutput out) throws IOException {
+        int size = dictionary.size();
+        long[] keys = new long[size];
+        int[] offsets = new int[size + 1];
+        Entry[] entries = new Entry[size];
+        int i = 0;
+        for (LongObjectPair<Entry> pair : dictionary.keyValuesView()) {
+            keys[i] = pair.getOne();
+            entries[i] = pair.getTwo();
+            offsets[i + 1] = offsets[i] + entries[i].docIds.limit();
+            ++i;
+        }
+        out.writeLongArray(keys);
+        out.writeIntArray(offsets);
+        out.beginArray(offsets[size]);
+        for (Entry entry : entries) {
+            writeInts(entry.docIds, out);
+        }
+        out.beginArray(offsets[size]);
+        for (Entry entry : entries) {
+            writeInts(entry.dataRefs, out);
+        }
+    }
+
+    private static void writeInts(IntBuffer values, MappableOutput out) throws IOException {
+        int length = values.limit();
+        for (int i = 0; i < length; i++) {
+            out.writeInt(values.get(i));
+        }
+    }
+
+    /**
+     * Returns an index which reads its posting lists in place from a mapped file.
+     * Only the dictionary from key to posting list is kept on the heap.
+     */
+    public static SimpleIndex fromMappedInput(MappedInput in) throws IOException {
+        LongBuffer keys = in.readLongArray();
+        IntBuffer offsets = in.readIntArray();
+        IntBuffer docIds = in.readIntArray();
+        IntBuffer dataRefs = in.readIntArray();
+        int size = keys.limit();
+        LongObjectHashMap<Entry> dictionary = new LongObjectHashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            int begin = offsets.get(i);
+            int end = offsets.get(i + 1);
+            dictionary.put(keys.get(i), new Entry(slice(docIds, begin, end), slice(dataRefs, begin, end)));
+        }
+        dictionary.compact();
+        return new SimpleIndex(dictionary);
+    }
+
+    private static IntBuffer slice(IntBuffer buffer, int begin, int end) {
+        IntBuffer slice = buffer.duplicate();
+        slice.limit(end);
+        slice.position(begin);
+        return slice.slice();
+    }
+
     public static class Entry {
-        public final int[] docIds;
-        public final int[] dataRefs;
+        /** The document ids of this posting list, between index 0 and the limit of the buffer */
+        public final IntBuffer docIds;
+        /** The data reference of each document id, between index 0 and the limit of the buffer */
+        public final IntBuffer dataRefs;
 
-        private Entry(int[] docIds, int[] dataRefs) {
+        private Entry(IntBuffer docIds, IntBuffer dataRefs) {
             this.docIds = docIds;
             this.dataRefs = dataRefs;
         }
@@ -99,7 +169,7 @@ public class SimpleIndex {
                     docIds[i] = posting.getId();
                     dataRefs[i] = posting.getDataRef();
                 }
-                dictionary.put(entry.getKey(), new Entry(docIds, dataRefs));
+                dictionary.put(entry.getKey(), new Entry(IntBuffer.wrap(docIds), IntBuffer.wrap(dataRefs)));
             }
             dictionary.compact();
             return new SimpleIndex(dictionary);
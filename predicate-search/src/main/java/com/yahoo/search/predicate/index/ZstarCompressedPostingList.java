@@ -3,6 +3,8 @@ package com.yahoo.search.predicate.index;
 
 import com.yahoo.search.predicate.SubqueryBitmap;
 
+import java.nio.IntBuffer;
+
 /**
  * Wraps a posting list of compressed NOT-features.
  * The compression works by implying an interval of size 1 after each
@@ -15,8 +17,9 @@ import com.yahoo.search.predicate.SubqueryBitmap;
 public class ZstarCompressedPostingList extends MultiIntervalPostingList {
 
     private final PredicateIntervalStore store;
-    private int[] currentIntervals;
+    private final IntBuffer intervals;
     private int currentIntervalIndex;
+    private int currentIntervalsEnd;
     private int prevInterval;
     private int currentInterval;
 
@@ -24,23 +27,24 @@ public class ZstarCompressedPostingList extends MultiIntervalPostingList {
     /**
      * @param docIds Posting list as a stream.
      */
-    public ZstarCompressedPostingList(PredicateIntervalStore store, int[] docIds, int[] dataRefs) {
+    public ZstarCompressedPostingList(PredicateIntervalStore store, IntBuffer docIds, IntBuffer dataRefs) {
         super(docIds, dataRefs, SubqueryBitmap.ALL_SUBQUERIES);
         this.store = store;
+        this.intervals = store.intervals();
     }
 
     @Override
     protected boolean prepareIntervals(int dataRef) {
-        currentIntervals = store.get(dataRef);
-        currentIntervalIndex = 0;
+        currentIntervalIndex = store.begin(dataRef);
+        currentIntervalsEnd = store.end(dataRef);
         return nextInterval();
     }
 
     @Override
     public boolean nextInterval() {
         int nextInterval = -1;
-        if (currentIntervalIndex < currentIntervals.length) {
-            nextInterval = currentIntervals[currentIntervalIndex];
+        if (currentIntervalIndex < currentIntervalsEnd) {
+            nextInterval = intervals.get(currentIntervalIndex);
         }
         if (prevInterval != 0) {
             if (Interval.isZStar2Interval(nextInterval)) {
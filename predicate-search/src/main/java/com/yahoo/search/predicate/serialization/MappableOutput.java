@@ -0,0 +1,89 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate.serialization;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.IntBuffer;
+
+/**
+ * Writes data in a format which can be read in place by {@link MappedInput}.
+ * Each array is written as its length followed by its elements, starting at the next position
+ * in the stream which is aligned to {@link #ALIGNMENT} bytes.
+ * All values are written in big endian byte order.
+ */
+public class MappableOutput {
+
+    /** The alignment of the start of array data, in bytes */
+    static final int ALIGNMENT = 8;
+
+    private final DataOutputStream out;
+    private long position = 0;
+
+    public MappableOutput(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    public void writeInt(int value) throws IOException {
+        out.writeInt(value);
+        position += Integer.BYTES;
+    }
+
+    public void writeLong(long value) throws IOException {
+        out.writeLong(value);
+        position += Long.BYTES;
+    }
+
+    /**
+     * Writes the length of an array and pads to the start of its data.
+     * The caller must write exactly that many elements of the array type next.
+     */
+    public void beginArray(int length) throws IOException {
+        writeInt(length);
+        while (position % ALIGNMENT != 0) {
+            out.writeByte(0);
+            position++;
+        }
+    }
+
+    public void writeByteArray(byte[] array) throws IOException {
+        beginArray(array.length);
+        out.write(array);
+        position += array.length;
+    }
+
+    public void writeShortArray(short[] array) throws IOException {
+        beginArray(array.length);
+        for (short v : array) {
+            out.writeShort(v);
+        }
+        position += (long) array.length * Short.BYTES;
+    }
+
+    public void writeIntArray(int[] array) throws IOException {
+        writeIntArray(IntBuffer.wrap(array));
+    }
+
+    /** Writes the ints between 0 and the limit of the given buffer */
+    public void writeIntArray(IntBuffer array) throws IOException {
+        int length = array.limit();
+        beginArray(length);
+        for (int i = 0; i < length; i++) {
+            out.writeInt(array.get(i));
+        }
+        position += (long) length * Integer.BYTES;
+    }
+
+    public void writeLongArray(long[] array) throws IOException {
+        beginArray(array.length);
+        for (long v : array) {
+            out.writeLong(v);
+        }
+        position += (long) array.length * Long.BYTES;
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+}
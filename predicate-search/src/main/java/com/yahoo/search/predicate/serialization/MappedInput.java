@@ -0,0 +1,88 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate.serialization;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads data written by {@link MappableOutput} from a file.
+ * Arrays are memory mapped and read in place rather than copied to the heap.
+ * The mapped buffers stay valid after the channel this reads from is closed.
+ */
+public class MappedInput {
+
+    private final FileChannel channel;
+    private final ByteBuffer scalar = ByteBuffer.allocate(Long.BYTES);
+    private long position;
+
+    public MappedInput(FileChannel channel) {
+        this(channel, 0);
+    }
+
+    public MappedInput(FileChannel channel, long position) {
+        this.channel = channel;
+        this.position = position;
+    }
+
+    public int readInt() throws IOException {
+        return readScalar(Integer.BYTES).getInt(0);
+    }
+
+    public long readLong() throws IOException {
+        return readScalar(Long.BYTES).getLong(0);
+    }
+
+    public ByteBuffer readByteArray() throws IOException {
+        return map(readArrayLength(), Byte.BYTES);
+    }
+
+    public ShortBuffer readShortArray() throws IOException {
+        return map(readArrayLength(), Short.BYTES).asShortBuffer();
+    }
+
+    public IntBuffer readIntArray() throws IOException {
+        return map(readArrayLength(), Integer.BYTES).asIntBuffer();
+    }
+
+    public LongBuffer readLongArray() throws IOException {
+        return map(readArrayLength(), Long.BYTES).asLongBuffer();
+    }
+
+    private int readArrayLength() throws IOException {
+        int length = readInt();
+        if (length < 0) {
+            throw new IllegalArgumentException("Invalid array length " + length + " at position " + (position - Integer.BYTES));
+        }
+        position = (position + MappableOutput.ALIGNMENT - 1) / MappableOutput.ALIGNMENT * MappableOutput.ALIGNMENT;
+        return length;
+    }
+
+    private ByteBuffer map(int length, int elementSize) throws IOException {
+        long size = (long) length * elementSize;
+        if (position + size > channel.size()) {
+            throw new EOFException("Array of " + size + " bytes at position " + position +
+                                   " extends past the end of the file");
+        }
+        ByteBuffer buffer = size == 0 ? ByteBuffer.allocate(0) : channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        position += size;
+        return buffer;
+    }
+
+    private ByteBuffer readScalar(int size) throws IOException {
+        scalar.clear();
+        scalar.limit(size);
+        while (scalar.hasRemaining()) {
+            if (channel.read(scalar, position + scalar.position()) < 0) {
+                throw new EOFException("Unexpected end of file at position " + position);
+            }
+        }
+        position += size;
+        return scalar;
+    }
+
+}
@@ -6,6 +6,7 @@ import com.yahoo.search.predicate.PredicateIndex;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.IntBuffer;
 
 /**
  * Misc utility functions to help serialization of {@link PredicateIndex}.
@@ -21,6 +22,15 @@ public class SerializationHelper {
         }
     }
 
+    /** Writes the ints between 0 and the limit of the given buffer in the same format as an int array */
+    public static void writeIntArray(IntBuffer array, DataOutputStream out) throws IOException {
+        int length = array.limit();
+        out.writeInt(length);
+        for (int i = 0; i < length; i++) {
+            out.writeInt(array.get(i));
+        }
+    }
+
     public static int[] readIntArray(DataInputStream in) throws IOException {
         int length = in.readInt();
         int[] array = new int[length];
@@ -2,12 +2,19 @@
 package com.yahoo.search.predicate;
 
 import com.yahoo.document.predicate.Predicate;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 
 import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertSerializationDeserializationMatches;
 import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -18,6 +25,9 @@ public class PredicateIndexTest {
 
     private static final int DOC_ID = 42;
 
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
     @Test
     public void requireThatPredicateIndexCanSearch() {
         PredicateIndexBuilder builder = new PredicateIndexBuilder(10);
@@ -138,4 +148,51 @@ public class PredicateIndexTest {
         assertSerializationDeserializationMatches(
                 index, PredicateIndex::writeToOutputStream, PredicateIndex::fromInputStream);
     }
+
+    @Test
+    public void require_that_mapped_index_can_search_and_retains_data() throws IOException {
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(new Config.Builder()
+                .setArity(10).setUseConjunctionAlgorithm(true).build());
+        builder.indexDocument(1, Predicate.fromString("country in ['no', 'se'] and gender in ['male']"));
+        builder.indexDocument(2, Predicate.fromString("gender in ['female'] and age in [20..40]"));
+        builder.indexDocument(3, Predicate.fromString("country not in ['no']"));
+        builder.indexDocument(4, Predicate.fromString("true"));
+        builder.indexDocument(0x3fffffe, Predicate.fromString("country in ['no'] and gender in ['female']"));
+        builder.indexDocument(DOC_ID, Predicate.fromString(
+                "((a in ['b'] and c in ['d']) or x in ['y']) and ((a in ['b'] and c in ['d']) or z in ['w'])"));
+        PredicateIndex index = builder.build();
+
+        File file = tmpFolder.newFile();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            index.writeToMappableOutputStream(out);
+        }
+        PredicateIndex mappedIndex = PredicateIndex.fromMappedFile(file);
+        assertArrayEquals(serialize(index), serialize(mappedIndex));
+
+        PredicateIndex.Searcher searcher = mappedIndex.searcher();
+        PredicateQuery query = new PredicateQuery();
+        query.addFeature("country", "no");
+        query.addFeature("gender", "male");
+        assertEquals("[1, 4]", searcher.search(query).collect(toList()).toString());
+        query = new PredicateQuery();
+        query.addFeature("gender", "female");
+        query.addRangeFeature("age", 36);
+        assertEquals("[2, 3, 4]", searcher.search(query).collect(toList()).toString());
+        query = new PredicateQuery();
+        query.addFeature("a", "b");
+        query.addFeature("c", "d");
+        assertEquals("[3, 4, 42]", searcher.search(query).collect(toList()).toString());
+
+        mappedIndex.rebuildPostingListCache();
+        assertEquals("[3, 4, 42]", mappedIndex.searcher().search(query).collect(toList()).toString());
+    }
+
+    private static byte[] serialize(PredicateIndex index) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            index.writeToOutputStream(out);
+        }
+        return bytes.toByteArray();
+    }
+
 }
@@ -12,7 +12,6 @@ import java.util.List;
 import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertSerializationDeserializationMatches;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
 
 /**
  * @author bjorncs
@@ -65,9 +64,9 @@ public class PredicateIntervalStoreTest {
         int ref1 = builder.insert(intervals1);
         int ref2 = builder.insert(intervals2);
         PredicateIntervalStore store = builder.build();
-        int[] a1 = store.get(ref1);
-        int[] a2 = store.get(ref2);
-        assertTrue(a1 == a2);
+        assertEquals(ref1, ref2);
+        assertEquals(store.begin(ref1), store.begin(ref2));
+        assertEquals(2, store.end(ref1) - store.begin(ref1));
     }
 
     private static void testInsertAndRetrieve(int... intervals) {
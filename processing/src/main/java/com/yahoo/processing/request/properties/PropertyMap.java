@@ -11,7 +11,8 @@ import java.util.Map;
  * A HashMap backing of Properties.
  * <p>
  * When this is cloned it will deep copy not only the model object map, but also each
- * clonable member inside the map.
+ * clonable member inside the map. If the map contains no clonable members it is instead shared
+ * between this and the clone until one of them is modified.
  * <p>
  * Subclassing is supported, a hook can be implemented to provide conditional inclusion in the map.
  * By default - all properties are accepted, so set is never propagated.
@@ -27,9 +28,18 @@ public class PropertyMap extends Properties {
      */
     private Map<CompoundName, Object> properties = new HashMap<>();
 
+    /** Whether the properties map is shared with a clone and must be copied before it is modified */
+    private boolean shared = false;
+
+    /** Whether the properties map may contain values which must be cloned when this is cloned */
+    private boolean hasClonableValues = false;
+
     public void set(CompoundName name, Object value, Map<String, String> context) {
-        if (shouldSet(name, value))
-            properties.put(name, value);
+        if (shouldSet(name, value)) {
+            modifiableProperties().put(name, value);
+            if (value instanceof Cloneable)
+                hasClonableValues = true;
+        }
         else
             super.set(name, value, context);
     }
@@ -54,10 +64,25 @@ public class PropertyMap extends Properties {
     @Override
     PropertyMap clone() {
         PropertyMap clone = (PropertyMap) super.clone();
-        clone.properties = cloneMap(this.properties);
+        if (hasClonableValues) {
+            clone.properties = cloneMap(this.properties);
+            clone.shared = false;
+        }
+        else { // immutable values only: share the map until one of us changes it
+            this.shared = true;
+            clone.shared = true;
+        }
         return clone;
     }
 
+    private Map<CompoundName, Object> modifiableProperties() {
+        if (shared) {
+            properties = new HashMap<>(properties);
+            shared = false;
+        }
+        return properties;
+    }
+
     @Override
     public Map<String, Object> listProperties(CompoundName path, Map<String, String> context, Properties substitution) {
         Map<String, Object> map = super.listProperties(path, context, substitution);
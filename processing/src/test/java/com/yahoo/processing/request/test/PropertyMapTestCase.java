@@ -10,7 +10,9 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -55,6 +57,27 @@ public class PropertyMapTestCase {
         assertTrue("Array was cloned", mapClone.get("byteArray") != byteArray);
     }
 
+    @Test
+    public void testClonesAreIndependent() {
+        PropertyMap map = new PropertyMap();
+        map.set("a", "a1");
+        map.set("b", 1);
+
+        PropertyMap mapClone = map.clone();
+        mapClone.set("a", "a2");
+        map.set("c", "c1");
+        assertEquals("a1", map.get("a"));
+        assertEquals("a2", mapClone.get("a"));
+        assertEquals(1, mapClone.get("b"));
+        assertEquals("c1", map.get("c"));
+        assertNull(mapClone.get("c"));
+
+        map.set("clonable", new ClonableObject());
+        PropertyMap secondClone = map.clone();
+        assertTrue(map.get("clonable") != secondClone.get("clonable"));
+        assertEquals("a1", secondClone.get("a"));
+    }
+
     private Object first(Object object) {
         if (object instanceof Object[])
             return ((Object[])object)[0];
@@ -7,6 +7,7 @@ import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
 import com.yahoo.tensor.evaluation.EvaluationContext;
+import com.yahoo.tensor.evaluation.ParallelEvaluation;
 
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -18,6 +19,8 @@ import java.util.stream.Collectors;
  */
 public abstract class Context implements EvaluationContext<Reference> {
 
+    private ParallelEvaluation parallelEvaluation = ParallelEvaluation.sequential();
+
     /**
      * Returns the value of a simple variable name.
      *
@@ -35,6 +38,14 @@ public abstract class Context implements EvaluationContext<Reference> {
     @Override
     public Tensor getTensor(String name) { return get(name).asTensor(); }
 
+    /** Sets whether and how large tensor operations evaluated in this context are evaluated in parallel */
+    public void setParallelEvaluation(ParallelEvaluation parallelEvaluation) {
+        this.parallelEvaluation = parallelEvaluation;
+    }
+
+    @Override
+    public ParallelEvaluation parallelEvaluation() { return parallelEvaluation; }
+
     /**
      * <p>Returns the value of a <i>structured variable</i> on the form
      * <code>name(argument*)(.output)?</code>, where <i>argument</i> is any
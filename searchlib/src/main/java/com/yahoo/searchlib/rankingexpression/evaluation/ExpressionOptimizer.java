@@ -2,6 +2,7 @@
 package com.yahoo.searchlib.rankingexpression.evaluation;
 
 import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.compilation.CompilationOptimizer;
 import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestOptimizer;
 import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTOptimizer;
 import com.yahoo.searchlib.rankingexpression.evaluation.tensoroptimization.TensorOptimizer;
@@ -26,6 +27,10 @@ import com.yahoo.searchlib.rankingexpression.evaluation.tensoroptimization.Tenso
  * // contextForOtherThread = context.clone();
  * </code>
  * <p>
+ * If the {@link CompilationOptimizer} is enabled, which it is not by default, the scalar parts of the optimized
+ * expression are finally compiled to primitive double operations, which are evaluated the fastest in a
+ * {@link DoubleOnlyArrayContext}.
+ * <p>
  * Instances of this class are not multithread safe.
  *
  * @author bratseth
@@ -35,6 +40,7 @@ public class ExpressionOptimizer {
     private GBDTOptimizer gbdtOptimizer = new GBDTOptimizer();
     private GBDTForestOptimizer gbdtForestOptimizer = new GBDTForestOptimizer();
     private TensorOptimizer tensorOptimizer = new TensorOptimizer();
+    private CompilationOptimizer compilationOptimizer = new CompilationOptimizer();
 
     /** Gets an optimizer instance used by this by class name, or null if the optimizer is not known */
     public Optimizer getOptimizer(Class<?> clazz) {
@@ -44,6 +50,8 @@ public class ExpressionOptimizer {
             return gbdtForestOptimizer;
         if (clazz == tensorOptimizer.getClass())
             return tensorOptimizer;
+        if (clazz == compilationOptimizer.getClass())
+            return compilationOptimizer;
         return null;
     }
 
@@ -53,6 +61,7 @@ public class ExpressionOptimizer {
         gbdtOptimizer.optimize(expression, contextIndex, report);
         gbdtForestOptimizer.optimize(expression, contextIndex, report);
         tensorOptimizer.optimize(expression, contextIndex, report);
+        compilationOptimizer.optimize(expression, contextIndex, report);
         return report;
     }
 
@@ -12,7 +12,7 @@ public abstract class Optimizer {
 
     private boolean enabled=true;
 
-    /** Sets whether this optimizer is enabled. Default true */
+    /** Sets whether this optimizer is enabled. Default true, unless the subclass says otherwise */
     public void setEnabled(boolean enabled) { this.enabled=enabled; }
 
     /** Returns whether this is enabled */
@@ -0,0 +1,279 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleCompatibleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleOnlyArrayContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.OptimizationReport;
+import com.yahoo.searchlib.rankingexpression.evaluation.Optimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.StringValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestNode;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticOperator;
+import com.yahoo.searchlib.rankingexpression.rule.ComparisonNode;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ConstantNode;
+import com.yahoo.searchlib.rankingexpression.rule.EmbracedNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.FunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.IfNode;
+import com.yahoo.searchlib.rankingexpression.rule.NegativeNode;
+import com.yahoo.searchlib.rankingexpression.rule.NotNode;
+import com.yahoo.searchlib.rankingexpression.rule.ReferenceNode;
+import com.yahoo.searchlib.rankingexpression.rule.SetMembershipNode;
+import com.yahoo.searchlib.rankingexpression.rule.TruthOperator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Compiles the scalar parts of ranking expressions to trees of primitive double operations, which are evaluated
+ * without creating values, and without the generic dispatch on value types done by the expression nodes.
+ * The largest sub-expressions which consist only of arithmetic, comparisons, conditions, set membership tests,
+ * scalar functions, constants and variables known to the context, are replaced by {@link CompiledNode}s.
+ * This runs after the other optimizers, such that optimized trees and forests become part of compiled expressions.
+ * <p>
+ * Like the GBDT optimizations, compiled expressions must be evaluated in a context created from the expression
+ * <i>before</i> it was optimized. Compiled expressions are evaluated the fastest in a
+ * {@link DoubleOnlyArrayContext}.
+ * <p>
+ * Unlike the other optimizers this is disabled by default, as compiled expressions only pay off when they are
+ * evaluated in contexts binding their variables to doubles. Enable it by
+ * <code>expressionOptimizer.getOptimizer(CompilationOptimizer.class).setEnabled(true)</code>.
+ * <p>
+ * This class is not multithread safe.
+ */
+public class CompilationOptimizer extends Optimizer {
+
+    private OptimizationReport report;
+
+    public CompilationOptimizer() {
+        setEnabled(false);
+    }
+
+    /**
+     * Optimizes the given expression by replacing scalar sub-expressions by compiled nodes
+     *
+     * @param expression the expression to destructively optimize
+     * @param context    a fast lookup context created from the given expression
+     * @param report     the optimization report to which actions of this is logged
+     */
+    @Override
+    public void optimize(RankingExpression expression, ContextIndex context, OptimizationReport report) {
+        if ( ! isEnabled()) return;
+
+        this.report = report;
+        expression.setRoot(findAndCompile(expression.getRoot(), context));
+        report.note("Expression compilation done");
+    }
+
+    /**
+     * Recursively descends and compiles the largest compilable sub-expressions.
+     *
+     * @return the resulting node, which may be the input node if no part of it could be compiled
+     */
+    private ExpressionNode findAndCompile(ExpressionNode node, ContextIndex context) {
+        if ( ! (node instanceof CompositeNode)) return node; // Nothing to gain
+
+        CompiledExpression compiled = compile(node, context);
+        if (compiled != null && ! isLeaf(compiled)) {
+            report.incMetric("Compiled expressions", 1);
+            return new CompiledNode(node, compiled);
+        }
+
+        CompositeNode composite = (CompositeNode)node;
+        List<ExpressionNode> newChildren = new ArrayList<>();
+        for (ExpressionNode child : composite.children())
+            newChildren.add(findAndCompile(child, context));
+        return composite.setChildren(newChildren);
+    }
+
+    private boolean isLeaf(CompiledExpression compiled) {
+        return compiled instanceof CompiledExpression.Constant ||
+               compiled instanceof CompiledExpression.Variable ||
+               compiled instanceof CompiledExpression.DoubleVariable;
+    }
+
+    /** Returns the given expression compiled, or null if it cannot be compiled */
+    private CompiledExpression compile(ExpressionNode node, ContextIndex context) {
+        if (node instanceof ConstantNode)
+            return compileConstant(((ConstantNode)node).getValue());
+        if (node instanceof ReferenceNode)
+            return compileReference((ReferenceNode)node, context);
+        if (node instanceof EmbracedNode)
+            return compile(((EmbracedNode)node).getValue(), context);
+        if (node instanceof NegativeNode)
+            return compileUnary(((NegativeNode)node).getValue(), CompiledExpression.Negate::new, context);
+        if (node instanceof NotNode)
+            return compileUnary(((NotNode)node).getValue(), CompiledExpression.Not::new, context);
+        if (node instanceof ArithmeticNode)
+            return compileArithmetic((ArithmeticNode)node, context);
+        if (node instanceof ComparisonNode)
+            return compileComparison((ComparisonNode)node, context);
+        if (node instanceof IfNode)
+            return compileIf((IfNode)node, context);
+        if (node instanceof SetMembershipNode)
+            return compileSetMembership((SetMembershipNode)node, context);
+        if (node instanceof FunctionNode)
+            return compileFunction((FunctionNode)node, context);
+        if (node instanceof GBDTNode)
+            return new CompiledExpression.Tree(((GBDTNode)node).values());
+        if (node instanceof GBDTForestNode)
+            return new CompiledExpression.Forest(((GBDTForestNode)node).values());
+        if (node instanceof CompiledNode)
+            return ((CompiledNode)node).compiled();
+        return null;
+    }
+
+    private CompiledExpression compileConstant(Value value) {
+        if ( ! (value instanceof DoubleCompatibleValue)) return null;
+        return new CompiledExpression.Constant(value.asDouble());
+    }
+
+    private CompiledExpression compileReference(ReferenceNode node, ContextIndex context) {
+        int index;
+        try {
+            index = context.getIndex(node.toString());
+        }
+        catch (RuntimeException e) { // Not known to the context
+            return null;
+        }
+        Value value = context.get(index);
+        if (value instanceof TensorValue || value instanceof StringValue) return null; // bound to a constant
+        if (context instanceof DoubleOnlyArrayContext)
+            return new CompiledExpression.DoubleVariable(index);
+        else
+            return new CompiledExpression.Variable(index);
+    }
+
+    private CompiledExpression compileUnary(ExpressionNode argument,
+                                            Function<CompiledExpression, CompiledExpression> operation,
+                                            ContextIndex context) {
+        CompiledExpression compiledArgument = compile(argument, context);
+        if (compiledArgument == null) return null;
+        return operation.apply(compiledArgument);
+    }
+
+    private CompiledExpression compileArithmetic(ArithmeticNode node, ContextIndex context) {
+        List<CompiledExpression> children = new ArrayList<>();
+        for (ExpressionNode child : node.children()) {
+            CompiledExpression compiledChild = compile(child, context);
+            if (compiledChild == null) return null;
+            children.add(compiledChild);
+        }
+
+        if (node.operators().stream().allMatch(operator -> operator == ArithmeticOperator.PLUS))
+            return new CompiledExpression.Sum(children.toArray(new CompiledExpression[0]));
+
+        // Apply in precedence order, as in ArithmeticNode.evaluate
+        Iterator<CompiledExpression> child = children.iterator();
+        Deque<Item> stack = new ArrayDeque<>();
+        stack.push(new Item(ArithmeticOperator.OR, child.next()));
+        for (Iterator<ArithmeticOperator> it = node.operators().iterator(); it.hasNext() && child.hasNext();) {
+            ArithmeticOperator op = it.next();
+            while (stack.peek().op.hasPrecedenceOver(op))
+                popStack(stack);
+            stack.push(new Item(op, child.next()));
+        }
+        while (stack.size() > 1)
+            popStack(stack);
+        return stack.getFirst().expression;
+    }
+
+    private void popStack(Deque<Item> stack) {
+        Item rhs = stack.pop();
+        Item lhs = stack.peek();
+        lhs.expression = compileOperation(rhs.op, lhs.expression, rhs.expression);
+    }
+
+    private CompiledExpression compileOperation(ArithmeticOperator operator, CompiledExpression left, CompiledExpression right) {
+        switch (operator) {
+            case OR: return new CompiledExpression.Or(left, right);
+            case AND: return new CompiledExpression.And(left, right);
+            case PLUS: return new CompiledExpression.Add(left, right);
+            case MINUS: return new CompiledExpression.Subtract(left, right);
+            case MULTIPLY: return new CompiledExpression.Multiply(left, right);
+            case DIVIDE: return new CompiledExpression.Divide(left, right);
+            case MODULO: return new CompiledExpression.Modulo(left, right);
+            case POWER: return new CompiledExpression.Power(left, right);
+            default: throw new IllegalArgumentException("Unknown operator " + operator);
+        }
+    }
+
+    private CompiledExpression compileComparison(ComparisonNode node, ContextIndex context) {
+        CompiledExpression left = compile(node.getLeftCondition(), context);
+        CompiledExpression right = compile(node.getRightCondition(), context);
+        if (left == null || right == null) return null;
+        return new CompiledExpression.Compare(node.getOperator(), left, right);
+    }
+
+    private CompiledExpression compileIf(IfNode node, ContextIndex context) {
+        CompiledExpression trueExpression = compile(node.getTrueExpression(), context);
+        CompiledExpression falseExpression = compile(node.getFalseExpression(), context);
+        if (trueExpression == null || falseExpression == null) return null;
+        if (trueExpression.isBoolean() != falseExpression.isBoolean()) return null; // Not representable as one value type
+
+        if (node.getCondition() instanceof ComparisonNode) { // Special case the common decision tree condition
+            ComparisonNode comparison = (ComparisonNode)node.getCondition();
+            if (comparison.getOperator() == TruthOperator.SMALLER) {
+                CompiledExpression left = compile(comparison.getLeftCondition(), context);
+                CompiledExpression right = compile(comparison.getRightCondition(), context);
+                if (left == null || right == null) return null;
+                if (right instanceof CompiledExpression.Constant)
+                    return new CompiledExpression.IfSmaller(left, ((CompiledExpression.Constant)right).value(),
+                                                            trueExpression, falseExpression);
+            }
+        }
+
+        CompiledExpression condition = compile(node.getCondition(), context);
+        if (condition == null) return null;
+        return new CompiledExpression.If(condition, trueExpression, falseExpression);
+    }
+
+    private CompiledExpression compileSetMembership(SetMembershipNode node, ContextIndex context) {
+        CompiledExpression testValue = compile(node.getTestValue(), context);
+        if (testValue == null || testValue.isBoolean()) return null; // Booleans are never members of sets of doubles
+        double[] set = new double[node.getSetValues().size()];
+        for (int i = 0; i < set.length; i++) {
+            ExpressionNode setValue = node.getSetValues().get(i);
+            if ( ! (setValue instanceof ConstantNode)) return null;
+            Value value = ((ConstantNode)setValue).getValue();
+            if ( ! (value instanceof DoubleValue)) return null;
+            set[i] = value.asDouble();
+        }
+        return new CompiledExpression.In(testValue, set);
+    }
+
+    private CompiledExpression compileFunction(FunctionNode node, ContextIndex context) {
+        List<ExpressionNode> arguments = node.children();
+        if (arguments.size() > 2) return null;
+        CompiledExpression argument1 = arguments.size() > 0 ? compile(arguments.get(0), context)
+                                                            : new CompiledExpression.Constant(0);
+        CompiledExpression argument2 = arguments.size() > 1 ? compile(arguments.get(1), context)
+                                                            : new CompiledExpression.Constant(0);
+        if (argument1 == null || argument2 == null) return null;
+        return new CompiledExpression.FunctionCall(node.getFunction(), argument1, argument2);
+    }
+
+    private static class Item {
+
+        final ArithmeticOperator op;
+        CompiledExpression expression;
+
+        Item(ArithmeticOperator op, CompiledExpression expression) {
+            this.op = op;
+            this.expression = expression;
+        }
+
+    }
+
+}
@@ -0,0 +1,339 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.evaluation.Context;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.StringValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestNode;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTNode;
+import com.yahoo.searchlib.rankingexpression.rule.Function;
+import com.yahoo.searchlib.rankingexpression.rule.TruthOperator;
+
+import java.io.Serializable;
+
+/**
+ * A ranking expression compiled to a tree of primitive double operations, which is evaluated without
+ * creating any values. Booleans are represented as 1 and 0, and any value different from 0 is true.
+ * <p>
+ * Expressions which evaluate to a boolean in tree-walking evaluation return true from {@link #isBoolean}.
+ * <p>
+ * Evaluation throws UnsupportedOperationException if the context binds a variable to a value which does
+ * not have a double representation, or if the context does not support lookup by index.
+ */
+abstract class CompiledExpression implements Serializable {
+
+    abstract double evaluate(Context context);
+
+    /** Returns whether this evaluates to 1 or 0 representing a boolean */
+    boolean isBoolean() { return false; }
+
+    static final class Constant extends CompiledExpression {
+
+        private final double value;
+
+        Constant(double value) { this.value = value; }
+
+        double value() { return value; }
+
+        @Override
+        double evaluate(Context context) { return value; }
+
+    }
+
+    /** A variable in a context which only contains doubles */
+    static final class DoubleVariable extends CompiledExpression {
+
+        private final int index;
+
+        DoubleVariable(int index) { this.index = index; }
+
+        @Override
+        double evaluate(Context context) { return context.getDouble(index); }
+
+    }
+
+    /** A variable in a context which may contain any value */
+    static final class Variable extends CompiledExpression {
+
+        private final int index;
+
+        Variable(int index) { this.index = index; }
+
+        @Override
+        double evaluate(Context context) {
+            Value value = context.get(index);
+            if (value instanceof DoubleValue) return value.asDouble();
+            if (value instanceof StringValue)
+                throw new UnsupportedOperationException("String values are not supported in compiled expressions");
+            return value.asDouble();
+        }
+
+    }
+
+    static final class Negate extends CompiledExpression {
+
+        private final CompiledExpression value;
+
+        Negate(CompiledExpression value) { this.value = value; }
+
+        @Override
+        double evaluate(Context context) { return - value.evaluate(context); }
+
+    }
+
+    static final class Not extends CompiledExpression {
+
+        private final CompiledExpression value;
+
+        Not(CompiledExpression value) { this.value = value; }
+
+        @Override
+        boolean isBoolean() { return true; }
+
+        @Override
+        double evaluate(Context context) { return value.evaluate(context) != 0 ? 0 : 1; }
+
+    }
+
+    static final class Or extends CompiledExpression {
+
+        private final CompiledExpression left, right;
+
+        Or(CompiledExpression left, CompiledExpression right) { this.left = left; this.right = right; }
+
+        @Override
+        boolean isBoolean() { return true; }
+
+        @Override
+        double evaluate(Context context) {
+            return left.evaluate(context) != 0 || right.evaluate(context) != 0 ? 1 : 0;
+        }
+
+    }
+
+    static final class And extends CompiledExpression {
+
+        private final CompiledExpression left, right;
+
+        And(CompiledExpression left, CompiledExpression right) { this.left = left; this.right = right; }
+
+        @Override
+        boolean isBoolean() { return true; }
+
+        @Override
+        double evaluate(Context context) {
+            return left.evaluate(context) != 0 && right.evaluate(context) != 0 ? 1 : 0;
+        }
+
+    }
+
+    static final class Add extends CompiledExpression {
+
+        private final CompiledExpression left, right;
+
+        Add(CompiledExpression left, CompiledExpression right) { this.left = left; this.right = right; }
+
+        @Override
+        double evaluate(Context context) { return left.evaluate(context) + right.evaluate(context); }
+
+    }
+
+    static final class Subtract extends CompiledExpression {
+
+        private final CompiledExpression left, right;
+
+        Subtract(CompiledExpression left, CompiledExpression right) { this.left = left; this.right = right; }
+
+        @Override
+        double evaluate(Context context) { return left.evaluate(context) - right.evaluate(context); }
+
+    }
+
+    static final class Multiply extends CompiledExpression {
+
+        private final CompiledExpression left, right;
+
+        Multiply(CompiledExpression left, CompiledExpression right) { this.left = left; this.right = right; }
+
+        @Override
+        double evaluate(Context context) { return left.evaluate(context) * right.evaluate(context); }
+
+    }
+
+    static final class Divide extends CompiledExpression {
+
+        private final CompiledExpression left, right;
+
+        Divide(CompiledExpression left, CompiledExpression right) { this.left = left; this.right = right; }
+
+        @Override
+        double evaluate(Context context) { return left.evaluate(context) / right.evaluate(context); }
+
+    }
+
+    static final class Modulo extends CompiledExpression {
+
+        private final CompiledExpression left, right;
+
+        Modulo(CompiledExpression left, CompiledExpression right) { this.left = left; this.right = right; }
+
+        @Override
+        double evaluate(Context context) { return left.evaluate(context) % right.evaluate(context); }
+
+    }
+
+    static final class Power extends CompiledExpression {
+
+        private final CompiledExpression left, right;
+
+        Power(CompiledExpression left, CompiledExpression right) { this.left = left; this.right = right; }
+
+        @Override
+        double evaluate(Context context) { return Math.pow(left.evaluate(context), right.evaluate(context)); }
+
+    }
+
+    static final class Sum extends CompiledExpression {
+
+        private final CompiledExpression[] terms;
+
+        Sum(CompiledExpression[] terms) { this.terms = terms; }
+
+        @Override
+        double evaluate(Context context) {
+            double sum = 0;
+            for (CompiledExpression term : terms)
+                sum += term.evaluate(context);
+            return sum;
+        }
+
+    }
+
+    static final class Compare extends CompiledExpression {
+
+        private final TruthOperator operator;
+        private final CompiledExpression left, right;
+
+        Compare(TruthOperator operator, CompiledExpression left, CompiledExpression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean isBoolean() { return true; }
+
+        @Override
+        double evaluate(Context context) {
+            return operator.evaluate(left.evaluate(context), right.evaluate(context)) ? 1 : 0;
+        }
+
+    }
+
+    static final class If extends CompiledExpression {
+
+        private final CompiledExpression condition, trueExpression, falseExpression;
+
+        If(CompiledExpression condition, CompiledExpression trueExpression, CompiledExpression falseExpression) {
+            this.condition = condition;
+            this.trueExpression = trueExpression;
+            this.falseExpression = falseExpression;
+        }
+
+        @Override
+        boolean isBoolean() { return trueExpression.isBoolean(); }
+
+        @Override
+        double evaluate(Context context) {
+            return condition.evaluate(context) != 0 ? trueExpression.evaluate(context) : falseExpression.evaluate(context);
+        }
+
+    }
+
+    /** A decision tree node on the common form if (variable < constant, ...) */
+    static final class IfSmaller extends CompiledExpression {
+
+        private final CompiledExpression variable;
+        private final double limit;
+        private final CompiledExpression trueExpression, falseExpression;
+
+        IfSmaller(CompiledExpression variable, double limit,
+                  CompiledExpression trueExpression, CompiledExpression falseExpression) {
+            this.variable = variable;
+            this.limit = limit;
+            this.trueExpression = trueExpression;
+            this.falseExpression = falseExpression;
+        }
+
+        @Override
+        boolean isBoolean() { return trueExpression.isBoolean(); }
+
+        @Override
+        double evaluate(Context context) {
+            return variable.evaluate(context) < limit ? trueExpression.evaluate(context) : falseExpression.evaluate(context);
+        }
+
+    }
+
+    static final class In extends CompiledExpression {
+
+        private final CompiledExpression value;
+        private final double[] set;
+
+        In(CompiledExpression value, double[] set) { this.value = value; this.set = set; }
+
+        @Override
+        boolean isBoolean() { return true; }
+
+        @Override
+        double evaluate(Context context) {
+            double testValue = value.evaluate(context);
+            for (double setValue : set)
+                if (testValue == setValue) return 1;
+            return 0;
+        }
+
+    }
+
+    static final class FunctionCall extends CompiledExpression {
+
+        private final Function function;
+        private final CompiledExpression argument1, argument2;
+
+        FunctionCall(Function function, CompiledExpression argument1, CompiledExpression argument2) {
+            this.function = function;
+            this.argument1 = argument1;
+            this.argument2 = argument2;
+        }
+
+        @Override
+        double evaluate(Context context) {
+            return function.evaluate(argument1.evaluate(context), argument2.evaluate(context));
+        }
+
+    }
+
+    static final class Tree extends CompiledExpression {
+
+        private final double[] values;
+
+        Tree(double[] values) { this.values = values; }
+
+        @Override
+        double evaluate(Context context) { return GBDTNode.evaluate(values, 0, context); }
+
+    }
+
+    static final class Forest extends CompiledExpression {
+
+        private final double[] values;
+
+        Forest(double[] values) { this.values = values; }
+
+        @Override
+        double evaluate(Context context) { return GBDTForestNode.evaluate(values, context); }
+
+    }
+
+}
@@ -0,0 +1,59 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.Reference;
+import com.yahoo.searchlib.rankingexpression.evaluation.BooleanValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Context;
+import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.SerializationContext;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.TypeContext;
+
+import java.util.Deque;
+
+/**
+ * A sub-expression compiled to primitive double operations. This has the same string form and type as
+ * the expression it is compiled from. If it is evaluated in a context which does not support lookup by index,
+ * or which binds a variable to a value which is not a double, this evaluation falls back to evaluating the
+ * expression it is compiled from. Following evaluations try the compiled expression again.
+ */
+public final class CompiledNode extends ExpressionNode {
+
+    private final ExpressionNode expression;
+    private final CompiledExpression compiled;
+
+    CompiledNode(ExpressionNode expression, CompiledExpression compiled) {
+        this.expression = expression;
+        this.compiled = compiled;
+    }
+
+    /** Returns the expression compiled by this */
+    public ExpressionNode expression() { return expression; }
+
+    CompiledExpression compiled() { return compiled; }
+
+    @Override
+    public final TensorType type(TypeContext<Reference> context) { return expression.type(context); }
+
+    @Override
+    public final Value evaluate(Context context) {
+        if ( ! (context instanceof ContextIndex)) return expression.evaluate(context);
+        try {
+            double value = compiled.evaluate(context);
+            return compiled.isBoolean() ? new BooleanValue(value != 0) : new DoubleValue(value);
+        }
+        catch (UnsupportedOperationException e) { // A variable is not bound to a double in this context
+            return expression.evaluate(context);
+        }
+    }
+
+    @Override
+    public StringBuilder toString(StringBuilder string, SerializationContext context, Deque<String> path, CompositeNode parent) {
+        return expression.toString(string, context, path, parent);
+    }
+
+}
@@ -0,0 +1,151 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.compilation.CompilationOptimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestOptimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTOptimizer;
+import com.yahoo.searchlib.rankingexpression.parser.ParseException;
+
+import java.util.Random;
+
+/**
+ * Compares tree-walking, GBDT optimized and compiled evaluation of randomly generated forests
+ * of the sizes typically produced by XGBoost and LightGBM.
+ */
+public class CompiledEvaluationBenchmark {
+
+    private final Random random = new Random(1234);
+
+    private String[] featureNames;
+
+    public void run() {
+        try {
+            // XGBoost sized: 1000 trees of depth 6 over 100 features, with a logistic transform
+            runForest("XGBoost", 1000, 6, 100, 20 * 1000);
+
+            // LightGBM sized: 500 trees with 32 leaves over 200 features, with a logistic transform
+            runForest("LightGBM", 500, 5, 200, 40 * 1000);
+        }
+        catch (ParseException e) {
+            throw new RuntimeException("Benchmarking failed", e);
+        }
+    }
+
+    private void runForest(String name, int trees, int depth, int features, int iterations) throws ParseException {
+        System.out.println("=== " + name + ": " + trees + " trees of depth " + depth + " over " + features + " features ===");
+        featureNames = new String[features];
+        for (int i = 0; i < features; i++)
+            featureNames[i] = "f" + i;
+        String forestString = "sigmoid(" + forest(trees, depth, features) + ")";
+        double[][] featureValues = featureValues(100, features);
+
+        double total = benchmark(new RankingExpression(forestString), new MapContext(), featureValues, iterations,
+                                 "Unoptimized");
+
+        RankingExpression treeOptimized = new RankingExpression(forestString);
+        ArrayContext treeContext = new ArrayContext(treeOptimized, true);
+        optimize(treeOptimized, treeContext, true, false, false);
+        assertEqualish(total, benchmark(treeOptimized, treeContext, featureValues, iterations, "Tree optimized"));
+
+        RankingExpression forestOptimized = new RankingExpression(forestString);
+        DoubleOnlyArrayContext forestContext = new DoubleOnlyArrayContext(forestOptimized, true);
+        optimize(forestOptimized, forestContext, true, true, false);
+        assertEqualish(total, benchmark(forestOptimized, forestContext, featureValues, iterations, "Forest optimized"));
+
+        RankingExpression compiled = new RankingExpression(forestString);
+        DoubleOnlyArrayContext compiledContext = new DoubleOnlyArrayContext(compiled, true);
+        optimize(compiled, compiledContext, false, false, true);
+        assertEqualish(total, benchmark(compiled, compiledContext, featureValues, iterations, "Compiled"));
+
+        RankingExpression forestCompiled = new RankingExpression(forestString);
+        DoubleOnlyArrayContext forestCompiledContext = new DoubleOnlyArrayContext(forestCompiled, true);
+        optimize(forestCompiled, forestCompiledContext, true, true, true);
+        assertEqualish(total, benchmark(forestCompiled, forestCompiledContext, featureValues, iterations,
+                                        "Forest optimized and compiled"));
+    }
+
+    private void optimize(RankingExpression expression, ContextIndex context,
+                          boolean trees, boolean forests, boolean compilation) {
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        optimizer.getOptimizer(GBDTOptimizer.class).setEnabled(trees);
+        optimizer.getOptimizer(GBDTForestOptimizer.class).setEnabled(forests);
+        optimizer.getOptimizer(CompilationOptimizer.class).setEnabled(compilation);
+        System.out.println(optimizer.optimize(expression, context));
+    }
+
+    private double benchmark(RankingExpression expression, Context context, double[][] featureValues,
+                             int iterations, String description) {
+        System.out.print("Running '" + description + "': Warming up ... ");
+        double total = 0;
+        total += benchmarkIterations(expression, context, featureValues, iterations / 5);
+        System.out.print("running " + iterations + " iterations ... ");
+        long startTime = System.nanoTime();
+        total += benchmarkIterations(expression, context, featureValues, iterations);
+        long totalTime = System.nanoTime() - startTime;
+        System.out.println("done: " + totalTime / 1000 / iterations + " microseconds/expression");
+        return total;
+    }
+
+    private double benchmarkIterations(RankingExpression expression, Context contextPrototype, double[][] featureValues,
+                                       int iterations) {
+        double total = 0;
+        Context context = copyForEvaluation(contextPrototype);
+        for (int i = 0; i < iterations; i++) {
+            double[] values = featureValues[i % featureValues.length];
+            for (int feature = 0; feature < values.length; feature++)
+                context.put(featureNames[feature], values[feature]);
+            total += expression.evaluate(context).asDouble();
+        }
+        return total;
+    }
+
+    private Context copyForEvaluation(Context contextPrototype) {
+        if (contextPrototype instanceof AbstractArrayContext) // optimized - contains name to index map
+            return ((AbstractArrayContext)contextPrototype).clone();
+        else if (contextPrototype instanceof MapContext) // Unoptimized - nothing to keep
+            return new MapContext();
+        else
+            throw new RuntimeException("Unknown context type " + contextPrototype.getClass());
+    }
+
+    private String forest(int trees, int depth, int features) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < trees; i++) {
+            if (i > 0)
+                b.append(" + ");
+            tree(depth, features, b);
+        }
+        return b.toString();
+    }
+
+    private void tree(int depth, int features, StringBuilder b) {
+        if (depth == 0) {
+            b.append(random.nextDouble() - 0.5);
+            return;
+        }
+        b.append("if (").append(featureNames[random.nextInt(features)]).append(" < ").append(random.nextDouble()).append(", ");
+        tree(depth - 1, features, b);
+        b.append(", ");
+        tree(depth - 1, features, b);
+        b.append(")");
+    }
+
+    private double[][] featureValues(int count, int features) {
+        double[][] values = new double[count][features];
+        for (double[] item : values)
+            for (int feature = 0; feature < features; feature++)
+                item[feature] = random.nextDouble();
+        return values;
+    }
+
+    private void assertEqualish(double a, double b) {
+        if (Math.abs(a - b) >= Math.abs((a + b) / 100000000) )
+            throw new RuntimeException("Expected value " + a + " but optimized evaluation produced " + b);
+    }
+
+    public static void main(String[] args) {
+        new CompiledEvaluationBenchmark().run();
+    }
+
+}
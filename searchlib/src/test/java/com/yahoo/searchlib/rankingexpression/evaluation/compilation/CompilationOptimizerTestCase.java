@@ -0,0 +1,165 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.compilation;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.AbstractArrayContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.ArrayContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.Context;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleOnlyArrayContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionOptimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.MapContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.OptimizationReport;
+import com.yahoo.searchlib.rankingexpression.evaluation.StringValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestOptimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTOptimizer;
+import com.yahoo.searchlib.rankingexpression.parser.ParseException;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.tensor.Tensor;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompilationOptimizerTestCase {
+
+    private static final double delta = 0.00000000001;
+
+    @Test
+    public void testCompiledEvaluation() throws ParseException {
+        assertCompiled("a + b * c - d / 2", 1);
+        assertCompiled("a * b + c ^ 2 % 3 - -d", 1);
+        assertCompiled("(a + b) * (c - d)", 1);
+        assertCompiled("a < b && c >= d || !(a == c)", 1);
+        assertCompiled("if (a < 2, if (b < 3, 5, 6), 4) + if (c <= 3, 7, 8) + if (a ~= b, 9, 10)", 1);
+        assertCompiled("if (a + b > c, a, b) * 3", 1);
+        assertCompiled("if (a in [1, 2.5, 3], 1, 0) + if (b in [4], 2, 0)", 1);
+        assertCompiled("max(a, b) + min(c, d) + log(a + 1) + sqrt(b) + pow(c, 2) + atan2(a, d)", 1);
+        assertCompiled("1 + 2", 1);
+    }
+
+    @Test
+    public void testReferencesAreNotCompiledAlone() throws ParseException {
+        assertCompiled("a", 0);
+        assertCompiled("max(a, b)", 1);
+    }
+
+    @Test
+    public void testCompilationIsDisabledByDefault() throws ParseException {
+        RankingExpression expression = new RankingExpression("a + b * c - d / 2");
+        new ExpressionOptimizer().optimize(expression, new DoubleOnlyArrayContext(expression));
+        assertEquals(0, countCompiled(expression.getRoot()));
+    }
+
+    @Test
+    public void testStringFormIsPreserved() throws ParseException {
+        String expressionString = "if (a < 2, if (b < 3, 5, 6), 4) + max(c, 3) * (a + -b)";
+        RankingExpression expression = new RankingExpression(expressionString);
+        String before = expression.getRoot().toString();
+        compilingOptimizer().optimize(expression, new ArrayContext(expression));
+        assertTrue(expression.getRoot() instanceof CompiledNode);
+        assertEquals(before, expression.getRoot().toString());
+    }
+
+    @Test
+    public void testForestsBecomePartOfCompiledExpressions() throws ParseException {
+        RankingExpression expression =
+                new RankingExpression("2 * (if (a < 2, if (b < 3, 5, 6), 4) + if (a < 3, 7, if (b < 1, 8, 9)))");
+        DoubleOnlyArrayContext context = new DoubleOnlyArrayContext(expression);
+        OptimizationReport report = compilingOptimizer().optimize(expression, context);
+        assertEquals(1, report.getMetric("Number of forests"));
+        assertEquals(1, report.getMetric("Compiled expressions"));
+        context.put("a", 1);
+        context.put("b", 2);
+        assertEquals(24.0, expression.evaluate(context).asDouble(), delta);
+        context.put("a", 2.5);
+        assertEquals(22.0, expression.evaluate(context).asDouble(), delta);
+    }
+
+    @Test
+    public void testFallbackToUncompiledEvaluation() throws ParseException {
+        RankingExpression expression = new RankingExpression("a * 2 + b");
+        ArrayContext context = new ArrayContext(expression);
+        compilingOptimizer().optimize(expression, context);
+        assertTrue(expression.getRoot() instanceof CompiledNode);
+
+        context.put("a", 3);
+        context.put("b", 1);
+        assertEquals(7.0, expression.evaluate(context).asDouble(), delta);
+
+        context.put("a", new TensorValue(Tensor.from("{{x:0}:1.0,{x:1}:2.0}")));
+        assertEquals(Tensor.from("{{x:0}:3.0,{x:1}:5.0}"), expression.evaluate(context).asTensor());
+
+        context.put("a", 4);
+        assertEquals(9.0, expression.evaluate(context).asDouble(), delta);
+
+        MapContext mapContext = new MapContext();
+        mapContext.put("a", 5);
+        mapContext.put("b", 1);
+        assertEquals(11.0, expression.evaluate(mapContext).asDouble(), delta);
+    }
+
+    @Test
+    public void testStringComparisonsAreNotCompiled() throws ParseException {
+        RankingExpression expression = new RankingExpression("if (a == \"foo\", 1, 2) + b");
+        ArrayContext context = new ArrayContext(expression);
+        compilingOptimizer().optimize(expression, context);
+        assertEquals(0, countCompiled(expression.getRoot()));
+        context.put("a", new StringValue("foo"));
+        context.put("b", 1);
+        assertEquals(2.0, expression.evaluate(context).asDouble(), delta);
+    }
+
+    private ExpressionOptimizer compilingOptimizer() {
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        optimizer.getOptimizer(CompilationOptimizer.class).setEnabled(true);
+        return optimizer;
+    }
+
+    /** Asserts that the expression is compiled to the given number of nodes which evaluates like the original */
+    private void assertCompiled(String expressionString, int expectedCompiledNodes) throws ParseException {
+        assertCompiled(expressionString, expectedCompiledNodes, false);
+        assertCompiled(expressionString, expectedCompiledNodes, true);
+    }
+
+    private void assertCompiled(String expressionString, int expectedCompiledNodes, boolean doubleOnly) throws ParseException {
+        RankingExpression original = new RankingExpression(expressionString);
+        RankingExpression compiled = new RankingExpression(expressionString);
+        AbstractArrayContext context = doubleOnly ? new DoubleOnlyArrayContext(compiled) : new ArrayContext(compiled);
+
+        ExpressionOptimizer optimizer = compilingOptimizer();
+        optimizer.getOptimizer(GBDTOptimizer.class).setEnabled(false);
+        optimizer.getOptimizer(GBDTForestOptimizer.class).setEnabled(false);
+        optimizer.optimize(compiled, context);
+        assertEquals("Compiled nodes in " + expressionString, expectedCompiledNodes, countCompiled(compiled.getRoot()));
+        assertEquals(original.getRoot().toString(), compiled.getRoot().toString());
+
+        double[][] bindings = { { 0, 0, 0, 0 }, { 1, 2, 3, 4 }, { 2.5, 2.5, -3, 0.5 }, { 3, 0.1, 7, -1 } };
+        for (double[] values : bindings) {
+            MapContext mapContext = new MapContext();
+            bind(mapContext, values);
+            bind(context, values);
+            assertEquals("Evaluating " + expressionString + " with " + mapContext,
+                         original.evaluate(mapContext).asDouble(), compiled.evaluate(context).asDouble(), delta);
+        }
+    }
+
+    private int countCompiled(ExpressionNode node) {
+        if (node instanceof CompiledNode) return 1;
+        if ( ! (node instanceof CompositeNode)) return 0;
+        int count = 0;
+        for (ExpressionNode child : ((CompositeNode)node).children())
+            count += countCompiled(child);
+        return count;
+    }
+
+    private void bind(Context context, double[] values) {
+        String[] names = { "a", "b", "c", "d" };
+        for (int i = 0; i < names.length; i++) {
+            if (context instanceof AbstractArrayContext && ! context.names().contains(names[i])) continue;
+            context.put(names[i], values[i]);
+        }
+    }
+
+}
@@ -30,6 +30,29 @@ import java.util.concurrent.TimeUnit;
 @Immutable
 public final class ConnectionParams {
 
+    /**
+     * The codecs which can be used to compress document operations sent to the gateway.
+     */
+    public enum Compression {
+
+        /** Compresses well but is expensive in CPU on both client and gateway */
+        GZIP("gzip"),
+        /** Compresses less than gzip but is much cheaper in CPU */
+        LZ4("lz4");
+
+        private final String contentEncoding;
+
+        Compression(String contentEncoding) {
+            this.contentEncoding = contentEncoding;
+        }
+
+        /** Returns the HTTP content encoding of data compressed by this */
+        public String getContentEncoding() {
+            return contentEncoding;
+        }
+
+    }
+
     /**
      * Builder for {@link ConnectionParams}.
      */
@@ -43,6 +66,7 @@ public final class ConnectionParams {
         private String proxyHost = null;
         private int proxyPort = 8080;
         private boolean useCompression = false;
+        private Compression compression = Compression.GZIP;
         private int maxRetries = 100;
         private long minTimeBetweenRetriesMs = 700;
         private boolean dryRun = false;
@@ -50,6 +74,9 @@ public final class ConnectionParams {
         private int traceLevel = 0;
         private int traceEveryXOperation = 0;
         private boolean printTraceToStdErr = true;
+        private boolean useAsyncTransport = false;
+        private int maxConcurrentRequestsPerConnection = 8;
+        private int numAsyncTransportThreads = 2;
 
         /**
          * Sets the SSLContext for the connection to the gateway when SSL is enabled for Endpoint.
@@ -153,6 +180,20 @@ public final class ConnectionParams {
             return this;
         }
 
+        /**
+         * Sets the codec to compress document operations with when compression is enabled.
+         * A gateway which does not support the given codec is sent gzip compressed operations instead.
+         * Default gzip.
+         *
+         * @param compression the codec to use.
+         * @return pointer to builder.
+         */
+        @Beta
+        public Builder setCompression(Compression compression) {
+            this.compression = Objects.requireNonNull(compression, "Compression cannot be null");
+            return this;
+        }
+
         /**
          * Set how many times to retry sending an operation to a gateway when encountering transient problems.
          *
@@ -197,6 +238,18 @@ public final class ConnectionParams {
             return minTimeBetweenRetriesMs;
         }
 
+        /**
+         * Sets the max time to wait for a connection to a gateway to be established. Default is 60 seconds.
+         *
+         * @param connectionTimeout the max time value
+         * @param unit              the unit of the max time.
+         * @return pointer to builder.
+         */
+        public Builder setConnectionTimeout(long connectionTimeout, TimeUnit unit) {
+            this.connectionTimeout = unit.toMillis(connectionTimeout);
+            return this;
+        }
+
         /**
          * Sets the trace level for tracing messagebus. 0 means to tracing.
          *
@@ -230,6 +283,47 @@ public final class ConnectionParams {
             return this;
         }
 
+        /**
+         * Set whether to use the asynchronous transport, where each connection can have several requests
+         * in flight to the gateway, and requests are written and responses read by a few shared
+         * event loop threads using non-blocking I/O. Fewer connections are then needed to reach a
+         * given throughput. The asynchronous transport is only used for plain HTTP endpoints without
+         * a proxy and with the V3 protocol; other endpoints use the blocking transport. Default false.
+         *
+         * @param useAsyncTransport true to use the asynchronous transport.
+         * @return pointer to builder.
+         */
+        @Beta
+        public Builder setUseAsyncTransport(boolean useAsyncTransport) {
+            this.useAsyncTransport = useAsyncTransport;
+            return this;
+        }
+
+        /**
+         * Sets the max number of requests each connection can have in flight to the gateway
+         * when using the asynchronous transport. Default 8.
+         *
+         * @param maxConcurrentRequestsPerConnection max number of requests in flight per connection.
+         * @return pointer to builder.
+         */
+        @Beta
+        public Builder setMaxConcurrentRequestsPerConnection(int maxConcurrentRequestsPerConnection) {
+            this.maxConcurrentRequestsPerConnection = maxConcurrentRequestsPerConnection;
+            return this;
+        }
+
+        /**
+         * Sets the number of event loop threads performing network I/O for the asynchronous transport
+         * of each cluster. Default 2.
+         *
+         * @param numAsyncTransportThreads number of event loop threads.
+         * @return pointer to builder.
+         */
+        @Beta
+        public Builder setNumAsyncTransportThreads(int numAsyncTransportThreads) {
+            this.numAsyncTransportThreads = numAsyncTransportThreads;
+            return this;
+        }
 
         public ConnectionParams build() {
             return new ConnectionParams(
@@ -242,13 +336,17 @@ public final class ConnectionParams {
                     proxyHost,
                     proxyPort,
                     useCompression,
+                    compression,
                     maxRetries,
                     minTimeBetweenRetriesMs,
                     dryRun,
                     enableV3Protocol,
                     traceLevel,
                     traceEveryXOperation,
-                    printTraceToStdErr);
+                    printTraceToStdErr,
+                    useAsyncTransport,
+                    maxConcurrentRequestsPerConnection,
+                    numAsyncTransportThreads);
         }
 
         public int getNumPersistentConnectionsPerEndpoint() {
@@ -298,6 +396,7 @@ public final class ConnectionParams {
     private final String proxyHost;
     private final int proxyPort;
     private final boolean useCompression;
+    private final Compression compression;
     private final int maxRetries;
     private final long minTimeBetweenRetriesMs;
     private final boolean dryRun;
@@ -305,6 +404,9 @@ public final class ConnectionParams {
     private final int traceLevel;
     private final int traceEveryXOperation;
     private final boolean printTraceToStdErr;
+    private final boolean useAsyncTransport;
+    private final int maxConcurrentRequestsPerConnection;
+    private final int numAsyncTransportThreads;
 
     private ConnectionParams(
             SSLContext sslContext,
@@ -316,13 +418,17 @@ public final class ConnectionParams {
             String proxyHost,
             int proxyPort,
             boolean useCompression,
+            Compression compression,
             int maxRetries,
             long minTimeBetweenRetriesMs,
             boolean dryRun,
             boolean enableV3Protocol,
             int traceLevel,
             int traceEveryXOperation,
-            boolean printTraceToStdErr) {
+            boolean printTraceToStdErr,
+            boolean useAsyncTransport,
+            int maxConcurrentRequestsPerConnection,
+            int numAsyncTransportThreads) {
         this.sslContext = sslContext;
         this.hostnameVerifier = hostnameVerifier;
         this.connectionTimeout = connectionTimeout;
@@ -332,6 +438,7 @@ public final class ConnectionParams {
         this.proxyHost = proxyHost;
         this.proxyPort = proxyPort;
         this.useCompression = useCompression;
+        this.compression = compression;
         this.maxRetries = maxRetries;
         this.minTimeBetweenRetriesMs = minTimeBetweenRetriesMs;
         this.dryRun = dryRun;
@@ -339,6 +446,9 @@ public final class ConnectionParams {
         this.traceLevel = traceLevel;
         this.traceEveryXOperation = traceEveryXOperation;
         this.printTraceToStdErr = printTraceToStdErr;
+        this.useAsyncTransport = useAsyncTransport;
+        this.maxConcurrentRequestsPerConnection = maxConcurrentRequestsPerConnection;
+        this.numAsyncTransportThreads = numAsyncTransportThreads;
     }
 
     @JsonIgnore
@@ -375,6 +485,10 @@ public final class ConnectionParams {
         return useCompression;
     }
 
+    public Compression getCompression() {
+        return compression;
+    }
+
     public int getMaxRetries() {
         return maxRetries;
     }
@@ -383,6 +497,11 @@ public final class ConnectionParams {
         return minTimeBetweenRetriesMs;
     }
 
+    /** Returns the max time in milliseconds to wait for a connection to a gateway to be established */
+    public long getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
     public boolean isDryRun() {
         return dryRun;
     }
@@ -401,6 +520,18 @@ public final class ConnectionParams {
         return printTraceToStdErr;
     }
 
+    public boolean getUseAsyncTransport() {
+        return useAsyncTransport;
+    }
+
+    public int getMaxConcurrentRequestsPerConnection() {
+        return maxConcurrentRequestsPerConnection;
+    }
+
+    public int getNumAsyncTransportThreads() {
+        return numAsyncTransportThreads;
+    }
+
     /**
      * A header provider that provides a header value. {@link #getHeaderValue()} is called each time a new HTTP request
      * is constructed by {@link com.yahoo.vespa.http.client.FeedClient}.
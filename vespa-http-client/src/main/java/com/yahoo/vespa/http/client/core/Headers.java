@@ -31,5 +31,7 @@ public final class Headers {
     public static final String OUTSTANDING_REQUESTS = "X-Yahoo-Outstanding-Requests";
     public static final String HOSTNAME = "X-Yahoo-Hostname";
     public static final String SILENTUPGRADE = "X-Yahoo-Silent-Upgrade";
+    // The content encodings the server accepts for feed requests, comma separated
+    public static final String CONTENT_ENCODINGS = "X-Yahoo-Feed-Content-Encodings";
 
 }
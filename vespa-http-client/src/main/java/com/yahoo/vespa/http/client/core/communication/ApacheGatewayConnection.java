@@ -26,11 +26,14 @@ import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import net.jpountz.lz4.LZ4Factory;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -41,6 +44,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.GZIPOutputStream;
@@ -58,6 +62,8 @@ class ApacheGatewayConnection implements GatewayConnection {
     private static final byte[] END_OF_FEED_XML = "\n</vespafeed>\n".getBytes(StandardCharsets.UTF_8);
     private static final byte[] START_OF_FEED_JSON = "[".getBytes(StandardCharsets.UTF_8);
     private static final byte[] END_OF_FEED_JSON = "]".getBytes(StandardCharsets.UTF_8);
+    private static final LZ4Factory lz4Factory = LZ4Factory.fastestInstance();
+    private static final int lz4BlockSize = 64 * 1024;
     private final byte[] startOfFeed;
     private final byte[] endOfFeed;
     private final Endpoint endpoint;
@@ -67,7 +73,11 @@ class ApacheGatewayConnection implements GatewayConnection {
     private HttpClient httpClient;
     private String sessionId;
     private final String clientId;
-    private int negotiatedVersion = -1;
+    private volatile int negotiatedVersion = -1;
+    private volatile ConnectionParams.Compression negotiatedCompression = ConnectionParams.Compression.GZIP;
+    private final AtomicLong uncompressedBytes = new AtomicLong(0);
+    private final AtomicLong compressedBytes = new AtomicLong(0);
+    private final AtomicLong compressionNanos = new AtomicLong(0);
     private final HttpClientFactory httpClientFactory;
     private final String shardingKey = UUID.randomUUID().toString().substring(0, 5);
 
@@ -124,41 +134,80 @@ class ApacheGatewayConnection implements GatewayConnection {
 
     // Protected for easier testing only.
     protected static InputStreamEntity zipAndCreateEntity(final InputStream inputStream) throws IOException {
+        return new InputStreamEntity(new ByteArrayInputStream(zip(inputStream)), -1);
+    }
+
+    static byte[] zip(final InputStream inputStream) throws IOException {
+        return compress(inputStream, ConnectionParams.Compression.GZIP);
+    }
+
+    static byte[] compress(final InputStream inputStream, ConnectionParams.Compression compression) throws IOException {
         byte[] buffer = new byte[4096];
-        GZIPOutputStream gzos = null;
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try {
-            gzos = new GZIPOutputStream(baos);
+        try (OutputStream compressingStream = compressingStream(baos, compression)) {
             while (inputStream.available() > 0) {
                 int length = inputStream.read(buffer);
-                gzos.write(buffer, 0,length);
-            }
-        } finally {
-            if (gzos != null)  {
-                gzos.close();
+                compressingStream.write(buffer, 0, length);
             }
         }
-        byte[] fooGzippedBytes = baos.toByteArray();
-        return new InputStreamEntity(new ByteArrayInputStream(fooGzippedBytes), -1);
+        return baos.toByteArray();
+    }
+
+    private static OutputStream compressingStream(OutputStream out, ConnectionParams.Compression compression)
+            throws IOException {
+        switch (compression) {
+            case GZIP: return new GZIPOutputStream(out);
+            case LZ4: return new LZ4BlockOutputStream(out, lz4BlockSize, lz4Factory.fastCompressor());
+            default: throw new IllegalArgumentException("Unsupported compression " + compression);
+        }
+    }
+
+    /** Compresses the given data with the codec negotiated with the gateway, and adds to the compression statistics */
+    byte[] compress(ByteBuffer[] data) throws IOException {
+        long startTime = System.nanoTime();
+        long size = 0;
+        for (ByteBuffer buffer : data)
+            size += buffer.remaining();
+        byte[] compressed = compress(new ByteBufferInputStream(data), negotiatedCompression);
+        compressionNanos.addAndGet(System.nanoTime() - startTime);
+        uncompressedBytes.addAndGet(size);
+        compressedBytes.addAndGet(compressed.length);
+        return compressed;
     }
 
+    /** Returns the number of bytes of document operations compressed by this */
+    long getUncompressedBytes() { return uncompressedBytes.get(); }
+
+    /** Returns the number of bytes the document operations compressed by this were compressed to */
+    long getCompressedBytes() { return compressedBytes.get(); }
+
+    /** Returns the total time spent compressing document operations, in nanoseconds */
+    long getCompressionNanos() { return compressionNanos.get(); }
+
+    /** Returns the codec this compresses with, which is the configured one if the gateway supports it */
+    ConnectionParams.Compression getNegotiatedCompression() { return negotiatedCompression; }
+
     private InputStream write(List<Document> docs, boolean drain, boolean useCompression)
             throws ServerResponseException, IOException {
         HttpPost httpPost = createPost(drain, useCompression, false /* this is not hanshake */);
 
-        final ByteBuffer[] buffers = getDataWithStartAndEndOfFeed(docs, negotiatedVersion);
-        final InputStream inputStream = new ByteBufferInputStream(buffers);
+        final ByteBuffer[] buffers = getDataWithStartAndEndOfFeed(docs);
         final InputStreamEntity reqEntity;
         if (useCompression ) {
-            reqEntity = zipAndCreateEntity(inputStream);
+            reqEntity = new InputStreamEntity(new ByteArrayInputStream(compress(buffers)), -1);
         } else {
-            reqEntity = new InputStreamEntity(inputStream, -1);
+            reqEntity = new InputStreamEntity(new ByteBufferInputStream(buffers), -1);
         }
         reqEntity.setChunked(true);
         httpPost.setEntity(reqEntity);
         return executePost(httpPost);
     }
 
+    /** Returns the data to send for the given documents with the negotiated protocol version */
+    ByteBuffer[] getDataWithStartAndEndOfFeed(List<Document> docs) {
+        return getDataWithStartAndEndOfFeed(docs, negotiatedVersion);
+    }
+
     private ByteBuffer[] getDataWithStartAndEndOfFeed(List<Document> docs, int version) {
         List<ByteBuffer> data = new ArrayList<>();
         if (version == 2 || version == 3) { // TODO: Vespa 7: Remove support for version 2
@@ -180,7 +229,7 @@ class ApacheGatewayConnection implements GatewayConnection {
         return data.toArray(new ByteBuffer[data.size()]);
     }
 
-    private HttpPost createPost(boolean drain, boolean useCompression, boolean isHandshake) {
+    HttpPost createPost(boolean drain, boolean useCompression, boolean isHandshake) {
         HttpPost httpPost = new HttpPost(createUri());
 
         for (int v : SUPPORTED_VERSIONS) {
@@ -237,12 +286,16 @@ class ApacheGatewayConnection implements GatewayConnection {
         });
 
         if (useCompression) {
-            httpPost.setHeader("Content-Encoding", "gzip");
+            httpPost.setHeader("Content-Encoding", negotiatedCompression.getContentEncoding());
         }
         return httpPost;
     }
 
     private InputStream executePost(HttpPost httpPost) throws ServerResponseException, IOException {
+        return execute(httpPost).getEntity().getContent();
+    }
+
+    private HttpResponse execute(HttpPost httpPost) throws ServerResponseException, IOException {
         HttpResponse response;
         try {
             if (httpClient == null) {
@@ -257,14 +310,19 @@ class ApacheGatewayConnection implements GatewayConnection {
             throw e;
         }
         try {
-            verifyServerResponseCode(response);
-            verifyServerVersion(response.getFirstHeader(Headers.VERSION));
-            verifySessionHeader(response.getFirstHeader(Headers.SESSION_ID));
+            verifyResponse(response);
         } catch (ServerResponseException e) {
             httpPost.abort();
             throw e;
         }
-        return response.getEntity().getContent();
+        return response;
+    }
+
+    /** Throws ServerResponseException if the given response is not a successful one from a compatible server */
+    void verifyResponse(HttpResponse response) throws ServerResponseException {
+        verifyServerResponseCode(response);
+        verifyServerVersion(response.getFirstHeader(Headers.VERSION));
+        verifySessionHeader(response.getFirstHeader(Headers.SESSION_ID));
     }
 
     private void verifyServerResponseCode(HttpResponse response) throws ServerResponseException {
@@ -375,7 +433,9 @@ class ApacheGatewayConnection implements GatewayConnection {
 
         final String oldSessionID = sessionId;
         sessionId = null;
-        try (InputStream stream = executePost(httpPost)) {
+        HttpResponse response = execute(httpPost);
+        negotiatedCompression = selectCompression(response.getFirstHeader(Headers.CONTENT_ENCODINGS));
+        try (InputStream stream = response.getEntity().getContent()) {
             if (oldSessionID != null && !oldSessionID.equals(sessionId)) {
                 throw new ServerResponseException(
                         "Session ID changed after new handshake, some documents might not be acked to correct thread. "
@@ -388,6 +448,24 @@ class ApacheGatewayConnection implements GatewayConnection {
         }
     }
 
+    /** Returns the configured compression if the gateway accepts it, and gzip, which all gateways accept, otherwise */
+    private ConnectionParams.Compression selectCompression(Header acceptedEncodings) {
+        ConnectionParams.Compression compression = connectionParams.getCompression();
+        if (compression == ConnectionParams.Compression.GZIP) return compression;
+
+        if (acceptedEncodings != null) {
+            for (String encoding : acceptedEncodings.getValue().split(",")) {
+                if (encoding.trim().equalsIgnoreCase(compression.getContentEncoding())) {
+                    return compression;
+                }
+            }
+        }
+        if (connectionParams.getUseCompression()) {
+            log.info(endpoint + " does not accept " + compression.getContentEncoding() + " compression, using gzip");
+        }
+        return ConnectionParams.Compression.GZIP;
+    }
+
     @Override
     public void close() {
         httpClient = null;
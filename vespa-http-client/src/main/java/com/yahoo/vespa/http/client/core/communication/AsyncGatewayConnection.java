@@ -0,0 +1,115 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import com.yahoo.component.Vtag;
+import com.yahoo.vespa.http.client.config.ConnectionParams;
+import com.yahoo.vespa.http.client.config.Endpoint;
+import com.yahoo.vespa.http.client.config.FeedParams;
+import com.yahoo.vespa.http.client.core.Document;
+import com.yahoo.vespa.http.client.core.ServerResponseException;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A gateway connection which can also write operations asynchronously, such that several write requests
+ * can be in flight at once. The asynchronous writes use an {@link AsyncHttpTransport} shared between connections,
+ * while connecting, handshaking and draining are done as in the blocking {@link ApacheGatewayConnection}.
+ *
+ * This requires version 3 of the protocol, which lets responses to any request carry the results of any
+ * operation sent by this client.
+ */
+class AsyncGatewayConnection extends ApacheGatewayConnection {
+
+    private static final String userAgent = String.format("vespa-http-client (%s)", Vtag.currentVersion);
+
+    private final AsyncHttpTransport transport;
+    private final boolean useCompression;
+
+    AsyncGatewayConnection(
+            Endpoint endpoint,
+            FeedParams feedParams,
+            String clusterSpecificRoute,
+            ConnectionParams connectionParams,
+            HttpClientFactory httpClientFactory,
+            String clientId,
+            AsyncHttpTransport transport) {
+        super(endpoint, feedParams, clusterSpecificRoute, connectionParams, httpClientFactory, clientId);
+        if ( ! connectionParams.isEnableV3Protocol())
+            throw new IllegalArgumentException("Asynchronous writes require version 3 of the protocol");
+        this.transport = transport;
+        this.useCompression = connectionParams.getUseCompression();
+    }
+
+    /**
+     * Writes the given operations. The returned future completes with the stream of results the gateway has
+     * for this client, which may include results for operations sent in other requests, or exceptionally
+     * with a {@link ServerResponseException} or an {@link IOException}.
+     */
+    CompletableFuture<InputStream> writeOperationsAsync(List<Document> docs) {
+        try {
+            HttpPost post = createPost(false, useCompression, false);
+            ByteBuffer[] data = getDataWithStartAndEndOfFeed(docs);
+            if (useCompression)
+                data = new ByteBuffer[] { ByteBuffer.wrap(compress(data)) };
+
+            URI uri = post.getURI();
+            AsyncHttpTransport.Request request = new AsyncHttpTransport.Request("POST",
+                                                                                uri.getRawPath() + "?" + uri.getRawQuery(),
+                                                                                headersOf(post),
+                                                                                data);
+            return transport.send(new InetSocketAddress(uri.getHost(), uri.getPort()), request)
+                            .thenApply(this::verifiedContentOf);
+        }
+        catch (IOException | RuntimeException e) {
+            CompletableFuture<InputStream> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private List<Map.Entry<String, String>> headersOf(HttpPost post) {
+        List<Map.Entry<String, String>> headers = new ArrayList<>();
+        headers.add(new AbstractMap.SimpleImmutableEntry<>("User-Agent", userAgent));
+        for (Header header : post.getAllHeaders())
+            headers.add(new AbstractMap.SimpleImmutableEntry<>(header.getName(), header.getValue()));
+        return headers;
+    }
+
+    private InputStream verifiedContentOf(AsyncHttpTransport.Response response) {
+        HttpResponse httpResponse = new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1,
+                                                                              response.statusCode(),
+                                                                              response.reasonPhrase()));
+        ByteArrayEntity entity = new ByteArrayEntity(response.body());
+        for (Map.Entry<String, String> header : response.headers()) {
+            httpResponse.addHeader(header.getKey(), header.getValue());
+            if (header.getKey().equalsIgnoreCase("Content-Type"))
+                entity.setContentType(header.getValue());
+        }
+        httpResponse.setEntity(entity);
+        try {
+            verifyResponse(httpResponse);
+            return entity.getContent();
+        }
+        catch (ServerResponseException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+}
@@ -0,0 +1,601 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A minimal HTTP/1.1 client which does all network I/O with non-blocking sockets on a few event loop threads,
+ * such that many requests can be in flight at once without having a thread for each.
+ * Connections are kept alive and reused by later requests to the same address.
+ * Requests are not pipelined, so each request in flight uses a connection of its own.
+ * Only plain HTTP is supported, not TLS or proxies.
+ * <p>
+ * A request is only resent by this if the connection it was sent on fails before the request is completely written.
+ * Otherwise the server may have handled it, so the request is failed, leaving it to the caller whether to retry.
+ *
+ * This class is multithread safe.
+ */
+class AsyncHttpTransport implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(AsyncHttpTransport.class.getName());
+    private static final int maxLineLength = 64 * 1024;
+
+    private final EventLoop[] eventLoops;
+    private final AtomicInteger nextEventLoop = new AtomicInteger(0);
+    private final long connectTimeoutMillis;
+
+    /** Open connections which are not in use, by the address they are connected to */
+    private final Map<InetSocketAddress, Queue<Connection>> idleConnections = new ConcurrentHashMap<>();
+
+    private volatile boolean closed = false;
+
+    /**
+     * Creates and starts a transport
+     *
+     * @param threadCount the number of event loop threads to use
+     * @param threadGroup the thread group of the event loop threads, which also run the response callbacks
+     * @param name the name of this, used in thread names
+     * @param connectTimeoutMillis the max time to wait for a new connection to be established
+     */
+    AsyncHttpTransport(int threadCount, ThreadGroup threadGroup, String name, long connectTimeoutMillis) throws IOException {
+        if (threadCount < 1)
+            throw new IllegalArgumentException("Need at least one event loop thread, got " + threadCount);
+        if (connectTimeoutMillis < 1)
+            throw new IllegalArgumentException("Connect timeout must be positive, got " + connectTimeoutMillis);
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        eventLoops = new EventLoop[threadCount];
+        for (int i = 0; i < threadCount; i++)
+            eventLoops[i] = new EventLoop(threadGroup, name + " event loop " + i);
+    }
+
+    /**
+     * Sends a request to the given address. The returned future is completed by an event loop thread
+     * with the response, or exceptionally with an IOException if the request fails.
+     */
+    CompletableFuture<Response> send(InetSocketAddress address, Request request) {
+        CompletableFuture<Response> response = new CompletableFuture<>();
+        if (closed) {
+            response.completeExceptionally(new IOException("This transport is closed"));
+            return response;
+        }
+        Connection connection = pollIdleConnection(address);
+        if (connection == null)
+            connection = new Connection(address, eventLoops[Math.abs(nextEventLoop.getAndIncrement() % eventLoops.length)]);
+        connection.send(request, response);
+        return response;
+    }
+
+    private Connection pollIdleConnection(InetSocketAddress address) {
+        Queue<Connection> idle = idleConnections.get(address);
+        return idle == null ? null : idle.poll();
+    }
+
+    /** Closes all connections and stops the event loop threads. Requests in flight are failed. */
+    @Override
+    public void close() {
+        closed = true;
+        for (EventLoop eventLoop : eventLoops)
+            eventLoop.selector.wakeup();
+        for (EventLoop eventLoop : eventLoops) {
+            try {
+                eventLoop.thread.join(10_000);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /** An HTTP request with a body of known size */
+    static final class Request {
+
+        private final String method;
+        private final String target;
+        private final List<Map.Entry<String, String>> headers;
+        private final ByteBuffer[] body;
+
+        /**
+         * Creates a request
+         *
+         * @param method the request method, e.g POST
+         * @param target the request target, the path and query of the URI
+         * @param headers the headers of the request, excluding Host and Content-Length which are added by this
+         * @param body the body of the request, which are read by this
+         */
+        Request(String method, String target, List<Map.Entry<String, String>> headers, ByteBuffer ... body) {
+            this.method = method;
+            this.target = target;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        /** Returns the buffers to write to send this request to the given address */
+        ByteBuffer[] toBuffers(InetSocketAddress address) {
+            long contentLength = 0;
+            for (ByteBuffer buffer : body)
+                contentLength += buffer.remaining();
+
+            StringBuilder head = new StringBuilder();
+            head.append(method).append(' ').append(target).append(" HTTP/1.1\r\n");
+            head.append("Host: ").append(address.getHostString()).append(':').append(address.getPort()).append("\r\n");
+            for (Map.Entry<String, String> header : headers)
+                head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+            head.append("Content-Length: ").append(contentLength).append("\r\n\r\n");
+
+            ByteBuffer[] buffers = new ByteBuffer[body.length + 1];
+            buffers[0] = ByteBuffer.wrap(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+            for (int i = 0; i < body.length; i++)
+                buffers[i + 1] = body[i].duplicate(); // reading must not change the position of the caller's buffers
+            return buffers;
+        }
+
+    }
+
+    /** An HTTP response with a fully read body */
+    static final class Response {
+
+        private final int statusCode;
+        private final String reasonPhrase;
+        private final List<Map.Entry<String, String>> headers;
+        private final byte[] body;
+
+        Response(int statusCode, String reasonPhrase, List<Map.Entry<String, String>> headers, byte[] body) {
+            this.statusCode = statusCode;
+            this.reasonPhrase = reasonPhrase;
+            this.headers = Collections.unmodifiableList(headers);
+            this.body = body;
+        }
+
+        int statusCode() { return statusCode; }
+
+        String reasonPhrase() { return reasonPhrase; }
+
+        /** Returns the headers of this in the order they were received */
+        List<Map.Entry<String, String>> headers() { return headers; }
+
+        byte[] body() { return body; }
+
+    }
+
+    /** A thread which performs the I/O of the connections assigned to it */
+    private final class EventLoop implements Runnable {
+
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final Thread thread;
+
+        /** The connections of this which are connecting, in the order of their connect deadlines */
+        private final Queue<Connection> connecting = new ArrayDeque<>();
+
+        EventLoop(ThreadGroup threadGroup, String name) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(threadGroup, this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /** Runs the given task in this event loop thread */
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while ( ! closed) {
+                    selector.select(millisToNextConnectDeadline());
+                    for (Runnable task; (task = tasks.poll()) != null; )
+                        task.run();
+                    for (SelectionKey key : selector.selectedKeys())
+                        ((Connection)key.attachment()).handleReady();
+                    selector.selectedKeys().clear();
+                    failTimedOutConnects();
+                }
+            }
+            catch (IOException | ClosedSelectorException e) {
+                log.log(Level.WARNING, "Event loop " + thread.getName() + " failed", e);
+            }
+            finally {
+                shutDown();
+            }
+        }
+
+        /** Returns the time to the first connect deadline, or 0 (meaning no limit) if nothing is connecting */
+        private long millisToNextConnectDeadline() {
+            Connection first = connecting.peek();
+            if (first == null) return 0;
+            return Math.max(1, first.connectDeadline - System.currentTimeMillis());
+        }
+
+        private void failTimedOutConnects() {
+            long now = System.currentTimeMillis();
+            for (Connection first; (first = connecting.peek()) != null && first.connectDeadline <= now; )
+                first.fail(new SocketTimeoutException("Timed out connecting to " + first.address + " after " +
+                                                      connectTimeoutMillis + " ms"));
+        }
+
+        private void shutDown() {
+            IOException closedException = new IOException("The transport was closed");
+            for (Runnable task; (task = tasks.poll()) != null; )
+                task.run(); // fails immediately since the transport is closed
+            for (SelectionKey key : selector.keys())
+                ((Connection)key.attachment()).fail(closedException);
+            try {
+                selector.close();
+            }
+            catch (IOException e) {
+                log.log(Level.FINE, "Failed closing selector", e);
+            }
+        }
+
+    }
+
+    /** A keep-alive connection, which has at most one request in flight. All state is owned by its event loop thread. */
+    private final class Connection {
+
+        private final InetSocketAddress address;
+        private final EventLoop eventLoop;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+
+        private SocketChannel channel = null;
+        private SelectionKey key = null;
+
+        private Request request = null;
+        private ByteBuffer[] outgoing = null;
+        private ResponseParser parser = null;
+        private CompletableFuture<Response> response = null;
+
+        /** Whether the current request is sent on a connection which has been used for earlier requests */
+        private boolean reused = false;
+
+        /** Whether the current request is completely written, such that the server may have handled it */
+        private boolean written = false;
+
+        /** The time at which connecting times out, if this is connecting */
+        private long connectDeadline;
+
+        Connection(InetSocketAddress address, EventLoop eventLoop) {
+            this.address = address;
+            this.eventLoop = eventLoop;
+        }
+
+        /** Sends a request on this connection. May be called from any thread. */
+        void send(Request request, CompletableFuture<Response> response) {
+            eventLoop.execute(() -> start(request, response));
+        }
+
+        private void start(Request request, CompletableFuture<Response> response) {
+            this.request = request;
+            this.response = response;
+            this.outgoing = request.toBuffers(address);
+            this.parser = new ResponseParser();
+            this.written = false;
+            try {
+                if (closed)
+                    throw new IOException("The transport was closed");
+                reused = channel != null && channel.isOpen();
+                if (reused) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                if (channel.connect(address)) {
+                    key = channel.register(eventLoop.selector, SelectionKey.OP_WRITE, this);
+                }
+                else {
+                    key = channel.register(eventLoop.selector, SelectionKey.OP_CONNECT, this);
+                    connectDeadline = System.currentTimeMillis() + connectTimeoutMillis;
+                    eventLoop.connecting.add(this);
+                }
+            }
+            catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        void handleReady() {
+            try {
+                if ( ! key.isValid()) return;
+                if (key.isConnectable() && channel.finishConnect()) {
+                    eventLoop.connecting.remove(this);
+                    key.interestOps(SelectionKey.OP_WRITE);
+                }
+                if (key.isValid() && key.isWritable())
+                    write();
+                if (key.isValid() && key.isReadable())
+                    read();
+            }
+            catch (IOException | RuntimeException e) {
+                if (reused && response != null && ! written && ! parser.hasReceivedBytes())
+                    retry(); // the server closed this kept-alive connection before receiving the request
+                else
+                    fail(e instanceof IOException ? (IOException)e : new IOException(e));
+            }
+        }
+
+        private void write() throws IOException {
+            channel.write(outgoing);
+            if ( ! outgoing[outgoing.length - 1].hasRemaining()) {
+                written = true;
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        private void read() throws IOException {
+            if (response == null) { // idle: the server closed the connection or sent something unexpected
+                close();
+                return;
+            }
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                if ( ! parser.endOfStream())
+                    throw new IOException("Connection to " + address + " closed before the response was complete");
+                complete();
+                return;
+            }
+            readBuffer.flip();
+            boolean complete = parser.parse(readBuffer);
+            readBuffer.clear();
+            if (complete)
+                complete();
+        }
+
+        /** Resends the current request on a new connection */
+        private void retry() {
+            close();
+            start(request, response);
+        }
+
+        private void complete() {
+            Response completed = parser.toResponse();
+            CompletableFuture<Response> response = this.response;
+            boolean keepAlive = parser.keepAlive() && ! closed;
+            this.request = null;
+            this.response = null;
+            this.outgoing = null;
+            this.parser = null;
+            if (keepAlive) {
+                key.interestOps(SelectionKey.OP_READ); // to notice if the server closes the connection
+                idleConnections.computeIfAbsent(address, __ -> new ConcurrentLinkedQueue<>()).add(this);
+            }
+            else {
+                close();
+            }
+            response.complete(completed);
+        }
+
+        void fail(IOException e) {
+            close();
+            CompletableFuture<Response> response = this.response;
+            this.request = null;
+            this.response = null;
+            if (response != null)
+                response.completeExceptionally(e);
+        }
+
+        private void close() {
+            eventLoop.connecting.remove(this);
+            Queue<Connection> idle = idleConnections.get(address);
+            if (idle != null)
+                idle.remove(this);
+            if (key != null)
+                key.cancel();
+            if (channel != null) {
+                try {
+                    channel.close();
+                }
+                catch (IOException e) {
+                    log.log(Level.FINE, "Failed closing connection to " + address, e);
+                }
+            }
+            key = null;
+            channel = null;
+        }
+
+    }
+
+    /** An incremental parser of a single HTTP/1.1 response */
+    static final class ResponseParser {
+
+        private enum State { STATUS_LINE, HEADERS, BODY, CHUNK_SIZE, CHUNK, CHUNK_END, TRAILERS, BODY_UNTIL_CLOSE, DONE }
+
+        private State state = State.STATUS_LINE;
+        private final StringBuilder line = new StringBuilder();
+        private boolean receivedBytes = false;
+
+        private int statusCode;
+        private String reasonPhrase;
+        private boolean http10;
+        private List<Map.Entry<String, String>> headers = new ArrayList<>();
+        private long contentLength = -1;
+        private boolean chunked = false;
+        private boolean connectionClose = false;
+
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private long remaining;
+
+        /** Parses the given bytes, and returns whether the response is now complete */
+        boolean parse(ByteBuffer buffer) throws IOException {
+            receivedBytes |= buffer.hasRemaining();
+            while (buffer.hasRemaining() && state != State.DONE) {
+                switch (state) {
+                    case BODY: case CHUNK:
+                        int length = (int)Math.min(remaining, buffer.remaining());
+                        body.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+                        buffer.position(buffer.position() + length);
+                        remaining -= length;
+                        if (remaining == 0)
+                            state = state == State.BODY ? State.DONE : State.CHUNK_END;
+                        break;
+                    case BODY_UNTIL_CLOSE:
+                        body.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                        buffer.position(buffer.limit());
+                        break;
+                    default:
+                        if (readLine(buffer)) {
+                            parseLine(line.toString());
+                            line.setLength(0);
+                        }
+                }
+            }
+            return state == State.DONE;
+        }
+
+        /** Signals that the connection was closed by the server, and returns whether the response is complete */
+        boolean endOfStream() {
+            if (state == State.BODY_UNTIL_CLOSE)
+                state = State.DONE;
+            return state == State.DONE;
+        }
+
+        boolean hasReceivedBytes() { return receivedBytes; }
+
+        /** Returns whether the connection can be reused after this response */
+        boolean keepAlive() {
+            return ! connectionClose && ! http10;
+        }
+
+        Response toResponse() {
+            if (state != State.DONE)
+                throw new IllegalStateException("The response is not complete");
+            return new Response(statusCode, reasonPhrase, headers, body.toByteArray());
+        }
+
+        /** Adds bytes up to the next newline to the current line, and returns whether the line is complete */
+        private boolean readLine(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                char c = (char)(buffer.get() & 0xff);
+                if (c == '\n') return true;
+                if (c != '\r')
+                    line.append(c);
+                if (line.length() > maxLineLength)
+                    throw new IOException("Line too long in HTTP response");
+            }
+            return false;
+        }
+
+        private void parseLine(String line) throws IOException {
+            switch (state) {
+                case STATUS_LINE:
+                    if (line.isEmpty()) return;
+                    String[] parts = line.split(" ", 3);
+                    if (parts.length < 2 || ! parts[0].startsWith("HTTP/"))
+                        throw new IOException("Illegal HTTP status line '" + line + "'");
+                    http10 = parts[0].equals("HTTP/1.0");
+                    try {
+                        statusCode = Integer.parseInt(parts[1]);
+                    }
+                    catch (NumberFormatException e) {
+                        throw new IOException("Illegal HTTP status line '" + line + "'");
+                    }
+                    reasonPhrase = parts.length > 2 ? parts[2] : "";
+                    state = State.HEADERS;
+                    break;
+                case HEADERS:
+                    if (line.isEmpty())
+                        endHeaders();
+                    else
+                        parseHeader(line);
+                    break;
+                case CHUNK_SIZE:
+                    int extensionStart = line.indexOf(';');
+                    String size = (extensionStart < 0 ? line : line.substring(0, extensionStart)).trim();
+                    try {
+                        remaining = Long.parseLong(size, 16);
+                    }
+                    catch (NumberFormatException e) {
+                        throw new IOException("Illegal chunk size '" + line + "'");
+                    }
+                    state = remaining == 0 ? State.TRAILERS : State.CHUNK;
+                    break;
+                case CHUNK_END:
+                    if ( ! line.isEmpty())
+                        throw new IOException("Expected end of chunk, got '" + line + "'");
+                    state = State.CHUNK_SIZE;
+                    break;
+                case TRAILERS:
+                    if (line.isEmpty())
+                        state = State.DONE;
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected state " + state);
+            }
+        }
+
+        private void parseHeader(String line) throws IOException {
+            int colon = line.indexOf(':');
+            if (colon <= 0)
+                throw new IOException("Illegal HTTP header '" + line + "'");
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            headers.add(new AbstractMap.SimpleImmutableEntry<>(name, value));
+
+            if (name.equalsIgnoreCase("Content-Length")) {
+                try {
+                    contentLength = Long.parseLong(value);
+                }
+                catch (NumberFormatException e) {
+                    throw new IOException("Illegal Content-Length '" + value + "'");
+                }
+            }
+            else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+                chunked = value.toLowerCase().endsWith("chunked");
+            }
+            else if (name.equalsIgnoreCase("Connection")) {
+                connectionClose = value.equalsIgnoreCase("close");
+            }
+        }
+
+        private void endHeaders() {
+            if (statusCode / 100 == 1) { // interim response: the final one follows
+                headers = new ArrayList<>();
+                contentLength = -1;
+                chunked = false;
+                state = State.STATUS_LINE;
+            }
+            else if (statusCode == 204 || statusCode == 304) {
+                state = State.DONE;
+            }
+            else if (chunked) {
+                state = State.CHUNK_SIZE;
+            }
+            else if (contentLength >= 0) {
+                remaining = contentLength;
+                state = remaining == 0 ? State.DONE : State.BODY;
+            }
+            else {
+                connectionClose = true;
+                state = State.BODY_UNTIL_CLOSE;
+            }
+        }
+
+    }
+
+}
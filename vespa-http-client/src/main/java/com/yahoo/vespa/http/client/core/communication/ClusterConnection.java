@@ -27,6 +27,8 @@ public class ClusterConnection implements AutoCloseable {
 
     private final OperationProcessor operationProcessor;
     private final List<IOThread> ioThreads = new ArrayList<>();
+    /** The transport of the connections which write asynchronously, or null if none */
+    private final AsyncHttpTransport asyncTransport;
     private final int clusterId;
     private final SessionParams.ErrorReporter errorReporter;
     private static JsonFactory jsonFactory = new JsonFactory();
@@ -47,6 +49,7 @@ public class ClusterConnection implements AutoCloseable {
         }
         this.operationProcessor = operationProcessor;
         this.clusterId = clusterId;
+        this.asyncTransport = createAsyncTransport(connectionParams, cluster, operationProcessor.getIoThreadGroup());
         final int totalNumberOfEndpointsInThisCluster = cluster.getEndpoints().size()
                 * connectionParams.getNumPersistentConnectionsPerEndpoint();
         if (totalNumberOfEndpointsInThisCluster == 0) {
@@ -68,6 +71,17 @@ public class ClusterConnection implements AutoCloseable {
                 GatewayConnection gatewayConnection;
                 if (connectionParams.isDryRun()) {
                     gatewayConnection = new DryRunGatewayConnection(endpoint);
+                } else if (asyncTransport != null && supportsAsyncTransport(endpoint, connectionParams)) {
+                    gatewayConnection = new AsyncGatewayConnection(
+                            endpoint,
+                            feedParams,
+                            cluster.getRoute(),
+                            connectionParams,
+                            new ApacheGatewayConnection.HttpClientFactory(
+                                    connectionParams, endpoint.isUseSsl()),
+                            operationProcessor.getClientId(),
+                            asyncTransport
+                    );
                 } else {
                     gatewayConnection = new ApacheGatewayConnection(
                             endpoint,
@@ -95,12 +109,31 @@ public class ClusterConnection implements AutoCloseable {
                         maxInFlightPerSession,
                         feedParams.getLocalQueueTimeOut(),
                         documentQueue,
-                        connectionParams.isEnableV3Protocol() ? feedParams.getMaxSleepTimeMs() : 0);
+                        connectionParams.isEnableV3Protocol() ? feedParams.getMaxSleepTimeMs() : 0,
+                        connectionParams.getMaxConcurrentRequestsPerConnection());
                 ioThreads.add(ioThread);
             }
         }
     }
 
+    private static AsyncHttpTransport createAsyncTransport(ConnectionParams connectionParams, Cluster cluster,
+                                                           ThreadGroup threadGroup) {
+        if ( ! connectionParams.getUseAsyncTransport() || connectionParams.isDryRun()) return null;
+        if (cluster.getEndpoints().stream().noneMatch(endpoint -> supportsAsyncTransport(endpoint, connectionParams)))
+            return null;
+        try {
+            return new AsyncHttpTransport(connectionParams.getNumAsyncTransportThreads(), threadGroup, "Feed transport",
+                                          connectionParams.getConnectionTimeout());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create the asynchronous transport", e);
+        }
+    }
+
+    /** Returns whether the asynchronous transport can be used to feed to the given endpoint */
+    private static boolean supportsAsyncTransport(Endpoint endpoint, ConnectionParams connectionParams) {
+        return ! endpoint.isUseSsl() && connectionParams.getProxyHost() == null && connectionParams.isEnableV3Protocol();
+    }
+
     public int getClusterId() {
         return clusterId;
     }
@@ -129,6 +162,9 @@ public class ClusterConnection implements AutoCloseable {
                 exceptions.add(e);
             }
         }
+        if (asyncTransport != null) {
+            asyncTransport.close();
+        }
         if (exceptions.isEmpty()) {
             return;
         }
@@ -17,14 +17,19 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Class for handling asynchronous feeding of new documents and processing of results.
+ * If the connection is an {@link AsyncGatewayConnection} several write requests can be in flight at once,
+ * and their responses are processed by the threads of its transport rather than this.
  * 
  * @author Einar M R Rosenvinge
  */
@@ -45,6 +50,17 @@ class IOThread implements Runnable, AutoCloseable {
     private final long localQueueTimeOut;
     private final GatewayThrottler gatewayThrottler;
 
+    /** The connection if it can write asynchronously, or null if it cannot */
+    private final AsyncGatewayConnection asyncClient;
+    /** The max number of asynchronous write requests in flight */
+    private final int maxConcurrentRequests;
+    /** One permit for each asynchronous write request which may be started */
+    private final Semaphore requestSlots;
+    /** The first failure of an asynchronous write request not yet handled by this thread, or null if none */
+    private final AtomicReference<Throwable> asyncFailure = new AtomicReference<>();
+    /** The transient errors received in responses to asynchronous requests not yet reported to the throttler */
+    private final AtomicInteger asyncTransientErrors = new AtomicInteger(0);
+
     private enum ThreadState { DISCONNECTED, CONNECTED, SESSION_SYNCED };
     private final AtomicInteger wrongSessionDetectedCounter = new AtomicInteger(0);
     private final AtomicInteger wrongVersionDetectedCounter = new AtomicInteger(0);
@@ -66,6 +82,21 @@ class IOThread implements Runnable, AutoCloseable {
             long localQueueTimeOut,
             DocumentQueue documentQueue,
             long maxSleepTimeMs) {
+        this(ioThreadGroup, endpointResultQueue, client, clusterId, maxChunkSizeBytes, maxInFlightRequests,
+             localQueueTimeOut, documentQueue, maxSleepTimeMs, 1);
+    }
+
+    IOThread(
+            ThreadGroup ioThreadGroup,
+            EndpointResultQueue endpointResultQueue,
+            GatewayConnection client,
+            int clusterId,
+            int maxChunkSizeBytes,
+            int maxInFlightRequests,
+            long localQueueTimeOut,
+            DocumentQueue documentQueue,
+            long maxSleepTimeMs,
+            int maxConcurrentRequests) {
         this.documentQueue = documentQueue;
         this.endpoint = client.getEndpoint();
         this.client = client;
@@ -78,6 +109,9 @@ class IOThread implements Runnable, AutoCloseable {
         this.ioThreadGroup = ioThreadGroup;
         thread.setDaemon(true);
         this.localQueueTimeOut = localQueueTimeOut;
+        this.asyncClient = client instanceof AsyncGatewayConnection ? (AsyncGatewayConnection)client : null;
+        this.maxConcurrentRequests = Math.max(1, maxConcurrentRequests);
+        this.requestSlots = new Semaphore(this.maxConcurrentRequests);
         thread.start();
     }
 
@@ -95,6 +129,11 @@ class IOThread implements Runnable, AutoCloseable {
         public final int pendingDocumentStatusCount;
         public final int successfullHandshakes;
         public final int lastGatewayProcessTimeMillis;
+        public final long uncompressedBytes;
+        public final long compressedBytes;
+        /** The size of the compressed operations relative to their uncompressed size, or 1 if none are compressed */
+        public final double compressionRatio;
+        public final long compressionTimeMillis;
 
         protected ConnectionStats(
                 final int wrongSessionDetectedCounter,
@@ -105,7 +144,10 @@ class IOThread implements Runnable, AutoCloseable {
                 final int statusReceivedCounter,
                 final int pendingDocumentStatusCount,
                 final int successfullHandshakes,
-                final int lastGatewayProcessTimeMillis) {
+                final int lastGatewayProcessTimeMillis,
+                final long uncompressedBytes,
+                final long compressedBytes,
+                final long compressionTimeMillis) {
             this.wrongSessionDetectedCounter = wrongSessionDetectedCounter;
             this.wrongVersionDetectedCounter = wrongVersionDetectedCounter;
             this.problemStatusCodeFromServerCounter = problemStatusCodeFromServerCounter;
@@ -115,6 +157,10 @@ class IOThread implements Runnable, AutoCloseable {
             this.pendingDocumentStatusCount = pendingDocumentStatusCount;
             this.successfullHandshakes = successfullHandshakes;
             this.lastGatewayProcessTimeMillis = lastGatewayProcessTimeMillis;
+            this.uncompressedBytes = uncompressedBytes;
+            this.compressedBytes = compressedBytes;
+            this.compressionRatio = uncompressedBytes == 0 ? 1 : (double) compressedBytes / uncompressedBytes;
+            this.compressionTimeMillis = compressionTimeMillis;
         }
     }
 
@@ -122,6 +168,8 @@ class IOThread implements Runnable, AutoCloseable {
      * Returns a snapshot of counters. Threadsafe.
      */
     public ConnectionStats getConnectionStats() {
+        ApacheGatewayConnection compressingClient = client instanceof ApacheGatewayConnection
+                                                    ? (ApacheGatewayConnection) client : null;
         return new ConnectionStats(
                 wrongSessionDetectedCounter.get(),
                 wrongVersionDetectedCounter.get(),
@@ -131,7 +179,10 @@ class IOThread implements Runnable, AutoCloseable {
                 statusReceivedCounter.get(),
                 pendingDocumentStatusCount.get(),
                 successfullHandshakes.get(),
-                lastGatewayProcessTimeMillis.get());
+                lastGatewayProcessTimeMillis.get(),
+                compressingClient == null ? 0 : compressingClient.getUncompressedBytes(),
+                compressingClient == null ? 0 : compressingClient.getCompressedBytes(),
+                compressingClient == null ? 0 : TimeUnit.NANOSECONDS.toMillis(compressingClient.getCompressionNanos()));
     }
 
     @Override
@@ -144,6 +195,8 @@ class IOThread implements Runnable, AutoCloseable {
         stopSignal.countDown();
         log.finer("Closed called.");
 
+        awaitAsyncRequests(TimeUnit.SECONDS.toMillis(30));
+
         // Make a last attempt to get results from previous operations, we have already waited quite a bit before getting here.
         int size = resultQueue.getPendingSize();
         if (size > 0) {
@@ -300,6 +353,86 @@ class IOThread implements Runnable, AutoCloseable {
         return processResponse;
     }
 
+    private ProcessResponse pullAndSendDataAsync(int maxWaitTimeMilliSecs)
+            throws ServerResponseException, IOException {
+        throwIfAsyncRequestFailed();
+        try {
+            if ( ! requestSlots.tryAcquire(maxWaitTimeMilliSecs, TimeUnit.MILLISECONDS)) // all requests are in flight
+                return new ProcessResponse(asyncTransientErrors.getAndSet(0), 0);
+        } catch (InterruptedException e) {
+            return new ProcessResponse(asyncTransientErrors.getAndSet(0), 0);
+        }
+
+        boolean sent = false;
+        try {
+            final int pendingResultQueueSize = resultQueue.getPendingSize();
+            pendingDocumentStatusCount.set(pendingResultQueueSize);
+
+            List<Document> nextDocsForFeeding = (pendingResultQueueSize > maxInFlightRequests)
+                    ? new ArrayList<>()       // The queue is full, will not send more documents.
+                    : getNextDocsForFeeding(maxWaitTimeMilliSecs, TimeUnit.MILLISECONDS);
+
+            // Without documents, send a request only to get results, unless requests in flight will return them
+            boolean requestsInFlight = requestSlots.availablePermits() < maxConcurrentRequests - 1;
+            if (nextDocsForFeeding.isEmpty() && (pendingResultQueueSize == 0 || requestsInFlight))
+                return new ProcessResponse(asyncTransientErrors.getAndSet(0), 0);
+
+            feedDocumentsAsync(nextDocsForFeeding);
+            sent = true;
+            return new ProcessResponse(asyncTransientErrors.getAndSet(0), 0);
+        } finally {
+            if ( ! sent)
+                requestSlots.release();
+        }
+    }
+
+    /** Sends the given documents and processes the response when it arrives. The caller must hold a request slot. */
+    private void feedDocumentsAsync(List<Document> docs) {
+        addDocumentsToResultQueue(docs);
+        long startTime = System.currentTimeMillis();
+        asyncClient.writeOperationsAsync(docs).whenComplete((serverResponse, exception) -> {
+            try {
+                if (exception != null) {
+                    Throwable cause = exception instanceof CompletionException ? exception.getCause() : exception;
+                    markDocumentAsFailed(docs, cause instanceof ServerResponseException
+                                               ? (ServerResponseException) cause
+                                               : new ServerResponseException(cause.getMessage()));
+                    asyncFailure.compareAndSet(null, cause);
+                    return;
+                }
+                ProcessResponse processResponse = processResponse(serverResponse);
+                asyncTransientErrors.addAndGet(processResponse.transitiveErrorCount);
+                lastGatewayProcessTimeMillis.set((int) (System.currentTimeMillis() - startTime));
+            } catch (Throwable e) {
+                asyncFailure.compareAndSet(null, e);
+            } finally {
+                requestSlots.release();
+            }
+        });
+    }
+
+    /** Throws the first failure of an asynchronous request which is not yet thrown, if any */
+    private void throwIfAsyncRequestFailed() throws ServerResponseException, IOException {
+        Throwable failure = asyncFailure.getAndSet(null);
+        if (failure == null) return;
+        if (failure instanceof ServerResponseException) throw (ServerResponseException) failure;
+        if (failure instanceof IOException) throw (IOException) failure;
+        throw new IOException(failure);
+    }
+
+    /** Waits until no asynchronous requests are in flight, or the given time has passed */
+    private void awaitAsyncRequests(long timeoutMillis) {
+        if (asyncClient == null) return;
+        try {
+            if (requestSlots.tryAcquire(maxConcurrentRequests, timeoutMillis, TimeUnit.MILLISECONDS))
+                requestSlots.release(maxConcurrentRequests);
+            else
+                log.info("Timed out waiting for responses to requests in flight to " + endpoint);
+        } catch (InterruptedException e) {
+            // Ignore
+        }
+    }
+
     private ThreadState cycle(final ThreadState threadState) {
         switch(threadState) {
             case DISCONNECTED:
@@ -337,7 +470,8 @@ class IOThread implements Runnable, AutoCloseable {
                 return ThreadState.SESSION_SYNCED;
             case SESSION_SYNCED:
                 try {
-                    ProcessResponse processResponse = pullAndProcessData(100);
+                    ProcessResponse processResponse = asyncClient != null ? pullAndSendDataAsync(100)
+                                                                          : pullAndProcessData(100);
                     gatewayThrottler.handleCall(processResponse.transitiveErrorCount);
                 }
                 catch (ServerResponseException ser) {
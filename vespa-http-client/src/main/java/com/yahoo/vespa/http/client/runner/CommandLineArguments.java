@@ -20,6 +20,7 @@ import org.apache.http.message.BasicLineParser;
 import javax.inject.Inject;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -57,6 +58,9 @@ public class CommandLineArguments {
         if (cmdArgs.priorityArg != null && ! checkPriorityFlag(cmdArgs.priorityArg)) {
             return null;
         }
+        if ( ! checkCompressionFlag(cmdArgs.compressionArg)) {
+            return null;
+        }
 
         for (String header : cmdArgs.headers) {
             try {
@@ -106,6 +110,16 @@ public class CommandLineArguments {
         }
     }
 
+    private static boolean checkCompressionFlag(String compressionArg) {
+        for (ConnectionParams.Compression compression : ConnectionParams.Compression.values()) {
+            if (compression.getContentEncoding().equals(compressionArg)) {
+                return true;
+            }
+        }
+        System.err.println("Not valid value for compression. Allowed values are gzip and lz4.");
+        return false;
+    }
+
     @Inject
     private HelpOption helpOption;
 
@@ -143,6 +157,11 @@ public class CommandLineArguments {
             description = "Use compression over network.")
     private boolean useCompressionArg = false;
 
+    @Option(name = {"--compression"},
+            description = "(=gzip) The compression to use with --useCompression, gzip or lz4. " +
+                    "lz4 uses much less CPU, but is only used with gateways supporting it.")
+    private String compressionArg = "gzip";
+
     @Option(name = {"--useDynamicThrottling"},
             description = "Try to maximize throughput by using dynamic throttling.")
     private boolean useDynamicThrottlingArg = false;
@@ -246,6 +265,7 @@ public class CommandLineArguments {
                                 .setNumPersistentConnectionsPerEndpoint(16)
                                 .setEnableV3Protocol(! enableV2Protocol)
                                 .setUseCompression(useCompressionArg)
+                                .setCompression(ConnectionParams.Compression.valueOf(compressionArg.toUpperCase(Locale.ENGLISH)))
                                 .setMaxRetries(noRetryArg ? 0 : 100)
                                 .setMinTimeBetweenRetries(retrydelayArg, TimeUnit.SECONDS)
                                 .setDryRun(validateArg)
@@ -0,0 +1,136 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.yahoo.vespa.http.client.config.Cluster;
+import com.yahoo.vespa.http.client.config.ConnectionParams;
+import com.yahoo.vespa.http.client.config.Endpoint;
+import com.yahoo.vespa.http.client.config.FeedParams;
+import com.yahoo.vespa.http.client.config.SessionParams;
+import com.yahoo.vespa.http.client.core.ErrorCode;
+import com.yahoo.vespa.http.client.core.Headers;
+import com.yahoo.vespa.http.client.core.OperationStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmark of feeding to a local stand-in for a feed endpoint which responds to each request after a fixed latency,
+ * comparing the blocking transport to the asynchronous transport.
+ */
+public class FeedTransportBenchmark {
+
+    private static final int documentCount = 50000;
+    private static final int responseLatencyMillis = 5;
+
+    private static long feed(int port, boolean async, int connections) throws InterruptedException {
+        CountDownLatch completed = new CountDownLatch(documentCount);
+        AtomicInteger failed = new AtomicInteger(0);
+        SessionParams params = new SessionParams.Builder()
+                .addCluster(new Cluster.Builder().addEndpoint(Endpoint.create("localhost", port, false)).build())
+                .setConnectionParams(new ConnectionParams.Builder()
+                                             .setNumPersistentConnectionsPerEndpoint(connections)
+                                             .setUseAsyncTransport(async)
+                                             .setMaxConcurrentRequestsPerConnection(16)
+                                             .build())
+                .setFeedParams(new FeedParams.Builder()
+                                       .setDataFormat(FeedParams.DataFormat.JSON_UTF8)
+                                       .setMaxChunkSizeBytes(16 * 1024)
+                                       .setMaxInFlightRequests(10000)
+                                       .build())
+                .build();
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        long startTime = System.nanoTime();
+        int threadsDuring;
+        try (FeedClient client = FeedClientFactory.create(params, (docId, result) -> {
+            if ( ! result.isSuccess()) failed.incrementAndGet();
+            completed.countDown();
+        })) {
+            threadsDuring = ManagementFactory.getThreadMXBean().getThreadCount();
+            for (int i = 0; i < documentCount; i++) {
+                String id = "id:test:test::" + i;
+                client.stream(id, "{\"put\": \"" + id + "\", \"fields\": { \"title\": \"Document number " + i + "\" }}");
+            }
+            completed.await(10, TimeUnit.MINUTES);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        System.out.printf("%-12s %2d connections: %6d documents in %6d ms, %8.0f documents/s, %d failed, %3d client threads\n",
+                          async ? "Asynchronous" : "Blocking", connections, documentCount, elapsedMillis,
+                          documentCount * 1000.0 / elapsedMillis, failed.get(), threadsDuring - threadsBefore);
+        return elapsedMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        ExecutorService serverExecutor = Executors.newFixedThreadPool(256);
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 1000);
+        server.createContext("/", FeedTransportBenchmark::handle);
+        server.setExecutor(serverExecutor);
+        server.start();
+        try {
+            int port = server.getAddress().getPort();
+            for (int round = 0; round < 2; round++) {
+                feed(port, false, 1);
+                feed(port, false, 16);
+                feed(port, true, 1);
+                feed(port, true, 2);
+            }
+        }
+        finally {
+            server.stop(0);
+            serverExecutor.shutdown();
+        }
+    }
+
+    /** Responds to a feed request with the results of the operations in it, after a delay */
+    private static void handle(HttpExchange exchange) throws IOException {
+        byte[] request = readAll(exchange.getRequestBody());
+        StringBuilder results = new StringBuilder();
+        int position = 0;
+        while (position < request.length) { // operations are "<operation id> <size in hex>\n<operation>"
+            int newline = position;
+            while (request[newline] != '\n') newline++;
+            String[] envelope = new String(request, position, newline - position, StandardCharsets.US_ASCII).split(" ");
+            results.append(new OperationStatus("-", envelope[0], ErrorCode.OK, false, "").render());
+            position = newline + 1 + Integer.parseInt(envelope[1], 16);
+        }
+        try {
+            Thread.sleep(responseLatencyMillis);
+        }
+        catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+
+        byte[] response = results.toString().getBytes(StandardCharsets.US_ASCII);
+        exchange.getResponseHeaders().add(Headers.VERSION, "3");
+        exchange.getResponseHeaders().add(Headers.SESSION_ID, exchange.getRequestHeaders().getFirst(Headers.CLIENT_ID));
+        if (response.length == 0) {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        for (int read; (read = in.read(buffer)) > 0; )
+            out.write(buffer, 0, read);
+        return out.toByteArray();
+    }
+
+}
@@ -18,12 +18,15 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.message.BasicHeader;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4Factory;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.stubbing.Answer;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -36,6 +39,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.stub;
@@ -240,6 +244,68 @@ public class ApacheGatewayConnectionTest {
         apacheGatewayConnection.writeOperations(documents);
     }
 
+    @Test
+    public void testLz4CompressionIsUsedWhenAcceptedByTheGateway() throws Exception {
+        List<String> contentEncodings = writeCompressedOperation(ConnectionParams.Compression.LZ4, "gzip, lz4");
+        assertEquals(Collections.singletonList("lz4"), contentEncodings);
+    }
+
+    @Test
+    public void testGzipCompressionIsUsedWhenLz4IsNotAcceptedByTheGateway() throws Exception {
+        List<String> contentEncodings = writeCompressedOperation(ConnectionParams.Compression.LZ4, null);
+        assertEquals(Collections.singletonList("gzip"), contentEncodings);
+    }
+
+    /** Writes an operation with the given compression, and returns the content encodings of the requests sent */
+    private List<String> writeCompressedOperation(ConnectionParams.Compression compression,
+                                                  String acceptedEncodings) throws Exception {
+        final String vespaDocContent ="Hello, I am the document data.";
+        final Document doc = createDoc("42", vespaDocContent, false);
+        final String expectedContent = doc.getOperationId() + " 38\n<vespafeed>\n" + vespaDocContent + "\n</vespafeed>\n";
+
+        List<String> contentEncodings = new ArrayList<>();
+        ApacheGatewayConnection.HttpClientFactory mockFactory = mockHttpClientFactory(post -> {
+            final Header header = post.getFirstHeader("Content-Encoding");
+            if (header != null) {
+                contentEncodings.add(header.getValue());
+                InputStream content = post.getEntity().getContent();
+                if (header.getValue().equals("gzip"))
+                    assertThat(TestUtils.zipStreamToString(content), is(expectedContent));
+                else
+                    assertThat(toString(new LZ4BlockInputStream(content, LZ4Factory.fastestInstance().fastDecompressor())),
+                               is(expectedContent));
+            }
+            HttpResponse response = httpResponse("clientId", "3");
+            if (acceptedEncodings != null)
+                addMockedHeader(response, Headers.CONTENT_ENCODINGS, acceptedEncodings, null);
+            return response;
+        });
+
+        ApacheGatewayConnection apacheGatewayConnection =
+                new ApacheGatewayConnection(
+                        Endpoint.create("hostname", 666, false),
+                        new FeedParams.Builder().build(),
+                        "",
+                        new ConnectionParams.Builder().setUseCompression(true).setCompression(compression).build(),
+                        mockFactory,
+                        "clientId");
+        apacheGatewayConnection.connect();
+        apacheGatewayConnection.handshake();
+        apacheGatewayConnection.writeOperations(Collections.singletonList(doc));
+
+        assertEquals(expectedContent.length(), apacheGatewayConnection.getUncompressedBytes());
+        assertTrue(apacheGatewayConnection.getCompressedBytes() > 0);
+        return contentEncodings;
+    }
+
+    private static String toString(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int read; (read = in.read(buffer)) > 0; )
+            out.write(buffer, 0, read);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
     @Test
     public void dynamic_headers_are_added_to_the_response() throws IOException, ServerResponseException, InterruptedException {
         ConnectionParams.HeaderProvider headerProvider = mock(ConnectionParams.HeaderProvider.class);
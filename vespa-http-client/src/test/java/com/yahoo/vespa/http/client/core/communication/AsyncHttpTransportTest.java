@@ -0,0 +1,255 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncHttpTransportTest {
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private AsyncHttpTransport transport;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/echo", exchange -> {
+            byte[] body = readAll(exchange.getRequestBody());
+            exchange.getResponseHeaders().add("X-Request-Header", exchange.getRequestHeaders().getFirst("X-Request-Header"));
+            exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/chunked", exchange -> {
+            byte[] body = readAll(exchange.getRequestBody());
+            exchange.sendResponseHeaders(201, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (byte b : body) {
+                    out.write(b);
+                    out.flush();
+                }
+            }
+        });
+        serverExecutor = Executors.newFixedThreadPool(16);
+        server.setExecutor(serverExecutor);
+        server.start();
+        transport = new AsyncHttpTransport(2, Thread.currentThread().getThreadGroup(), "test", 60_000);
+    }
+
+    @After
+    public void stopServer() {
+        transport.close();
+        server.stop(0);
+        serverExecutor.shutdown();
+    }
+
+    @Test
+    public void requireThatResponsesWithContentLengthAreReceived() throws Exception {
+        AsyncHttpTransport.Response response = post("/echo", "hello", "world").get(60, TimeUnit.SECONDS);
+        assertEquals(200, response.statusCode());
+        assertEquals("helloworld", new String(response.body(), StandardCharsets.UTF_8));
+        assertTrue(response.headers().stream().anyMatch(header -> header.getKey().equalsIgnoreCase("X-Request-Header")
+                                                                  && header.getValue().equals("value")));
+    }
+
+    @Test
+    public void requireThatChunkedResponsesAreReceived() throws Exception {
+        AsyncHttpTransport.Response response = post("/chunked", "chunked ", "response").get(60, TimeUnit.SECONDS);
+        assertEquals(201, response.statusCode());
+        assertEquals("chunked response", new String(response.body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void requireThatManyRequestsCanBeInFlight() throws Exception {
+        for (int round = 0; round < 3; round++) {
+            List<CompletableFuture<AsyncHttpTransport.Response>> responses = new ArrayList<>();
+            for (int i = 0; i < 100; i++)
+                responses.add(post("/echo", "request ", String.valueOf(i)));
+            for (int i = 0; i < 100; i++)
+                assertEquals("request " + i, new String(responses.get(i).get(60, TimeUnit.SECONDS).body(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void requireThatFailingToConnectFailsTheRequest() throws Exception {
+        int unusedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            unusedPort = socket.getLocalPort();
+        }
+        try {
+            transport.send(new InetSocketAddress("localhost", unusedPort), request("/echo", "fail")).get(60, TimeUnit.SECONDS);
+            fail("Expected exception");
+        }
+        catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void requireThatConnectingTimesOut() throws Exception {
+        try (AsyncHttpTransport transport = new AsyncHttpTransport(1, Thread.currentThread().getThreadGroup(), "test", 100);
+             ServerSocket serverSocket = new ServerSocket(0, 1)) {
+            // Fill the backlog of a server which never accepts, such that further connects are not answered
+            List<Socket> queued = new ArrayList<>();
+            try {
+                for (int i = 0; i < 4; i++) {
+                    Socket socket = new Socket();
+                    queued.add(socket);
+                    socket.connect(serverSocket.getLocalSocketAddress(), 100);
+                }
+            }
+            catch (SocketTimeoutException e) {
+                // the backlog is full
+            }
+            try {
+                transport.send(new InetSocketAddress("localhost", serverSocket.getLocalPort()), request("/echo", "fail"))
+                         .get(60, TimeUnit.SECONDS);
+                fail("Expected exception");
+            }
+            catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof SocketTimeoutException);
+            }
+            finally {
+                for (Socket socket : queued)
+                    socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void requireThatRequestsAreNotResentWhenTheConnectionFailsAfterTheyAreWritten() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            AtomicInteger requests = new AtomicInteger();
+            Thread server = new Thread(() -> {
+                try {
+                    while (true) {
+                        try (Socket socket = serverSocket.accept()) {
+                            while (readRequest(socket.getInputStream())) {
+                                if (requests.incrementAndGet() == 2) break; // close the connection without responding
+                                socket.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                            }
+                        }
+                    }
+                }
+                catch (IOException e) {
+                    // the server socket is closed
+                }
+            });
+            server.setDaemon(true);
+            server.start();
+
+            InetSocketAddress address = new InetSocketAddress("localhost", serverSocket.getLocalPort());
+            assertEquals(200, transport.send(address, request("/first", "1")).get(60, TimeUnit.SECONDS).statusCode());
+            try {
+                transport.send(address, request("/second", "2")).get(60, TimeUnit.SECONDS);
+                fail("Expected exception");
+            }
+            catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+            assertEquals("The second request is not resent, as the server may have handled it", 2, requests.get());
+        }
+    }
+
+    @Test
+    public void requireThatResponsesAreParsedRegardlessOfHowTheyAreSplit() throws IOException {
+        String response = "HTTP/1.1 100 Continue\r\n\r\n" +
+                          "HTTP/1.1 200 OK\r\n" +
+                          "Transfer-Encoding: chunked\r\n" +
+                          "Content-Type: text/plain\r\n" +
+                          "\r\n" +
+                          "5;extension=1\r\nhello\r\n" +
+                          "7\r\n, world\r\n" +
+                          "0\r\n" +
+                          "Trailer: ignored\r\n" +
+                          "\r\n";
+        byte[] bytes = response.getBytes(StandardCharsets.ISO_8859_1);
+        for (int split = 1; split < bytes.length; split++) {
+            AsyncHttpTransport.ResponseParser parser = new AsyncHttpTransport.ResponseParser();
+            assertFalse(parser.parse(ByteBuffer.wrap(bytes, 0, split)));
+            assertTrue(parser.parse(ByteBuffer.wrap(bytes, split, bytes.length - split)));
+            AsyncHttpTransport.Response parsed = parser.toResponse();
+            assertEquals(200, parsed.statusCode());
+            assertEquals("OK", parsed.reasonPhrase());
+            assertEquals("hello, world", new String(parsed.body(), StandardCharsets.UTF_8));
+            assertTrue(parser.keepAlive());
+        }
+    }
+
+    @Test
+    public void requireThatResponsesWithoutLengthAreReadUntilTheConnectionCloses() throws IOException {
+        byte[] bytes = "HTTP/1.1 200 OK\r\n\r\nuntil close".getBytes(StandardCharsets.ISO_8859_1);
+        AsyncHttpTransport.ResponseParser parser = new AsyncHttpTransport.ResponseParser();
+        assertFalse(parser.parse(ByteBuffer.wrap(bytes)));
+        assertTrue(parser.endOfStream());
+        assertEquals("until close", new String(parser.toResponse().body(), StandardCharsets.UTF_8));
+        assertFalse(parser.keepAlive());
+    }
+
+    private CompletableFuture<AsyncHttpTransport.Response> post(String path, String ... body) {
+        return transport.send(new InetSocketAddress("localhost", server.getAddress().getPort()), request(path, body));
+    }
+
+    private static AsyncHttpTransport.Request request(String path, String ... body) {
+        ByteBuffer[] buffers = new ByteBuffer[body.length];
+        for (int i = 0; i < body.length; i++)
+            buffers[i] = ByteBuffer.wrap(body[i].getBytes(StandardCharsets.UTF_8));
+        return new AsyncHttpTransport.Request("POST", path,
+                                              Collections.singletonList(new AbstractMap.SimpleImmutableEntry<>("X-Request-Header", "value")),
+                                              buffers);
+    }
+
+    /** Reads an HTTP request with a Content-Length, and returns whether one was read before the stream ended */
+    private static boolean readRequest(InputStream in) throws IOException {
+        StringBuilder head = new StringBuilder();
+        while ( ! head.toString().endsWith("\r\n\r\n")) {
+            int b = in.read();
+            if (b < 0) return false;
+            head.append((char)b);
+        }
+        int contentLength = 0;
+        for (String line : head.toString().split("\r\n"))
+            if (line.toLowerCase().startsWith("content-length:"))
+                contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+        for (int i = 0; i < contentLength; i++)
+            if (in.read() < 0) return false;
+        return true;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int read; (read = in.read(buffer)) > 0; )
+            out.write(buffer, 0, read);
+        return out.toByteArray();
+    }
+
+}
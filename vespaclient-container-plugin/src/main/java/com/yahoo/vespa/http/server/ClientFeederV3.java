@@ -18,14 +18,17 @@ import com.yahoo.net.HostName;
 import com.yahoo.vespa.http.client.core.ErrorCode;
 import com.yahoo.vespa.http.client.core.Headers;
 import com.yahoo.vespa.http.client.core.OperationStatus;
+import com.yahoo.vespa.http.server.util.CountingInputStream;
 import com.yahoo.vespaxmlparser.VespaXMLFeedReader;
 import com.yahoo.yolean.Exceptions;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collections;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -133,7 +136,16 @@ class ClientFeederV3 {
                 return new ErrorHttpResponse(getOverloadReturnCode(request), "Gateway overloaded");
             }
 
-            InputStream inputStream = StreamReaderV3.unzipStreamIfNeeded(request);
+            String contentEncoding = request.getHeader("content-encoding");
+            CountingInputStream compressedStream = null;
+            CountingInputStream decompressedStream = null;
+            InputStream inputStream = request.getData();
+            if (contentEncoding != null) {
+                compressedStream = new CountingInputStream(inputStream);
+                decompressedStream = new CountingInputStream(
+                        StreamReaderV3.unzipStreamIfNeeded(compressedStream, contentEncoding));
+                inputStream = new BufferedInputStream(decompressedStream); // the operation envelope is read byte by byte
+            }
             BlockingQueue<OperationStatus> replies = new LinkedBlockingQueue<>();
             try {
                 feed(feederSettings, inputStream, replies, threadsAvailableForFeeding);
@@ -151,6 +163,9 @@ class ClientFeederV3 {
                         + Exceptions.toMessageString(e), e);
             } finally {
                 replies.add(createOperationStatus("-", "-", ErrorCode.END_OF_FEED, false, null));
+                if (contentEncoding != null) {
+                    reportDecompression(contentEncoding, compressedStream, decompressedStream);
+                }
             }
             return new FeedResponse(200, replies, 3 /* protocol version */, clientId, outstandingOperations.get(), hostName);
         } finally {
@@ -159,6 +174,19 @@ class ClientFeederV3 {
         }
     }
 
+    /**
+     * Reports the sizes of a compressed request before and after decompression, and the time spent decompressing it,
+     * in milliseconds. This is the time spent reading the decompressed stream less that spent reading the compressed one.
+     */
+    private void reportDecompression(String contentEncoding, CountingInputStream compressedStream,
+                                     CountingInputStream decompressedStream) {
+        Metric.Context context = metric.createContext(Collections.singletonMap("encoding", contentEncoding));
+        long decompressionNanos = Math.max(0, decompressedStream.readNanos() - compressedStream.readNanos());
+        metric.add(MetricNames.COMPRESSED_BYTES, compressedStream.bytesRead(), context);
+        metric.add(MetricNames.UNCOMPRESSED_BYTES, decompressedStream.bytesRead(), context);
+        metric.add(MetricNames.DECOMPRESSION_TIME, decompressionNanos / 1_000_000.0, context);
+    }
+
     private int getOverloadReturnCode(HttpRequest request) {
         if (request.getHeader(Headers.SILENTUPGRADE) != null ) {
             return 299;
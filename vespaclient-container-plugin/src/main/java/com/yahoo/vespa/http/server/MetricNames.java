@@ -20,6 +20,9 @@ public final class MetricNames {
     public static final String FAILED = PREFIX + "failed";
     public static final String SUCCEEDED = PREFIX + "succeeded";
     public static final String PENDING = PREFIX + "pending";
+    public static final String COMPRESSED_BYTES = PREFIX + "compressed_bytes";
+    public static final String UNCOMPRESSED_BYTES = PREFIX + "uncompressed_bytes";
+    public static final String DECOMPRESSION_TIME = PREFIX + "decompression_time";
 
     private MetricNames() {
     }
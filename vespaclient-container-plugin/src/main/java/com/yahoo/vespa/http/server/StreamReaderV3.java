@@ -7,6 +7,8 @@ import com.yahoo.vespa.http.client.core.Encoder;
 import com.yahoo.vespa.http.server.util.ByteLimitedInputStream;
 import com.yahoo.vespaxmlparser.FeedReader;
 import com.yahoo.vespaxmlparser.VespaXMLFeedReader;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4Factory;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -22,6 +24,11 @@ public class StreamReaderV3 {
 
     protected static final Logger log = Logger.getLogger(StreamReaderV3.class.getName());
 
+    /** The content encodings of feed requests which are decompressed, as listed to clients */
+    public static final String acceptedContentEncodings = "gzip, lz4";
+
+    private static final LZ4Factory lz4Factory = LZ4Factory.fastestInstance();
+
     private final FeedReaderFactory feedReaderFactory;
     private final DocumentTypeManager docTypeManager;
 
@@ -75,11 +82,18 @@ public class StreamReaderV3 {
 
     public static InputStream unzipStreamIfNeeded(final HttpRequest httpRequest)
             throws IOException {
-        final String contentEncodingHeader = httpRequest.getHeader("content-encoding");
+        return unzipStreamIfNeeded(httpRequest.getData(), httpRequest.getHeader("content-encoding"));
+    }
+
+    /** Returns a stream decompressing the given stream if it has one of the accepted content encodings */
+    public static InputStream unzipStreamIfNeeded(InputStream inputStream, String contentEncodingHeader)
+            throws IOException {
         if ("gzip".equals(contentEncodingHeader)) {
-            return new GZIPInputStream(httpRequest.getData());
+            return new GZIPInputStream(inputStream);
+        } else if ("lz4".equals(contentEncodingHeader)) {
+            return new LZ4BlockInputStream(inputStream, lz4Factory.fastDecompressor());
         } else {
-            return httpRequest.getData();
+            return inputStream;
         }
     }
 
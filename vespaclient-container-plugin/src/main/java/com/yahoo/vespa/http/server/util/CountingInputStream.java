@@ -0,0 +1,63 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.server.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream which counts the bytes read from the wrapped stream, and the time spent reading them.
+ * This is not thread safe.
+ */
+public class CountingInputStream extends FilterInputStream {
+
+    private long bytesRead = 0;
+    private long readNanos = 0;
+
+    public CountingInputStream(InputStream wrappedStream) {
+        super(wrappedStream);
+    }
+
+    @Override
+    public int read() throws IOException {
+        long startTime = System.nanoTime();
+        int retval = super.read();
+        readNanos += System.nanoTime() - startTime;
+        if (retval >= 0) {
+            ++bytesRead;
+        }
+        return retval;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long startTime = System.nanoTime();
+        int retval = super.read(b, off, len);
+        readNanos += System.nanoTime() - startTime;
+        if (retval > 0) {
+            bytesRead += retval;
+        }
+        return retval;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long startTime = System.nanoTime();
+        long skipped = super.skip(n);
+        readNanos += System.nanoTime() - startTime;
+        bytesRead += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /** Returns the number of bytes read or skipped from the wrapped stream so far */
+    public long bytesRead() { return bytesRead; }
+
+    /** Returns the total time spent reading from the wrapped stream so far, in nanoseconds */
+    public long readNanos() { return readNanos; }
+
+}
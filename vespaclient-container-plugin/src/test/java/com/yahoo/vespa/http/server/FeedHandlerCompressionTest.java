@@ -2,6 +2,8 @@
 package com.yahoo.vespa.http.server;
 
 import com.yahoo.container.jdisc.HttpRequest;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import net.jpountz.lz4.LZ4Factory;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
@@ -45,6 +47,27 @@ public class FeedHandlerCompressionTest {
         assertThat(processedInput.toString(), is(testData));
     }
 
+    @Test
+    public void testLz4StreamIsDecompressed() throws Exception {
+        final String testData = "foo bar";
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (LZ4BlockOutputStream lz4OutputStream = new LZ4BlockOutputStream(byteArrayOutputStream, 1024,
+                                                                             LZ4Factory.fastestInstance().fastCompressor())) {
+            lz4OutputStream.write(testData.getBytes());
+        }
+        InputStream inputStream = new ByteArrayInputStream(byteArrayOutputStream.toByteArray());
+        InputStream decompressedStream = StreamReaderV3.unzipStreamIfNeeded(inputStream, "lz4");
+        final StringBuilder processedInput = new StringBuilder();
+        while (true) {
+            int readValue = decompressedStream.read();
+            if (readValue < 0) {
+                break;
+            }
+            processedInput.append((char)readValue);
+        }
+        assertThat(processedInput.toString(), is(testData));
+    }
+
     /**
      * Test by setting encoding, but not compressing data.
      * @throws Exception
@@ -0,0 +1,116 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread safe pool of byte buffers, which lets serialization reuse buffers rather than allocating new ones for
+ * each operation. Buffers are handed out in size classes of powers of two, from 4 kB up to a max pooled size.
+ * Requests for larger buffers are served by allocating a buffer which is not pooled.
+ * <p>
+ * A buffer acquired from this must be returned by calling {@link #release} exactly once, when it and
+ * any views of it are no longer used. Buffers which are not released are simply garbage collected.
+ *
+ * @see GrowableByteBuffer#GrowableByteBuffer(BufferPool, int)
+ */
+public class BufferPool {
+
+    private static final int minSizeClass = 12; // 4 kB
+
+    private final boolean direct;
+    private final int maxSizeClass;
+    private final int maxBuffersPerSizeClass;
+    private final List<ArrayDeque<ByteBuffer>> free;
+
+    private final AtomicLong allocated = new AtomicLong(0);
+    private final AtomicLong reused = new AtomicLong(0);
+
+    /**
+     * Creates a buffer pool
+     *
+     * @param direct whether this should hand out direct buffers rather than heap buffers
+     * @param maxPooledSize the max size of a buffer which is kept in this pool when released
+     * @param maxBuffersPerSizeClass the max number of free buffers of each size to keep in this pool
+     */
+    public BufferPool(boolean direct, int maxPooledSize, int maxBuffersPerSizeClass) {
+        if (maxPooledSize < 1 << minSizeClass || maxPooledSize > 1 << 30)
+            throw new IllegalArgumentException("maxPooledSize must be in [" + (1 << minSizeClass) + ", " + (1 << 30) +
+                                               "], but was " + maxPooledSize);
+        this.direct = direct;
+        this.maxSizeClass = sizeClassOf(maxPooledSize + 1) - 1;
+        this.maxBuffersPerSizeClass = maxBuffersPerSizeClass;
+        this.free = new ArrayList<>(maxSizeClass - minSizeClass + 1);
+        for (int sizeClass = minSizeClass; sizeClass <= maxSizeClass; sizeClass++)
+            free.add(new ArrayDeque<>());
+    }
+
+    /** Returns whether the buffers of this are direct buffers */
+    public boolean isDirect() { return direct; }
+
+    /**
+     * Returns a cleared buffer in big endian order with a capacity of at least the given size.
+     * The contents of the buffer are undefined.
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        int sizeClass = sizeClassOf(minCapacity);
+        if (sizeClass > maxSizeClass) {
+            allocated.incrementAndGet();
+            return allocate(minCapacity);
+        }
+
+        ArrayDeque<ByteBuffer> buffers = free.get(sizeClass - minSizeClass);
+        ByteBuffer buffer;
+        synchronized (buffers) {
+            buffer = buffers.pollFirst();
+        }
+        if (buffer == null) {
+            allocated.incrementAndGet();
+            return allocate(1 << sizeClass);
+        }
+        reused.incrementAndGet();
+        buffer.clear();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer acquired from this to the pool. Buffers which are not of a size pooled by this,
+     * or which are not of the kind handed out by this, are ignored. The given buffer must not be used after this.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.isDirect() != direct || buffer.isReadOnly()) return;
+        if ( ! direct && buffer.arrayOffset() != 0) return; // a slice
+        int capacity = buffer.capacity();
+        if (Integer.bitCount(capacity) != 1) return;
+        int sizeClass = sizeClassOf(capacity);
+        if (sizeClass < minSizeClass || sizeClass > maxSizeClass) return;
+
+        ArrayDeque<ByteBuffer> buffers = free.get(sizeClass - minSizeClass);
+        synchronized (buffers) {
+            if (buffers.size() < maxBuffersPerSizeClass)
+                buffers.addFirst(buffer);
+        }
+    }
+
+    /** Returns the number of buffers allocated by this */
+    public long allocatedCount() { return allocated.get(); }
+
+    /** Returns the number of times a buffer was handed out from this without allocating it */
+    public long reusedCount() { return reused.get(); }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    /** Returns the smallest size class (power of two) which holds the given size */
+    private static int sizeClassOf(int size) {
+        if (size <= 1 << minSizeClass) return minSizeClass;
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+}
@@ -31,6 +31,8 @@ public class GrowableByteBuffer implements Comparable<GrowableByteBuffer> {
     private ByteBuffer buffer;
     private float growFactor;
     private int mark = -1;
+    /** The pool the buffer of this is acquired from, or null if it is not pooled */
+    private final BufferPool pool;
 
     // NOTE: It might have been better to subclass HeapByteBuffer,
     // but that class is package-private. Subclassing ByteBuffer would involve
@@ -48,6 +50,17 @@ public class GrowableByteBuffer implements Comparable<GrowableByteBuffer> {
         //NOTE: We MUST NEVER have a base size of 0, since checkAndGrow() will go into an infinite loop then
         if (baseSize < 16) baseSize = 16;
         buffer = ByteBuffer.allocate(baseSize);
+        pool = null;
+    }
+
+    /**
+     * Creates a buffer which acquires its buffers from the given pool. {@link #release} must be called
+     * to return the buffer to the pool when this is no longer used.
+     */
+    public GrowableByteBuffer(BufferPool pool, int baseSize) {
+        setGrowFactor(DEFAULT_GROW_FACTOR);
+        this.pool = pool;
+        buffer = pool.acquire(Math.max(16, baseSize));
     }
 
     public GrowableByteBuffer(int baseSize) {
@@ -61,6 +74,7 @@ public class GrowableByteBuffer implements Comparable<GrowableByteBuffer> {
     public GrowableByteBuffer(ByteBuffer buffer, float growFactor) {
         this.buffer = buffer;
         setGrowFactor(growFactor);
+        pool = null;
     }
 
 
@@ -93,7 +107,9 @@ public class GrowableByteBuffer implements Comparable<GrowableByteBuffer> {
     protected void grow(int newSize) {
         //create new buffer:
         ByteBuffer newByteBuf;
-        if (buffer.isDirect()) {
+        if (pool != null) {
+            newByteBuf = pool.acquire(newSize);
+        } else if (buffer.isDirect()) {
             newByteBuf = ByteBuffer.allocateDirect(newSize);
         } else {
             newByteBuf = ByteBuffer.allocate(newSize);
@@ -123,9 +139,23 @@ public class GrowableByteBuffer implements Comparable<GrowableByteBuffer> {
         //pointless to grow then...
 
         //set new buffer to be our buffer:
+        if (pool != null) {
+            pool.release(buffer);
+        }
         buffer = newByteBuf;
     }
 
+    /**
+     * Returns the buffer of this to the pool it was acquired from, if any. Neither this nor any buffers
+     * sharing its contents can be used after this is called.
+     */
+    public void release() {
+        if (pool != null) {
+            pool.release(buffer);
+        }
+        buffer = null;
+    }
+
     private void accomodate(int putSize) {
         int bufPos = buffer.position();
         int bufSize = buffer.capacity();
@@ -1,6 +1,8 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.slime;
 
+import com.yahoo.io.BufferPool;
+
 import static com.yahoo.slime.BinaryFormat.*;
 
 final class BinaryEncoder implements
@@ -16,6 +18,15 @@ ArrayTraverser, ObjectSymbolTraverser
         out = new BufferedOutput();
     }
 
+    public BinaryEncoder(BufferPool pool) {
+        out = new BufferedOutput(pool, 4096);
+    }
+
+    /** Releases the output buffer of this to its pool, if it is pooled. This cannot be used after this call. */
+    public void release() {
+        out.release();
+    }
+
     public byte[] encode(Slime slime) {
         out.reset();
         encodeSymbolTable(slime);
@@ -1,6 +1,8 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.slime;
 
+import com.yahoo.io.BufferPool;
+
 /**
  * Class for serializing Slime data into binary format, or deserializing
  * the binary format into a Slime object.
@@ -44,6 +46,22 @@ public class BinaryFormat {
         return encoder.encode(slime);
     }
 
+    /**
+     * Take a Slime object and serialize it into binary format,
+     * using buffers from the given pool of heap buffers while encoding.
+     * @param slime the object which is to be serialized.
+     * @param pool the pool to acquire encoding buffers from.
+     * @return a new byte array with just the encoded slime.
+     **/
+    public static byte[] encode(Slime slime, BufferPool pool) {
+        BinaryEncoder encoder = new BinaryEncoder(pool);
+        try {
+            return encoder.encode(slime);
+        } finally {
+            encoder.release();
+        }
+    }
+
     /**
      * Take binary data and deserialize it into a Slime object.
      * The data is assumed to be the binary representation
@@ -0,0 +1,373 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.slime;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static com.yahoo.slime.BinaryFormat.decode_double;
+import static com.yahoo.slime.BinaryFormat.decode_meta;
+import static com.yahoo.slime.BinaryFormat.decode_type;
+import static com.yahoo.slime.BinaryFormat.decode_zigzag;
+
+/**
+ * A read-only Inspector working directly on Slime data in binary format, as produced by
+ * {@link BinaryFormat#encode}. Unlike {@link BinaryFormat#decode}, this does not build a tree
+ * of values: The binary data is scanned once to index where each value starts, and values are
+ * decoded from the binary data when they are accessed. This is cheaper when only some of
+ * the values in the data are used.
+ *
+ * The binary data is not copied, and must not be modified while it is inspected.
+ **/
+public final class BinaryView implements Inspector {
+
+    /** The number of ints in the index per value: offset in data, first child, symbol */
+    private static final int stride = 3;
+
+    private final byte[] data;
+    private final SymbolTable names;
+    private final int[] index;
+    private final int self;
+
+    private BinaryView(byte[] data, SymbolTable names, int[] index, int self) {
+        this.data = data;
+        this.names = names;
+        this.index = index;
+        this.self = self;
+    }
+
+    /**
+     * Returns an inspector of the root value of the given binary data.
+     * If the data cannot be decoded, this returns an inspector of the same partial result as
+     * {@link BinaryFormat#decode(byte[])} would.
+     *
+     * @param data the binary data, which is not copied
+     * @return an inspector of the root value in the data
+     */
+    public static Inspector inspect(byte[] data) {
+        return inspect(data, 0, data.length);
+    }
+
+    /**
+     * Returns an inspector of the root value of the given binary data.
+     * If the data cannot be decoded, this returns an inspector of the same partial result as
+     * {@link BinaryFormat#decode(byte[], int, int)} would.
+     *
+     * @param data array containing the binary data, which is not copied
+     * @param offset where in the array the binary data starts
+     * @param length the length of the binary data
+     * @return an inspector of the root value in the data
+     */
+    public static Inspector inspect(byte[] data, int offset, int length) {
+        IndexBuilder builder = new IndexBuilder(new BufferedInput(data, offset, length));
+        if ( ! builder.build())
+            return BinaryFormat.decode(data, offset, length).get();
+        return new BinaryView(data, builder.names, builder.index, 0);
+    }
+
+    private int offset() { return index[self * stride]; }
+    private byte typeAndMeta() { return data[offset()]; }
+    private int meta() { return decode_meta(typeAndMeta()); }
+    private int firstChild() { return index[self * stride + 1]; }
+    private int symbol() { return index[self * stride + 2]; }
+
+    private BinaryView child(int i) { return new BinaryView(data, names, index, firstChild() + i); }
+
+    /** Returns the size stored for the value at this offset, which is only meaningful for sized types */
+    private int size() {
+        int meta = meta();
+        if (meta != 0) return meta - 1;
+        return (int)readCompressedLong(data, offset() + 1);
+    }
+
+    /** Returns the offset at which the content of a sized value starts */
+    private int contentOffset() {
+        int position = offset() + 1;
+        if (meta() == 0) {
+            while ((data[position] & 0x80) != 0) position++;
+            position++;
+        }
+        return position;
+    }
+
+    private byte[] content() {
+        int start = contentOffset();
+        return Arrays.copyOfRange(data, start, start + size());
+    }
+
+    private long longValue() {
+        long value = 0;
+        int position = offset() + 1;
+        for (int i = 0, shift = 0; i < meta(); i++, shift += 8)
+            value |= (data[position + i] & 0xffL) << shift;
+        return decode_zigzag(value);
+    }
+
+    private double doubleValue() {
+        long value = 0;
+        int position = offset() + 1;
+        for (int i = 0, shift = 56; i < meta(); i++, shift -= 8)
+            value |= (data[position + i] & 0xffL) << shift;
+        return decode_double(value);
+    }
+
+    @Override
+    public boolean valid() { return true; }
+
+    @Override
+    public Type type() { return decode_type(typeAndMeta()); }
+
+    @Override
+    public int children() {
+        switch (type()) {
+            case ARRAY: case OBJECT: return size();
+            default: return 0;
+        }
+    }
+
+    @Override
+    public int entries() { return type() == Type.ARRAY ? size() : 0; }
+
+    @Override
+    public int fields() { return type() == Type.OBJECT ? size() : 0; }
+
+    @Override
+    public boolean asBool() { return type() == Type.BOOL && meta() != 0; }
+
+    @Override
+    public long asLong() {
+        switch (type()) {
+            case LONG: return longValue();
+            case DOUBLE: return (long)doubleValue();
+            default: return 0;
+        }
+    }
+
+    @Override
+    public double asDouble() {
+        switch (type()) {
+            case LONG: return (double)longValue();
+            case DOUBLE: return doubleValue();
+            default: return 0.0;
+        }
+    }
+
+    @Override
+    public String asString() {
+        if (type() != Type.STRING) return "";
+        return Utf8Codec.decode(data, contentOffset(), size());
+    }
+
+    @Override
+    public byte[] asUtf8() {
+        if (type() != Type.STRING) return new byte[0];
+        return content();
+    }
+
+    @Override
+    public byte[] asData() {
+        if (type() != Type.DATA) return new byte[0];
+        return content();
+    }
+
+    @Override
+    public void accept(Visitor v) {
+        switch (type()) {
+            case NIX: v.visitNix(); break;
+            case BOOL: v.visitBool(asBool()); break;
+            case LONG: v.visitLong(longValue()); break;
+            case DOUBLE: v.visitDouble(doubleValue()); break;
+            case STRING: v.visitString(content()); break;
+            case DATA: v.visitData(content()); break;
+            case ARRAY: v.visitArray(this); break;
+            case OBJECT: v.visitObject(this); break;
+        }
+    }
+
+    @Override
+    public void traverse(ArrayTraverser at) {
+        for (int i = 0, entries = entries(); i < entries; i++)
+            at.entry(i, child(i));
+    }
+
+    @Override
+    public void traverse(ObjectSymbolTraverser ot) {
+        for (int i = 0, fields = fields(); i < fields; i++) {
+            BinaryView field = child(i);
+            ot.field(field.symbol(), field);
+        }
+    }
+
+    @Override
+    public void traverse(ObjectTraverser ot) {
+        for (int i = 0, fields = fields(); i < fields; i++) {
+            BinaryView field = child(i);
+            ot.field(names.inspect(field.symbol()), field);
+        }
+    }
+
+    @Override
+    public Inspector entry(int idx) {
+        if (idx < 0 || idx >= entries()) return NixValue.invalid();
+        return child(idx);
+    }
+
+    @Override
+    public Inspector field(int sym) {
+        int firstChild = firstChild();
+        for (int i = 0, fields = fields(); i < fields; i++) {
+            if (index[(firstChild + i) * stride + 2] == sym)
+                return child(i);
+        }
+        return NixValue.invalid();
+    }
+
+    @Override
+    public Inspector field(String name) {
+        int sym = names.lookup(name);
+        if (sym == SymbolTable.INVALID) return NixValue.invalid();
+        return field(sym);
+    }
+
+    @Override
+    public String toString() {
+        try {
+            ByteArrayOutputStream a = new ByteArrayOutputStream();
+            new JsonFormat(true).encode(a, this);
+            byte[] utf8 = a.toByteArray();
+            return Utf8Codec.decode(utf8, 0, utf8.length);
+        } catch (Exception e) {
+            return "null";
+        }
+    }
+
+    private static long readCompressedLong(byte[] data, int position) {
+        long next = data[position++];
+        long value = (next & 0x7f);
+        int shift = 7;
+        while ((next & 0x80) != 0) {
+            next = data[position++];
+            value |= ((next & 0x7f) << shift);
+            shift += 7;
+        }
+        return value;
+    }
+
+    /**
+     * Decodes the symbol table, and indexes the values of binary data. The children of each array
+     * and object are given consecutive indexes, such that the i'th child is found at the index of
+     * the first child plus i.
+     */
+    private static final class IndexBuilder {
+
+        private final BufferedInput in;
+        private final SymbolTable names = new SymbolTable();
+        private int[] index = new int[16 * stride];
+        private int values = 0;
+
+        IndexBuilder(BufferedInput in) {
+            this.in = in;
+        }
+
+        /** Builds the index, and returns whether the data was decoded successfully */
+        boolean build() {
+            decodeSymbolTable();
+            if (in.failed()) return false;
+            decodeValue(reserve(1), SymbolTable.INVALID);
+            return ! in.failed();
+        }
+
+        private void decodeSymbolTable() {
+            long numSymbols = readCompressedLong();
+            for (int i = 0; i < numSymbols && ! in.failed(); ++i) {
+                int size = readSize(0);
+                int offset = in.getPosition();
+                in.skip(size);
+                if (in.failed()) return;
+                if (names.insert(Utf8Codec.decode(in.getBacking(), offset, size)) != i)
+                    in.fail("duplicate symbols in symbol table");
+            }
+        }
+
+        /** Reserves index entries for the given number of values and returns the first of them */
+        private int reserve(long count) {
+            int first = values;
+            values += count;
+            if (values * stride > index.length)
+                index = Arrays.copyOf(index, Math.max(index.length * 2, values * stride));
+            return first;
+        }
+
+        private void decodeValue(int value, int symbol) {
+            int offset = in.getPosition();
+            byte typeAndMeta = in.getByte();
+            if (in.failed()) return;
+            index[value * stride] = offset;
+            index[value * stride + 2] = symbol;
+            int meta = decode_meta(typeAndMeta);
+            switch (decode_type(typeAndMeta)) {
+                case NIX:
+                case BOOL:
+                    break;
+                case LONG:
+                case DOUBLE:
+                    in.skip(meta);
+                    break;
+                case STRING:
+                case DATA:
+                    in.skip(readSize(meta));
+                    break;
+                case ARRAY:
+                    decodeChildren(value, readSize(meta), false);
+                    break;
+                case OBJECT:
+                    decodeChildren(value, readSize(meta), true);
+                    break;
+            }
+        }
+
+        private void decodeChildren(int parent, int count, boolean isObject) {
+            if (in.failed()) return;
+            int first = reserve(count);
+            index[parent * stride + 1] = first;
+            for (int i = 0; i < count && ! in.failed(); i++) {
+                int symbol = SymbolTable.INVALID;
+                if (isObject) {
+                    long l = readCompressedLong();
+                    if (l >= names.symbols()) {
+                        in.fail("unknown symbol " + l);
+                        return;
+                    }
+                    symbol = (int)l;
+                }
+                decodeValue(first + i, symbol);
+            }
+        }
+
+        /**
+         * Reads a size, and fails if it is larger than the remaining data, which would certainly be a
+         * sufficient size for the number of bytes or child values which the size is used for.
+         */
+        private int readSize(int meta) {
+            long size = (meta == 0) ? readCompressedLong() : (meta - 1);
+            if (size < 0 || size > in.remaining()) {
+                in.fail("invalid size " + size);
+                return 0;
+            }
+            return (int)size;
+        }
+
+        private long readCompressedLong() {
+            long next = in.getByte();
+            long value = (next & 0x7f);
+            int shift = 7;
+            while ((next & 0x80) != 0 && shift < 64) {
+                next = in.getByte();
+                value |= ((next & 0x7f) << shift);
+                shift += 7;
+            }
+            return value;
+        }
+
+    }
+
+}
@@ -61,6 +61,7 @@ final class BufferedInput {
 
     public final byte [] getBacking() { return source; }
     public final int getPosition() { return position; }
+    public final int remaining() { return end - position; }
     public final void skip(int size) {
         if (position + size > end) {
             fail("underflow");
@@ -1,15 +1,34 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.slime;
 
+import com.yahoo.io.BufferPool;
+
+import java.nio.ByteBuffer;
+
 final class BufferedOutput {
 
     private byte[] buf;
     private int capacity;
     private int pos;
 
+    /** The pool the backing buffer is acquired from, or null if it is not pooled */
+    private final BufferPool pool;
+    private ByteBuffer pooled;
+
     public BufferedOutput(int cap) {
         capacity = (cap < 64) ? 64 : cap;
         buf = new byte[capacity];
+        pool = null;
+    }
+
+    /** Creates an output which uses buffers from the given pool, which must be released after use */
+    public BufferedOutput(BufferPool pool, int cap) {
+        if (pool.isDirect())
+            throw new IllegalArgumentException("Slime output requires a pool of heap buffers");
+        this.pool = pool;
+        pooled = pool.acquire(cap);
+        buf = pooled.array();
+        capacity = buf.length;
     }
 
     public BufferedOutput() {
@@ -25,10 +44,28 @@ final class BufferedOutput {
             while (pos + bytes > capacity) {
                 capacity = capacity * 2;
             }
-            byte[] tmp = new byte[capacity];
-            System.arraycopy(buf, 0, tmp, 0, pos);
-            buf = tmp;
+            if (pool != null) {
+                ByteBuffer next = pool.acquire(capacity);
+                System.arraycopy(buf, 0, next.array(), 0, pos);
+                pool.release(pooled);
+                pooled = next;
+                buf = next.array();
+                capacity = buf.length;
+            } else {
+                byte[] tmp = new byte[capacity];
+                System.arraycopy(buf, 0, tmp, 0, pos);
+                buf = tmp;
+            }
+        }
+    }
+
+    /** Returns the buffer of this to the pool it was acquired from, if any. This cannot be used after this call. */
+    public void release() {
+        if (pool != null) {
+            pool.release(pooled);
+            pooled = null;
         }
+        buf = null;
     }
 
     public int position() { return pos; }
@@ -0,0 +1,56 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+/**
+ * An indexed tensor with double values.
+ */
+class IndexedDoubleTensor extends IndexedTensor {
+
+    private final double[] values;
+
+    IndexedDoubleTensor(TensorType type, DimensionSizes dimensionSizes, double[] values) {
+        super(type, dimensionSizes);
+        this.values = values;
+    }
+
+    @Override
+    public long size() {
+        return values.length;
+    }
+
+    @Override
+    public double get(long valueIndex) { return values[(int)valueIndex]; }
+
+    @Override
+    public float getFloat(long valueIndex) { return (float)values[(int)valueIndex]; }
+
+    @Override
+    IndexedTensor withSameValues(TensorType type) {
+        return new IndexedDoubleTensor(type, dimensionSizes(), values);
+    }
+
+    /** A bound builder of tensors with double values */
+    static final class BoundDoubleBuilder extends BoundBuilder {
+
+        private double[] values;
+
+        BoundDoubleBuilder(TensorType type, DimensionSizes sizes) {
+            super(type, sizes);
+            values = new double[(int)sizes.totalSize()];
+        }
+
+        @Override
+        public void cellByDirectIndex(long index, double value) {
+            values[(int)index] = value;
+        }
+
+        @Override
+        public IndexedTensor build() {
+            IndexedTensor tensor = new IndexedDoubleTensor(type, sizes(), values);
+            values = null; // prevent further modification
+            return tensor;
+        }
+
+    }
+
+}
@@ -0,0 +1,62 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+/**
+ * An indexed tensor with float, bfloat16 or int8 values, all of which are stored as floats.
+ * Values of the smaller types are rounded to the value type when they are set, so this
+ * always holds values which are exactly representable in its value type.
+ */
+class IndexedFloatTensor extends IndexedTensor {
+
+    private final float[] values;
+
+    IndexedFloatTensor(TensorType type, DimensionSizes dimensionSizes, float[] values) {
+        super(type, dimensionSizes);
+        this.values = values;
+    }
+
+    @Override
+    public long size() {
+        return values.length;
+    }
+
+    @Override
+    public double get(long valueIndex) { return values[(int)valueIndex]; }
+
+    @Override
+    public float getFloat(long valueIndex) { return values[(int)valueIndex]; }
+
+    @Override
+    IndexedTensor withSameValues(TensorType type) {
+        return new IndexedFloatTensor(type, dimensionSizes(), values);
+    }
+
+    /** A bound builder of tensors with float, bfloat16 or int8 values */
+    static final class BoundFloatBuilder extends BoundBuilder {
+
+        private final TensorType.Value valueType;
+        private float[] values;
+
+        BoundFloatBuilder(TensorType type, DimensionSizes sizes) {
+            super(type, sizes);
+            if (type.valueType() == TensorType.Value.DOUBLE)
+                throw new IllegalArgumentException("Cannot build a tensor of type " + type + " with float values");
+            valueType = type.valueType();
+            values = new float[(int)sizes.totalSize()];
+        }
+
+        @Override
+        public void cellByDirectIndex(long index, double value) {
+            values[(int)index] = (float)valueType.rounded(value);
+        }
+
+        @Override
+        public IndexedTensor build() {
+            IndexedTensor tensor = new IndexedFloatTensor(type, sizes(), values);
+            values = null; // prevent further modification
+            return tensor;
+        }
+
+    }
+
+}
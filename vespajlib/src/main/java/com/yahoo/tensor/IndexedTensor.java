@@ -15,11 +15,12 @@ import java.util.Optional;
 import java.util.Set;
 
 /**
- * An indexed (dense) tensor backed by a double array.
+ * An indexed (dense) tensor backed by an array of the value type of the tensor type:
+ * A double array for double values and a float array for the smaller value types.
  *
  * @author bratseth
  */
-public class IndexedTensor implements Tensor {
+public abstract class IndexedTensor implements Tensor {
 
     /** The prescribed and possibly abstract type this is an instance of */
     private final TensorType type;
@@ -27,17 +28,9 @@ public class IndexedTensor implements Tensor {
     /** The sizes of the dimensions of this in the order of the dimensions of the type */
     private final DimensionSizes dimensionSizes;
 
-    private final double[] values;
-
-    private IndexedTensor(TensorType type, DimensionSizes dimensionSizes, double[] values) {
+    IndexedTensor(TensorType type, DimensionSizes dimensionSizes) {
         this.type = type;
         this.dimensionSizes = dimensionSizes;
-        this.values = values;
-    }
-
-    @Override
-    public long size() {
-        return values.length;
     }
 
     /**
@@ -101,7 +94,7 @@ public class IndexedTensor implements Tensor {
      * @throws IndexOutOfBoundsException if any of the indexes are out of bound or a wrong number of indexes are given
      */
     public double get(long ... indexes) {
-        return values[(int)toValueIndex(indexes, dimensionSizes)];
+        return get(toValueIndex(indexes, dimensionSizes));
     }
 
     /** Returns the value at this address, or NaN if there is no value at this address */
@@ -109,7 +102,7 @@ public class IndexedTensor implements Tensor {
     public double get(TensorAddress address) {
         // optimize for fast lookup within bounds:
         try {
-            return values[(int)toValueIndex(address, dimensionSizes)];
+            return get(toValueIndex(address, dimensionSizes));
         }
         catch (IndexOutOfBoundsException e) {
             return Double.NaN;
@@ -123,7 +116,16 @@ public class IndexedTensor implements Tensor {
      * @param valueIndex the direct index into the underlying data.
      * @throws IndexOutOfBoundsException if index is out of bounds
      */
-    public double get(long valueIndex) { return values[(int)valueIndex]; }
+    public abstract double get(long valueIndex);
+
+    /**
+     * Returns the value at the given index by direct lookup as a float. Only use
+     * if you know the underlying data layout.
+     *
+     * @param valueIndex the direct index into the underlying data.
+     * @throws IndexOutOfBoundsException if index is out of bounds
+     */
+    public abstract float getFloat(long valueIndex);
 
     private static long toValueIndex(long[] indexes, DimensionSizes sizes) {
         if (indexes.length == 1) return indexes[0]; // for speed
@@ -168,9 +170,18 @@ public class IndexedTensor implements Tensor {
             throw new IllegalArgumentException("IndexedTensor.withType: types are not compatible. Current type: '" +
                     this.type.toString() + "', requested type: '" + type.toString() + "'");
         }
-        return new IndexedTensor(type, dimensionSizes, values);
+        if (type.valueType() == this.type.valueType())
+            return withSameValues(type);
+
+        BoundBuilder builder = (BoundBuilder)Builder.of(type, dimensionSizes);
+        for (long i = 0; i < size(); i++)
+            builder.cellByDirectIndex(i, get(i));
+        return builder.build();
     }
 
+    /** Returns a tensor of the given type, which has the same value type as this, sharing the values of this */
+    abstract IndexedTensor withSameValues(TensorType type);
+
     public DimensionSizes dimensionSizes() {
         return dimensionSizes;
     }
@@ -178,19 +189,27 @@ public class IndexedTensor implements Tensor {
     @Override
     public Map<TensorAddress, Double> cells() {
         if (dimensionSizes.dimensions() == 0)
-            return Collections.singletonMap(TensorAddress.of(), values[0]);
+            return Collections.singletonMap(TensorAddress.of(), get(0));
 
         ImmutableMap.Builder<TensorAddress, Double> builder = new ImmutableMap.Builder<>();
-        Indexes indexes = Indexes.of(dimensionSizes, dimensionSizes, values.length);
-        for (long i = 0; i < values.length; i++) {
+        Indexes indexes = Indexes.of(dimensionSizes, dimensionSizes, size());
+        for (long i = 0; i < size(); i++) {
             indexes.next();
-            builder.put(indexes.toAddress(), values[(int)i]);
+            builder.put(indexes.toAddress(), get(i));
         }
         return builder.build();
     }
 
+    /** Returns the same hash code as {@link Arrays#hashCode(double[])} of the values, whatever the value type */
     @Override
-    public int hashCode() { return Arrays.hashCode(values); }
+    public int hashCode() {
+        int result = 1;
+        for (long i = 0; i < size(); i++) {
+            long bits = Double.doubleToLongBits(get(i));
+            result = 31 * result + (int)(bits ^ (bits >>> 32));
+        }
+        return result;
+    }
 
     @Override
     public String toString() { return Tensor.toStandardString(this); }
@@ -201,6 +220,14 @@ public class IndexedTensor implements Tensor {
         return Tensor.equals(this, ((Tensor)other));
     }
 
+    /** Returns a bound builder storing values of the value type of the given type */
+    private static BoundBuilder boundBuilder(TensorType type, DimensionSizes sizes) {
+        if (type.valueType() == TensorType.Value.DOUBLE)
+            return new IndexedDoubleTensor.BoundDoubleBuilder(type, sizes);
+        else
+            return new IndexedFloatTensor.BoundFloatBuilder(type, sizes);
+    }
+
     public abstract static class Builder implements Tensor.Builder {
 
         final TensorType type;
@@ -211,7 +238,7 @@ public class IndexedTensor implements Tensor {
 
         public static Builder of(TensorType type) {
             if (type.dimensions().stream().allMatch(d -> d instanceof TensorType.IndexedBoundDimension))
-                return new BoundBuilder(type);
+                return boundBuilder(type, BoundBuilder.dimensionSizesOf(type));
             else
                 return new UnboundBuilder(type);
         }
@@ -234,7 +261,7 @@ public class IndexedTensor implements Tensor {
                                                        " but cannot be larger than " + size.get() + " in " + type);
             }
 
-            return new BoundBuilder(type, sizes);
+            return boundBuilder(type, sizes);
         }
 
         public abstract Builder cell(double value, long ... indexes);
@@ -247,14 +274,19 @@ public class IndexedTensor implements Tensor {
 
     }
 
-    /** A bound builder can create the double array directly */
-    public static class BoundBuilder extends Builder {
+    /**
+     * A bound builder can create the value array directly.
+     * Values are converted to the value type of the tensor type as they are set.
+     */
+    public abstract static class BoundBuilder extends Builder {
 
-        private DimensionSizes sizes;
-        private double[] values;
+        private final DimensionSizes sizes;
 
-        private BoundBuilder(TensorType type) {
-            this(type, dimensionSizesOf(type));
+        BoundBuilder(TensorType type, DimensionSizes sizes) {
+            super(type);
+            if ( sizes.dimensions() != type.dimensions().size())
+                throw new IllegalArgumentException("Must have a dimension size entry for each dimension in " + type);
+            this.sizes = sizes;
         }
 
         static DimensionSizes dimensionSizesOf(TensorType type) {
@@ -264,17 +296,11 @@ public class IndexedTensor implements Tensor {
             return b.build();
         }
 
-        private BoundBuilder(TensorType type, DimensionSizes sizes) {
-            super(type);
-            if ( sizes.dimensions() != type.dimensions().size())
-                throw new IllegalArgumentException("Must have a dimension size entry for each dimension in " + type);
-            this.sizes = sizes;
-            values = new double[(int)sizes.totalSize()];
-        }
+        DimensionSizes sizes() { return sizes; }
 
         @Override
         public BoundBuilder cell(double value, long ... indexes) {
-            values[(int)toValueIndex(indexes, sizes)] = value;
+            cellByDirectIndex(toValueIndex(indexes, sizes), value);
             return this;
         }
 
@@ -285,24 +311,15 @@ public class IndexedTensor implements Tensor {
 
         @Override
         public Builder cell(TensorAddress address, double value) {
-            values[(int)toValueIndex(address, sizes)] = value;
+            cellByDirectIndex(toValueIndex(address, sizes), value);
             return this;
         }
 
-        @Override
-        public IndexedTensor build() {
-            IndexedTensor tensor = new IndexedTensor(type, sizes, values);
-            // prevent further modification
-            sizes = null;
-            values = null;
-            return tensor;
-        }
-
         @Override
         public Builder cell(Cell cell, double value) {
             long directIndex = cell.getDirectIndex();
             if (directIndex >= 0) // optimization
-                values[(int)directIndex] = value;
+                cellByDirectIndex(directIndex, value);
             else
                 super.cell(cell, value);
             return this;
@@ -313,9 +330,7 @@ public class IndexedTensor implements Tensor {
          * This requires knowledge of the internal layout of cells in this implementation, and should therefore
          * probably not be used (but when it can be used it is fast).
          */
-        public void cellByDirectIndex(long index, double value) {
-            values[(int)index] = value;
-        }
+        public abstract void cellByDirectIndex(long index, double value);
 
     }
 
@@ -337,12 +352,18 @@ public class IndexedTensor implements Tensor {
             if (firstDimension == null) throw new IllegalArgumentException("Tensor of type " + type() + " has no values");
 
             if (type.dimensions().isEmpty()) // single number
-                return new IndexedTensor(type, new DimensionSizes.Builder(type.dimensions().size()).build(), new double[] {(Double) firstDimension.get(0) });
+                return new IndexedDoubleTensor(type, new DimensionSizes.Builder(type.dimensions().size()).build(), new double[] {(Double) firstDimension.get(0) });
 
             DimensionSizes dimensionSizes = findDimensionSizes(firstDimension);
             double[] values = new double[(int)dimensionSizes.totalSize()];
             fillValues(0, 0, firstDimension, dimensionSizes, values);
-            return new IndexedTensor(type, dimensionSizes, values);
+            if (type.valueType() == TensorType.Value.DOUBLE)
+                return new IndexedDoubleTensor(type, dimensionSizes, values);
+
+            BoundBuilder builder = boundBuilder(type, dimensionSizes);
+            for (int i = 0; i < values.length; i++)
+                builder.cellByDirectIndex(i, values[i]);
+            return builder.build();
         }
 
         private DimensionSizes findDimensionSizes(List<Object> firstDimension) {
@@ -449,7 +470,7 @@ public class IndexedTensor implements Tensor {
     private final class CellIterator implements Iterator<Cell> {
 
         private long count = 0;
-        private final Indexes indexes = Indexes.of(dimensionSizes, dimensionSizes, values.length);
+        private final Indexes indexes = Indexes.of(dimensionSizes, dimensionSizes, size());
         private final LazyCell reusedCell = new LazyCell(indexes, Double.NaN);
 
         @Override
@@ -474,13 +495,13 @@ public class IndexedTensor implements Tensor {
 
         @Override
         public boolean hasNext() {
-            return count < values.length;
+            return count < size();
         }
 
         @Override
         public Double next() {
             try {
-                return values[(int)count++];
+                return get(count++);
             }
             catch (IndexOutOfBoundsException e) {
                 throw new NoSuchElementException("No element at position " + count);
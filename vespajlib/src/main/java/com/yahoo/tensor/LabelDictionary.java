@@ -0,0 +1,48 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The labels of a mapped dimension of a tensor, each assigned a dense int id in the order they are added.
+ * A dictionary is modified only while the tensor it belongs to is built, and immutable after that.
+ */
+final class LabelDictionary {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] labels = new String[8];
+
+    /** Returns the number of labels in this */
+    int size() { return ids.size(); }
+
+    /** Returns the id of the given label, or -1 if it is not present in this */
+    int idOf(String label) {
+        Integer id = ids.get(label);
+        return id == null ? -1 : id;
+    }
+
+    /** Returns the id of the given label, adding it to this if it is not present */
+    int add(String label) {
+        Integer id = ids.get(label);
+        if (id != null) return id;
+
+        int newId = ids.size();
+        if (newId == labels.length)
+            labels = Arrays.copyOf(labels, Math.max(8, labels.length * 2));
+        labels[newId] = label;
+        ids.put(label, newId);
+        return newId;
+    }
+
+    /** Returns the label having the given id */
+    String label(int id) { return labels[id]; }
+
+    /** Frees any memory which is not needed to hold the current labels */
+    void trim() {
+        if (labels.length > ids.size())
+            labels = Arrays.copyOf(labels, ids.size());
+    }
+
+}
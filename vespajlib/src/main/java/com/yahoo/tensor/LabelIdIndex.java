@@ -0,0 +1,130 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import java.util.Arrays;
+
+/**
+ * A hash index of tuples of label ids of a fixed rank, where each tuple is assigned an entry number
+ * in the order it is added. This is the address index of the mapped dimensions of tensors,
+ * where each label id in a tuple is the id of a label in the dictionary of the corresponding dimension.
+ * <p>
+ * The tuples are packed in a single int array, and looked up by open addressing with linear probing,
+ * such that no objects are allocated per entry.
+ * <p>
+ * This is mutable and not thread safe. Instances owned by tensors are not modified after the tensor is built.
+ */
+final class LabelIdIndex {
+
+    private final int rank;
+
+    /** The label ids of each entry, in entry order: The id in dimension d of entry i is at i * rank + d */
+    private int[] labelIds;
+
+    /** The number of entries in this */
+    private int size = 0;
+
+    /** The hash slots of this, holding entry number + 1, or 0 if the slot is empty. The length is a power of 2 */
+    private int[] slots;
+
+    /** Creates an empty index of the given rank */
+    LabelIdIndex(int rank) {
+        this(rank, 8);
+    }
+
+    /** Creates an empty index of the given rank, with room for the given number of entries before it must grow */
+    LabelIdIndex(int rank, int expectedSize) {
+        this.rank = rank;
+        this.labelIds = new int[rank * Math.max(expectedSize, 1)];
+        this.slots = new int[slotCountFor(expectedSize)];
+    }
+
+    /** Returns the number of label ids in each entry of this */
+    int rank() { return rank; }
+
+    /** Returns the number of entries in this */
+    int size() { return size; }
+
+    /** Returns the label id in the given dimension of the given entry */
+    int labelId(int entry, int dimension) {
+        return labelIds[entry * rank + dimension];
+    }
+
+    /** Returns the entry number of the given label ids, or -1 if they are not present in this */
+    int indexOf(int[] labelIds) {
+        int mask = slots.length - 1;
+        for (int slot = hash(labelIds, 0) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (equalsEntry(slots[slot] - 1, labelIds))
+                return slots[slot] - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the entry number of the given label ids, adding them as a new entry if they are not present in this.
+     * The given array is copied and may be modified by the caller after this returns.
+     */
+    int add(int[] labelIds) {
+        if (labelIds.length != rank)
+            throw new IllegalArgumentException("Expected " + rank + " label ids, but got " + labelIds.length);
+
+        int mask = slots.length - 1;
+        int slot = hash(labelIds, 0) & mask;
+        for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (equalsEntry(slots[slot] - 1, labelIds))
+                return slots[slot] - 1;
+        }
+
+        int entry = size++;
+        if (size * rank > this.labelIds.length)
+            this.labelIds = Arrays.copyOf(this.labelIds, Math.max(size * rank, this.labelIds.length * 2));
+        System.arraycopy(labelIds, 0, this.labelIds, entry * rank, rank);
+        slots[slot] = entry + 1;
+        if (size * 2 > slots.length)
+            rehash(slots.length * 2);
+        return entry;
+    }
+
+    /** Frees any memory which is not needed to hold the current entries */
+    void trim() {
+        if (labelIds.length > size * rank)
+            labelIds = Arrays.copyOf(labelIds, size * rank);
+        if (slots.length > slotCountFor(size))
+            rehash(slotCountFor(size));
+    }
+
+    private boolean equalsEntry(int entry, int[] labelIds) {
+        int offset = entry * rank;
+        for (int d = 0; d < rank; d++)
+            if (this.labelIds[offset + d] != labelIds[d]) return false;
+        return true;
+    }
+
+    private void rehash(int slotCount) {
+        slots = new int[slotCount];
+        int mask = slotCount - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = hash(labelIds, entry * rank) & mask;
+            while (slots[slot] != 0)
+                slot = (slot + 1) & mask;
+            slots[slot] = entry + 1;
+        }
+    }
+
+    /** Returns the hash of the rank label ids starting at the given offset in the given array */
+    private int hash(int[] labelIds, int offset) {
+        // The ids are small, dense numbers, so they must be spread over all the bits to avoid collisions
+        int hash = 0;
+        for (int d = 0; d < rank; d++)
+            hash = (hash + labelIds[offset + d]) * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    /** Returns the smallest power of 2 which is at least twice the given size */
+    private static int slotCountFor(int size) {
+        return Math.max(2, Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1);
+    }
+
+}
@@ -3,11 +3,15 @@ package com.yahoo.tensor;
 
 import com.google.common.collect.ImmutableMap;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
- * A sparse implementation of a tensor backed by a Map of cells to values.
+ * A sparse implementation of a tensor. The labels of each dimension are interned in a dictionary
+ * assigning them int ids, cell addresses are stored as packed arrays of label ids, and
+ * the cell values are stored in a double array in the order the cells were added.
  *
  * @author bratseth
  */
@@ -15,31 +19,79 @@ public class MappedTensor implements Tensor {
 
     private final TensorType type;
 
-    private final ImmutableMap<TensorAddress, Double> cells;
+    /** The labels of each dimension */
+    private final LabelDictionary[] labels;
+
+    /** The addresses of the cells, as label ids. The entry number of an address is the index of its value */
+    private final LabelIdIndex index;
+
+    private final double[] values;
 
     /** Creates a sparse tensor. The cell addresses must match the type. */
-    private MappedTensor(TensorType type, Map<TensorAddress, Double> cells) {
+    private MappedTensor(TensorType type, LabelDictionary[] labels, LabelIdIndex index, double[] values) {
         this.type = type;
-        this.cells = ImmutableMap.copyOf(cells);
+        this.labels = labels;
+        this.index = index;
+        this.values = values;
     }
 
     @Override
     public TensorType type() { return type; }
 
     @Override
-    public long size() { return cells.size(); }
+    public long size() { return index.size(); }
 
     @Override
-    public double get(TensorAddress address) { return cells.getOrDefault(address, Double.NaN); }
+    public double get(TensorAddress address) {
+        if (address.size() != labels.length) return Double.NaN;
+        int[] labelIds = new int[labels.length];
+        for (int d = 0; d < labels.length; d++) {
+            labelIds[d] = labels[d].idOf(address.label(d));
+            if (labelIds[d] < 0) return Double.NaN;
+        }
+        int cellIndex = index.indexOf(labelIds);
+        return cellIndex < 0 ? Double.NaN : values[cellIndex];
+    }
+
+    /**
+     * Returns the value of the cell at the given index.
+     * Cells are indexed from 0 to size, in the order they were added to this.
+     */
+    double get(int cellIndex) { return values[cellIndex]; }
+
+    /** Returns the id of the label of the given dimension of the cell at the given index */
+    int labelId(int cellIndex, int dimension) { return index.labelId(cellIndex, dimension); }
+
+    /** Returns the id of the given label in the given dimension, or -1 if the label is not known to this */
+    int labelId(int dimension, String label) { return labels[dimension].idOf(label); }
+
+    /** Returns the label having the given id in the given dimension */
+    String label(int dimension, int labelId) { return labels[dimension].label(labelId); }
+
+    /** Returns the number of labels known in the given dimension, which have the ids from 0 to this count */
+    int labelCount(int dimension) { return labels[dimension].size(); }
+
+    /** Returns the address of the cell at the given index */
+    TensorAddress address(int cellIndex) {
+        String[] addressLabels = new String[labels.length];
+        for (int d = 0; d < labels.length; d++)
+            addressLabels[d] = labels[d].label(index.labelId(cellIndex, d));
+        return TensorAddress.of(addressLabels);
+    }
 
     @Override
-    public Iterator<Cell> cellIterator() { return new CellIteratorAdaptor(cells.entrySet().iterator()); }
+    public Iterator<Cell> cellIterator() { return new CellIterator(); }
 
     @Override
-    public Iterator<Double> valueIterator() { return cells.values().iterator(); }
+    public Iterator<Double> valueIterator() { return new ValueIterator(); }
 
     @Override
-    public Map<TensorAddress, Double> cells() { return cells; }
+    public Map<TensorAddress, Double> cells() {
+        ImmutableMap.Builder<TensorAddress, Double> builder = new ImmutableMap.Builder<>();
+        for (int i = 0; i < index.size(); i++)
+            builder.put(address(i), values[i]);
+        return builder.build();
+    }
 
     @Override
     public Tensor withType(TensorType other) {
@@ -47,11 +99,17 @@ public class MappedTensor implements Tensor {
             throw new IllegalArgumentException("MappedTensor.withType: types are not compatible. Current type: '" +
                     this.type.toString() + "', requested type: '" + type.toString() + "'");
         }
-        return new MappedTensor(other, cells);
+        return new MappedTensor(other, labels, index, values);
     }
 
+    /** Returns the same hash code as the map returned by cells() */
     @Override
-    public int hashCode() { return cells.hashCode(); }
+    public int hashCode() {
+        int hashCode = 0;
+        for (int i = 0; i < index.size(); i++)
+            hashCode += address(i).hashCode() ^ Double.hashCode(values[i]);
+        return hashCode;
+    }
 
     @Override
     public String toString() { return Tensor.toStandardString(this); }
@@ -62,15 +120,29 @@ public class MappedTensor implements Tensor {
         return Tensor.equals(this, ((Tensor)other));
     }
 
+    /**
+     * Builds a mapped tensor. Adding the same cell more than once is not allowed.
+     * A builder cannot be used after build is called.
+     */
     public static class Builder implements Tensor.Builder {
 
         private final TensorType type;
-        private final ImmutableMap.Builder<TensorAddress, Double> cells = new ImmutableMap.Builder<>();
+        private LabelDictionary[] labels;
+        private LabelIdIndex index;
+        private double[] values;
+
+        public static Builder of(TensorType type) { return new Builder(type, 8); }
 
-        public static Builder of(TensorType type) { return new Builder(type); }
+        /** Returns a builder which has room for the given number of cells before it must grow */
+        static Builder of(TensorType type, int expectedSize) { return new Builder(type, expectedSize); }
 
-        private Builder(TensorType type) {
+        private Builder(TensorType type, int expectedSize) {
             this.type = type;
+            this.labels = new LabelDictionary[type.dimensions().size()];
+            for (int d = 0; d < labels.length; d++)
+                labels[d] = new LabelDictionary();
+            this.index = new LabelIdIndex(labels.length, expectedSize);
+            this.values = new double[Math.max(expectedSize, 1)];
         }
 
         public CellBuilder cell() {
@@ -82,38 +154,92 @@ public class MappedTensor implements Tensor {
 
         @Override
         public Builder cell(TensorAddress address, double value) {
-            cells.put(address, value);
-            return this;
+            if (address.size() != labels.length)
+                throw new IllegalArgumentException("Cannot add a cell with address " + address + " to a tensor of type " +
+                                                   type + ": The address must have " + labels.length + " labels");
+            int[] labelIds = new int[labels.length];
+            for (int d = 0; d < labels.length; d++)
+                labelIds[d] = labels[d].add(address.label(d));
+            return cellByLabelIds(labelIds, value);
         }
 
         @Override
         public Builder cell(double value, long... labels) {
-            cells.put(TensorAddress.of(labels), value);
+            return cell(TensorAddress.of(labels), value);
+        }
+
+        /** Returns the id of the given label in the given dimension of the tensor built by this, adding it if needed */
+        int labelId(int dimension, String label) {
+            return labels[dimension].add(label);
+        }
+
+        /**
+         * Adds a cell by the ids of its labels, as returned from labelId.
+         * The given array is not retained and may be modified by the caller after this returns.
+         *
+         * @throws IllegalArgumentException if a cell with these labels is already added
+         */
+        Builder cellByLabelIds(int[] labelIds, double value) {
+            int size = index.size();
+            int cellIndex = index.add(labelIds);
+            if (cellIndex < size)
+                throw new IllegalArgumentException("Multiple cells with address " + address(labelIds) +
+                                                   " added to a tensor of type " + type);
+            if (cellIndex == values.length)
+                values = Arrays.copyOf(values, values.length * 2);
+            values[cellIndex] = type.valueType().rounded(value);
             return this;
         }
 
+        private TensorAddress address(int[] labelIds) {
+            String[] addressLabels = new String[labelIds.length];
+            for (int d = 0; d < labelIds.length; d++)
+                addressLabels[d] = labels[d].label(labelIds[d]);
+            return TensorAddress.of(addressLabels);
+        }
+
         @Override
         public MappedTensor build() {
-            return new MappedTensor(type, cells.build());
+            for (LabelDictionary dictionary : labels)
+                dictionary.trim();
+            index.trim();
+            MappedTensor tensor = new MappedTensor(type, labels, index, Arrays.copyOf(values, index.size()));
+            labels = null; // prevent further modification
+            index = null;
+            values = null;
+            return tensor;
         }
 
     }
 
-    private static class CellIteratorAdaptor implements Iterator<Cell> {
+    private class CellIterator implements Iterator<Cell> {
 
-        private final Iterator<Map.Entry<TensorAddress, Double>> adaptedIterator;
+        private int cellIndex = 0;
+
+        @Override
+        public boolean hasNext() { return cellIndex < index.size(); }
 
-        private CellIteratorAdaptor(Iterator<Map.Entry<TensorAddress, Double>> adaptedIterator) {
-            this.adaptedIterator = adaptedIterator;
+        @Override
+        public Cell next() {
+            if ( ! hasNext()) throw new NoSuchElementException();
+            Cell cell = new Cell(address(cellIndex), values[cellIndex]);
+            cellIndex++;
+            return cell;
         }
 
+    }
+
+    private class ValueIterator implements Iterator<Double> {
+
+        private int cellIndex = 0;
+
         @Override
-        public boolean hasNext() { return adaptedIterator.hasNext(); }
+        public boolean hasNext() { return cellIndex < index.size(); }
 
         @Override
-        public Cell next() {
-            Map.Entry<TensorAddress, Double> entry = adaptedIterator.next();
-            return new Cell(entry.getKey(), entry.getValue());
+        public Double next() {
+            if ( ! hasNext()) throw new NoSuchElementException();
+            return values[cellIndex++];
         }
 
     }
@@ -0,0 +1,180 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Evaluation of join and reduce directly over the label ids of mapped tensors.
+ *
+ * Cells are matched and grouped by hashing their label ids, without creating addresses, cells or boxed values.
+ * Each distinct label is translated between the label dictionaries of the arguments and the result at most once.
+ * This is used by the join and reduce tensor functions, and is here to keep the label ids of mapped tensors internal.
+ */
+public final class MappedTensorEvaluator {
+
+    private MappedTensorEvaluator() {}
+
+    /** Returns join(a, b, combinator) */
+    public static Tensor join(MappedTensor a, MappedTensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
+        // Build a hash index over the smaller argument, and probe it with each cell of the larger
+        boolean swapped = a.size() > b.size();
+        MappedTensor indexed = swapped ? b : a;
+        MappedTensor probing = swapped ? a : b;
+
+        int[] commonInIndexed = commonDimensions(indexed.type(), probing.type());
+        int[] commonInProbing = new int[commonInIndexed.length];
+        int[][] probingToIndexedIds = new int[commonInIndexed.length][];
+        for (int c = 0; c < commonInIndexed.length; c++) {
+            commonInProbing[c] = indexOf(indexed.type().dimensions().get(commonInIndexed[c]).name(), probing.type());
+            probingToIndexedIds[c] = new int[probing.labelCount(commonInProbing[c])];
+            for (int id = 0; id < probingToIndexedIds[c].length; id++)
+                probingToIndexedIds[c][id] = indexed.labelId(commonInIndexed[c], probing.label(commonInProbing[c], id));
+        }
+
+        // Chain the cells of the indexed argument having the same labels in the common dimensions, in cell order
+        int indexedSize = (int)indexed.size();
+        LabelIdIndex commonIndex = new LabelIdIndex(commonInIndexed.length, indexedSize);
+        int[] firstCell = new int[indexedSize];
+        int[] nextCell = new int[indexedSize];
+        Arrays.fill(firstCell, -1);
+        int[] commonIds = new int[commonInIndexed.length];
+        for (int cell = indexedSize - 1; cell >= 0; cell--) {
+            for (int c = 0; c < commonIds.length; c++)
+                commonIds[c] = indexed.labelId(cell, commonInIndexed[c]);
+            int entry = commonIndex.add(commonIds);
+            nextCell[cell] = firstCell[entry];
+            firstCell[entry] = cell;
+        }
+
+        MappedTensor.Builder builder = MappedTensor.Builder.of(joinedType, (int)probing.size());
+        LabelTranslator fromIndexed = new LabelTranslator(indexed, joinedType, builder);
+        LabelTranslator fromProbing = new LabelTranslator(probing, joinedType, builder);
+        int[] joinedIds = new int[joinedType.dimensions().size()];
+        probing:
+        for (int probingCell = 0; probingCell < probing.size(); probingCell++) {
+            for (int c = 0; c < commonIds.length; c++) {
+                commonIds[c] = probingToIndexedIds[c][probing.labelId(probingCell, commonInProbing[c])];
+                if (commonIds[c] < 0) continue probing; // label not present in the indexed argument
+            }
+            int entry = commonIndex.indexOf(commonIds);
+            if (entry < 0) continue;
+
+            fromProbing.setJoinedIds(probingCell, joinedIds);
+            double probingValue = probing.get(probingCell);
+            for (int indexedCell = firstCell[entry]; indexedCell >= 0; indexedCell = nextCell[indexedCell]) {
+                fromIndexed.setJoinedIds(indexedCell, joinedIds);
+                double indexedValue = indexed.get(indexedCell);
+                builder.cellByLabelIds(joinedIds, swapped ? combinator.applyAsDouble(probingValue, indexedValue)
+                                                          : combinator.applyAsDouble(indexedValue, probingValue));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the given argument reduced to the given type, which must have some, but not all, of its dimensions.
+     * The cells of the argument which have the same labels in the dimensions of the reduced type are aggregated
+     * by an aggregator of some type A created by the given supplier.
+     *
+     * @param newAggregator creates an aggregator for each cell of the reduced tensor
+     * @param aggregate adds a value to an aggregator
+     * @param aggregatedValue returns the value of an aggregator
+     */
+    public static <A> Tensor reduce(MappedTensor argument, TensorType reducedType, Supplier<A> newAggregator,
+                                    ObjDoubleConsumer<A> aggregate, ToDoubleFunction<A> aggregatedValue) {
+        int[] kept = new int[reducedType.dimensions().size()];
+        for (int k = 0; k < kept.length; k++)
+            kept[k] = indexOf(reducedType.dimensions().get(k).name(), argument.type());
+
+        // Aggregate the cells having the same labels in the kept dimensions
+        LabelIdIndex groups = new LabelIdIndex(kept.length);
+        List<A> aggregators = new ArrayList<>();
+        int[] keptIds = new int[kept.length];
+        for (int cell = 0; cell < argument.size(); cell++) {
+            for (int k = 0; k < kept.length; k++)
+                keptIds[k] = argument.labelId(cell, kept[k]);
+            int group = groups.add(keptIds);
+            if (group == aggregators.size())
+                aggregators.add(newAggregator.get());
+            aggregate.accept(aggregators.get(group), argument.get(cell));
+        }
+
+        MappedTensor.Builder builder = MappedTensor.Builder.of(reducedType, groups.size());
+        int[][] reducedIds = new int[kept.length][];
+        for (int k = 0; k < kept.length; k++) {
+            reducedIds[k] = new int[argument.labelCount(kept[k])];
+            Arrays.fill(reducedIds[k], -1);
+        }
+        for (int group = 0; group < groups.size(); group++) {
+            for (int k = 0; k < kept.length; k++) {
+                int id = groups.labelId(group, k);
+                if (reducedIds[k][id] < 0)
+                    reducedIds[k][id] = builder.labelId(k, argument.label(kept[k], id));
+                keptIds[k] = reducedIds[k][id];
+            }
+            builder.cellByLabelIds(keptIds, aggregatedValue.applyAsDouble(aggregators.get(group)));
+        }
+        return builder.build();
+    }
+
+    /** Returns the indexes in the first type of the dimensions which are also in the second */
+    private static int[] commonDimensions(TensorType a, TensorType b) {
+        List<Integer> common = new ArrayList<>();
+        for (int i = 0; i < a.dimensions().size(); i++)
+            if (b.dimension(a.dimensions().get(i).name()).isPresent())
+                common.add(i);
+        return common.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int indexOf(String dimension, TensorType type) {
+        return type.indexOfDimension(dimension).get();
+    }
+
+    /**
+     * Sets the label ids of the dimensions of a joined tensor which are taken from one of the arguments,
+     * translating each label id of the argument to the id of that label in the joined tensor the first time it is seen.
+     * In common dimensions the labels of the arguments are the same, so they are taken from either.
+     */
+    private static class LabelTranslator {
+
+        private final MappedTensor argument;
+        private final MappedTensor.Builder builder;
+
+        /** The index in the argument of each dimension of the joined type, or -1 if the argument does not have it */
+        private final int[] argumentDimensions;
+
+        /** For each joined dimension taken from the argument, the joined label id of each argument label id, or -1 */
+        private final int[][] joinedIds;
+
+        LabelTranslator(MappedTensor argument, TensorType joinedType, MappedTensor.Builder builder) {
+            this.argument = argument;
+            this.builder = builder;
+            this.argumentDimensions = new int[joinedType.dimensions().size()];
+            this.joinedIds = new int[argumentDimensions.length][];
+            for (int d = 0; d < argumentDimensions.length; d++) {
+                argumentDimensions[d] = argument.type().indexOfDimension(joinedType.dimensions().get(d).name()).orElse(-1);
+                if (argumentDimensions[d] < 0) continue;
+                joinedIds[d] = new int[argument.labelCount(argumentDimensions[d])];
+                Arrays.fill(joinedIds[d], -1);
+            }
+        }
+
+        void setJoinedIds(int cell, int[] ids) {
+            for (int d = 0; d < argumentDimensions.length; d++) {
+                if (argumentDimensions[d] < 0) continue;
+                int id = argument.labelId(cell, argumentDimensions[d]);
+                if (joinedIds[d][id] < 0)
+                    joinedIds[d][id] = builder.labelId(d, argument.label(argumentDimensions[d], id));
+                ids[d] = joinedIds[d][id];
+            }
+        }
+
+    }
+
+}
@@ -2,14 +2,15 @@
 
 package com.yahoo.tensor;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
 
 /**
  * A mixed tensor type. This is class is currently suitable for serialization
@@ -20,6 +21,11 @@ import java.util.stream.Collectors;
  * think of mixed tensors as the mapped dimensions mapping to a
  * dense tensor. This dense tensor is called a dense subspace.
  *
+ * The labels of each mapped dimension are interned in a dictionary assigning them int ids,
+ * and the addresses of the dense subspaces are stored as packed arrays of label ids.
+ * The values of all the dense subspaces are stored in a single double array, in the order
+ * the subspaces were added.
+ *
  * @author lesters
  */
 public class MixedTensor implements Tensor {
@@ -27,16 +33,24 @@ public class MixedTensor implements Tensor {
     /** The dimension specification for this tensor */
     private final TensorType type;
 
-    /** The list of cells in the tensor */
-    private final ImmutableList<Cell> cells;
+    /** The positions of the mapped and indexed dimensions in the type */
+    private final Layout layout;
+
+    /** The labels of each mapped dimension */
+    private final LabelDictionary[] labels;
 
-    /** An index structure over the cell list */
-    private final Index index;
+    /** The sparse addresses of the dense subspaces, as label ids */
+    private final LabelIdIndex index;
 
-    private MixedTensor(TensorType type, ImmutableList<Cell> cells, Index index) {
+    /** The values of each dense subspace, in order of their entry number in the index */
+    private final double[] values;
+
+    private MixedTensor(TensorType type, Layout layout, LabelDictionary[] labels, LabelIdIndex index, double[] values) {
         this.type = type;
-        this.cells = ImmutableList.copyOf(cells);
+        this.layout = layout;
+        this.labels = labels;
         this.index = index;
+        this.values = values;
     }
 
     /** Returns the tensor type */
@@ -45,17 +59,22 @@ public class MixedTensor implements Tensor {
 
     /** Returns the size of the tensor measured in number of cells */
     @Override
-    public long size() { return cells.size(); }
+    public long size() { return values.length; }
 
-    /** Returns the value at the given address */
+    /** Returns the value at the given address, or NaN if there is no such cell in this */
     @Override
     public double get(TensorAddress address) {
-        long cellIndex = index.indexOf(address);
-        Cell cell = cells.get((int)cellIndex);
-        if (!address.equals(cell.getKey())) {
-            throw new IllegalStateException("Unable to find correct cell by direct index.");
+        if (address.size() != type.dimensions().size()) return Double.NaN;
+        int[] labelIds = new int[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            labelIds[i] = labels[i].idOf(address.label(layout.mappedDimensions[i]));
+            if (labelIds[i] < 0) return Double.NaN;
         }
-        return cell.getValue();
+        int subspace = index.indexOf(labelIds);
+        if (subspace < 0) return Double.NaN;
+        long denseOffset = layout.denseOffset(address);
+        if (denseOffset < 0) return Double.NaN;
+        return values[subspace * layout.denseSubspaceSize + (int)denseOffset];
     }
 
     /**
@@ -67,7 +86,7 @@ public class MixedTensor implements Tensor {
      */
     @Override
     public Iterator<Cell> cellIterator() {
-        return cells.iterator();
+        return new CellIterator();
     }
 
     /**
@@ -77,14 +96,15 @@ public class MixedTensor implements Tensor {
     @Override
     public Iterator<Double> valueIterator() {
         return new Iterator<Double>() {
-            Iterator<Cell> cellIterator = cellIterator();
+            int valueIndex = 0;
             @Override
             public boolean hasNext() {
-                return cellIterator.hasNext();
+                return valueIndex < values.length;
             }
             @Override
             public Double next() {
-                return cellIterator.next().getValue();
+                if ( ! hasNext()) throw new NoSuchElementException();
+                return values[valueIndex++];
             }
         };
     }
@@ -92,7 +112,8 @@ public class MixedTensor implements Tensor {
     @Override
     public Map<TensorAddress, Double> cells() {
         ImmutableMap.Builder<TensorAddress, Double> builder = new ImmutableMap.Builder<>();
-        for (Cell cell : cells) {
+        for (Iterator<Cell> i = cellIterator(); i.hasNext(); ) {
+            Cell cell = i.next();
             builder.put(cell.getKey(), cell.getValue());
         }
         return builder.build();
@@ -104,11 +125,17 @@ public class MixedTensor implements Tensor {
             throw new IllegalArgumentException("MixedTensor.withType: types are not compatible. Current type: '" +
                     this.type.toString() + "', requested type: '" + type.toString() + "'");
         }
-        return new MixedTensor(other, cells, index);
+        return new MixedTensor(other, layout, labels, index, values);
     }
 
+    /** Returns the same hash code as the map returned by cells() */
     @Override
-    public int hashCode() { return cells.hashCode(); }
+    public int hashCode() {
+        int hashCode = 0;
+        for (Iterator<Cell> i = cellIterator(); i.hasNext(); )
+            hashCode += i.next().hashCode();
+        return hashCode;
+    }
 
     @Override
     public String toString() { return Tensor.toStandardString(this); }
@@ -121,9 +148,33 @@ public class MixedTensor implements Tensor {
 
     /** Returns the size of dense subspaces */
     public long denseSubspaceSize() {
-        return index.denseSubspaceSize();
+        return layout.denseSubspaceSize;
     }
 
+    private class CellIterator implements Iterator<Cell> {
+
+        private int valueIndex = 0;
+
+        /** The labels of the current cell, where the mapped labels are set once per subspace */
+        private final String[] cellLabels = new String[type.dimensions().size()];
+
+        @Override
+        public boolean hasNext() { return valueIndex < values.length; }
+
+        @Override
+        public Cell next() {
+            if ( ! hasNext()) throw new NoSuchElementException();
+            int subspace = valueIndex / layout.denseSubspaceSize;
+            int denseOffset = valueIndex % layout.denseSubspaceSize;
+            if (denseOffset == 0) {
+                for (int i = 0; i < labels.length; i++)
+                    cellLabels[layout.mappedDimensions[i]] = labels[i].label(index.labelId(subspace, i));
+            }
+            layout.setIndexedLabels(denseOffset, cellLabels);
+            return new Cell(TensorAddress.of(cellLabels), values[valueIndex++]);
+        }
+
+    }
 
     /**
      * Base class for building mixed tensors.
@@ -172,64 +223,77 @@ public class MixedTensor implements Tensor {
 
     /**
      * Builder for mixed tensors with bound indexed dimensions.
+     * A builder cannot be used after build is called.
      */
     public static class BoundBuilder extends Builder {
 
-        /** For each sparse partial address, hold a dense subspace */
-        final private Map<TensorAddress, double[]> denseSubspaceMap = new HashMap<>();
-        final private Index.Builder indexBuilder;
-        final private Index index;
+        private final Layout layout;
+        private LabelDictionary[] labels;
+        private LabelIdIndex index;
+
+        /** The values of the dense subspaces added so far, in order of their entry number in the index */
+        private double[] values;
 
         private BoundBuilder(TensorType type) {
             super(type);
-            indexBuilder = new Index.Builder(type);
-            index = indexBuilder.index();
+            layout = new Layout(type);
+            labels = new LabelDictionary[layout.mappedDimensions.length];
+            for (int i = 0; i < labels.length; i++)
+                labels[i] = new LabelDictionary();
+            index = new LabelIdIndex(labels.length);
+            values = new double[layout.denseSubspaceSize];
         }
 
         public long denseSubspaceSize() {
-            return index.denseSubspaceSize();
+            return layout.denseSubspaceSize;
         }
 
-        private double[] denseSubspace(TensorAddress sparsePartial) {
-            if (!denseSubspaceMap.containsKey(sparsePartial)) {
-                denseSubspaceMap.put(sparsePartial, new double[(int)denseSubspaceSize()]);
-            }
-            return denseSubspaceMap.get(sparsePartial);
+        /** Returns the index of the start of the given dense subspace in values, adding the subspace if needed */
+        private int denseSubspaceStart(int[] labelIds) {
+            int subspace = index.add(labelIds);
+            if (index.size() * layout.denseSubspaceSize > values.length)
+                values = Arrays.copyOf(values, index.size() * 2 * layout.denseSubspaceSize);
+            return subspace * layout.denseSubspaceSize;
         }
 
         @Override
         public Tensor.Builder cell(TensorAddress address, double value) {
-            TensorAddress sparsePart = index.sparsePartialAddress(address);
-            long denseOffset = index.denseOffset(address);
-            double[] denseSubspace = denseSubspace(sparsePart);
-            denseSubspace[(int)denseOffset] = value;
+            if (address.size() != type.dimensions().size())
+                throw new IllegalArgumentException("Tensor type and address are not of same size.");
+            int[] labelIds = new int[labels.length];
+            for (int i = 0; i < labels.length; i++)
+                labelIds[i] = labels[i].add(address.label(layout.mappedDimensions[i]));
+            long denseOffset = layout.denseOffset(address);
+            if (denseOffset < 0)
+                throw new IllegalArgumentException(address + " is out of bounds in " + type);
+            int start = denseSubspaceStart(labelIds);
+            values[start + (int)denseOffset] = type.valueType().rounded(value);
             return this;
         }
 
+        /** Sets all the values of the dense subspace at the given address of the mapped dimensions */
         public Tensor.Builder block(TensorAddress sparsePart, double[] values) {
-            double[] denseSubspace = denseSubspace(sparsePart);
-            System.arraycopy(values, 0, denseSubspace, 0, (int)denseSubspaceSize());
+            int[] labelIds = new int[labels.length];
+            for (int i = 0; i < labels.length; i++)
+                labelIds[i] = labels[i].add(sparsePart.label(i));
+            int start = denseSubspaceStart(labelIds);
+            TensorType.Value valueType = type.valueType();
+            for (int i = 0; i < layout.denseSubspaceSize; i++)
+                this.values[start + i] = valueType.rounded(values[i]);
             return this;
         }
 
         @Override
         public MixedTensor build() {
-            long count = 0;
-            ImmutableList.Builder<Cell> builder = new ImmutableList.Builder<>();
-
-            for (Map.Entry<TensorAddress, double[]> entry : denseSubspaceMap.entrySet()) {
-                TensorAddress sparsePart = entry.getKey();
-                indexBuilder.put(sparsePart, count);
-
-                double[] denseSubspace = entry.getValue();
-                for (long offset = 0; offset < denseSubspace.length; ++offset) {
-                    TensorAddress cellAddress = index.addressOf(sparsePart, offset);
-                    double value = denseSubspace[(int)offset];
-                    builder.add(new Cell(cellAddress, value));
-                    count++;
-                }
-            }
-            return new MixedTensor(type, builder.build(), indexBuilder.build());
+            for (LabelDictionary dictionary : labels)
+                dictionary.trim();
+            index.trim();
+            MixedTensor tensor = new MixedTensor(type, layout, labels, index,
+                                                 Arrays.copyOf(values, index.size() * layout.denseSubspaceSize));
+            labels = null; // prevent further modification
+            index = null;
+            values = null;
+            return tensor;
         }
 
     }
@@ -250,7 +314,7 @@ public class MixedTensor implements Tensor {
 
         private UnboundBuilder(TensorType type) {
             super(type);
-            cells = new HashMap<>();
+            cells = new LinkedHashMap<>();
             dimensionBounds = new long[type.dimensions().size()];
         }
 
@@ -281,7 +345,7 @@ public class MixedTensor implements Tensor {
         }
 
         public TensorType createBoundType() {
-            TensorType.Builder typeBuilder = new TensorType.Builder();
+            TensorType.Builder typeBuilder = new TensorType.Builder(type.valueType());
             for (int i = 0; i < type.dimensions().size(); ++i) {
                 TensorType.Dimension dimension = type.dimensions().get(i);
                 if (!dimension.isIndexed()) {
@@ -297,143 +361,60 @@ public class MixedTensor implements Tensor {
     }
 
     /**
-     * An immutable index into a list of cells.
-     * Contains additional information required
-     * for handling mixed tensor addresses.
+     * The positions of the mapped and indexed dimensions of a type, and the sizes of the indexed dimensions.
      * Assumes indexed dimensions are bound.
      */
-    private static class Index {
-
-        private final TensorType type;
-        private final TensorType sparseType;
-        private final TensorType denseType;
-        private final List<TensorType.Dimension> mappedDimensions;
-        private final List<TensorType.Dimension> indexedDimensions;
-
-        private ImmutableMap<TensorAddress, Long> sparseMap;
-        private long denseSubspaceSize = -1;
-
-        private Index(TensorType type) {
-            this.type = type;
-            this.mappedDimensions = type.dimensions().stream().filter(d -> !d.isIndexed()).collect(Collectors.toList());
-            this.indexedDimensions = type.dimensions().stream().filter(d -> d.isIndexed()).collect(Collectors.toList());
-            this.sparseType = createPartialType(mappedDimensions);
-            this.denseType = createPartialType(indexedDimensions);
-        }
-
-        public long indexOf(TensorAddress address) {
-            TensorAddress sparsePart = sparsePartialAddress(address);
-            if ( ! sparseMap.containsKey(sparsePart)) {
-                throw new IllegalArgumentException("Address not found");
-            }
-            long base = sparseMap.get(sparsePart);
-            long offset = denseOffset(address);
-            return base + offset;
-        }
-
-        public static class Builder {
-
-            private final Index index;
-            private final ImmutableMap.Builder<TensorAddress, Long> builder;
-
-            public Builder(TensorType type) {
-                index = new Index(type);
-                builder = new ImmutableMap.Builder<>();
-            }
+    private static class Layout {
 
-            public void put(TensorAddress address, long index) {
-                builder.put(address, index);
-            }
+        /** The position in the type of each mapped dimension */
+        private final int[] mappedDimensions;
 
-            public Index build() {
-                index.sparseMap = builder.build();
-                return index;
-            }
+        /** The position in the type of each indexed dimension */
+        private final int[] indexedDimensions;
 
-            public Index index() {
-                return index;
-            }
-        }
+        /** The size of each indexed dimension */
+        private final long[] indexedSizes;
 
-        public long denseSubspaceSize() {
-            if (denseSubspaceSize == -1) {
-                denseSubspaceSize = 1;
-                for (int i = 0; i < type.dimensions().size(); ++i) {
-                    TensorType.Dimension dimension = type.dimensions().get(i);
-                    if (dimension.isIndexed()) {
-                        denseSubspaceSize *= dimension.size().orElseThrow(() ->
-                                new IllegalArgumentException("Unknown size of indexed dimension."));
-                    }
-                }
-            }
-            return denseSubspaceSize;
-        }
+        private final int denseSubspaceSize;
 
-        private TensorAddress sparsePartialAddress(TensorAddress address) {
-            if (type.dimensions().size() != address.size()) {
-                throw new IllegalArgumentException("Tensor type and address are not of same size.");
-            }
-            TensorAddress.Builder builder = new TensorAddress.Builder(sparseType);
-            for (int i = 0; i < type.dimensions().size(); ++i) {
-                TensorType.Dimension dimension = type.dimensions().get(i);
-                if (!dimension.isIndexed()) {
-                    builder.add(dimension.name(), address.label(i));
-                }
+        private Layout(TensorType type) {
+            List<TensorType.Dimension> dimensions = type.dimensions();
+            mappedDimensions = IntStream.range(0, dimensions.size()).filter(i -> ! dimensions.get(i).isIndexed()).toArray();
+            indexedDimensions = IntStream.range(0, dimensions.size()).filter(i -> dimensions.get(i).isIndexed()).toArray();
+            indexedSizes = new long[indexedDimensions.length];
+            long denseSubspaceSize = 1;
+            for (int i = 0; i < indexedDimensions.length; i++) {
+                indexedSizes[i] = dimensions.get(indexedDimensions[i]).size().orElseThrow(() ->
+                        new IllegalArgumentException("Unknown size of indexed dimension."));
+                denseSubspaceSize *= indexedSizes[i];
             }
-            return builder.build();
+            if (denseSubspaceSize > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Dense subspaces of " + type + " are too large");
+            this.denseSubspaceSize = (int)denseSubspaceSize;
         }
 
+        /**
+         * Returns the offset in the dense subspace of the given address, where indexes
+         * of later dimensions are inner, or -1 if the address is out of bounds
+         */
         private long denseOffset(TensorAddress address) {
             long innerSize = 1;
             long offset = 0;
-            for (int i = type.dimensions().size(); --i >= 0; ) {
-                TensorType.Dimension dimension = type.dimensions().get(i);
-                if (dimension.isIndexed()) {
-                    long label = address.numericLabel(i);
-                    offset += label * innerSize;
-                    innerSize *= dimension.size().orElseThrow(() ->
-                            new IllegalArgumentException("Unknown size of indexed dimension."));
-                }
+            for (int i = indexedDimensions.length; --i >= 0; ) {
+                long label = address.numericLabel(indexedDimensions[i]);
+                if (label < 0 || label >= indexedSizes[i]) return -1;
+                offset += label * innerSize;
+                innerSize *= indexedSizes[i];
             }
             return offset;
         }
 
-        private TensorAddress denseOffsetToAddress(long denseOffset) {
-            if (denseOffset < 0 || denseOffset > denseSubspaceSize) {
-                throw new IllegalArgumentException("Offset out of bounds");
-            }
-
-            long restSize = denseOffset;
-            long innerSize = denseSubspaceSize;
-            long[] labels = new long[indexedDimensions.size()];
-
-            for (int i = 0; i < labels.length; ++i) {
-                TensorType.Dimension dimension = indexedDimensions.get(i);
-                long dimensionSize = dimension.size().orElseThrow(() ->
-                        new IllegalArgumentException("Unknown size of indexed dimension."));
-
-                innerSize /= dimensionSize;
-                labels[i] = restSize / innerSize;
-                restSize %= innerSize;
-            }
-            return TensorAddress.of(labels);
-        }
-
-        private TensorAddress addressOf(TensorAddress sparsePart, long denseOffset) {
-            TensorAddress densePart = denseOffsetToAddress(denseOffset);
-            String[] labels = new String[type.dimensions().size()];
-            int mappedIndex = 0;
-            int indexedIndex = 0;
-            for (TensorType.Dimension d : type.dimensions()) {
-                if (d.isIndexed()) {
-                    labels[mappedIndex + indexedIndex] = densePart.label(indexedIndex);
-                    indexedIndex++;
-                } else {
-                    labels[mappedIndex + indexedIndex] = sparsePart.label(mappedIndex);
-                    mappedIndex++;
-                }
+        /** Sets the labels of the indexed dimensions at the given dense subspace offset in the given labels */
+        private void setIndexedLabels(long denseOffset, String[] labels) {
+            for (int i = indexedDimensions.length; --i >= 0; ) {
+                labels[indexedDimensions[i]] = String.valueOf(denseOffset % indexedSizes[i]);
+                denseOffset /= indexedSizes[i];
             }
-            return TensorAddress.of(labels);
         }
 
     }
@@ -232,6 +232,8 @@ public interface Tensor {
     static String toStandardString(Tensor tensor) {
         if (tensor.isEmpty() && ! tensor.type().dimensions().isEmpty()) // explicitly output type TODO: Never do that?
             return tensor.type() + ":" + contentToString(tensor);
+        else if (tensor.type().valueType() != TensorType.Value.DOUBLE) // output the value type
+            return tensor.type() + ":" + contentToString(tensor);
         else
             return contentToString(tensor);
     }
@@ -4,6 +4,7 @@ package com.yahoo.tensor;
 import com.google.common.collect.ImmutableList;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -15,31 +16,107 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
- * A tensor type with its dimensions. This is immutable.
+ * A tensor type with its dimensions and the type of its cell values. This is immutable.
  * <p>
  * A dimension can be indexed (bound or unbound) or mapped.
+ * <p>
+ * Cell values are doubles unless a narrower value type is given, as in <code>tensor&lt;float&gt;(x[256])</code>.
+ * Types without dimensions always have double values.
  *
  * @author geirst
  * @author bratseth
  */
 public class TensorType {
 
+    /** The types of cell values a tensor may have, from the largest to the smallest */
+    public enum Value {
+
+        /** 64 bit floating point values */
+        DOUBLE("double"),
+
+        /** 32 bit floating point values */
+        FLOAT("float"),
+
+        /** 16 bit floating point values with the exponent range of float and 8 bits of precision */
+        BFLOAT16("bfloat16"),
+
+        /** 8 bit signed integer values */
+        INT8("int8");
+
+        private final String id;
+
+        Value(String id) { this.id = id; }
+
+        /** Returns the name of this value type as used in type specs */
+        public String id() { return id; }
+
+        /** Returns whether all values of the given type can be represented by this type */
+        public boolean isEqualOrLargerThan(Value other) {
+            return this.ordinal() <= other.ordinal();
+        }
+
+        /**
+         * Returns the value of this type which is closest to the given value.
+         * Values outside the range of int8 are clamped to the nearest value in the range, and NaN becomes 0.
+         */
+        public double rounded(double value) {
+            switch (this) {
+                case DOUBLE : return value;
+                case FLOAT : return (float)value;
+                case BFLOAT16 : return bfloat16Rounded((float)value);
+                case INT8 : return Double.isNaN(value) ? 0 : Math.max(-128, Math.min(127, Math.rint(value)));
+                default : throw new IllegalStateException("Unknown value type " + this);
+            }
+        }
+
+        /** Rounds to the nearest bfloat16 value, ties to even, by dropping the 16 lowest bits of the float */
+        private static float bfloat16Rounded(float value) {
+            if (Float.isNaN(value)) return value;
+            int bits = Float.floatToRawIntBits(value);
+            bits += 0x7fff + ((bits >>> 16) & 1);
+            return Float.intBitsToFloat(bits & 0xffff0000);
+        }
+
+        /** Returns the largest of the two given value types */
+        public static Value largestOf(Value value1, Value value2) {
+            return value1.isEqualOrLargerThan(value2) ? value1 : value2;
+        }
+
+        /** Returns the value type having the given id */
+        public static Value fromId(String id) {
+            for (Value value : values())
+                if (value.id.equals(id)) return value;
+            throw new IllegalArgumentException("Unknown tensor value type '" + id + "'. Legal values are " +
+                                               Arrays.stream(values()).map(Value::id).collect(Collectors.joining(", ")));
+        }
+
+        @Override
+        public String toString() { return id; }
+
+    }
+
     /** The empty tensor type - which is the same as a double */
-    public static final TensorType empty = new TensorType(Collections.emptyList());
+    public static final TensorType empty = new TensorType(Value.DOUBLE, Collections.emptyList());
+
+    /** The type of the cell values of this */
+    private final Value valueType;
 
     /** Sorted list of the dimensions of this */
     private final ImmutableList<Dimension> dimensions;
 
-    private TensorType(Collection<Dimension> dimensions) {
+    private TensorType(Value valueType, Collection<Dimension> dimensions) {
         List<Dimension> dimensionList = new ArrayList<>(dimensions);
         Collections.sort(dimensionList);
+        this.valueType = dimensionList.isEmpty() ? Value.DOUBLE : valueType;
         this.dimensions = ImmutableList.copyOf(dimensionList);
     }
 
     /**
      * Returns a tensor type instance from a string on the format
-     * <code>tensor(dimension1, dimension2, ...)</code>
-     * where each dimension is either
+     * <code>tensor(dimension1, dimension2, ...)</code>, or
+     * <code>tensor&lt;value-type&gt;(dimension1, dimension2, ...)</code>
+     * where the value type is one of <code>double</code> (default), <code>float</code>, <code>bfloat16</code>
+     * or <code>int8</code>, and each dimension is either
      * <ul>
      *     <li><code>dimension-name[]</code> - an unbound indexed dimension
      *     <li><code>dimension-name[int]</code> - an bound indexed dimension
@@ -51,6 +128,24 @@ public class TensorType {
         return TensorTypeParser.fromSpec(specString);
     }
 
+    /**
+     * Returns the value type of the result of computations over tensors of the given types:
+     * The largest value type of the given types having dimensions, but at least float, as computing in
+     * the smaller types would lose precision. If no type has dimensions, this is double.
+     */
+    public static Value combinedValueType(TensorType ... types) {
+        Value combined = null;
+        for (TensorType type : types) {
+            if (type.rank() == 0) continue; // scalars do not decide the value type
+            combined = combined == null ? type.valueType() : Value.largestOf(combined, type.valueType());
+        }
+        if (combined == null) return Value.DOUBLE;
+        return Value.largestOf(combined, Value.FLOAT);
+    }
+
+    /** Returns the type of the cell values of this */
+    public Value valueType() { return valueType; }
+
     /** Returns the number of dimensions of this: dimensions().size() */
     public int rank() { return dimensions.size(); }
 
@@ -111,6 +206,7 @@ public class TensorType {
     }
 
     private boolean isConvertibleOrAssignableTo(TensorType generalization, boolean convertible, boolean considerName) {
+        if ( ! generalization.valueType().isEqualOrLargerThan(this.valueType())) return false; // narrowing
         if (generalization.dimensions().size() != this.dimensions().size()) return false;
         for (int i = 0; i < generalization.dimensions().size(); i++) {
             Dimension thisDimension = this.dimensions().get(i);
@@ -132,14 +228,15 @@ public class TensorType {
 
     @Override
     public String toString() {
-        return "tensor(" + dimensions.stream().map(Dimension::toString).collect(Collectors.joining(",")) + ")";
+        return "tensor" + (valueType == Value.DOUBLE ? "" : "<" + valueType.id() + ">") +
+               "(" + dimensions.stream().map(Dimension::toString).collect(Collectors.joining(",")) + ")";
     }
 
     @Override
     public boolean equals(Object other) {
         if (this == other) return true;
         if (other == null || getClass() != other.getClass()) return false;
-        return dimensions.equals(((TensorType)other).dimensions);
+        return valueType == ((TensorType)other).valueType && dimensions.equals(((TensorType)other).dimensions);
     }
 
     /** Returns whether the given type has the same dimension names as this */
@@ -155,12 +252,13 @@ public class TensorType {
      * A dimensionwise generalization exists if the two tensors share the same dimensions, and each dimension
      * is compatible.
      * For example, the dimensionwise generalization of tensor(x[],y[5]) and tensor(x[5],y[]) is tensor(x[],y[])
+     * The value type of the generalization is the largest of the two value types.
      */
     public Optional<TensorType> dimensionwiseGeneralizationWith(TensorType other) {
         if (this.equals(other)) return Optional.of(this); // shortcut
         if (this.dimensions.size() != other.dimensions.size()) return Optional.empty();
 
-        Builder b = new Builder();
+        Builder b = new Builder(Value.largestOf(this.valueType, other.valueType));
         for (int i = 0; i < dimensions.size(); i++) {
             Dimension thisDim = this.dimensions().get(i);
             Dimension otherDim = other.dimensions().get(i);
@@ -193,7 +291,7 @@ public class TensorType {
 
     @Override
     public int hashCode() {
-        return dimensions.hashCode();
+        return 31 * dimensions.hashCode() + valueType.hashCode();
     }
 
     /**
@@ -373,8 +471,16 @@ public class TensorType {
 
         private final Map<String, Dimension> dimensions = new LinkedHashMap<>();
 
-        /** Creates an empty builder */
+        private final Value valueType;
+
+        /** Creates an empty builder of a type with double values */
         public Builder() {
+            this(Value.DOUBLE);
+        }
+
+        /** Creates an empty builder of a type with the given value type */
+        public Builder(Value valueType) {
+            this.valueType = valueType;
         }
 
         /**
@@ -383,16 +489,26 @@ public class TensorType {
          * If the same dimension is indexed with different size restrictions the largest size will be used.
          * If it is size restricted in one argument but not the other it will not be size restricted.
          * If it is indexed in one and mapped in the other it will become mapped.
+         * The value type will be the {@link TensorType#combinedValueType combined value type} of the given types.
          */
         public Builder(TensorType ... types) {
+            this.valueType = combinedValueType(types);
             for (TensorType type : types)
                 addDimensionsOf(type);
         }
 
         /**
-         * Creates a builder from the given dimensions.
+         * Creates a builder from the given dimensions, having double values.
          */
         public Builder(Iterable<Dimension> dimensions) {
+            this(Value.DOUBLE, dimensions);
+        }
+
+        /**
+         * Creates a builder from the given dimensions, having the given value type.
+         */
+        public Builder(Value valueType, Iterable<Dimension> dimensions) {
+            this.valueType = valueType;
             for (TensorType.Dimension dimension : dimensions) {
                 dimension(dimension);
             }
@@ -490,8 +606,11 @@ public class TensorType {
             return this;
         }
 
+        /** Returns the value type of the type this is building */
+        public Value valueType() { return valueType; }
+
         public TensorType build() {
-            return new TensorType(dimensions.values());
+            return new TensorType(valueType, dimensions.values());
         }
 
     }
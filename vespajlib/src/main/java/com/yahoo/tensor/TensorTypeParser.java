@@ -17,19 +17,36 @@ public class TensorTypeParser {
     private final static String START_STRING = "tensor(";
     private final static String END_STRING = ")";
 
+    private static final Pattern valueTypePattern = Pattern.compile("tensor<(\\w+)>\\(.*");
     private static final Pattern indexedPattern = Pattern.compile("(\\w+)\\[(\\d*)\\]");
     private static final Pattern mappedPattern = Pattern.compile("(\\w+)\\{\\}");
 
     public static TensorType fromSpec(String specString) {
-        return new TensorType.Builder(dimensionsFromSpec(specString)).build();
+        return new TensorType.Builder(valueTypeFromSpec(specString), dimensionsFromSpec(specString)).build();
+    }
+
+    /** Returns the value type given in a type spec on the form <code>tensor&lt;value-type&gt;(...)</code>, or double */
+    public static TensorType.Value valueTypeFromSpec(String specString) {
+        Matcher matcher = valueTypePattern.matcher(specString);
+        if ( ! matcher.matches()) return TensorType.Value.DOUBLE;
+        try {
+            return TensorType.Value.fromId(matcher.group(1));
+        }
+        catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Failed parsing type spec '" + specString + "': " + e.getMessage());
+        }
     }
 
     public static List<TensorType.Dimension> dimensionsFromSpec(String specString) {
-        if ( ! specString.startsWith(START_STRING) || !specString.endsWith(END_STRING)) {
+        String withoutValueType = specString;
+        Matcher valueTypeMatcher = valueTypePattern.matcher(specString);
+        if (valueTypeMatcher.matches())
+            withoutValueType = "tensor" + specString.substring(valueTypeMatcher.end(1) + 1);
+        if ( ! withoutValueType.startsWith(START_STRING) || !withoutValueType.endsWith(END_STRING)) {
             throw new IllegalArgumentException("Tensor type spec must start with '" + START_STRING + "'" +
                                                " and end with '" + END_STRING + "', but was '" + specString + "'");
         }
-        String dimensionsSpec = specString.substring(START_STRING.length(), specString.length() - END_STRING.length());
+        String dimensionsSpec = withoutValueType.substring(START_STRING.length(), withoutValueType.length() - END_STRING.length());
         if (dimensionsSpec.isEmpty()) return Collections.emptyList();
 
         List<TensorType.Dimension> dimensions = new ArrayList<>();
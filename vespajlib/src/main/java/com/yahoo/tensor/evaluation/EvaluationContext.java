@@ -13,4 +13,7 @@ public interface EvaluationContext<NAMETYPE extends TypeContext.Name> extends Ty
     /** Returns the tensor bound to this name, or null if none */
     Tensor getTensor(String name);
 
+    /** Returns whether and how large tensor operations should be evaluated in parallel. This default is sequential. */
+    default ParallelEvaluation parallelEvaluation() { return ParallelEvaluation.sequential(); }
+
 }
@@ -12,9 +12,12 @@ import java.util.HashMap;
 public class MapEvaluationContext implements EvaluationContext<TypeContext.Name> {
 
     private final java.util.Map<String, Tensor> bindings = new HashMap<>();
+    private ParallelEvaluation parallelEvaluation = ParallelEvaluation.sequential();
 
     public void put(String name, Tensor tensor) { bindings.put(name, tensor); }
 
+    public void setParallelEvaluation(ParallelEvaluation parallelEvaluation) { this.parallelEvaluation = parallelEvaluation; }
+
     @Override
     public TensorType getType(String name) {
         return getType(new Name(name));
@@ -30,4 +33,7 @@ public class MapEvaluationContext implements EvaluationContext<TypeContext.Name>
     @Override
     public Tensor getTensor(String name) { return bindings.get(name); }
 
+    @Override
+    public ParallelEvaluation parallelEvaluation() { return parallelEvaluation; }
+
 }
@@ -0,0 +1,114 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.evaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.IntConsumer;
+
+/**
+ * Settings for evaluating large dense tensor operations in parallel, returned from
+ * {@link EvaluationContext#parallelEvaluation}.
+ * <p>
+ * When parallel evaluation is enabled, join, reduce and fused reduce-join of indexed tensors which visit at least
+ * twice the minimum cells per task are split into contiguous ranges of the cells of the result, that is, along
+ * the outermost dimensions, and the ranges are evaluated as tasks in a fork/join pool shared by all evaluations.
+ * Each evaluation uses at most maxConcurrency tasks, one of which runs in the calling thread.
+ * Since each result cell is computed by one task, in the same order as in sequential evaluation,
+ * results are identical to those of sequential evaluation.
+ * <p>
+ * Functions passed to tensor operations (such as join combinators) must be thread safe when this is enabled.
+ * Evaluation is sequential by default.
+ */
+public final class ParallelEvaluation {
+
+    /** The default minimum number of cells to visit in each task */
+    public static final long defaultMinCellsPerTask = 1 << 16;
+
+    private static final ParallelEvaluation sequential = new ParallelEvaluation(1, defaultMinCellsPerTask);
+
+    private final int maxConcurrency;
+    private final long minCellsPerTask;
+
+    private ParallelEvaluation(int maxConcurrency, long minCellsPerTask) {
+        if (maxConcurrency < 1)
+            throw new IllegalArgumentException("Max concurrency must be at least 1, but was " + maxConcurrency);
+        if (minCellsPerTask < 1)
+            throw new IllegalArgumentException("Min cells per task must be at least 1, but was " + minCellsPerTask);
+        this.maxConcurrency = maxConcurrency;
+        this.minCellsPerTask = minCellsPerTask;
+    }
+
+    /** Returns the setting where all operations are evaluated in the calling thread */
+    public static ParallelEvaluation sequential() { return sequential; }
+
+    /** Returns a setting where each operation is split over at most the given number of concurrent tasks */
+    public static ParallelEvaluation withMaxConcurrency(int maxConcurrency) {
+        return new ParallelEvaluation(maxConcurrency, defaultMinCellsPerTask);
+    }
+
+    /** Returns a copy of this where each task visits at least the given number of cells */
+    public ParallelEvaluation withMinCellsPerTask(long minCellsPerTask) {
+        return new ParallelEvaluation(maxConcurrency, minCellsPerTask);
+    }
+
+    /** Returns the max number of tasks a single operation is split into. 1 means sequential evaluation. */
+    public int maxConcurrency() { return maxConcurrency; }
+
+    /** Returns the minimum number of cells visited by each task */
+    public long minCellsPerTask() { return minCellsPerTask; }
+
+    /**
+     * Returns the number of tasks to split an operation into
+     *
+     * @param cellsToVisit the number of cells visited by the operation, which is a measure of its cost
+     * @param units the number of units the operation can be split into
+     */
+    public int taskCount(long cellsToVisit, long units) {
+        if (maxConcurrency == 1) return 1;
+        return (int)Math.max(1, Math.min(maxConcurrency, Math.min(cellsToVisit / minCellsPerTask, units)));
+    }
+
+    /**
+     * Runs the given task for each task number from 0 to taskCount, and returns when all have completed.
+     * Task 0 is run in the calling thread, the others in the shared fork/join pool.
+     */
+    public void run(int taskCount, IntConsumer task) {
+        if (taskCount == 1) {
+            task.accept(0);
+            return;
+        }
+
+        List<ForkJoinTask<?>> forked = new ArrayList<>(taskCount - 1);
+        for (int i = 1; i < taskCount; i++) {
+            int taskNumber = i;
+            forked.add(SharedPool.instance.submit(() -> task.accept(taskNumber)));
+        }
+        task.accept(0);
+        for (ForkJoinTask<?> forkedTask : forked)
+            forkedTask.join();
+    }
+
+    @Override
+    public String toString() {
+        if (maxConcurrency == 1) return "sequential evaluation";
+        return "parallel evaluation with max concurrency " + maxConcurrency + " and min " + minCellsPerTask + " cells per task";
+    }
+
+    /** Holds the pool shared by all parallel evaluations, created when first used */
+    private static class SharedPool {
+
+        static final ForkJoinPool instance = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                                                              SharedPool::newThread, null, false);
+
+        private static ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("tensor-evaluation-" + thread.getPoolIndex());
+            return thread;
+        }
+
+    }
+
+}
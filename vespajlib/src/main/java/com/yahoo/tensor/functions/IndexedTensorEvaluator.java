@@ -0,0 +1,293 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.functions;
+
+import com.yahoo.tensor.DimensionSizes;
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.ParallelEvaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Evaluation of join, reduce and fused reduce-join directly over the cell values of indexed tensors.
+ *
+ * Each operation precomputes, for every dimension it iterates over, the size of that dimension and its
+ * stride in the cell layout of each argument (0 if the argument does not have the dimension).
+ * Cells are then visited by offset arithmetic only, without creating addresses, cells or boxed values.
+ * Cells are visited in the same order as the general implementations, so results are identical.
+ * Large operations may be split into ranges of result cells which are evaluated in parallel,
+ * see {@link ParallelEvaluation}.
+ *
+ * All arguments must be non-empty.
+ */
+class IndexedTensorEvaluator {
+
+    private IndexedTensorEvaluator() {}
+
+    /** Returns join(a, b, combinator) */
+    static Tensor join(IndexedTensor a, IndexedTensor b, TensorType joinedType, DoubleBinaryOperator combinator,
+                       ParallelEvaluation parallelEvaluation) {
+        Dimensions space = new Dimensions(joinedType.dimensions(), a, b);
+        IndexedTensor.BoundBuilder builder = builder(joinedType, space);
+
+        if (space.rank() == 0) {
+            builder.cellByDirectIndex(0, combinator.applyAsDouble(a.get(0), b.get(0)));
+            return builder.build();
+        }
+
+        long size = space.size();
+        inRanges(size, size, parallelEvaluation, (from, to) -> join(a, b, combinator, space, builder, from, to));
+        return builder.build();
+    }
+
+    /** Joins the cells from the first (inclusive) to the last (exclusive) cell index of the joined space */
+    private static void join(IndexedTensor a, IndexedTensor b, DoubleBinaryOperator combinator,
+                             Dimensions space, IndexedTensor.BoundBuilder builder, long from, long to) {
+        int last = space.rank() - 1;
+        long innerSize = space.sizes[last];
+        long innerStrideA = space.stridesA[last];
+        long innerStrideB = space.stridesB[last];
+        long[] indexes = space.indexesOf(from);
+        long joinedIndex = from;
+        while (joinedIndex < to) {
+            long offsetA = space.offset(indexes, space.stridesA, space.rank());
+            long offsetB = space.offset(indexes, space.stridesB, space.rank());
+            long innerEnd = Math.min(innerSize - indexes[last], to - joinedIndex);
+            for (long i = 0; i < innerEnd; i++, offsetA += innerStrideA, offsetB += innerStrideB)
+                builder.cellByDirectIndex(joinedIndex++, combinator.applyAsDouble(a.get(offsetA), b.get(offsetB)));
+            indexes[last] = 0;
+            space.next(indexes, last);
+        }
+    }
+
+    /** Returns reduce(argument, aggregator, dimensions) */
+    static Tensor reduce(IndexedTensor argument, List<String> dimensions, Reduce.Aggregator aggregator,
+                         ParallelEvaluation parallelEvaluation) {
+        TensorType reducedType = Reduce.outputType(argument.type(), dimensions);
+        Dimensions kept = new Dimensions(reducedType.dimensions(), argument, null);
+        Dimensions reduced = new Dimensions(removed(argument.type(), reducedType), argument, null);
+        IndexedTensor.BoundBuilder builder = builder(reducedType, kept);
+
+        inRanges(argument.size(), kept.size(), parallelEvaluation,
+                 (from, to) -> reduce(argument, aggregator, kept, reduced, builder, from, to));
+        return builder.build();
+    }
+
+    /** Reduces into the cells from the first (inclusive) to the last (exclusive) cell index of the kept space */
+    private static void reduce(IndexedTensor argument, Reduce.Aggregator aggregator, Dimensions kept, Dimensions reduced,
+                               IndexedTensor.BoundBuilder builder, long from, long to) {
+        Reduce.ValueAggregator valueAggregator = Reduce.ValueAggregator.ofType(aggregator);
+        int last = reduced.rank() - 1;
+        long innerSize = last < 0 ? 1 : reduced.sizes[last];
+        long innerStride = last < 0 ? 0 : reduced.stridesA[last];
+        long[] keptIndexes = kept.indexesOf(from);
+        long[] reducedIndexes = new long[reduced.rank()];
+        for (long reducedIndex = from; reducedIndex < to; reducedIndex++, kept.next(keptIndexes, kept.rank())) {
+            long keptOffset = kept.offset(keptIndexes, kept.stridesA, kept.rank());
+            if (aggregator == Reduce.Aggregator.sum) { // avoid the aggregator indirection in the most common case
+                double sum = 0.0;
+                do {
+                    long offset = keptOffset + reduced.offset(reducedIndexes, reduced.stridesA, last);
+                    for (long i = 0; i < innerSize; i++, offset += innerStride)
+                        sum += argument.get(offset);
+                } while (reduced.next(reducedIndexes, last));
+                builder.cellByDirectIndex(reducedIndex, sum);
+            }
+            else {
+                valueAggregator.reset();
+                do {
+                    long offset = keptOffset + reduced.offset(reducedIndexes, reduced.stridesA, last);
+                    for (long i = 0; i < innerSize; i++, offset += innerStride)
+                        valueAggregator.aggregate(argument.get(offset));
+                } while (reduced.next(reducedIndexes, last));
+                builder.cellByDirectIndex(reducedIndex, valueAggregator.aggregatedValue());
+            }
+        }
+    }
+
+    /**
+     * Returns reduce(join(a, b, combinator), aggregator, dimensions) without creating the joined tensor.
+     * This covers dot products (reducing over the single dimension of two vectors),
+     * matrix-vector and matrix-matrix products.
+     */
+    static Tensor reduceJoin(IndexedTensor a, IndexedTensor b, TensorType joinedType, DoubleBinaryOperator combinator,
+                             Reduce.Aggregator aggregator, List<String> dimensions,
+                             ParallelEvaluation parallelEvaluation) {
+        TensorType reducedType = Reduce.outputType(joinedType, dimensions);
+        Dimensions kept = new Dimensions(reducedType.dimensions(), a, b);
+        Dimensions reduced = new Dimensions(removed(joinedType, reducedType), a, b);
+        IndexedTensor.BoundBuilder builder = builder(reducedType, kept);
+
+        inRanges(kept.size() * reduced.size(), kept.size(), parallelEvaluation,
+                 (from, to) -> reduceJoin(a, b, combinator, aggregator, kept, reduced, builder, from, to));
+        return builder.build();
+    }
+
+    /** Reduces the joined cells into the cells from the first (inclusive) to the last (exclusive) of the kept space */
+    private static void reduceJoin(IndexedTensor a, IndexedTensor b, DoubleBinaryOperator combinator,
+                                   Reduce.Aggregator aggregator, Dimensions kept, Dimensions reduced,
+                                   IndexedTensor.BoundBuilder builder, long from, long to) {
+        Reduce.ValueAggregator valueAggregator = Reduce.ValueAggregator.ofType(aggregator);
+        int last = reduced.rank() - 1;
+        long innerSize = last < 0 ? 1 : reduced.sizes[last];
+        long innerStrideA = last < 0 ? 0 : reduced.stridesA[last];
+        long innerStrideB = last < 0 ? 0 : reduced.stridesB[last];
+        long[] keptIndexes = kept.indexesOf(from);
+        long[] reducedIndexes = new long[reduced.rank()];
+        for (long reducedIndex = from; reducedIndex < to; reducedIndex++, kept.next(keptIndexes, kept.rank())) {
+            long keptOffsetA = kept.offset(keptIndexes, kept.stridesA, kept.rank());
+            long keptOffsetB = kept.offset(keptIndexes, kept.stridesB, kept.rank());
+            if (aggregator == Reduce.Aggregator.sum) { // avoid the aggregator indirection in the most common case
+                double sum = 0.0;
+                do {
+                    long offsetA = keptOffsetA + reduced.offset(reducedIndexes, reduced.stridesA, last);
+                    long offsetB = keptOffsetB + reduced.offset(reducedIndexes, reduced.stridesB, last);
+                    for (long i = 0; i < innerSize; i++, offsetA += innerStrideA, offsetB += innerStrideB)
+                        sum += combinator.applyAsDouble(a.get(offsetA), b.get(offsetB));
+                } while (reduced.next(reducedIndexes, last));
+                builder.cellByDirectIndex(reducedIndex, sum);
+            }
+            else {
+                valueAggregator.reset();
+                do {
+                    long offsetA = keptOffsetA + reduced.offset(reducedIndexes, reduced.stridesA, last);
+                    long offsetB = keptOffsetB + reduced.offset(reducedIndexes, reduced.stridesB, last);
+                    for (long i = 0; i < innerSize; i++, offsetA += innerStrideA, offsetB += innerStrideB)
+                        valueAggregator.aggregate(combinator.applyAsDouble(a.get(offsetA), b.get(offsetB)));
+                } while (reduced.next(reducedIndexes, last));
+                builder.cellByDirectIndex(reducedIndex, valueAggregator.aggregatedValue());
+            }
+        }
+    }
+
+    /**
+     * Evaluates the cells of a result of the given size by the given evaluator, either in one range or,
+     * if parallel evaluation is enabled and there is enough work, in contiguous ranges in parallel.
+     * As each result cell is evaluated by a single evaluator, the result does not depend on the number of ranges.
+     *
+     * @param cellsToVisit the number of cells visited to evaluate all the result cells
+     * @param size the number of cells in the result
+     */
+    private static void inRanges(long cellsToVisit, long size, ParallelEvaluation parallelEvaluation,
+                                 RangeEvaluator evaluator) {
+        int ranges = parallelEvaluation.taskCount(cellsToVisit, size);
+        parallelEvaluation.run(ranges, range -> evaluator.evaluate(size * range / ranges, size * (range + 1) / ranges));
+    }
+
+    /** Returns the dimensions of the given type which are not in the subtype, in the order of the type */
+    private static List<TensorType.Dimension> removed(TensorType type, TensorType subtype) {
+        List<TensorType.Dimension> removed = new ArrayList<>();
+        for (TensorType.Dimension dimension : type.dimensions())
+            if ( ! subtype.indexOfDimension(dimension.name()).isPresent())
+                removed.add(dimension);
+        return removed;
+    }
+
+    private static IndexedTensor.BoundBuilder builder(TensorType type, Dimensions dimensions) {
+        DimensionSizes.Builder sizes = new DimensionSizes.Builder(dimensions.rank());
+        for (int i = 0; i < dimensions.rank(); i++)
+            sizes.set(i, dimensions.sizes[i]);
+        return (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(type, sizes.build());
+    }
+
+    /** Returns the stride of each dimension in the cell layout of a tensor having the given sizes */
+    private static long[] strides(DimensionSizes sizes) {
+        long[] strides = new long[sizes.dimensions()];
+        long stride = 1;
+        for (int i = strides.length - 1; i >= 0; i--) {
+            strides[i] = stride;
+            stride *= sizes.size(i);
+        }
+        return strides;
+    }
+
+    /**
+     * A list of dimensions to iterate over, with the size of each and its stride in each of (up to) two tensors.
+     * A dimension present in both tensors is iterated up to the smallest of the two sizes.
+     */
+    private static final class Dimensions {
+
+        private final long[] sizes;
+        private final long[] stridesA;
+        private final long[] stridesB;
+
+        Dimensions(List<TensorType.Dimension> dimensions, IndexedTensor a, IndexedTensor b) {
+            sizes = new long[dimensions.size()];
+            stridesA = new long[dimensions.size()];
+            stridesB = new long[dimensions.size()];
+            long[] tensorStridesA = strides(a.dimensionSizes());
+            long[] tensorStridesB = b == null ? null : strides(b.dimensionSizes());
+            for (int i = 0; i < dimensions.size(); i++) {
+                String name = dimensions.get(i).name();
+                Optional<Integer> indexInA = a.type().indexOfDimension(name);
+                Optional<Integer> indexInB = b == null ? Optional.empty() : b.type().indexOfDimension(name);
+                sizes[i] = Long.MAX_VALUE;
+                if (indexInA.isPresent()) {
+                    sizes[i] = a.dimensionSizes().size(indexInA.get());
+                    stridesA[i] = tensorStridesA[indexInA.get()];
+                }
+                if (indexInB.isPresent()) {
+                    sizes[i] = Math.min(sizes[i], b.dimensionSizes().size(indexInB.get()));
+                    stridesB[i] = tensorStridesB[indexInB.get()];
+                }
+                if (sizes[i] == Long.MAX_VALUE)
+                    throw new IllegalArgumentException("Dimension '" + name + "' is not present in " + a.type() +
+                                                       (b == null ? "" : " or " + b.type()));
+            }
+        }
+
+        int rank() { return sizes.length; }
+
+        /** Returns the number of cells in the space of these dimensions */
+        long size() {
+            long size = 1;
+            for (long dimensionSize : sizes)
+                size *= dimensionSize;
+            return size;
+        }
+
+        /** Returns the indexes in each dimension of the cell at the given index, with the last dimension varying fastest */
+        long[] indexesOf(long cellIndex) {
+            long[] indexes = new long[sizes.length];
+            for (int i = sizes.length - 1; i >= 0; i--) {
+                indexes[i] = cellIndex % sizes[i];
+                cellIndex /= sizes[i];
+            }
+            return indexes;
+        }
+
+        /** Returns the offset of the given indexes of the first dimensions into a tensor with the given strides */
+        long offset(long[] indexes, long[] strides, int dimensionCount) {
+            long offset = 0;
+            for (int i = 0; i < dimensionCount; i++)
+                offset += indexes[i] * strides[i];
+            return offset;
+        }
+
+        /**
+         * Advances the given indexes of the first dimensions to the next cell, with the later dimensions varying fastest.
+         *
+         * @return false if all cells have been visited, in which case the indexes are reset to 0
+         */
+        boolean next(long[] indexes, int dimensionCount) {
+            for (int i = dimensionCount - 1; i >= 0; i--) {
+                if (++indexes[i] < sizes[i]) return true;
+                indexes[i] = 0;
+            }
+            return false;
+        }
+
+    }
+
+    /** Evaluates the result cells from the first (inclusive) to the last (exclusive) cell index */
+    private interface RangeEvaluator {
+
+        void evaluate(long from, long to);
+
+    }
+
+}
@@ -3,10 +3,13 @@ package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
 import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.MappedTensor;
+import com.yahoo.tensor.MappedTensorEvaluator;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
 import com.yahoo.tensor.evaluation.EvaluationContext;
+import com.yahoo.tensor.evaluation.ParallelEvaluation;
 import com.yahoo.tensor.evaluation.TypeContext;
 
 import java.util.Collections;
@@ -60,9 +63,13 @@ public class Reduce extends PrimitiveTensorFunction {
         this.dimensions = ImmutableList.copyOf(dimensions);
     }
 
+    /**
+     * Returns the type resulting from reducing the given dimensions of the given type.
+     * The value type is kept, except that values smaller than float become float.
+     */
     public static TensorType outputType(TensorType inputType, List<String> reduceDimensions) {
         if (reduceDimensions.isEmpty()) return TensorType.empty; // means reduce all
-        TensorType.Builder b = new TensorType.Builder();
+        TensorType.Builder b = new TensorType.Builder(TensorType.combinedValueType(inputType));
         for (TensorType.Dimension dimension : inputType.dimensions()) {
             if ( ! reduceDimensions.contains(dimension.name()))
                 b.dimension(dimension);
@@ -110,7 +117,7 @@ public class Reduce extends PrimitiveTensorFunction {
 
     private static TensorType type(TensorType argumentType, List<String> dimensions) {
         if (dimensions.isEmpty()) return TensorType.empty; // means reduce all
-        TensorType.Builder builder = new TensorType.Builder();
+        TensorType.Builder builder = new TensorType.Builder(TensorType.combinedValueType(argumentType));
         for (TensorType.Dimension dimension : argumentType.dimensions())
             if ( ! dimensions.contains(dimension.name())) // keep
                 builder.dimension(dimension);
@@ -119,23 +126,46 @@ public class Reduce extends PrimitiveTensorFunction {
 
     @Override
     public <NAMETYPE extends TypeContext.Name> Tensor evaluate(EvaluationContext<NAMETYPE> context) {
-        return evaluate(this.argument.evaluate(context), dimensions, aggregator);
+        if (argument instanceof Join) // reduce the join of indexed tensors without creating the joined tensor
+            return evaluateJoin((Join)argument, context);
+        return evaluate(this.argument.evaluate(context), dimensions, aggregator, context.parallelEvaluation());
+    }
+
+    private <NAMETYPE extends TypeContext.Name> Tensor evaluateJoin(Join join, EvaluationContext<NAMETYPE> context) {
+        Tensor a = join.arguments().get(0).evaluate(context);
+        Tensor b = join.arguments().get(1).evaluate(context);
+        TensorType joinedType = Join.outputType(a.type(), b.type());
+        if (a instanceof IndexedTensor && b instanceof IndexedTensor && a.size() > 0 && b.size() > 0 &&
+            dimensions.stream().allMatch(dimension -> joinedType.indexOfDimension(dimension).isPresent()))
+            return IndexedTensorEvaluator.reduceJoin((IndexedTensor)a, (IndexedTensor)b, joinedType, join.combinator(),
+                                                     aggregator, dimensions, context.parallelEvaluation());
+        return evaluate(Join.evaluate(a, b, joinedType, join.combinator(), context.parallelEvaluation()),
+                        dimensions, aggregator, context.parallelEvaluation());
     }
 
     static Tensor evaluate(Tensor argument, List<String> dimensions, Aggregator aggregator) {
+        return evaluate(argument, dimensions, aggregator, ParallelEvaluation.sequential());
+    }
+
+    static Tensor evaluate(Tensor argument, List<String> dimensions, Aggregator aggregator,
+                           ParallelEvaluation parallelEvaluation) {
         if ( ! dimensions.isEmpty() && ! argument.type().dimensionNames().containsAll(dimensions))
             throw new IllegalArgumentException("Cannot reduce " + argument + " over dimensions " +
                                                dimensions + ": Not all those dimensions are present in this tensor");
 
+        if (argument instanceof IndexedTensor && argument.size() > 0)
+            return IndexedTensorEvaluator.reduce((IndexedTensor)argument, dimensions, aggregator, parallelEvaluation);
+
         // Special case: Reduce all
         if (dimensions.isEmpty() || dimensions.size() == argument.type().dimensions().size())
-            if (argument.type().dimensions().size() == 1 && argument instanceof IndexedTensor)
-                return reduceIndexedVector((IndexedTensor)argument, aggregator);
-            else
-                return reduceAllGeneral(argument, aggregator);
+            return reduceAllGeneral(argument, aggregator);
 
         TensorType reducedType = type(argument.type(), dimensions);
 
+        if (argument instanceof MappedTensor)
+            return MappedTensorEvaluator.reduce((MappedTensor)argument, reducedType, () -> ValueAggregator.ofType(aggregator),
+                                                ValueAggregator::aggregate, ValueAggregator::aggregatedValue);
+
         // Reduce cells
         Map<TensorAddress, ValueAggregator> aggregatingCells = new HashMap<>();
         for (Iterator<Tensor.Cell> i = argument.cellIterator(); i.hasNext(); ) {
@@ -172,13 +202,6 @@ public class Reduce extends PrimitiveTensorFunction {
         return Tensor.Builder.of(TensorType.empty).cell((valueAggregator.aggregatedValue())).build();
     }
 
-    private static Tensor reduceIndexedVector(IndexedTensor argument, Aggregator aggregator) {
-        ValueAggregator valueAggregator = ValueAggregator.ofType(aggregator);
-        for (int i = 0; i < argument.dimensionSizes().size(0); i++)
-            valueAggregator.aggregate(argument.get(i));
-        return Tensor.Builder.of(TensorType.empty).cell((valueAggregator.aggregatedValue())).build();
-    }
-
     static abstract class ValueAggregator {
 
         static ValueAggregator ofType(Aggregator aggregator) {
@@ -2,17 +2,15 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
-import com.yahoo.tensor.DimensionSizes;
 import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
 import com.yahoo.tensor.evaluation.EvaluationContext;
+import com.yahoo.tensor.evaluation.ParallelEvaluation;
 import com.yahoo.tensor.evaluation.TypeContext;
 
-import java.util.Arrays;
 import java.util.List;
 import java.util.function.DoubleBinaryOperator;
-import java.util.stream.Collectors;
 
 /**
  * An optimization for tensor expressions where a join immediately follows a
@@ -20,9 +18,9 @@ import java.util.stream.Collectors;
  * than evaluating each separately.
  *
  * This implementation optimizes the case where the reduce is done on the same
- * dimensions as the join. A particularly efficient evaluation is done if there
- * is one common dimension that is joined and reduced on, which is a common
- * case as it covers vector and matrix like multiplications.
+ * dimensions as the join, which covers vector and matrix like multiplications,
+ * by reducing over the cells of the indexed arguments without creating the
+ * joined tensor.
  *
  * @author lesters
  */
@@ -74,9 +72,10 @@ public class ReduceJoin extends CompositeTensorFunction {
         TensorType joinedType = new TensorType.Builder(a.type(), b.type()).build();
 
         if (canOptimize(a, b)) {
-            return evaluate((IndexedTensor)a, (IndexedTensor)b, joinedType);
+            return evaluate((IndexedTensor)a, (IndexedTensor)b, joinedType, context.parallelEvaluation());
         }
-        return Reduce.evaluate(Join.evaluate(a, b, joinedType, combinator), dimensions, aggregator);
+        return Reduce.evaluate(Join.evaluate(a, b, joinedType, combinator, context.parallelEvaluation()),
+                               dimensions, aggregator, context.parallelEvaluation());
     }
 
     /**
@@ -115,156 +114,10 @@ public class ReduceJoin extends CompositeTensorFunction {
         return true;
     }
 
-    /**
-     * Evaluates the reduce-join. Special handling for common cases where the
-     * reduce dimension is the innermost dimension in both tensors.
-     */
-    private Tensor evaluate(IndexedTensor a, IndexedTensor b, TensorType joinedType) {
-        TensorType reducedType = Reduce.outputType(joinedType, dimensions);
-
-        if (reduceDimensionIsInnermost(a, b)) {
-            if (a.type().dimensions().size() == 1 && b.type().dimensions().size() == 1) {
-                return vectorVectorProduct(a, b, reducedType);
-            }
-            if (a.type().dimensions().size() == 1 && b.type().dimensions().size() == 2) {
-                return vectorMatrixProduct(a, b, reducedType, false);
-            }
-            if (a.type().dimensions().size() == 2 && b.type().dimensions().size() == 1) {
-                return vectorMatrixProduct(b, a, reducedType, true);
-            }
-            if (a.type().dimensions().size() == 2 && b.type().dimensions().size() == 2) {
-                return matrixMatrixProduct(a, b, reducedType);
-            }
-        }
-        return evaluateGeneral(a, b, reducedType);
-    }
-
-    private Tensor vectorVectorProduct(IndexedTensor a, IndexedTensor b, TensorType reducedType) {
-        if ( a.type().dimensions().size() != 1 || b.type().dimensions().size() != 1) {
-            throw new IllegalArgumentException("Wrong dimension sizes for tensors for vector-vector product");
-        }
-        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(reducedType);
-        long commonSize = Math.min(a.dimensionSizes().size(0), b.dimensionSizes().size(0));
-
-        Reduce.ValueAggregator agg = Reduce.ValueAggregator.ofType(aggregator);
-        for (int ic = 0; ic < commonSize; ++ic) {
-            double va = a.get(ic);
-            double vb = b.get(ic);
-            agg.aggregate(combinator.applyAsDouble(va, vb));
-        }
-        builder.cellByDirectIndex(0, agg.aggregatedValue());
-        return builder.build();
-    }
-
-    private Tensor vectorMatrixProduct(IndexedTensor a, IndexedTensor b, TensorType reducedType, boolean swapped) {
-        if ( a.type().dimensions().size() != 1 || b.type().dimensions().size() != 2) {
-            throw new IllegalArgumentException("Wrong dimension sizes for tensors for vector-matrix product");
-        }
-        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(reducedType);
-        DimensionSizes sizesA = a.dimensionSizes();
-        DimensionSizes sizesB = b.dimensionSizes();
-
-        Reduce.ValueAggregator agg = Reduce.ValueAggregator.ofType(aggregator);
-        for (int ib = 0; ib < sizesB.size(0); ++ib) {
-            agg.reset();
-            for (int ic = 0; ic < Math.min(sizesA.size(0), sizesB.size(1)); ++ic) {
-                double va = a.get(ic);
-                double vb = b.get(ib * sizesB.size(1) + ic);
-                double result = swapped ? combinator.applyAsDouble(vb, va) : combinator.applyAsDouble(va, vb);
-                agg.aggregate(result);
-            }
-            builder.cellByDirectIndex(ib, agg.aggregatedValue());
-        }
-        return builder.build();
-    }
-
-    private Tensor matrixMatrixProduct(IndexedTensor a, IndexedTensor b, TensorType reducedType) {
-        if ( a.type().dimensions().size() != 2 || b.type().dimensions().size() != 2) {
-            throw new IllegalArgumentException("Wrong dimension sizes for tensors for matrix-matrix product");
-        }
-        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(reducedType);
-        DimensionSizes sizesA = a.dimensionSizes();
-        DimensionSizes sizesB = b.dimensionSizes();
-        int iaToReduced = reducedType.indexOfDimension(a.type().dimensions().get(0).name()).get();
-        int ibToReduced = reducedType.indexOfDimension(b.type().dimensions().get(0).name()).get();
-        long strideA = iaToReduced < ibToReduced ? sizesB.size(0) : 1;
-        long strideB = ibToReduced < iaToReduced ? sizesA.size(0) : 1;
-
-        Reduce.ValueAggregator agg = Reduce.ValueAggregator.ofType(aggregator);
-        for (int ia = 0; ia < sizesA.size(0); ++ia) {
-            for (int ib = 0; ib < sizesB.size(0); ++ib) {
-                agg.reset();
-                for (int ic = 0; ic < Math.min(sizesA.size(1), sizesB.size(1)); ++ic) {
-                    double va = a.get(ia * sizesA.size(1) + ic);
-                    double vb = b.get(ib * sizesB.size(1) + ic);
-                    agg.aggregate(combinator.applyAsDouble(va, vb));
-                }
-                builder.cellByDirectIndex(ia * strideA + ib * strideB, agg.aggregatedValue());
-            }
-        }
-        return builder.build();
-    }
-
-    private Tensor evaluateGeneral(IndexedTensor a, IndexedTensor b, TensorType reducedType) {
-        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(reducedType);
-        TensorType onlyInA = Reduce.outputType(a.type(), dimensions);
-        TensorType onlyInB = Reduce.outputType(b.type(), dimensions);
-        TensorType common = dimensionsInCommon(a, b);
-
-        // pre-calculate strides for each index position
-        long[] stridesA = strides(a.type());
-        long[] stridesB = strides(b.type());
-        long[] stridesResult = strides(reducedType);
-
-        // mapping of dimension indexes
-        int[] mapOnlyAToA = Join.mapIndexes(onlyInA, a.type());
-        int[] mapCommonToA = Join.mapIndexes(common, a.type());
-        int[] mapOnlyBToB = Join.mapIndexes(onlyInB, b.type());
-        int[] mapCommonToB = Join.mapIndexes(common, b.type());
-        int[] mapOnlyAToResult = Join.mapIndexes(onlyInA, reducedType);
-        int[] mapOnlyBToResult = Join.mapIndexes(onlyInB, reducedType);
-
-        // TODO: refactor with code in IndexedTensor and Join
-
-        MultiDimensionIterator ic = new MultiDimensionIterator(common);
-        Reduce.ValueAggregator agg = Reduce.ValueAggregator.ofType(aggregator);
-        for (MultiDimensionIterator ia = new MultiDimensionIterator(onlyInA); ia.hasNext(); ia.next()) {
-            for (MultiDimensionIterator ib = new MultiDimensionIterator(onlyInB); ib.hasNext(); ib.next()) {
-                agg.reset();
-                for (ic.reset(); ic.hasNext(); ic.next()) {
-                    double va = a.get(toDirectIndex(ia, ic, stridesA, mapOnlyAToA, mapCommonToA));
-                    double vb = b.get(toDirectIndex(ib, ic, stridesB, mapOnlyBToB, mapCommonToB));
-                    agg.aggregate(combinator.applyAsDouble(va, vb));
-                }
-                builder.cellByDirectIndex(toDirectIndex(ia, ib, stridesResult, mapOnlyAToResult, mapOnlyBToResult),
-                                          agg.aggregatedValue());
-            }
-        }
-        return builder.build();
-    }
-
-    private long toDirectIndex(MultiDimensionIterator iter, MultiDimensionIterator common, long[] strides, int[] map, int[] commonmap) {
-        long directIndex = 0;
-        for (int i = 0; i < iter.length(); ++i) {
-            directIndex += strides[map[i]] * iter.iterator[i];
-        }
-        for (int i = 0; i < common.length(); ++i) {
-            directIndex += strides[commonmap[i]] * common.iterator[i];
-        }
-        return directIndex;
-    }
-
-    private long[] strides(TensorType type) {
-        long[] strides = new long[type.dimensions().size()];
-        if (strides.length > 0) {
-            long previous = 1;
-            strides[strides.length - 1] = previous;
-            for (int i = strides.length - 2; i >= 0; --i) {
-                strides[i] = previous * type.dimensions().get(i + 1).size().get();
-                previous = strides[i];
-            }
-        }
-        return strides;
+    private Tensor evaluate(IndexedTensor a, IndexedTensor b, TensorType joinedType, ParallelEvaluation parallelEvaluation) {
+        if (a.size() == 0 || b.size() == 0)
+            return Reduce.evaluate(Join.evaluate(a, b, joinedType, combinator), dimensions, aggregator);
+        return IndexedTensorEvaluator.reduceJoin(a, b, joinedType, combinator, aggregator, dimensions, parallelEvaluation);
     }
 
     private TensorType dimensionsInCommon(IndexedTensor a, IndexedTensor b) {
@@ -285,34 +138,6 @@ public class ReduceJoin extends CompositeTensorFunction {
         return builder.build();
     }
 
-    /**
-     * Tests if there is exactly one reduce dimension and it is the innermost
-     * dimension in both tensors.
-     */
-    private boolean reduceDimensionIsInnermost(Tensor a, Tensor b) {
-        List<String> reducingDimensions = dimensions;
-        if (reducingDimensions.isEmpty()) {
-            reducingDimensions = dimensionsInCommon((IndexedTensor)a, (IndexedTensor)b).dimensions().stream()
-                    .map(TensorType.Dimension::name)
-                    .collect(Collectors.toList());
-        }
-        if (reducingDimensions.size() != 1) {
-            return false;
-        }
-        String dimension = reducingDimensions.get(0);
-        int indexInA = a.type().indexOfDimension(dimension).orElseThrow(() ->
-                new IllegalArgumentException("Reduce-Join dimension '" + dimension + "' missing in tensor A."));
-        if (indexInA != (a.type().dimensions().size() - 1)) {
-            return false;
-        }
-        int indexInB = b.type().indexOfDimension(dimension).orElseThrow(() ->
-                new IllegalArgumentException("Reduce-Join dimension '" + dimension + "' missing in tensor B."));
-        if (indexInB < (b.type().dimensions().size() - 1)) {
-            return false;
-        }
-        return true;
-    }
-
     @Override
     public String toString(ToStringContext context) {
         return "reduce_join(" + argumentA.toString(context) + ", " +
@@ -322,51 +147,4 @@ public class ReduceJoin extends CompositeTensorFunction {
                                 Reduce.commaSeparated(dimensions) + ")";
     }
 
-    private static class MultiDimensionIterator {
-
-        private long[] bounds;
-        private long[] iterator;
-        private int remaining;
-
-        MultiDimensionIterator(TensorType type) {
-            bounds = new long[type.dimensions().size()];
-            iterator = new long[type.dimensions().size()];
-            for (int i = 0; i < bounds.length; ++i) {
-                bounds[i] = type.dimensions().get(i).size().get();
-            }
-            reset();
-        }
-
-        public int length() {
-            return iterator.length;
-        }
-
-        public boolean hasNext() {
-            return remaining > 0;
-        }
-
-        public void reset() {
-            remaining = 1;
-            for (int i = iterator.length - 1; i >= 0; --i) {
-                iterator[i] = 0;
-                remaining *= bounds[i];
-            }
-        }
-
-        public void next() {
-            for (int i = iterator.length - 1; i >= 0; --i) {
-                iterator[i] += 1;
-                if (iterator[i] < bounds[i]) {
-                    break;
-                }
-                iterator[i] = 0;
-            }
-            remaining -= 1;
-        }
-
-        public String toString() {
-            return Arrays.toString(iterator);
-        }
-    }
-
 }
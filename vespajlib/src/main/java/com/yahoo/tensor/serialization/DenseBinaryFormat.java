@@ -14,14 +14,28 @@ import java.util.Optional;
  * Implementation of a dense binary format for a tensor on the form:
  *
  * Sorted dimensions = num_dimensions [dimension_str_len dimension_str_bytes dimension_size_int]*
- * Cell_values = [double, double, double, ...]*
+ * Cell_values = [value, value, value, ...]*
  * where values are encoded in order of increasing indexes in each dimension, increasing
  * indexes of later dimensions in the dimension type before earlier.
+ * Values are doubles, or the value type given when creating this format.
  *
  * @author bratseth
  */
 public class DenseBinaryFormat implements BinaryFormat {
 
+    /** The value type of the serialized cells */
+    private final TensorType.Value serializationValueType;
+
+    /** Creates a dense format serializing double values */
+    public DenseBinaryFormat() {
+        this(TensorType.Value.DOUBLE);
+    }
+
+    /** Creates a dense format serializing values of the given type */
+    public DenseBinaryFormat(TensorType.Value serializationValueType) {
+        this.serializationValueType = serializationValueType;
+    }
+
     @Override
     public void encode(GrowableByteBuffer buffer, Tensor tensor) {
         if ( ! ( tensor instanceof IndexedTensor))
@@ -39,9 +53,16 @@ public class DenseBinaryFormat implements BinaryFormat {
     }
 
     private void encodeCells(GrowableByteBuffer buffer, Tensor tensor) {
-        Iterator<Double> i = tensor.valueIterator();
-        while (i.hasNext())
-            buffer.putDouble(i.next());
+        if (serializationValueType == TensorType.Value.DOUBLE) { // the common case
+            Iterator<Double> i = tensor.valueIterator();
+            while (i.hasNext())
+                buffer.putDouble(i.next());
+        }
+        else {
+            IndexedTensor indexedTensor = (IndexedTensor)tensor;
+            for (long i = 0; i < indexedTensor.size(); i++)
+                TypedBinaryFormat.encodeValue(buffer, indexedTensor.get(i), serializationValueType);
+        }
     }
 
     @Override
@@ -67,7 +88,7 @@ public class DenseBinaryFormat implements BinaryFormat {
 
     private TensorType decodeType(GrowableByteBuffer buffer) {
         int dimensionCount = buffer.getInt1_4Bytes();
-        TensorType.Builder builder = new TensorType.Builder();
+        TensorType.Builder builder = new TensorType.Builder(serializationValueType);
         for (int i = 0; i < dimensionCount; i++)
             builder.indexed(buffer.getUtf8String(), buffer.getInt1_4Bytes()); // XXX: Size truncation
         return builder.build();
@@ -83,7 +104,7 @@ public class DenseBinaryFormat implements BinaryFormat {
 
     private void decodeCells(DimensionSizes sizes, GrowableByteBuffer buffer, IndexedTensor.BoundBuilder builder) {
         for (long i = 0; i < sizes.totalSize(); i++)
-            builder.cellByDirectIndex(i, buffer.getDouble());
+            builder.cellByDirectIndex(i, TypedBinaryFormat.decodeValue(buffer, serializationValueType));
     }
 
 }
@@ -19,11 +19,23 @@ import java.util.Optional;
  *
  * Note that the dimensions are sorted and the tensor address labels are given in the same sorted order.
  * Unspecified labels are encoded as the empty string "".
+ * Cell values are doubles, or the value type given when creating this format.
  *
  * @author geirst
  */
 class SparseBinaryFormat implements BinaryFormat {
 
+    /** The value type of the serialized cells */
+    private final TensorType.Value serializationValueType;
+
+    SparseBinaryFormat() {
+        this(TensorType.Value.DOUBLE);
+    }
+
+    SparseBinaryFormat(TensorType.Value serializationValueType) {
+        this.serializationValueType = serializationValueType;
+    }
+
     @Override
     public void encode(GrowableByteBuffer buffer, Tensor tensor) {
         encodeDimensions(buffer, tensor.type().dimensions());
@@ -42,7 +54,7 @@ class SparseBinaryFormat implements BinaryFormat {
         for (Iterator<Tensor.Cell> i = tensor.cellIterator(); i.hasNext(); ) {
             Map.Entry<TensorAddress, Double> cell = i.next();
             encodeAddress(buffer, cell.getKey());
-            buffer.putDouble(cell.getValue());
+            TypedBinaryFormat.encodeValue(buffer, cell.getValue(), serializationValueType);
         }
     }
 
@@ -71,7 +83,7 @@ class SparseBinaryFormat implements BinaryFormat {
 
     private TensorType decodeType(GrowableByteBuffer buffer) {
         int numDimensions = buffer.getInt1_4Bytes();
-        TensorType.Builder builder = new TensorType.Builder();
+        TensorType.Builder builder = new TensorType.Builder(serializationValueType);
         for (int i = 0; i < numDimensions; ++i)
             builder.mapped(buffer.getUtf8String());
         return builder.build();
@@ -82,7 +94,7 @@ class SparseBinaryFormat implements BinaryFormat {
         for (long i = 0; i < numCells; ++i) {
             Tensor.Builder.CellBuilder cellBuilder = builder.cell();
             decodeAddress(buffer, cellBuilder, type);
-            cellBuilder.value(buffer.getDouble());
+            cellBuilder.value(TypedBinaryFormat.decodeValue(buffer, serializationValueType));
         }
     }
 
@@ -16,6 +16,10 @@ import java.util.Optional;
  * The actual binary format used is not a concern for the client and
  * is hidden in this class and in the binary data.
  *
+ * Tensors with double values are encoded in the original formats. Tensors with other value types
+ * are encoded in the corresponding format "with cell type", where the format type is followed by the
+ * value type, and each cell value is encoded in the size of the value type.
+ *
  * @author geirst
  */
 public class TypedBinaryFormat {
@@ -23,20 +27,29 @@ public class TypedBinaryFormat {
     private static final int SPARSE_BINARY_FORMAT_TYPE = 1;
     private static final int DENSE_BINARY_FORMAT_TYPE = 2;
     private static final int MIXED_BINARY_FORMAT_TYPE = 3;
+    private static final int SPARSE_BINARY_FORMAT_WITH_CELLTYPE = 5;
+    private static final int DENSE_BINARY_FORMAT_WITH_CELLTYPE = 6;
+    private static final int MIXED_BINARY_FORMAT_WITH_CELLTYPE = 7;
+
+    private static final int DOUBLE_VALUE_TYPE = 0;
+    private static final int FLOAT_VALUE_TYPE = 1;
+    private static final int BFLOAT16_VALUE_TYPE = 2;
+    private static final int INT8_VALUE_TYPE = 3;
 
     public static byte[] encode(Tensor tensor) {
         GrowableByteBuffer buffer = new GrowableByteBuffer();
+        TensorType.Value valueType = tensor.type().valueType();
         if (tensor instanceof MixedTensor) {
-            buffer.putInt1_4Bytes(MIXED_BINARY_FORMAT_TYPE);
-            new MixedBinaryFormat().encode(buffer, tensor);
+            encodeFormatType(buffer, MIXED_BINARY_FORMAT_TYPE, MIXED_BINARY_FORMAT_WITH_CELLTYPE, valueType);
+            new MixedBinaryFormat(valueType).encode(buffer, tensor);
         }
         else if (tensor instanceof IndexedTensor) {
-            buffer.putInt1_4Bytes(DENSE_BINARY_FORMAT_TYPE);
-            new DenseBinaryFormat().encode(buffer, tensor);
+            encodeFormatType(buffer, DENSE_BINARY_FORMAT_TYPE, DENSE_BINARY_FORMAT_WITH_CELLTYPE, valueType);
+            new DenseBinaryFormat(valueType).encode(buffer, tensor);
         }
         else {
-            buffer.putInt1_4Bytes(SPARSE_BINARY_FORMAT_TYPE);
-            new SparseBinaryFormat().encode(buffer, tensor);
+            encodeFormatType(buffer, SPARSE_BINARY_FORMAT_TYPE, SPARSE_BINARY_FORMAT_WITH_CELLTYPE, valueType);
+            new SparseBinaryFormat(valueType).encode(buffer, tensor);
         }
         buffer.flip();
         byte[] result = new byte[buffer.remaining()];
@@ -58,8 +71,70 @@ public class TypedBinaryFormat {
             case MIXED_BINARY_FORMAT_TYPE: return new MixedBinaryFormat().decode(type, buffer);
             case SPARSE_BINARY_FORMAT_TYPE: return new SparseBinaryFormat().decode(type, buffer);
             case DENSE_BINARY_FORMAT_TYPE: return new DenseBinaryFormat().decode(type, buffer);
+            case MIXED_BINARY_FORMAT_WITH_CELLTYPE: return new MixedBinaryFormat(decodeValueType(buffer)).decode(type, buffer);
+            case SPARSE_BINARY_FORMAT_WITH_CELLTYPE: return new SparseBinaryFormat(decodeValueType(buffer)).decode(type, buffer);
+            case DENSE_BINARY_FORMAT_WITH_CELLTYPE: return new DenseBinaryFormat(decodeValueType(buffer)).decode(type, buffer);
             default: throw new IllegalArgumentException("Binary format type " + formatType + " is unknown");
         }
     }
 
+    private static void encodeFormatType(GrowableByteBuffer buffer, int formatType, int formatWithCellType,
+                                         TensorType.Value valueType) {
+        if (valueType == TensorType.Value.DOUBLE) {
+            buffer.putInt1_4Bytes(formatType);
+        }
+        else {
+            buffer.putInt1_4Bytes(formatWithCellType);
+            buffer.putInt1_4Bytes(encodeValueType(valueType));
+        }
+    }
+
+    private static int encodeValueType(TensorType.Value valueType) {
+        switch (valueType) {
+            case DOUBLE: return DOUBLE_VALUE_TYPE;
+            case FLOAT: return FLOAT_VALUE_TYPE;
+            case BFLOAT16: return BFLOAT16_VALUE_TYPE;
+            case INT8: return INT8_VALUE_TYPE;
+            default: throw new IllegalArgumentException("Unknown tensor value type " + valueType);
+        }
+    }
+
+    private static TensorType.Value decodeValueType(GrowableByteBuffer buffer) {
+        int valueType = buffer.getInt1_4Bytes();
+        switch (valueType) {
+            case DOUBLE_VALUE_TYPE: return TensorType.Value.DOUBLE;
+            case FLOAT_VALUE_TYPE: return TensorType.Value.FLOAT;
+            case BFLOAT16_VALUE_TYPE: return TensorType.Value.BFLOAT16;
+            case INT8_VALUE_TYPE: return TensorType.Value.INT8;
+            default: throw new IllegalArgumentException("Tensor value type " + valueType + " is unknown");
+        }
+    }
+
+    /** Writes a cell value using the number of bytes of the given value type */
+    static void encodeValue(GrowableByteBuffer buffer, double value, TensorType.Value valueType) {
+        switch (valueType) {
+            case DOUBLE: buffer.putDouble(value); break;
+            case FLOAT: buffer.putFloat((float)value); break;
+            case BFLOAT16: buffer.putShort(bfloat16BitsOf(value)); break;
+            case INT8: buffer.put((byte)valueType.rounded(value)); break;
+            default: throw new IllegalArgumentException("Unknown tensor value type " + valueType);
+        }
+    }
+
+    /** Reads a cell value written by {@link #encodeValue} */
+    static double decodeValue(GrowableByteBuffer buffer, TensorType.Value valueType) {
+        switch (valueType) {
+            case DOUBLE: return buffer.getDouble();
+            case FLOAT: return buffer.getFloat();
+            case BFLOAT16: return Float.intBitsToFloat(buffer.getShort() << 16);
+            case INT8: return buffer.get();
+            default: throw new IllegalArgumentException("Unknown tensor value type " + valueType);
+        }
+    }
+
+    /** Returns the upper 16 bits of the float closest to the given value, which is its bfloat16 representation */
+    private static short bfloat16BitsOf(double value) {
+        return (short)(Float.floatToRawIntBits((float)TensorType.Value.BFLOAT16.rounded(value)) >>> 16);
+    }
+
 }
@@ -0,0 +1,95 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.io;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BufferPoolTestCase {
+
+    @Test
+    public void testBuffersAreHandedOutInSizeClasses() {
+        BufferPool pool = new BufferPool(false, 1 << 16, 4);
+        assertEquals(4096, pool.acquire(1).capacity());
+        assertEquals(4096, pool.acquire(4096).capacity());
+        assertEquals(8192, pool.acquire(4097).capacity());
+        assertEquals(1 << 16, pool.acquire(1 << 16).capacity());
+        assertEquals((1 << 16) + 1, pool.acquire((1 << 16) + 1).capacity());
+        assertFalse(pool.acquire(1).isDirect());
+        assertTrue(new BufferPool(true, 1 << 16, 4).acquire(1).isDirect());
+    }
+
+    @Test
+    public void testReleasedBuffersAreReused() {
+        BufferPool pool = new BufferPool(false, 1 << 16, 1);
+        ByteBuffer first = pool.acquire(5000);
+        first.putInt(17).order(ByteOrder.LITTLE_ENDIAN);
+        pool.release(first);
+
+        ByteBuffer second = pool.acquire(6000);
+        assertSame(first, second);
+        assertEquals(0, second.position());
+        assertEquals(second.capacity(), second.limit());
+        assertEquals(ByteOrder.BIG_ENDIAN, second.order());
+        assertEquals(1, pool.reusedCount());
+        assertEquals(1, pool.allocatedCount());
+
+        ByteBuffer third = pool.acquire(6000);
+        assertNotSame(first, third);
+        pool.release(second);
+        pool.release(third); // more than the max free buffers per size class
+        assertSame(second, pool.acquire(6000));
+        assertNotSame(third, pool.acquire(6000));
+    }
+
+    @Test
+    public void testForeignBuffersAreNotPooled() {
+        BufferPool pool = new BufferPool(false, 1 << 16, 4);
+        ByteBuffer unpooledSize = ByteBuffer.allocate(5000);
+        ByteBuffer tooLarge = pool.acquire(1 << 17);
+        ByteBuffer direct = ByteBuffer.allocateDirect(4096);
+        ByteBuffer slice = ByteBuffer.allocate(8192);
+        slice.position(4096);
+        slice = slice.slice();
+        pool.release(unpooledSize);
+        pool.release(tooLarge);
+        pool.release(direct);
+        pool.release(slice);
+        pool.release(null);
+
+        assertNotSame(unpooledSize, pool.acquire(5000));
+        assertNotSame(tooLarge, pool.acquire(1 << 17));
+        assertNotSame(direct, pool.acquire(4096));
+        assertEquals(0, pool.reusedCount());
+    }
+
+    @Test
+    public void testGrowableByteBufferUsesPool() {
+        BufferPool pool = new BufferPool(false, 1 << 16, 4);
+        GrowableByteBuffer buffer = new GrowableByteBuffer(pool, 100);
+        assertEquals(4096, buffer.capacity());
+        for (int i = 0; i < 2000; i++)
+            buffer.putInt(i);
+        assertEquals(8000, buffer.position());
+        assertEquals(16384, buffer.capacity());
+        buffer.flip();
+        for (int i = 0; i < 2000; i++)
+            assertEquals(i, buffer.getInt());
+        ByteBuffer used = buffer.getByteBuffer();
+        buffer.release();
+
+        assertEquals(2, pool.allocatedCount()); // 4 kB, then 16 kB
+        assertSame(used, pool.acquire(10000));
+        assertEquals(4096, pool.acquire(4096).capacity()); // released on growth
+        assertEquals(2, pool.reusedCount());
+        assertEquals(2, pool.allocatedCount());
+    }
+
+}
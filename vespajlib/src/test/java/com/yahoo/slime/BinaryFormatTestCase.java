@@ -1,8 +1,10 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.slime;
 
+import com.yahoo.io.BufferPool;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
@@ -564,4 +566,19 @@ public class BinaryFormatTestCase {
         assertThat(c.field("f").asData(), is(expd));
         assertThat(c.entry(5).valid(), is(false)); // not ARRAY
     }
+
+    @Test
+    public void testEncodingWithBufferPool() {
+        System.out.println("test encoding slime using pooled buffers");
+        BufferPool pool = new BufferPool(false, 1 << 16, 4);
+        Slime slime = new Slime();
+        Cursor c = slime.setArray();
+        for (int i = 0; i < 1000; i++)
+            c.addString("value " + i); // larger than the initial buffer
+        byte[] expect = BinaryFormat.encode(slime);
+        assertArrayEquals(expect, BinaryFormat.encode(slime, pool));
+        assertArrayEquals(expect, BinaryFormat.encode(slime, pool));
+        assertEquals(3, pool.allocatedCount()); // 4, 8 and 16 kB
+        assertEquals(3, pool.reusedCount());
+    }
 }
@@ -0,0 +1,79 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.slime;
+
+/**
+ * Compares decoding binary slime data to a value tree with inspecting it through a {@link BinaryView},
+ * when accessing a few fields and when accessing all of them.
+ */
+public class BinaryViewBenchmark {
+
+    /** Creates a list of hits resembling a document summary reply */
+    private static byte[] createData(int hits, int fields) {
+        Slime slime = new Slime();
+        Cursor array = slime.setObject().setArray("docsums");
+        for (int i = 0; i < hits; i++) {
+            Cursor docsum = array.addObject().setObject("docsum");
+            docsum.setString("documentid", "id:test:test::" + i);
+            docsum.setDouble("relevance", 1.0 / (i + 1));
+            for (int f = 0; f < fields; f++) {
+                if (f % 2 == 0)
+                    docsum.setString("field" + f, "The value of field " + f + " in document number " + i);
+                else
+                    docsum.setLong("field" + f, (long)i * f);
+            }
+        }
+        return BinaryFormat.encode(slime);
+    }
+
+    private static long sparseAccess(Inspector root) {
+        long count = 0;
+        Inspector docsums = root.field("docsums");
+        for (int i = 0, n = docsums.entries(); i < n; i++)
+            count += docsums.entry(i).field("docsum").field("documentid").asString().length();
+        return count;
+    }
+
+    private static long fullAccess(Inspector root) {
+        long[] count = new long[1];
+        root.field("docsums").traverse((ArrayTraverser)(idx, hit) -> hit.field("docsum").traverse((ObjectTraverser)(name, field) -> {
+            if (field.type() == Type.STRING)
+                count[0] += field.asString().length();
+            else
+                count[0] += field.asLong();
+        }));
+        return count[0];
+    }
+
+    private static long run(String name, byte[] data, boolean view, boolean sparse, int iterations) {
+        long count = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            Inspector root = view ? BinaryView.inspect(data) : BinaryFormat.decode(data).get();
+            count += sparse ? sparseAccess(root) : fullAccess(root);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (name != null)
+            System.out.printf("%-30s %8.1f us/op\n", name, elapsed / 1000.0 / iterations);
+        return count;
+    }
+
+    /** @param argv hits, fields per hit, iterations */
+    public static void main(String[] argv) {
+        int hits = argv.length > 0 ? Integer.parseInt(argv[0]) : 100;
+        int fields = argv.length > 1 ? Integer.parseInt(argv[1]) : 30;
+        int iterations = argv.length > 2 ? Integer.parseInt(argv[2]) : 10000;
+        byte[] data = createData(hits, fields);
+        System.out.println(hits + " hits with " + fields + " fields, " + data.length + " bytes");
+
+        long count = 0;
+        for (int round = 0; round < 3; round++) {
+            boolean warmup = round == 0;
+            count += run(warmup ? null : "decode, sparse access", data, false, true, iterations);
+            count += run(warmup ? null : "view, sparse access", data, true, true, iterations);
+            count += run(warmup ? null : "decode, full access", data, false, false, iterations);
+            count += run(warmup ? null : "view, full access", data, true, false, iterations);
+        }
+        System.out.println("(" + count + ")");
+    }
+
+}
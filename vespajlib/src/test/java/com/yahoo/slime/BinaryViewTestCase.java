@@ -0,0 +1,152 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.slime;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryViewTestCase {
+
+    private static Slime createSlime() {
+        Slime slime = new Slime();
+        Cursor root = slime.setObject();
+        root.setNix("nix");
+        root.setBool("true", true);
+        root.setBool("false", false);
+        root.setLong("small", 7);
+        root.setLong("negative", -123456789L);
+        root.setLong("large", Long.MAX_VALUE);
+        root.setDouble("double", 3.25);
+        root.setString("string", "short");
+        root.setString("long string", "a string which is longer than what fits in the type byte: \u00e6\u00f8\u00e5");
+        root.setData("data", new byte[] { 1, 2, 3 });
+        Cursor array = root.setArray("array");
+        for (int i = 0; i < 100; i++)
+            array.addLong(i);
+        Cursor objects = root.setArray("objects");
+        for (int i = 0; i < 3; i++) {
+            Cursor object = objects.addObject();
+            object.setString("name", "object " + i);
+            object.setArray("empty");
+            object.setObject("nested").setLong("small", i);
+        }
+        return slime;
+    }
+
+    @Test
+    public void testViewIsEquivalentToDecodedSlime() {
+        Slime slime = createSlime();
+        Inspector view = BinaryView.inspect(BinaryFormat.encode(slime));
+        assertEquals(slime.get().toString(), view.toString());
+        assertEqualInspectors(slime.get(), view);
+    }
+
+    @Test
+    public void testFieldAccess() {
+        Inspector view = BinaryView.inspect(BinaryFormat.encode(createSlime()));
+        assertEquals(Type.OBJECT, view.type());
+        assertEquals(12, view.fields());
+        assertEquals(0, view.entries());
+        assertEquals(Type.NIX, view.field("nix").type());
+        assertTrue(view.field("nix").valid());
+        assertTrue(view.field("true").asBool());
+        assertFalse(view.field("false").asBool());
+        assertEquals(-123456789L, view.field("negative").asLong());
+        assertEquals(Long.MAX_VALUE, view.field("large").asLong());
+        assertEquals(3.25, view.field("double").asDouble(), 0);
+        assertEquals(3, view.field("double").asLong());
+        assertEquals(7.0, view.field("small").asDouble(), 0);
+        assertEquals("short", view.field("string").asString());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, view.field("data").asData());
+        assertEquals(100, view.field("array").entries());
+        assertEquals(42, view.field("array").entry(42).asLong());
+        assertEquals("object 2", view.field("objects").entry(2).field("name").asString());
+        assertEquals(2, view.field("objects").entry(2).field("nested").field("small").asLong());
+        assertEquals(0, view.field("objects").entry(2).field("empty").entries());
+    }
+
+    @Test
+    public void testInvalidAccess() {
+        Inspector view = BinaryView.inspect(BinaryFormat.encode(createSlime()));
+        assertFalse(view.field("no such field").valid());
+        assertFalse(view.field("array").entry(100).valid());
+        assertFalse(view.field("array").entry(-1).valid());
+        assertFalse(view.entry(0).valid());
+        assertFalse(view.field("string").field("name").valid());
+        assertEquals("", view.field("small").asString());
+        assertEquals(0, view.field("string").asLong());
+        assertEquals(0, view.field("data").asUtf8().length);
+        assertEquals(0, view.field("string").children());
+    }
+
+    @Test
+    public void testTraversal() {
+        Inspector view = BinaryView.inspect(BinaryFormat.encode(createSlime()));
+        List<String> names = new ArrayList<>();
+        view.traverse((ObjectTraverser)(name, inspector) -> names.add(name));
+        assertEquals(12, names.size());
+        assertEquals("nix", names.get(0));
+        assertEquals("objects", names.get(11));
+
+        List<Integer> symbols = new ArrayList<>();
+        view.traverse((ObjectSymbolTraverser)(symbol, inspector) -> symbols.add(symbol));
+        assertEquals(12, symbols.size());
+        assertEquals(view.field("objects").type(), view.field(symbols.get(11)).type());
+
+        long[] sum = new long[1];
+        view.field("array").traverse((ArrayTraverser)(idx, inspector) -> sum[0] += inspector.asLong());
+        assertEquals(4950, sum[0]);
+    }
+
+    @Test
+    public void testInspectingWithOffset() {
+        byte[] encoded = BinaryFormat.encode(createSlime());
+        byte[] padded = new byte[encoded.length + 10];
+        System.arraycopy(encoded, 0, padded, 5, encoded.length);
+        Inspector view = BinaryView.inspect(padded, 5, encoded.length);
+        assertEquals(createSlime().get().toString(), view.toString());
+    }
+
+    @Test
+    public void testScalarRoot() {
+        Slime slime = new Slime();
+        slime.setString("root");
+        assertEquals("root", BinaryView.inspect(BinaryFormat.encode(slime)).asString());
+        assertEquals(Type.NIX, BinaryView.inspect(BinaryFormat.encode(new Slime())).type());
+    }
+
+    @Test
+    public void testMalformedInputGivesPartialResult() {
+        byte[] encoded = BinaryFormat.encode(createSlime());
+        for (int length = 0; length < encoded.length; length++) {
+            Inspector view = BinaryView.inspect(encoded, 0, length);
+            Inspector decoded = BinaryFormat.decode(encoded, 0, length).get();
+            assertEquals(decoded.toString(), view.toString());
+            assertTrue(view.field("error_message").valid());
+        }
+    }
+
+    private static void assertEqualInspectors(Inspector expected, Inspector actual) {
+        assertEquals(expected.valid(), actual.valid());
+        assertEquals(expected.type(), actual.type());
+        assertEquals(expected.children(), actual.children());
+        assertEquals(expected.entries(), actual.entries());
+        assertEquals(expected.fields(), actual.fields());
+        assertEquals(expected.asBool(), actual.asBool());
+        assertEquals(expected.asLong(), actual.asLong());
+        assertEquals(expected.asDouble(), actual.asDouble(), 0);
+        assertEquals(expected.asString(), actual.asString());
+        assertArrayEquals(expected.asUtf8(), actual.asUtf8());
+        assertArrayEquals(expected.asData(), actual.asData());
+        for (int i = 0; i < expected.entries(); i++)
+            assertEqualInspectors(expected.entry(i), actual.entry(i));
+        expected.traverse((ObjectTraverser)(name, field) -> assertEqualInspectors(field, actual.field(name)));
+    }
+
+}
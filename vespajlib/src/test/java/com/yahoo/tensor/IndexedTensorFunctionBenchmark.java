@@ -0,0 +1,79 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import com.yahoo.tensor.evaluation.MapEvaluationContext;
+import com.yahoo.tensor.evaluation.VariableTensor;
+import com.yahoo.tensor.functions.ConstantTensor;
+import com.yahoo.tensor.functions.Join;
+import com.yahoo.tensor.functions.Reduce;
+import com.yahoo.tensor.functions.TensorFunction;
+
+import java.util.Random;
+
+/**
+ * Microbenchmark of join and reduce over indexed tensors:
+ * Vector dot product, matrix-vector product and reduction of a batch of vectors.
+ */
+public class IndexedTensorFunctionBenchmark {
+
+    private final static Random random = new Random();
+
+    public double benchmark(int iterations, TensorFunction function, Tensor argument) {
+        MapEvaluationContext context = new MapEvaluationContext();
+        context.put("argument", argument);
+        evaluate(function, context, iterations); // warmup
+        System.gc();
+        long startTime = System.nanoTime();
+        evaluate(function, context, iterations);
+        long totalTime = System.nanoTime() - startTime;
+        return totalTime / 1000.0 / iterations;
+    }
+
+    private double evaluate(TensorFunction function, MapEvaluationContext context, int iterations) {
+        double result = 0;
+        for (int i = 0; i < iterations; i++)
+            result += function.evaluate(context).sum().asDouble();
+        return result;
+    }
+
+    private static TensorFunction product(Tensor constant, String dimension) {
+        return new Reduce(new Join(new ConstantTensor(constant), new VariableTensor("argument"), (a, b) -> a * b),
+                          Reduce.Aggregator.sum,
+                          dimension);
+    }
+
+    private static TensorFunction sum(String dimension) {
+        return new Reduce(new VariableTensor("argument"), Reduce.Aggregator.sum, dimension);
+    }
+
+    private static Tensor random(String type) {
+        TensorType tensorType = TensorType.fromSpec(type);
+        long size = 1;
+        for (TensorType.Dimension dimension : tensorType.dimensions())
+            size *= dimension.size().get();
+        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)Tensor.Builder.of(tensorType);
+        for (int i = 0; i < size; i++)
+            builder.cellByDirectIndex(i, random.nextDouble());
+        return builder.build();
+    }
+
+    public static void main(String[] args) {
+        IndexedTensorFunctionBenchmark benchmark = new IndexedTensorFunctionBenchmark();
+
+        double time = benchmark.benchmark(200000, product(random("tensor(x[300])"), "x"), random("tensor(x[300])"));
+        System.out.printf("Dot product of 300 long vectors. Time per evaluation: %1$8.3f us\n", time);
+
+        time = benchmark.benchmark(20000, product(random("tensor(x[100],y[300])"), "y"), random("tensor(y[300])"));
+        System.out.printf("Product of a 100*300 matrix and a 300 long vector. Time per evaluation: %1$8.3f us\n", time);
+
+        time = benchmark.benchmark(2000, product(random("tensor(x[100],y[300])"), "y"), random("tensor(y[300],z[10])"));
+        System.out.printf("Product of a 100*300 matrix and a 300*10 matrix. Time per evaluation: %1$8.3f us\n", time);
+
+        time = benchmark.benchmark(20000, sum("x"), random("tensor(batch[64],x[300])"));
+        System.out.printf("Sum over x of a 64*300 batch of vectors. Time per evaluation: %1$8.3f us\n", time);
+
+        time = benchmark.benchmark(20000, sum("batch"), random("tensor(batch[64],x[300])"));
+        System.out.printf("Sum over batch of a 64*300 batch of vectors. Time per evaluation: %1$8.3f us\n", time);
+    }
+
+}
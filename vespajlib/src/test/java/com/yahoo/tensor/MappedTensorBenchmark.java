@@ -0,0 +1,138 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the memory use and join throughput of mapped tensors to those of tensors
+ * storing cells in a map from addresses to values, as mapped tensors did before
+ * labels were stored as ids, and joined by the general address based join algorithms.
+ */
+public class MappedTensorBenchmark {
+
+    private final static Random random = new Random(1234);
+
+    private static long memoryUse(Runnable creator) {
+        long before = usedMemory();
+        creator.run();
+        return usedMemory() - before;
+    }
+
+    private static long usedMemory() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+
+    private static double benchmark(int iterations, Tensor a, Tensor b) {
+        join(a, b, Math.max(iterations / 5, 1)); // warmup
+        System.gc();
+        long startTime = System.nanoTime();
+        join(a, b, iterations);
+        long totalTime = System.nanoTime() - startTime;
+        return totalTime / 1000.0 / iterations;
+    }
+
+    private static double join(Tensor a, Tensor b, int iterations) {
+        double result = 0;
+        for (int i = 0; i < iterations; i++)
+            result += a.multiply(b).size();
+        return result;
+    }
+
+    /**
+     * Returns a mapped tensor and a map tensor containing the same random cells.
+     * Random addresses which are drawn again are skipped, so the tensors may have fewer than the given number of cells.
+     */
+    private static Tensor[] random(String type, int cells, int labelsPerDimension) {
+        TensorType tensorType = TensorType.fromSpec(type);
+        Tensor.Builder builder = Tensor.Builder.of(tensorType);
+        Map<TensorAddress, Double> map = new LinkedHashMap<>();
+        for (int i = 0; i < cells; i++) {
+            String[] labels = new String[tensorType.dimensions().size()];
+            for (int d = 0; d < labels.length; d++)
+                labels[d] = "label" + (labels.length > 1 && d == 0 ? i % labelsPerDimension : random.nextInt(labelsPerDimension));
+            double value = random.nextDouble();
+            if (map.putIfAbsent(TensorAddress.of(labels), value) == null)
+                builder.cell(TensorAddress.of(labels), value);
+        }
+        return new Tensor[] { builder.build(), new MapTensor(tensorType, ImmutableMap.copyOf(map)) };
+    }
+
+    public static void main(String[] args) {
+        Tensor[] holder = new Tensor[1];
+        long mapMemory = memoryUse(() -> holder[0] = random("tensor(x{},y{})", 1000000, 1000)[1]);
+        long mapCells = holder[0].size();
+        holder[0] = null;
+        long mappedMemory = memoryUse(() -> holder[0] = random("tensor(x{},y{})", 1000000, 1000)[0]);
+        long mappedCells = holder[0].size();
+        System.out.printf("Memory of a tensor(x{},y{}) with %d cells: Address map: %d bytes/cell, mapped tensor: %d bytes/cell\n",
+                          mappedCells, mapMemory / mapCells, mappedMemory / mappedCells);
+        holder[0] = null;
+
+        Tensor[] a = random("tensor(x{},y{})", 100000, 1000);
+        Tensor[] b = random("tensor(y{})", 1000, 1000);
+        System.out.printf("Join of 100000 cells tensor(x{},y{}) and 1000 cells tensor(y{}). " +
+                          "Time per join: Address map: %1$8.1f us, mapped tensor: %2$8.1f us\n",
+                          benchmark(20, a[1], b[1]), benchmark(20, a[0], b[0]));
+
+        Tensor[] c = random("tensor(y{},z{})", 1000, 100);
+        System.out.printf("Join of 100000 cells tensor(x{},y{}) and 1000 cells tensor(y{},z{}). " +
+                          "Time per join: Address map: %1$8.1f us, mapped tensor: %2$8.1f us\n",
+                          benchmark(5, a[1], c[1]), benchmark(5, a[0], c[0]));
+    }
+
+    /** A tensor storing its cells in a map from addresses to values */
+    private static class MapTensor implements Tensor {
+
+        private final TensorType type;
+        private final ImmutableMap<TensorAddress, Double> cells;
+
+        MapTensor(TensorType type, ImmutableMap<TensorAddress, Double> cells) {
+            this.type = type;
+            this.cells = cells;
+        }
+
+        @Override
+        public TensorType type() { return type; }
+
+        @Override
+        public long size() { return cells.size(); }
+
+        @Override
+        public double get(TensorAddress address) { return cells.getOrDefault(address, Double.NaN); }
+
+        @Override
+        public Iterator<Cell> cellIterator() {
+            Iterator<Map.Entry<TensorAddress, Double>> entries = cells.entrySet().iterator();
+            return new Iterator<Cell>() {
+                @Override
+                public boolean hasNext() { return entries.hasNext(); }
+                @Override
+                public Cell next() {
+                    Map.Entry<TensorAddress, Double> entry = entries.next();
+                    return new Cell(entry.getKey(), entry.getValue());
+                }
+            };
+        }
+
+        @Override
+        public Iterator<Double> valueIterator() { return cells.values().iterator(); }
+
+        @Override
+        public Map<TensorAddress, Double> cells() { return cells; }
+
+        @Override
+        public Tensor withType(TensorType type) { return new MapTensor(type, cells); }
+
+        @Override
+        public String toString() { return Tensor.toStandardString(this); }
+
+    }
+
+}
@@ -1,11 +1,13 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.tensor;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Basic tensor tests. Tensor operations are tested in EvaluationTestCase
@@ -48,4 +50,69 @@ public class MappedTensorTestCase {
         assertEquals("{{x:0,y:0}:1.0,{x:1,y:0}:2.0}", tensor.toString());
     }
 
+    @Test
+    public void testCellsAreStoredByLabelIds() {
+        TensorType type = new TensorType.Builder().mapped("x").mapped("y").build();
+        MappedTensor tensor = (MappedTensor)Tensor.Builder.of(type).
+                cell().label("x", "a").label("y", "b").value(1).
+                cell().label("x", "c").label("y", "b").value(2).
+                build();
+        assertEquals(2, tensor.size());
+        assertEquals(1.0, tensor.get(TensorAddress.of(new String[] { "a", "b" })), 0);
+        assertEquals(2.0, tensor.get(TensorAddress.of(new String[] { "c", "b" })), 0);
+        assertTrue(Double.isNaN(tensor.get(TensorAddress.of(new String[] { "b", "a" }))));
+        assertTrue(Double.isNaN(tensor.get(TensorAddress.of(new String[] { "a" }))));
+
+        assertEquals(2, tensor.labelCount(0));
+        assertEquals(1, tensor.labelCount(1));
+        assertEquals(tensor.labelId(1, "b"), tensor.labelId(0, 1));
+        assertEquals(tensor.labelId(1, "b"), tensor.labelId(1, 1));
+        assertEquals("c", tensor.label(0, tensor.labelId(1, 0)));
+        assertEquals(-1, tensor.labelId(0, "b"));
+        assertEquals(TensorAddress.of(new String[] { "c", "b" }), tensor.address(1));
+        assertEquals(tensor.cells().hashCode(), tensor.hashCode());
+    }
+
+    @Test
+    public void testCellsCannotBeAddedTwice() {
+        try {
+            Tensor.Builder.of(TensorType.fromSpec("tensor(x{},y{})")).
+                    cell().label("x", "a").label("y", "b").value(1).
+                    cell().label("x", "a").label("y", "b").value(2);
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("Multiple cells with address [a, b] added to a tensor of type tensor(x{},y{})", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddressMustMatchType() {
+        Tensor.Builder.of(TensorType.fromSpec("tensor(x{},y{})")).cell(TensorAddress.of(new String[] { "a" }), 1.0);
+    }
+
+    @Test
+    public void testJoinOnLabelIds() {
+        Tensor a = Tensor.from("tensor(x{},y{}):{ {x:1,y:a}:1, {x:1,y:b}:2, {x:2,y:a}:3, {x:3,y:c}:4 }");
+        assertEquals(Tensor.from("tensor(x{},y{}):{ {x:1,y:a}:10, {x:2,y:a}:30 }"),
+                     a.multiply(Tensor.from("tensor(y{}):{ {y:a}:10, {y:d}:20 }")));
+        assertEquals(Tensor.from("tensor(x{},y{},z{}):{ {x:1,y:b,z:p}:4, {x:1,y:b,z:q}:6, {x:3,y:c,z:p}:20 }"),
+                     a.multiply(Tensor.from("tensor(y{},z{}):{ {y:b,z:p}:2, {y:b,z:q}:3, {y:c,z:p}:5 }")));
+        assertEquals(Tensor.from("tensor(x{},y{},z{}):{ {x:1,y:b,z:p}:0, {x:3,y:c,z:p}:-1 }"), // larger argument first
+                     a.join(Tensor.from("tensor(y{},z{}):{ {y:b,z:p}:2, {y:c,z:p}:5 }"), (p, q) -> p - q));
+        assertEquals(Tensor.from("tensor(x{},y{},z{}):{ {x:1,y:a,z:p}:2, {x:1,y:b,z:p}:4, {x:2,y:a,z:p}:6, {x:3,y:c,z:p}:8 }"),
+                     a.multiply(Tensor.from("tensor(z{}):{ {z:p}:2 }")));
+        assertEquals(Tensor.from("tensor(x{},y{}):{ {x:1,y:a}:1, {x:3,y:c}:16 }"),
+                     a.multiply(Tensor.from("tensor(x{},y{}):{ {x:1,y:a}:1, {x:3,y:c}:4, {x:4,y:c}:5 }")));
+    }
+
+    @Test
+    public void testReduceOnLabelIds() {
+        Tensor a = Tensor.from("tensor(x{},y{},z{}):{ {x:1,y:a,z:p}:1, {x:1,y:b,z:p}:2, {x:2,y:a,z:q}:3, {x:1,y:a,z:q}:4 }");
+        assertEquals(Tensor.from("tensor(x{},z{}):{ {x:1,z:p}:3, {x:2,z:q}:3, {x:1,z:q}:4 }"), a.sum("y"));
+        assertEquals(Tensor.from("tensor(x{}):{ {x:1}:7, {x:2}:3 }"), a.sum(ImmutableList.of("y", "z")));
+        assertEquals(Tensor.from("tensor(y{}):{ {y:a}:4, {y:b}:2 }"), a.max(ImmutableList.of("x", "z")));
+        assertEquals(Tensor.from("{10}"), a.sum());
+    }
+
 }
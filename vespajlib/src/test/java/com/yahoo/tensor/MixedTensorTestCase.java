@@ -152,4 +152,23 @@ public class MixedTensorTestCase {
                 tensor.toString());
     }
 
+    @Test
+    public void testGetOfMissingCells() {
+        TensorType type = new TensorType.Builder().mapped("x").indexed("y", 2).build();
+        Tensor tensor = MixedTensor.Builder.of(type).
+                cell().label("x", "a").label("y", 1).value(1).
+                build();
+        assertEquals(0.0, tensor.get(TensorAddress.of(new String[] { "a", "0" })), 0);
+        assertEquals(1.0, tensor.get(TensorAddress.of(new String[] { "a", "1" })), 0);
+        assertTrue(Double.isNaN(tensor.get(TensorAddress.of(new String[] { "b", "1" }))));
+        assertTrue(Double.isNaN(tensor.get(TensorAddress.of(new String[] { "a", "2" }))));
+        assertEquals(tensor.cells().hashCode(), tensor.hashCode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCellOutsideBoundDimension() {
+        TensorType type = new TensorType.Builder().mapped("x").indexed("y", 2).build();
+        MixedTensor.Builder.of(type).cell().label("x", "a").label("y", 2).value(1);
+    }
+
 }
@@ -106,6 +106,34 @@ public class TensorTestCase {
         assertEquals(Tensor.from("{ {x:1}:0, {x:3}:1, {x:9}:0 }"), Tensor.from("{ {x:1}:1, {x:3}:5, {x:9}:3 }").argmax("x"));
     }
 
+    @Test
+    public void testValueTypes() {
+        Tensor floats = Tensor.from("tensor<float>(x[2]):{{x:0}:0.1, {x:1}:2.5}");
+        assertTrue(floats instanceof IndexedFloatTensor);
+        assertEquals("tensor<float>(x[2]):{{x:0}:0.10000000149011612,{x:1}:2.5}", Tensor.toStandardString(floats));
+        assertEquals((float)0.1, floats.get(TensorAddress.of(0)), 0);
+
+        Tensor bfloats = Tensor.from("tensor<bfloat16>(x{}):{{x:a}:0.1, {x:b}:300.5}");
+        assertEquals(0.10009765625, bfloats.get(TensorAddress.of(new String[] { "a" })), 0);
+        assertEquals(300, bfloats.get(TensorAddress.of(new String[] { "b" })), 0);
+
+        Tensor int8s = Tensor.from("tensor<int8>(x[2]):{{x:0}:-200, {x:1}:3.6}");
+        assertEquals(-128, int8s.get(TensorAddress.of(0)), 0);
+        assertEquals(4, int8s.get(TensorAddress.of(1)), 0);
+
+        // Computations over narrow types produce at least float, and double when any argument is double
+        Tensor doubles = Tensor.from("tensor(x[2]):{{x:0}:1.0, {x:1}:2.0}");
+        assertEquals(TensorType.fromSpec("tensor<float>(x[2])"), floats.multiply(floats).type());
+        assertEquals(TensorType.fromSpec("tensor<float>(x[2])"), int8s.multiply(int8s).type());
+        assertEquals(TensorType.fromSpec("tensor<float>(x{})"), bfloats.map(v -> v * 2).type());
+        assertEquals(TensorType.fromSpec("tensor(x[2])"), floats.multiply(doubles).type());
+        assertEquals(Tensor.from("tensor<float>(x[2]):{{x:0}:-256, {x:1}:8}"), int8s.multiply(Tensor.from("{2}")));
+        assertEquals(Tensor.from("tensor<float>(x[2]):{{x:0}:0.2, {x:1}:5.0}"), floats.add(floats));
+        assertEquals(TensorType.fromSpec("tensor<float>(y[2])"), floats.rename("x", "y").type());
+        assertEquals(Tensor.from("{2.6}"), floats.sum());
+        assertEquals(TensorType.fromSpec("tensor<float>(x[2])"), floats.multiply(doubles.sum("x")).type());
+    }
+
     /** Test the same computation made in various ways which are implemented with special-case optimizations */
     @Test
     public void testOptimizedComputation() {
@@ -64,6 +64,44 @@ public class TensorTypeTestCase {
         assertIllegalTensorType("tensor(x{10})", "Failed parsing element 'x{10}' in type spec 'tensor(x{10})'");
     }
 
+    @Test
+    public void requireThatValueTypesCanBeSpecified() {
+        assertTensorType("tensor<float>(x[256])");
+        assertTensorType("tensor<bfloat16>(x{},y[3])");
+        assertTensorType("tensor<int8>(x[])");
+        assertTensorType("tensor(x[5])", "tensor<double>(x[5])");
+        assertTensorType("tensor()", "tensor<float>()"); // scalars are always doubles
+        assertEquals(TensorType.Value.FLOAT, TensorType.fromSpec("tensor<float>(x[2])").valueType());
+        assertEquals(TensorType.Value.DOUBLE, TensorType.fromSpec("tensor(x[2])").valueType());
+        assertFalse(TensorType.fromSpec("tensor<float>(x[2])").equals(TensorType.fromSpec("tensor(x[2])")));
+        assertIllegalTensorType("tensor<half>(x[2])", "Unknown tensor value type 'half'");
+        assertIllegalTensorType("tensor<float>(x[2)", "Failed parsing element 'x[2' in type spec 'tensor<float>(x[2)'");
+    }
+
+    @Test
+    public void testCombinedValueType() {
+        assertCombinedValueType(TensorType.Value.FLOAT, "tensor<float>(x[2])", "tensor<float>(y[2])");
+        assertCombinedValueType(TensorType.Value.DOUBLE, "tensor<float>(x[2])", "tensor(y[2])");
+        assertCombinedValueType(TensorType.Value.FLOAT, "tensor<float>(x[2])", "tensor()");
+        assertCombinedValueType(TensorType.Value.FLOAT, "tensor<bfloat16>(x[2])", "tensor<int8>(y[2])");
+        assertCombinedValueType(TensorType.Value.FLOAT, "tensor<int8>(x[2])");
+        assertCombinedValueType(TensorType.Value.DOUBLE, "tensor()", "tensor()");
+    }
+
+    @Test
+    public void testValueRounding() {
+        assertEquals(1.0/3, TensorType.Value.DOUBLE.rounded(1.0/3), 0);
+        assertEquals((float)(1.0/3), TensorType.Value.FLOAT.rounded(1.0/3), 0);
+        assertEquals(0.333984375, TensorType.Value.BFLOAT16.rounded(1.0/3), 0);
+        assertEquals(65536, TensorType.Value.BFLOAT16.rounded(65791), 0);
+        assertEquals(65536, TensorType.Value.BFLOAT16.rounded(65792), 0); // ties to even
+        assertEquals(66048, TensorType.Value.BFLOAT16.rounded(65793), 0);
+        assertEquals(127, TensorType.Value.INT8.rounded(300), 0);
+        assertEquals(-128, TensorType.Value.INT8.rounded(-300.5), 0);
+        assertEquals(-2, TensorType.Value.INT8.rounded(-1.7), 0);
+        assertEquals(0, TensorType.Value.INT8.rounded(Double.NaN), 0);
+    }
+
     @Test
     public void testAssignableTo() {
         assertIsAssignableTo("tensor(x[])", "tensor(x[])");
@@ -74,6 +112,10 @@ public class TensorTypeTestCase {
         assertUnassignableTo("tensor(x[5])", "tensor(x[10])");
         assertUnassignableTo("tensor(x{})", "tensor(x[])");
         assertIsAssignableTo("tensor(x{},y[10])", "tensor(x{},y[])");
+        assertIsAssignableTo("tensor<float>(x[10])", "tensor(x[10])");
+        assertIsAssignableTo("tensor<int8>(x[10])", "tensor<bfloat16>(x[10])");
+        assertUnassignableTo("tensor(x[10])", "tensor<float>(x[10])");
+        assertUnassignableTo("tensor<float>(x[10])", "tensor<bfloat16>(x[10])");
     }
 
     @Test
@@ -105,6 +147,13 @@ public class TensorTypeTestCase {
         }
     }
 
+    private void assertCombinedValueType(TensorType.Value expected, String ... typeSpecs) {
+        TensorType[] types = new TensorType[typeSpecs.length];
+        for (int i = 0; i < typeSpecs.length; i++)
+            types[i] = TensorType.fromSpec(typeSpecs[i]);
+        assertEquals(expected, TensorType.combinedValueType(types));
+    }
+
     private void assertIsAssignableTo(String specificType, String generalType) {
         assertTrue(TensorType.fromSpec(specificType).isAssignableTo(TensorType.fromSpec(generalType)));
     }
@@ -0,0 +1,201 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.functions;
+
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.MapEvaluationContext;
+import com.yahoo.tensor.evaluation.ParallelEvaluation;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.DoubleBinaryOperator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the evaluation of join and reduce over indexed tensors by comparing with
+ * the evaluation over the same tensors with mapped dimensions.
+ */
+public class IndexedTensorEvaluatorTestCase {
+
+    private final Random random = new Random(42);
+
+    private final List<String> types = Arrays.asList("tensor()",
+                                                     "tensor(x[3])",
+                                                     "tensor(x[5])",
+                                                     "tensor(y[4])",
+                                                     "tensor(x[3],y[4])",
+                                                     "tensor(x[2],z[3])",
+                                                     "tensor(y[4],z[3])",
+                                                     "tensor(x[3],y[2],z[3])");
+
+    @Test
+    public void testJoin() {
+        for (String aType : types)
+            for (String bType : types)
+                assertJoin(random(aType), random(bType), (a, b) -> a * b);
+        assertJoin(random("tensor(x[3],y[4])"), random("tensor(y[4],z[3])"), (a, b) -> a - b);
+    }
+
+    @Test
+    public void testReduce() {
+        for (String type : types) {
+            Tensor tensor = random(type);
+            for (Reduce.Aggregator aggregator : Reduce.Aggregator.values()) {
+                assertReduce(tensor, aggregator, Collections.emptyList());
+                for (String dimension : tensor.type().dimensionNames())
+                    assertReduce(tensor, aggregator, Collections.singletonList(dimension));
+                if (tensor.type().dimensions().size() > 1)
+                    assertReduce(tensor, aggregator, Arrays.asList(tensor.type().dimensions().get(0).name(),
+                                                                   tensor.type().dimensions().get(1).name()));
+            }
+        }
+    }
+
+    @Test
+    public void testReduceJoin() {
+        for (String aType : types) {
+            for (String bType : types) {
+                Tensor a = random(aType);
+                Tensor b = random(bType);
+                TensorType joinedType = Join.outputType(a.type(), b.type());
+                for (Reduce.Aggregator aggregator : Arrays.asList(Reduce.Aggregator.sum, Reduce.Aggregator.max)) {
+                    assertReduceJoin(a, b, aggregator, Collections.emptyList());
+                    for (String dimension : joinedType.dimensionNames())
+                        assertReduceJoin(a, b, aggregator, Collections.singletonList(dimension));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDotProduct() {
+        Tensor a = Tensor.from("tensor(x[3]):{{x:0}:1.0,{x:1}:2.0,{x:2}:3.0}");
+        Tensor b = Tensor.from("tensor(x[3]):{{x:0}:4.0,{x:1}:5.0,{x:2}:6.0}");
+        Tensor product = new Reduce(new Join(new ConstantTensor(a), new ConstantTensor(b), (x, y) -> x * y),
+                                    Reduce.Aggregator.sum, "x").evaluate();
+        assertEquals(32.0, product.asDouble(), 0.0);
+    }
+
+    @Test
+    public void testMatrixVectorProduct() {
+        Tensor matrix = Tensor.from("tensor(x[2],y[3]):{{x:0,y:0}:1,{x:0,y:1}:2,{x:0,y:2}:3," +
+                                                       "{x:1,y:0}:4,{x:1,y:1}:5,{x:1,y:2}:6}");
+        Tensor vector = Tensor.from("tensor(y[3]):{{y:0}:1,{y:1}:0,{y:2}:2}");
+        Tensor product = new Reduce(new Join(new ConstantTensor(matrix), new ConstantTensor(vector), (x, y) -> x * y),
+                                    Reduce.Aggregator.sum, "y").evaluate();
+        assertTrue(product instanceof IndexedTensor);
+        assertEquals(Tensor.from("tensor(x[2]):{{x:0}:7,{x:1}:16}"), product);
+    }
+
+    @Test
+    public void testJoinOfDifferentSizes() {
+        Tensor a = Tensor.from("tensor(x[]):{{x:0}:1.0,{x:1}:2.0,{x:2}:3.0}");
+        Tensor b = Tensor.from("tensor(x[],y[]):{{x:0,y:0}:2.0,{x:0,y:1}:3.0,{x:1,y:0}:4.0,{x:1,y:1}:5.0}");
+        assertEquals(Tensor.from("tensor(x[],y[]):{{x:0,y:0}:2.0,{x:0,y:1}:3.0,{x:1,y:0}:8.0,{x:1,y:1}:10.0}"),
+                     a.multiply(b));
+        assertEquals(Tensor.from("tensor(y[]):{{y:0}:10.0,{y:1}:13.0}"),
+                     new Reduce(new Join(new ConstantTensor(a), new ConstantTensor(b), (x, y) -> x * y),
+                                Reduce.Aggregator.sum, "x").evaluate());
+    }
+
+    @Test
+    public void testParallelEvaluation() {
+        MapEvaluationContext context = new MapEvaluationContext();
+        context.setParallelEvaluation(ParallelEvaluation.withMaxConcurrency(4).withMinCellsPerTask(1));
+        List<String> types = Arrays.asList("tensor(x[7])",
+                                           "tensor(x[7],y[5])",
+                                           "tensor(d0[1],x[7],y[5])",
+                                           "tensor(y[5],z[3])");
+        for (String aType : types) {
+            for (String bType : types) {
+                Tensor a = random(aType);
+                Tensor b = random(bType);
+                TensorFunction join = new Join(new ConstantTensor(a), new ConstantTensor(b), (x, y) -> x * y);
+                assertEquals(join.evaluate(), join.evaluate(context));
+                for (String dimension : join.type(context).dimensionNames()) {
+                    TensorFunction reduceJoin = new Reduce(join, Reduce.Aggregator.sum, dimension);
+                    assertEquals(reduceJoin.evaluate(), reduceJoin.evaluate(context));
+                    TensorFunction reduce = new Reduce(new ConstantTensor(a.multiply(b)), Reduce.Aggregator.max, dimension);
+                    assertEquals(reduce.evaluate(), reduce.evaluate(context));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testParallelEvaluationTaskCount() {
+        assertEquals(1, ParallelEvaluation.sequential().taskCount(1000000, 1000));
+        ParallelEvaluation parallel = ParallelEvaluation.withMaxConcurrency(4).withMinCellsPerTask(1000);
+        assertEquals(4, parallel.taskCount(1000000, 1000));
+        assertEquals(2, parallel.taskCount(2500, 1000));
+        assertEquals(1, parallel.taskCount(1999, 1000));
+        assertEquals(3, parallel.taskCount(1000000, 3));
+        assertEquals(1, parallel.taskCount(1000000, 1));
+    }
+
+    private void assertJoin(Tensor a, Tensor b, DoubleBinaryOperator combinator) {
+        Tensor result = a.join(b, combinator);
+        assertTrue(result instanceof IndexedTensor);
+        assertEquals("join(" + a.type() + ", " + b.type() + ")",
+                     mapped(a).join(mapped(b), combinator), mapped(result));
+    }
+
+    private void assertReduce(Tensor tensor, Reduce.Aggregator aggregator, List<String> dimensions) {
+        Tensor result = tensor.reduce(aggregator, dimensions);
+        assertTrue(result instanceof IndexedTensor);
+        assertEquals("reduce(" + tensor.type() + ", " + aggregator + ", " + dimensions + ")",
+                     mapped(tensor).reduce(aggregator, dimensions), mapped(result));
+    }
+
+    private void assertReduceJoin(Tensor a, Tensor b, Reduce.Aggregator aggregator, List<String> dimensions) {
+        DoubleBinaryOperator combinator = (x, y) -> x * y;
+        Tensor expected = mapped(a).join(mapped(b), combinator).reduce(aggregator, dimensions);
+        String message = "reduce(join(" + a.type() + ", " + b.type() + "), " + aggregator + ", " + dimensions + ")";
+
+        Tensor fused = new Reduce(new Join(new ConstantTensor(a), new ConstantTensor(b), combinator),
+                                  aggregator, dimensions).evaluate();
+        assertEquals(message, expected, mapped(fused));
+
+        ReduceJoin reduceJoin = new ReduceJoin(new ConstantTensor(a), new ConstantTensor(b), combinator,
+                                               aggregator, dimensions);
+        assertEquals(message, expected, mapped(reduceJoin.evaluate()));
+    }
+
+    private Tensor random(String type) {
+        TensorType tensorType = TensorType.fromSpec(type);
+        long size = 1;
+        for (TensorType.Dimension dimension : tensorType.dimensions())
+            size *= dimension.size().get();
+        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)Tensor.Builder.of(tensorType);
+        for (int i = 0; i < size; i++)
+            builder.cellByDirectIndex(i, random.nextInt(10) - 3);
+        return builder.build();
+    }
+
+    /** Returns the given tensor with all dimensions converted to mapped, to compare with the general evaluation */
+    private Tensor mapped(Tensor tensor) {
+        TensorType.Builder typeBuilder = new TensorType.Builder();
+        for (TensorType.Dimension dimension : tensor.type().dimensions())
+            typeBuilder.mapped(dimension.name());
+        TensorType type = typeBuilder.build();
+        if (type.dimensions().isEmpty()) return tensor;
+
+        Tensor.Builder builder = Tensor.Builder.of(type);
+        for (Iterator<Tensor.Cell> i = tensor.cellIterator(); i.hasNext(); ) {
+            Tensor.Cell cell = i.next();
+            Tensor.Builder.CellBuilder cellBuilder = builder.cell();
+            for (int d = 0; d < type.dimensions().size(); d++)
+                cellBuilder.label(type.dimensions().get(d).name(), cell.getKey().label(d));
+            cellBuilder.value(cell.getValue());
+        }
+        return builder.build();
+    }
+
+}
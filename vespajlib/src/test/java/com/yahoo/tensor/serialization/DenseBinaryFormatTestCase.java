@@ -28,6 +28,13 @@ public class DenseBinaryFormatTestCase {
         assertSerialization("tensor(x[1],y[2],z[3]):{{y:0,x:0,z:0}:2.0}");
     }
 
+    @Test
+    public void testSerializationOfValueTypes() {
+        assertSerialization("tensor<float>(x[3]):{{x:0}:2.5, {x:1}:-1.0, {x:2}:0.1}");
+        assertSerialization("tensor<bfloat16>(x[],y[2]):{{x:0,y:0}:2.5, {x:0,y:1}:-1.0, {x:1,y:0}:0.1, {x:1,y:1}:3.0}");
+        assertSerialization("tensor<int8>(x[2]):{{x:0}:-128, {x:1}:127}");
+    }
+
     @Test
     public void testSerializationToSeparateType() {
         assertSerialization(Tensor.from("tensor(x[1],y[1]):{{x:0,y:0}:2.0}"), TensorType.fromSpec("tensor(x[],y[])"));
@@ -53,6 +60,19 @@ public class DenseBinaryFormatTestCase {
                      Arrays.toString(TypedBinaryFormat.encode(Tensor.from("tensor(xy[],z[]):{{xy:0,z:0}:2.0,{xy:1,z:0}:3.0}"))));
     }
 
+    @Test
+    public void requireThatFloatSerializationFormatDoNotChange() {
+        byte[] encodedTensor = new byte[]{6, // binary format type: dense with cell type
+                                          1, // cell type: float
+                                          1, // dimension count
+                                          1, (byte) 'x', 2, // dimension x with size
+                                          64, 0, 0, 0, // value 1
+                                          64, 64, 0, 0  // value 2
+        };
+        assertEquals(Arrays.toString(encodedTensor),
+                     Arrays.toString(TypedBinaryFormat.encode(Tensor.from("tensor<float>(x[]):{{x:0}:2.0,{x:1}:3.0}"))));
+    }
+
     private void assertSerialization(String tensorString) {
         assertSerialization(Tensor.from(tensorString));
     }
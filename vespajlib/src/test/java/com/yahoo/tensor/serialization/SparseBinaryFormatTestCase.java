@@ -32,6 +32,13 @@ public class SparseBinaryFormatTestCase {
         assertSerialization("tensor(x{},y{},z{}):{{y:0,x:0,z:3}:2.0,{y:1,x:0,z:6}:3.0}");
     }
 
+    @Test
+    public void testSerializationOfValueTypes() {
+        assertSerialization("tensor<float>(x{},y{}):{{x:l1,y:l2}:2.5, {x:l2,y:l1}:0.1}");
+        assertSerialization("tensor<bfloat16>(x{}):{{x:a}:0.1, {x:b}:-3.0}");
+        assertSerialization("tensor<int8>(x{}):{{x:a}:-7, {x:b}:100}");
+    }
+
     @Test
     public void testSerializationToSeparateType() {
         try {